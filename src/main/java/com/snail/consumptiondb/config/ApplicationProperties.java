@@ -1,6 +1,14 @@
 package com.snail.consumptiondb.config;
 
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.service.IngestionAckMode;
+import java.time.Duration;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Properties specific to Consumption Db.
@@ -10,7 +18,718 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Ingestion ingestion = new Ingestion();
+
+    private final Rollup rollup = new Rollup();
+
+    private final MethodTree methodTree = new MethodTree();
+
+    private final Partition partition = new Partition();
+
+    private final Retention retention = new Retention();
+
+    private final HotTier hotTier = new HotTier();
+
     // jhipster-needle-application-properties-property
+
+    public Ingestion getIngestion() {
+        return ingestion;
+    }
+
+    public Rollup getRollup() {
+        return rollup;
+    }
+
+    public MethodTree getMethodTree() {
+        return methodTree;
+    }
+
+    public Partition getPartition() {
+        return partition;
+    }
+
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public HotTier getHotTier() {
+        return hotTier;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Ingestion {
+
+        /**
+         * Number of rows sent to the database per JDBC batch, and flushed from the persistence context at once.
+         * Keep it aligned with {@code hibernate.jdbc.batch_size} and the id allocation size of Consumption.
+         */
+        private int batchSize = 50;
+
+        /**
+         * Number of records of a streamed upload buffered and committed in one transaction.
+         * This bounds the heap used by an upload, whatever its size.
+         */
+        private int streamChunkSize = 5_000;
+
+        /**
+         * Number of files of a measurement run imported in parallel.
+         */
+        private int importParallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Number of records of a bulk load sent in one {@code LOAD DATA} statement and transaction.
+         * Each chunk is encoded in memory, at roughly 60 bytes per record.
+         */
+        private int bulkLoadChunkSize = 100_000;
+
+        /**
+         * How long the report of a batch sent with an {@code Idempotency-Key} header is kept, and so how long retries
+         * of the batch are recognised.
+         */
+        private Duration idempotencyKeyTtl = Duration.ofHours(24);
+
+        private final Pipeline pipeline = new Pipeline();
+
+        private final Spool spool = new Spool();
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getStreamChunkSize() {
+            return streamChunkSize;
+        }
+
+        public void setStreamChunkSize(int streamChunkSize) {
+            this.streamChunkSize = streamChunkSize;
+        }
+
+        public int getImportParallelism() {
+            return importParallelism;
+        }
+
+        public void setImportParallelism(int importParallelism) {
+            this.importParallelism = importParallelism;
+        }
+
+        public int getBulkLoadChunkSize() {
+            return bulkLoadChunkSize;
+        }
+
+        public void setBulkLoadChunkSize(int bulkLoadChunkSize) {
+            this.bulkLoadChunkSize = bulkLoadChunkSize;
+        }
+
+        public Duration getIdempotencyKeyTtl() {
+            return idempotencyKeyTtl;
+        }
+
+        public void setIdempotencyKeyTtl(Duration idempotencyKeyTtl) {
+            this.idempotencyKeyTtl = idempotencyKeyTtl;
+        }
+
+        public Pipeline getPipeline() {
+            return pipeline;
+        }
+
+        public Spool getSpool() {
+            return spool;
+        }
+
+        public static class Pipeline {
+
+            /**
+             * Capacity of the ring buffer in front of each stage, rounded up to a power of two.
+             */
+            private int bufferSize = 8_192;
+
+            /**
+             * Maximum number of records committed by the persist stage in one transaction.
+             */
+            private int transactionSize = 5_000;
+
+            /**
+             * How long the persist stage waits for more records before committing a partial transaction.
+             */
+            private Duration linger = Duration.ofMillis(10);
+
+            /**
+             * How long an upload waits for room in a full pipeline before its record is dropped.
+             */
+            private Duration offerTimeout = Duration.ofSeconds(1);
+
+            /**
+             * How long shutdown waits for queued records to be committed.
+             */
+            private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+            /**
+             * Acknowledgement mode of uploads not asking for one.
+             */
+            private IngestionAckMode ackMode = IngestionAckMode.COMMIT;
+
+            public int getBufferSize() {
+                return bufferSize;
+            }
+
+            public void setBufferSize(int bufferSize) {
+                this.bufferSize = bufferSize;
+            }
+
+            public int getTransactionSize() {
+                return transactionSize;
+            }
+
+            public void setTransactionSize(int transactionSize) {
+                this.transactionSize = transactionSize;
+            }
+
+            public Duration getLinger() {
+                return linger;
+            }
+
+            public void setLinger(Duration linger) {
+                this.linger = linger;
+            }
+
+            public Duration getOfferTimeout() {
+                return offerTimeout;
+            }
+
+            public void setOfferTimeout(Duration offerTimeout) {
+                this.offerTimeout = offerTimeout;
+            }
+
+            public Duration getShutdownTimeout() {
+                return shutdownTimeout;
+            }
+
+            public void setShutdownTimeout(Duration shutdownTimeout) {
+                this.shutdownTimeout = shutdownTimeout;
+            }
+
+            public IngestionAckMode getAckMode() {
+                return ackMode;
+            }
+
+            public void setAckMode(IngestionAckMode ackMode) {
+                this.ackMode = ackMode;
+            }
+        }
+
+        public static class Spool {
+
+            /**
+             * Whether the ingestion pipeline writes the uploads acknowledged on enqueue to the local spool first, the
+             * spool being replayed to the database in the background.
+             */
+            private boolean enabled = false;
+
+            /**
+             * Identifier of this instance's spool in the database checkpoints, defaults to the host name.
+             */
+            private String id;
+
+            /**
+             * Directory of the spool segment files, it must survive restarts.
+             */
+            private String directory = "spool";
+
+            /**
+             * Size of a spool segment file.
+             */
+            private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+            /**
+             * Maximum size of the spool on disk, uploads are refused beyond.
+             */
+            private DataSize maxSize = DataSize.ofGigabytes(2);
+
+            /**
+             * Maximum number of records replayed in one transaction.
+             */
+            private int replayBatchSize = 5_000;
+
+            /**
+             * Maximum delay between two replay attempts while the database is unavailable.
+             */
+            private Duration maxRetryDelay = Duration.ofSeconds(30);
+
+            /**
+             * How long shutdown waits for the spool to be replayed, the rest is replayed at the next startup.
+             */
+            private Duration drainTimeout = Duration.ofSeconds(30);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getId() {
+                return id;
+            }
+
+            public void setId(String id) {
+                this.id = id;
+            }
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public DataSize getSegmentSize() {
+                return segmentSize;
+            }
+
+            public void setSegmentSize(DataSize segmentSize) {
+                this.segmentSize = segmentSize;
+            }
+
+            public DataSize getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(DataSize maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public int getReplayBatchSize() {
+                return replayBatchSize;
+            }
+
+            public void setReplayBatchSize(int replayBatchSize) {
+                this.replayBatchSize = replayBatchSize;
+            }
+
+            public Duration getMaxRetryDelay() {
+                return maxRetryDelay;
+            }
+
+            public void setMaxRetryDelay(Duration maxRetryDelay) {
+                this.maxRetryDelay = maxRetryDelay;
+            }
+
+            public Duration getDrainTimeout() {
+                return drainTimeout;
+            }
+
+            public void setDrainTimeout(Duration drainTimeout) {
+                this.drainTimeout = drainTimeout;
+            }
+        }
+    }
+
+    public static class Rollup {
+
+        /**
+         * Delay between two refreshes of the rollups of the dirty minutes.
+         */
+        private Duration refreshDelay = Duration.ofSeconds(10);
+
+        /**
+         * Dirty minutes refreshed per transaction.
+         */
+        private int refreshBatchSize = 1_000;
+
+        /**
+         * Time window rebuilt from scratch by the scheduled repair, ending now.
+         */
+        private Duration repairWindow = Duration.ofDays(1);
+
+        /**
+         * Age after which the samples of an hour are compacted into blocks, longer than the repair window so that the
+         * repair does not expand them again. Samples are not compacted when not set.
+         */
+        private Duration compactAfter;
+
+        /**
+         * Delay between two compactions of the sealed hours.
+         */
+        private Duration compactionDelay = Duration.ofMinutes(5);
+
+        /**
+         * Hours compacted per compaction at most, one transaction each.
+         */
+        private int compactionBatchSize = 24;
+
+        public Duration getRefreshDelay() {
+            return refreshDelay;
+        }
+
+        public void setRefreshDelay(Duration refreshDelay) {
+            this.refreshDelay = refreshDelay;
+        }
+
+        public int getRefreshBatchSize() {
+            return refreshBatchSize;
+        }
+
+        public void setRefreshBatchSize(int refreshBatchSize) {
+            this.refreshBatchSize = refreshBatchSize;
+        }
+
+        public Duration getRepairWindow() {
+            return repairWindow;
+        }
+
+        public void setRepairWindow(Duration repairWindow) {
+            this.repairWindow = repairWindow;
+        }
+
+        public Duration getCompactAfter() {
+            return compactAfter;
+        }
+
+        public void setCompactAfter(Duration compactAfter) {
+            this.compactAfter = compactAfter;
+        }
+
+        public Duration getCompactionDelay() {
+            return compactionDelay;
+        }
+
+        public void setCompactionDelay(Duration compactionDelay) {
+            this.compactionDelay = compactionDelay;
+        }
+
+        public int getCompactionBatchSize() {
+            return compactionBatchSize;
+        }
+
+        public void setCompactionBatchSize(int compactionBatchSize) {
+            this.compactionBatchSize = compactionBatchSize;
+        }
+    }
+
+    public static class MethodTree {
+
+        /**
+         * How long the in-memory method tree of a release is kept before it is rebuilt with fresh energy totals.
+         * Methods added to the release in the meantime are inserted into it as they are created.
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        /**
+         * Number of method trees kept in memory, one per release and filter.
+         */
+        private int maxTrees = 100;
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public int getMaxTrees() {
+            return maxTrees;
+        }
+
+        public void setMaxTrees(int maxTrees) {
+            this.maxTrees = maxTrees;
+        }
+    }
     // jhipster-needle-application-properties-property-class
+
+    public static class Partition {
+
+        /**
+         * Delay between two checks of the monthly partitions of the consumption table.
+         */
+        private Duration checkDelay = Duration.ofHours(1);
+
+        /**
+         * Number of monthly partitions kept ready after the current month, so that inserts never land in the
+         * catch-all partition.
+         */
+        private int monthsAhead = 3;
+
+        /**
+         * How long consumptions are kept, partitions ending before then being dropped or archived. Kept forever when
+         * not set.
+         */
+        private Period retention;
+
+        /**
+         * Whether expired partitions are moved to a {@code consumption_archive_<partition>} table instead of dropped.
+         */
+        private boolean archive = false;
+
+        public Duration getCheckDelay() {
+            return checkDelay;
+        }
+
+        public void setCheckDelay(Duration checkDelay) {
+            this.checkDelay = checkDelay;
+        }
+
+        public int getMonthsAhead() {
+            return monthsAhead;
+        }
+
+        public void setMonthsAhead(int monthsAhead) {
+            this.monthsAhead = monthsAhead;
+        }
+
+        public Period getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Period retention) {
+            this.retention = retention;
+        }
+
+        public boolean isArchive() {
+            return archive;
+        }
+
+        public void setArchive(boolean archive) {
+            this.archive = archive;
+        }
+    }
+
+    public static class Retention {
+
+        /**
+         * Delay between two purges of the expired consumptions.
+         */
+        private Duration purgeDelay = Duration.ofMinutes(1);
+
+        /**
+         * Consumptions deleted per statement and transaction, keeping row locks short and binlog events small.
+         */
+        private int chunkSize = 1_000;
+
+        /**
+         * Pause between two chunks, leaving room to the ingestion and to the replicas.
+         */
+        private Duration chunkPause = Duration.ofMillis(100);
+
+        /**
+         * Chunks deleted per purge at most, the rest being left to the next purges.
+         */
+        private int maxChunksPerPurge = 1_000;
+
+        /**
+         * How long the consumptions matching no policy are kept. Kept forever when not set.
+         */
+        private Duration raw;
+
+        /**
+         * Retention of the consumptions of a software, scope or monitoring type, the first matching policy applying.
+         */
+        private List<Policy> policies = new ArrayList<>();
+
+        public Duration getPurgeDelay() {
+            return purgeDelay;
+        }
+
+        public void setPurgeDelay(Duration purgeDelay) {
+            this.purgeDelay = purgeDelay;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public Duration getChunkPause() {
+            return chunkPause;
+        }
+
+        public void setChunkPause(Duration chunkPause) {
+            this.chunkPause = chunkPause;
+        }
+
+        public int getMaxChunksPerPurge() {
+            return maxChunksPerPurge;
+        }
+
+        public void setMaxChunksPerPurge(int maxChunksPerPurge) {
+            this.maxChunksPerPurge = maxChunksPerPurge;
+        }
+
+        public Duration getRaw() {
+            return raw;
+        }
+
+        public void setRaw(Duration raw) {
+            this.raw = raw;
+        }
+
+        public List<Policy> getPolicies() {
+            return policies;
+        }
+
+        public void setPolicies(List<Policy> policies) {
+            this.policies = policies;
+        }
+
+        public static class Policy {
+
+            /**
+             * Name of the policy in the metrics, {@code policy-<index>} by default.
+             */
+            private String name;
+
+            /**
+             * Name of the software whose release methods the policy applies to, any when not set.
+             */
+            private String software;
+
+            /**
+             * Scope the policy applies to, any when not set.
+             */
+            private Scope scope;
+
+            /**
+             * Monitoring type the policy applies to, any when not set.
+             */
+            private MonitoringType monitoringType;
+
+            /**
+             * How long the matching consumptions are kept. Kept forever when not set.
+             */
+            private Duration keep;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getSoftware() {
+                return software;
+            }
+
+            public void setSoftware(String software) {
+                this.software = software;
+            }
+
+            public Scope getScope() {
+                return scope;
+            }
+
+            public void setScope(Scope scope) {
+                this.scope = scope;
+            }
+
+            public MonitoringType getMonitoringType() {
+                return monitoringType;
+            }
+
+            public void setMonitoringType(MonitoringType monitoringType) {
+                this.monitoringType = monitoringType;
+            }
+
+            public Duration getKeep() {
+                return keep;
+            }
+
+            public void setKeep(Duration keep) {
+                this.keep = keep;
+            }
+        }
+    }
+
+    public static class HotTier {
+
+        /**
+         * Whether the recent samples written through this instance are kept in memory-mapped files to serve the series
+         * of the last hours. Only enable it on instances taking all the writes of the methods they chart.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the hot tier segment files, wiped at startup.
+         */
+        private String directory = "hot-tier";
+
+        /**
+         * Size of a hot tier segment file, a multiple of 2KB.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Maximum size of the hot tier on disk, the oldest segment being dropped beyond.
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+
+        /**
+         * How long the samples are kept in the hot tier, from their timestamp.
+         */
+        private Duration retention = Duration.ofHours(6);
+
+        /**
+         * Delay between two drops of the segments past the retention.
+         */
+        private Duration ageOutDelay = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public Duration getAgeOutDelay() {
+            return ageOutDelay;
+        }
+
+        public void setAgeOutDelay(Duration ageOutDelay) {
+            this.ageOutDelay = ageOutDelay;
+        }
+    }
 }
@@ -3,6 +3,8 @@ package com.snail.consumptiondb.config;
 import com.hazelcast.config.*;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.snail.consumptiondb.service.ReleaseDiffService;
+import com.snail.consumptiondb.service.ReleaseTopMethodsService;
 import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -107,6 +109,8 @@ public class CacheConfiguration {
         config.setManagementCenterConfig(new ManagementCenterConfig());
         config.addMapConfig(initializeDefaultMapConfig(jHipsterProperties));
         config.addMapConfig(initializeDomainMapConfig(jHipsterProperties));
+        config.addMapConfig(initializeTimeToLiveMapConfig(ReleaseDiffService.RELEASE_DIFF_CACHE, jHipsterProperties));
+        config.addMapConfig(initializeTimeToLiveMapConfig(ReleaseTopMethodsService.RELEASE_TOP_METHODS_CACHE, jHipsterProperties));
         return Hazelcast.newHazelcastInstance(config);
     }
 
@@ -146,6 +150,12 @@ public class CacheConfiguration {
         return mapConfig;
     }
 
+    private MapConfig initializeTimeToLiveMapConfig(String name, JHipsterProperties jHipsterProperties) {
+        MapConfig mapConfig = new MapConfig(name);
+        mapConfig.setTimeToLiveSeconds(jHipsterProperties.getCache().getHazelcast().getTimeToLiveSeconds());
+        return mapConfig;
+    }
+
     @Autowired(required = false)
     public void setGitProperties(GitProperties gitProperties) {
         this.gitProperties = gitProperties;
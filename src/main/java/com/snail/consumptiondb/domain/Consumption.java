@@ -8,6 +8,7 @@ import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.*;
+import javax.validation.constraints.*;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
@@ -16,14 +17,25 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
  */
 @Entity
 @Table(name = "consumption")
+@NamedEntityGraph(name = Consumption.WITH_TO_ONE_RELATIONSHIPS, attributeNodes = @NamedAttributeNode("method"))
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Consumption implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Entity graph of the relationships serialized with a consumption, fetched in the same statement.
+     */
+    public static final String WITH_TO_ONE_RELATIONSHIPS = "Consumption.withToOneRelationships";
+
+    /**
+     * Pooled table-backed generator: unlike {@code IDENTITY}, it lets Hibernate assign ids before the INSERT,
+     * so JDBC batching stays enabled for this entity.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "consumptionSequenceGenerator")
+    @SequenceGenerator(name = "consumptionSequenceGenerator", sequenceName = "consumption_sequence", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -38,9 +50,20 @@ public class Consumption implements Serializable {
     @Column(name = "monitoring_type")
     private MonitoringType monitoringType;
 
-    @Column(name = "timestamp")
+    /**
+     * Consumptions are partitioned by timestamp, which is part of the primary key of the table.
+     */
+    @NotNull
+    @Column(name = "timestamp", nullable = false)
     private Instant timestamp;
 
+    /**
+     * The method this sample was measured for.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JsonIgnoreProperties(value = { "method", "consumption", "releases" }, allowSetters = true)
+    private Method method;
+
     @OneToMany(mappedBy = "consumption")
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonIgnoreProperties(value = { "method", "method", "consumption", "releases" }, allowSetters = true)
@@ -118,6 +141,19 @@ public class Consumption implements Serializable {
         this.timestamp = timestamp;
     }
 
+    public Method getMethod() {
+        return this.method;
+    }
+
+    public void setMethod(Method method) {
+        this.method = method;
+    }
+
+    public Consumption method(Method method) {
+        this.setMethod(method);
+        return this;
+    }
+
     public Set<Method> getMethods() {
         return this.methods;
     }
@@ -12,12 +12,22 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
  */
 @Entity
 @Table(name = "measure")
+@NamedEntityGraph(
+    name = Measure.WITH_TO_ONE_RELATIONSHIPS,
+    attributeNodes = @NamedAttributeNode(value = "consumption", subgraph = "consumption"),
+    subgraphs = @NamedSubgraph(name = "consumption", attributeNodes = @NamedAttributeNode("method"))
+)
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Measure implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Entity graph of the relationships serialized with a measure, fetched in the same statement.
+     */
+    public static final String WITH_TO_ONE_RELATIONSHIPS = "Measure.withToOneRelationships";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -26,7 +36,7 @@ public class Measure implements Serializable {
     @Column(name = "start_timestamp")
     private Instant startTimestamp;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties(value = { "methods", "measures" }, allowSetters = true)
     private Consumption consumption;
 
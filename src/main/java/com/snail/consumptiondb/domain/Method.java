@@ -13,12 +13,22 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
  */
 @Entity
 @Table(name = "method")
+@NamedEntityGraph(
+    name = Method.WITH_TO_ONE_RELATIONSHIPS,
+    attributeNodes = { @NamedAttributeNode("method"), @NamedAttributeNode(value = "consumption", subgraph = "consumption") },
+    subgraphs = @NamedSubgraph(name = "consumption", attributeNodes = @NamedAttributeNode("method"))
+)
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Method implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Entity graph of the relationships serialized with a method, fetched in the same statement.
+     */
+    public static final String WITH_TO_ONE_RELATIONSHIPS = "Method.withToOneRelationships";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -29,10 +39,10 @@ public class Method implements Serializable {
 
     @JoinColumn(unique = true)
     @JsonIgnoreProperties(value = { "method", "method", "consumption", "releases" }, allowSetters = true)
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     private Method method;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties(value = { "methods", "measures" }, allowSetters = true)
     private Consumption consumption;
 
@@ -11,12 +11,18 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
  */
 @Entity
 @Table(name = "software")
+@NamedEntityGraph(name = Software.WITH_TO_ONE_RELATIONSHIPS, attributeNodes = @NamedAttributeNode("release"))
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @SuppressWarnings("common-java:DuplicatedBlocks")
 public class Software implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Entity graph of the relationships serialized with a software, fetched in the same statement.
+     */
+    public static final String WITH_TO_ONE_RELATIONSHIPS = "Software.withToOneRelationships";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -25,7 +31,7 @@ public class Software implements Serializable {
     @Column(name = "name")
     private String name;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties(value = { "software", "methods" }, allowSetters = true)
     private Release release;
 
@@ -0,0 +1,85 @@
+package com.snail.consumptiondb.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Service;
+
+/**
+ * Meters tracking the progress and throughput of CSV measurement run imports.
+ */
+@Service
+public class ConsumptionImportMetersService {
+
+    public static final String ROWS_METER_NAME = "consumption.import.rows";
+    public static final String ROWS_METER_DESCRIPTION = "Number of CSV rows processed by measurement run imports.";
+    public static final String ROWS_METER_RESULT_DIMENSION = "result";
+
+    public static final String FILES_METER_NAME = "consumption.import.files";
+    public static final String FILES_METER_DESCRIPTION = "Number of CSV files fully imported.";
+
+    public static final String PENDING_FILES_METER_NAME = "consumption.import.files.pending";
+    public static final String PENDING_FILES_METER_DESCRIPTION = "Number of CSV files of running imports not imported yet.";
+
+    public static final String THROUGHPUT_METER_NAME = "consumption.import.throughput";
+    public static final String THROUGHPUT_METER_DESCRIPTION = "Rows per second of the last completed import.";
+
+    public static final String DURATION_METER_NAME = "consumption.import.duration";
+    public static final String DURATION_METER_DESCRIPTION = "Duration of measurement run imports.";
+
+    private final Counter importedRowsCounter;
+    private final Counter filesCounter;
+    private final Timer durationTimer;
+    private final AtomicInteger pendingFiles = new AtomicInteger();
+    private final AtomicLong lastThroughput = new AtomicLong();
+
+    public ConsumptionImportMetersService(MeterRegistry registry) {
+        this.importedRowsCounter = rowsCounterForResultBuilder("imported").register(registry);
+        this.filesCounter = Counter.builder(FILES_METER_NAME).baseUnit("files").description(FILES_METER_DESCRIPTION).register(registry);
+        this.durationTimer = Timer.builder(DURATION_METER_NAME).description(DURATION_METER_DESCRIPTION).register(registry);
+        Gauge
+            .builder(PENDING_FILES_METER_NAME, pendingFiles, AtomicInteger::get)
+            .baseUnit("files")
+            .description(PENDING_FILES_METER_DESCRIPTION)
+            .register(registry);
+        Gauge
+            .builder(THROUGHPUT_METER_NAME, lastThroughput, AtomicLong::get)
+            .baseUnit("rows/s")
+            .description(THROUGHPUT_METER_DESCRIPTION)
+            .register(registry);
+    }
+
+    private Counter.Builder rowsCounterForResultBuilder(String result) {
+        return Counter
+            .builder(ROWS_METER_NAME)
+            .baseUnit("rows")
+            .description(ROWS_METER_DESCRIPTION)
+            .tag(ROWS_METER_RESULT_DIMENSION, result);
+    }
+
+    public void trackFilesQueued(int count) {
+        pendingFiles.addAndGet(count);
+    }
+
+    public void trackFileImported() {
+        pendingFiles.decrementAndGet();
+        filesCounter.increment();
+    }
+
+    public void trackFilesAborted(int count) {
+        pendingFiles.addAndGet(-count);
+    }
+
+    public void trackRowsImported(long count) {
+        importedRowsCounter.increment(count);
+    }
+
+    public void trackImportCompleted(long rows, long durationNanos) {
+        durationTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        lastThroughput.set(rows * TimeUnit.SECONDS.toNanos(1) / Math.max(durationNanos, 1L));
+    }
+}
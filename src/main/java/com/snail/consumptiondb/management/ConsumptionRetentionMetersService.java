@@ -0,0 +1,61 @@
+package com.snail.consumptiondb.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Service;
+
+/**
+ * Meters tracking the purge of the expired consumptions, per retention policy.
+ */
+@Service
+public class ConsumptionRetentionMetersService {
+
+    public static final String PURGED_METER_NAME = "consumption.retention.purged";
+    public static final String PURGED_METER_DESCRIPTION = "Number of expired consumptions deleted.";
+
+    public static final String LAG_METER_NAME = "consumption.retention.lag";
+    public static final String LAG_METER_DESCRIPTION =
+        "Age beyond the retention of the oldest consumption possibly left behind by the last purge, zero once caught up.";
+
+    public static final String POLICY_DIMENSION = "policy";
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicLong> lagSeconds = new ConcurrentHashMap<>();
+
+    public ConsumptionRetentionMetersService(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void trackPurged(String policy, long count) {
+        Counter
+            .builder(PURGED_METER_NAME)
+            .baseUnit("rows")
+            .description(PURGED_METER_DESCRIPTION)
+            .tag(POLICY_DIMENSION, policy)
+            .register(registry)
+            .increment(count);
+    }
+
+    public void trackLag(String policy, Duration lag) {
+        lagSeconds
+            .computeIfAbsent(
+                policy,
+                key -> {
+                    AtomicLong seconds = new AtomicLong();
+                    Gauge
+                        .builder(LAG_METER_NAME, seconds, AtomicLong::get)
+                        .baseUnit("seconds")
+                        .description(LAG_METER_DESCRIPTION)
+                        .tag(POLICY_DIMENSION, key)
+                        .register(registry);
+                    return seconds;
+                }
+            )
+            .set(Math.max(0, lag.getSeconds()));
+    }
+}
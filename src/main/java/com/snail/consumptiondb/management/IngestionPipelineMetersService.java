@@ -0,0 +1,130 @@
+package com.snail.consumptiondb.management;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Meters of the asynchronous ingestion pipeline, used to size its ring buffers under production load.
+ */
+@Service
+public class IngestionPipelineMetersService {
+
+    public static final String QUEUE_DEPTH_METER_NAME = "consumption.pipeline.queue.depth";
+    public static final String QUEUE_DEPTH_METER_DESCRIPTION = "Number of records waiting in front of a pipeline stage.";
+
+    public static final String QUEUE_CAPACITY_METER_NAME = "consumption.pipeline.queue.capacity";
+    public static final String QUEUE_CAPACITY_METER_DESCRIPTION = "Capacity of the ring buffer in front of a pipeline stage.";
+
+    public static final String STAGE_LATENCY_METER_NAME = "consumption.pipeline.stage.latency";
+    public static final String STAGE_LATENCY_METER_DESCRIPTION = "Time spent by a record in a pipeline stage, queueing included.";
+
+    public static final String RECORDS_METER_NAME = "consumption.pipeline.records";
+    public static final String RECORDS_METER_DESCRIPTION = "Number of records going through the ingestion pipeline.";
+    public static final String RECORDS_METER_RESULT_DIMENSION = "result";
+
+    public static final String REJECTED_METER_NAME = "consumption.pipeline.rejected";
+    public static final String REJECTED_METER_DESCRIPTION = "Number of records rejected by a pipeline stage.";
+
+    public static final String STAGE_DIMENSION = "stage";
+
+    public static final String SPOOL_BACKLOG_METER_NAME = "consumption.spool.backlog";
+    public static final String SPOOL_BACKLOG_METER_DESCRIPTION = "Number of spooled records not replayed to the database yet.";
+
+    public static final String SPOOL_SEGMENTS_METER_NAME = "consumption.spool.segments";
+    public static final String SPOOL_SEGMENTS_METER_DESCRIPTION = "Number of segment files of the ingestion spool.";
+
+    private final MeterRegistry registry;
+
+    private final Counter acceptedCounter;
+    private final Counter persistedCounter;
+    private final Counter duplicateCounter;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+
+    public IngestionPipelineMetersService(MeterRegistry registry) {
+        this.registry = registry;
+        this.acceptedCounter = recordsCounterForResult("accepted");
+        this.persistedCounter = recordsCounterForResult("persisted");
+        this.duplicateCounter = recordsCounterForResult("duplicate");
+        this.droppedCounter = recordsCounterForResult("dropped");
+        this.failedCounter = recordsCounterForResult("failed");
+    }
+
+    private Counter recordsCounterForResult(String result) {
+        return Counter
+            .builder(RECORDS_METER_NAME)
+            .baseUnit("records")
+            .description(RECORDS_METER_DESCRIPTION)
+            .tag(RECORDS_METER_RESULT_DIMENSION, result)
+            .register(registry);
+    }
+
+    public void registerQueue(String stage, Supplier<Number> depth, int capacity) {
+        Gauge
+            .builder(QUEUE_DEPTH_METER_NAME, depth)
+            .baseUnit("records")
+            .description(QUEUE_DEPTH_METER_DESCRIPTION)
+            .tag(STAGE_DIMENSION, stage)
+            .register(registry);
+        Gauge
+            .builder(QUEUE_CAPACITY_METER_NAME, () -> capacity)
+            .baseUnit("records")
+            .description(QUEUE_CAPACITY_METER_DESCRIPTION)
+            .tag(STAGE_DIMENSION, stage)
+            .register(registry);
+    }
+
+    public void registerSpool(Supplier<Number> backlog, Supplier<Number> segments) {
+        Gauge
+            .builder(SPOOL_BACKLOG_METER_NAME, backlog)
+            .baseUnit("records")
+            .description(SPOOL_BACKLOG_METER_DESCRIPTION)
+            .register(registry);
+        Gauge
+            .builder(SPOOL_SEGMENTS_METER_NAME, segments)
+            .baseUnit("files")
+            .description(SPOOL_SEGMENTS_METER_DESCRIPTION)
+            .register(registry);
+    }
+
+    public Timer stageLatencyTimer(String stage) {
+        return Timer
+            .builder(STAGE_LATENCY_METER_NAME)
+            .description(STAGE_LATENCY_METER_DESCRIPTION)
+            .tag(STAGE_DIMENSION, stage)
+            .register(registry);
+    }
+
+    public Counter rejectedCounter(String stage) {
+        return Counter
+            .builder(REJECTED_METER_NAME)
+            .baseUnit("records")
+            .description(REJECTED_METER_DESCRIPTION)
+            .tag(STAGE_DIMENSION, stage)
+            .register(registry);
+    }
+
+    public void trackRecordAccepted() {
+        acceptedCounter.increment();
+    }
+
+    public void trackRecordsPersisted(long count) {
+        persistedCounter.increment(count);
+    }
+
+    public void trackRecordsDuplicate(long count) {
+        duplicateCounter.increment(count);
+    }
+
+    public void trackRecordDropped() {
+        droppedCounter.increment();
+    }
+
+    public void trackRecordsFailed(long count) {
+        failedCounter.increment(count);
+    }
+}
@@ -0,0 +1,101 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+
+/**
+ * Count, sum, min and max of the values of a group of {@link com.snail.consumptiondb.domain.Consumption} rows. Only
+ * the dimensions the rows are grouped over are set.
+ */
+public class ConsumptionAggregateRow {
+
+    private final Long methodId;
+
+    private final Long releaseId;
+
+    private final Scope scope;
+
+    private final MonitoringType monitoringType;
+
+    private final long count;
+
+    private final Long sum;
+
+    private final Long min;
+
+    private final Long max;
+
+    public ConsumptionAggregateRow(
+        Long methodId,
+        Long releaseId,
+        Scope scope,
+        MonitoringType monitoringType,
+        long count,
+        Long sum,
+        Long min,
+        Long max
+    ) {
+        this.methodId = methodId;
+        this.releaseId = releaseId;
+        this.scope = scope;
+        this.monitoringType = monitoringType;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public Long getMethodId() {
+        return methodId;
+    }
+
+    public Long getReleaseId() {
+        return releaseId;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public MonitoringType getMonitoringType() {
+        return monitoringType;
+    }
+
+    /**
+     * @return the number of values of the group.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public Long getSum() {
+        return sum;
+    }
+
+    public Long getMin() {
+        return min;
+    }
+
+    public Long getMax() {
+        return max;
+    }
+
+    public Double getMean() {
+        return count == 0 || sum == null ? null : (double) sum / count;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ConsumptionAggregateRow{" +
+            "methodId=" + getMethodId() +
+            ", releaseId=" + getReleaseId() +
+            ", scope='" + getScope() + "'" +
+            ", monitoringType='" + getMonitoringType() + "'" +
+            ", count=" + getCount() +
+            ", sum=" + getSum() +
+            ", min=" + getMin() +
+            ", max=" + getMax() +
+            "}";
+    }
+}
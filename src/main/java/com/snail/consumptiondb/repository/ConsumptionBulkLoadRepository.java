@@ -0,0 +1,78 @@
+package com.snail.consumptiondb.repository;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import java.io.InputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository loading rows into the {@code consumption} table with MySQL's {@code LOAD DATA LOCAL INFILE}.
+ * <p>
+ * The "file" is an in-memory stream handed to the driver, nothing is written to disk on either side.
+ * It requires {@code allowLoadLocalInfile=true} on the JDBC URL and {@code local_infile=ON} on the server.
+ */
+@Repository
+public class ConsumptionBulkLoadRepository {
+
+    /**
+     * Column order of the rows streamed to {@link #load(InputStream)}: tab-separated, one row per line, {@code \N} for null,
+     * timestamps in UTC.
+     */
+    public static final String[] COLUMNS = { "id", "value", "scope", "monitoring_type", "timestamp", "method_id" };
+
+    private static final String LOAD_DATA_SQL =
+        "load data local infile 'consumption.tsv' ignore into table consumption character set utf8mb4 " +
+        "fields terminated by '\\t' escaped by '\\\\' lines terminated by '\\n' (" +
+        String.join(", ", COLUMNS) +
+        ")";
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConsumptionBulkLoadRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reserve a block of consumption ids that the pooled id generator of the entity will never hand out.
+     * <p>
+     * The generator's table holds the upper bound of the next pooled block, so the block after the reserved ids is
+     * left whole for it. The reservation commits on its own, to hold the generator's row lock as briefly as possible.
+     *
+     * @param count the number of ids to reserve.
+     * @return the first reserved id, the others following it.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public long reserveIds(int count) {
+        Long nextValue = jdbcTemplate.queryForObject("select next_val from consumption_sequence for update", Long.class);
+        long upperBound = nextValue == null ? ALLOCATION_SIZE : nextValue;
+        jdbcTemplate.update("update consumption_sequence set next_val = ?", upperBound + count + ALLOCATION_SIZE);
+        return upperBound + 1;
+    }
+
+    /**
+     * Load rows laid out as described by {@link #COLUMNS}, in the current transaction; rows whose natural key already
+     * exists are skipped.
+     *
+     * @param rows the rows to load.
+     * @return the number of rows inserted.
+     */
+    public long load(InputStream rows) {
+        Integer loaded = jdbcTemplate.execute(
+            (StatementCallback<Integer>) statement -> {
+                JdbcStatement mysqlStatement = statement.unwrap(JdbcStatement.class);
+                mysqlStatement.setLocalInfileInputStream(rows);
+                try {
+                    return statement.executeUpdate(LOAD_DATA_SQL);
+                } finally {
+                    mysqlStatement.setLocalInfileInputStream(null);
+                }
+            }
+        );
+        return loaded == null ? 0 : loaded;
+    }
+}
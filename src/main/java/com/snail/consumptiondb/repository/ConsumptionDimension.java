@@ -0,0 +1,35 @@
+package com.snail.consumptiondb.repository;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Dimensions consumptions can be aggregated over.
+ */
+public enum ConsumptionDimension {
+    METHOD("method"),
+    /**
+     * The releases of the method, through {@code rel_jhi_release__method}: a consumption counts once for each release
+     * its method belongs to.
+     */
+    RELEASE("release"),
+    SCOPE("scope"),
+    MONITORING_TYPE("monitoringType");
+
+    private final String parameter;
+
+    ConsumptionDimension(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * @return the name of the dimension in request parameters.
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    public static Optional<ConsumptionDimension> fromParameter(String parameter) {
+        return Arrays.stream(values()).filter(dimension -> dimension.parameter.equals(parameter)).findFirst();
+    }
+}
@@ -0,0 +1,23 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+
+/**
+ * Scalar projection of a {@link com.snail.consumptiondb.domain.Consumption} row, which is never managed by the
+ * persistence context.
+ */
+public interface ConsumptionExportRow {
+    Long getId();
+
+    Long getValue();
+
+    Scope getScope();
+
+    MonitoringType getMonitoringType();
+
+    Instant getTimestamp();
+
+    Long getMethodId();
+}
@@ -0,0 +1,83 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+
+/**
+ * Filters of a {@link com.snail.consumptiondb.domain.Consumption} listing, the ones left {@code null} do not apply.
+ */
+public class ConsumptionFilter {
+
+    private Long methodId;
+
+    private Long releaseId;
+
+    private Scope scope;
+
+    private MonitoringType monitoringType;
+
+    private Instant from;
+
+    private Instant to;
+
+    public Long getMethodId() {
+        return methodId;
+    }
+
+    public ConsumptionFilter methodId(Long methodId) {
+        this.methodId = methodId;
+        return this;
+    }
+
+    public Long getReleaseId() {
+        return releaseId;
+    }
+
+    public ConsumptionFilter releaseId(Long releaseId) {
+        this.releaseId = releaseId;
+        return this;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public ConsumptionFilter scope(Scope scope) {
+        this.scope = scope;
+        return this;
+    }
+
+    public MonitoringType getMonitoringType() {
+        return monitoringType;
+    }
+
+    public ConsumptionFilter monitoringType(MonitoringType monitoringType) {
+        this.monitoringType = monitoringType;
+        return this;
+    }
+
+    /**
+     * @return the inclusive lower bound of the timestamps.
+     */
+    public Instant getFrom() {
+        return from;
+    }
+
+    public ConsumptionFilter from(Instant from) {
+        this.from = from;
+        return this;
+    }
+
+    /**
+     * @return the exclusive upper bound of the timestamps.
+     */
+    public Instant getTo() {
+        return to;
+    }
+
+    public ConsumptionFilter to(Instant to) {
+        this.to = to;
+        return this;
+    }
+}
@@ -0,0 +1,45 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+
+/**
+ * Range partition of the {@code consumption} table, holding the consumptions before its upper bound and after the
+ * bound of the previous partition.
+ */
+public class ConsumptionPartition {
+
+    private final String name;
+
+    private final Instant upperBound;
+
+    private final long rows;
+
+    public ConsumptionPartition(String name, Instant upperBound, long rows) {
+        this.name = name;
+        this.upperBound = upperBound;
+        this.rows = rows;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the exclusive upper bound of the timestamps, or {@code null} for the catch-all {@code MAXVALUE} partition.
+     */
+    public Instant getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * @return the estimated number of rows, from the table statistics.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsumptionPartition{name='" + name + "', upperBound=" + upperBound + ", rows=" + rows + "}";
+    }
+}
@@ -0,0 +1,145 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository managing the range partitions of the {@code consumption} table, by timestamp.
+ * <p>
+ * Partition changes are DDL statements, which commit implicitly. They wait at most {@value #DDL_LOCK_WAIT_SECONDS}
+ * seconds for the transactions reading or writing consumptions, instead of queueing every other statement behind them
+ * for as long as MySQL's default {@code lock_wait_timeout}. They must run in a transaction, so that the session
+ * settings and the named lock apply to the connection running them.
+ */
+@Repository
+public class ConsumptionPartitionRepository {
+
+    private static final String LOCK_NAME = "consumption_partition";
+
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private static final int DDL_LOCK_WAIT_SECONDS = 10;
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConsumptionPartitionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the partitions of the consumption table in bound order, or an empty list if it is not partitioned.
+     */
+    public List<ConsumptionPartition> findAll() {
+        return jdbcTemplate.query(
+            "select partition_name, partition_description, table_rows from information_schema.partitions " +
+            "where table_schema = database() and table_name = 'consumption' and partition_name is not null " +
+            "order by partition_ordinal_position",
+            (rs, rowNum) -> new ConsumptionPartition(rs.getString(1), parseBound(rs.getString(2)), rs.getLong(3))
+        );
+    }
+
+    /**
+     * Take the partition lock, held by the current connection until {@link #unlock()}, so that the instances do not
+     * change partitions concurrently.
+     *
+     * @throws IllegalStateException if the lock is not released in time.
+     */
+    public void lock() {
+        Integer locked = jdbcTemplate.queryForObject("select get_lock(?, ?)", Integer.class, LOCK_NAME, LOCK_TIMEOUT_SECONDS);
+        if (locked == null || locked != 1) {
+            throw new IllegalStateException("Could not take the partition lock");
+        }
+    }
+
+    public void unlock() {
+        jdbcTemplate.queryForObject("select release_lock(?)", Integer.class, LOCK_NAME);
+    }
+
+    /**
+     * Add partitions after the last one, splitting them out of the catch-all partition if there is one.
+     *
+     * @param partitions the partitions to add, in bound order, with an upper bound.
+     * @param maxPartition the name of the catch-all partition, or {@code null} if there is none.
+     */
+    public void add(List<ConsumptionPartition> partitions, String maxPartition) {
+        String definitions = partitions
+            .stream()
+            .map(partition -> "partition " + checkName(partition.getName()) + " values less than ('" + formatBound(partition) + "')")
+            .collect(Collectors.joining(", "));
+        if (maxPartition == null) {
+            alter("alter table consumption add partition (" + definitions + ")");
+        } else {
+            alter(
+                "alter table consumption reorganize partition " +
+                checkName(maxPartition) +
+                " into (" +
+                definitions +
+                ", partition " +
+                maxPartition +
+                " values less than (maxvalue))"
+            );
+        }
+    }
+
+    /**
+     * Drop a partition along with its consumptions.
+     */
+    public void drop(String partition) {
+        alter("alter table consumption drop partition " + checkName(partition));
+    }
+
+    /**
+     * Move the consumptions of a partition to a new table with the same columns and indexes, then drop the partition.
+     *
+     * @param partition the partition.
+     * @param archiveTable the name of the table, which must not exist yet.
+     */
+    public void archive(String partition, String archiveTable) {
+        checkName(partition);
+        checkName(archiveTable);
+        jdbcTemplate.execute("create table " + archiveTable + " like consumption");
+        alter("alter table " + archiveTable + " remove partitioning");
+        alter("alter table consumption exchange partition " + partition + " with table " + archiveTable);
+        drop(partition);
+    }
+
+    private void alter(String sql) {
+        Integer previous = jdbcTemplate.queryForObject("select @@session.lock_wait_timeout", Integer.class);
+        jdbcTemplate.execute("set session lock_wait_timeout = " + DDL_LOCK_WAIT_SECONDS);
+        try {
+            jdbcTemplate.execute(sql);
+        } finally {
+            jdbcTemplate.execute("set session lock_wait_timeout = " + previous);
+        }
+    }
+
+    static Instant parseBound(String description) {
+        if (description == null || "MAXVALUE".equalsIgnoreCase(description)) {
+            return null;
+        }
+        String bound = description.replace("'", "");
+        return LocalDateTime.parse(bound.substring(0, Math.min(bound.length(), 19)), BOUND_FORMAT).toInstant(ZoneOffset.UTC);
+    }
+
+    private static String formatBound(ConsumptionPartition partition) {
+        return BOUND_FORMAT.format(partition.getUpperBound().atOffset(ZoneOffset.UTC));
+    }
+
+    private static String checkName(String name) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid partition or table name " + name);
+        }
+        return name;
+    }
+}
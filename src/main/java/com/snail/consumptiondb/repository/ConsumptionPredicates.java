@@ -0,0 +1,61 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Consumption_;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Method_;
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.Release_;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+
+/**
+ * Criteria predicates of a {@link ConsumptionFilter}, shared by the custom consumption queries.
+ */
+final class ConsumptionPredicates {
+
+    private ConsumptionPredicates() {}
+
+    /**
+     * @param releaseJoined whether the query already joins the releases of the method, in which case the release
+     * filter applies to that join rather than to a subquery.
+     */
+    static List<Predicate> of(
+        ConsumptionFilter filter,
+        CriteriaBuilder cb,
+        AbstractQuery<?> query,
+        Root<Consumption> consumption,
+        boolean releaseJoined
+    ) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getMethodId() != null) {
+            predicates.add(cb.equal(consumption.get(Consumption_.method).get(Method_.id), filter.getMethodId()));
+        }
+        if (filter.getReleaseId() != null && !releaseJoined) {
+            Subquery<Long> releaseMethods = query.subquery(Long.class);
+            Root<Release> release = releaseMethods.from(Release.class);
+            Join<Release, Method> method = release.join(Release_.methods);
+            releaseMethods.select(method.get(Method_.id)).where(cb.equal(release.get(Release_.id), filter.getReleaseId()));
+            predicates.add(consumption.get(Consumption_.method).get(Method_.id).in(releaseMethods));
+        }
+        if (filter.getScope() != null) {
+            predicates.add(cb.equal(consumption.get(Consumption_.scope), filter.getScope()));
+        }
+        if (filter.getMonitoringType() != null) {
+            predicates.add(cb.equal(consumption.get(Consumption_.monitoringType), filter.getMonitoringType()));
+        }
+        if (filter.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(consumption.get(Consumption_.timestamp), filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            predicates.add(cb.lessThan(consumption.get(Consumption_.timestamp), filter.getTo()));
+        }
+        return predicates;
+    }
+}
@@ -1,7 +1,18 @@
 package com.snail.consumptiondb.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +20,104 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ConsumptionRepository extends JpaRepository<Consumption, Long> {}
+public interface ConsumptionRepository
+    extends ConsumptionRepositoryWithKeyset, ConsumptionRepositoryWithAggregates, JpaRepository<Consumption, Long> {
+    /**
+     * Fetch size of {@link Integer#MIN_VALUE}, making the MySQL driver stream the rows of a result set one at a time
+     * instead of reading them all into memory. The connection runs no other statement until the stream is closed.
+     */
+    String STREAM_FETCH_SIZE = "-2147483648";
+
+    @EntityGraph(Consumption.WITH_TO_ONE_RELATIONSHIPS)
+    Optional<Consumption> findOneWithToOneRelationshipsById(Long id);
+
+    /**
+     * Find the consumption stored under a natural key, through the generated key columns of its unique index.
+     *
+     * @return the id of the consumption, or {@code null} if none is stored under the key.
+     */
+    @Query(
+        value = "select id from consumption where method_key = coalesce(:methodId, 0) and timestamp = :timestamp " +
+        "and scope_key = coalesce(:scope, '') and monitoring_type_key = coalesce(:monitoringType, '')",
+        nativeQuery = true
+    )
+    Long findIdByNaturalKey(
+        @Param("methodId") Long methodId,
+        @Param("timestamp") Instant timestamp,
+        @Param("scope") String scope,
+        @Param("monitoringType") String monitoringType
+    );
+
+    default Stream<ConsumptionExportRow> streamAll(ConsumptionFilter filter) {
+        return streamAll(
+            filter.getMethodId(),
+            filter.getReleaseId(),
+            filter.getScope(),
+            filter.getMonitoringType(),
+            filter.getFrom(),
+            filter.getTo()
+        );
+    }
+
+    /**
+     * Stream the consumptions matching the filters left non-null, in {@code (timestamp, id)} order.
+     * The stream must be consumed, and closed, within a transaction.
+     */
+    @Query(
+        "select consumption.id as id, consumption.value as value, consumption.scope as scope, " +
+        "consumption.monitoringType as monitoringType, consumption.timestamp as timestamp, method.id as methodId " +
+        "from Consumption consumption left join consumption.method method " +
+        "where (:methodId is null or method.id = :methodId) " +
+        "and (:releaseId is null or method.id in " +
+        "(select releaseMethod.id from Release release join release.methods releaseMethod where release.id = :releaseId)) " +
+        "and (:scope is null or consumption.scope = :scope) " +
+        "and (:monitoringType is null or consumption.monitoringType = :monitoringType) " +
+        "and (:from is null or consumption.timestamp >= :from) " +
+        "and (:to is null or consumption.timestamp < :to) " +
+        "order by consumption.timestamp, consumption.id"
+    )
+    @QueryHints(
+        {
+            @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+        }
+    )
+    Stream<ConsumptionExportRow> streamAll(
+        @Param("methodId") Long methodId,
+        @Param("releaseId") Long releaseId,
+        @Param("scope") Scope scope,
+        @Param("monitoringType") MonitoringType monitoringType,
+        @Param("from") Instant from,
+        @Param("to") Instant to
+    );
+
+    /**
+     * Stream the timestamped values of a method within a time window, in timestamp order.
+     * The stream must be consumed, and closed, within a transaction.
+     */
+    @Query(
+        "select consumption.timestamp as timestamp, consumption.value as value " +
+        "from Consumption consumption " +
+        "where consumption.method.id = :methodId " +
+        "and (:scope is null or consumption.scope = :scope) " +
+        "and (:monitoringType is null or consumption.monitoringType = :monitoringType) " +
+        "and consumption.timestamp >= :from and consumption.timestamp < :to " +
+        "and consumption.value is not null " +
+        "order by consumption.timestamp"
+    )
+    @QueryHints(
+        {
+            @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+        }
+    )
+    Stream<ConsumptionSample> streamSamples(
+        @Param("methodId") Long methodId,
+        @Param("scope") Scope scope,
+        @Param("monitoringType") MonitoringType monitoringType,
+        @Param("from") Instant from,
+        @Param("to") Instant to
+    );
+}
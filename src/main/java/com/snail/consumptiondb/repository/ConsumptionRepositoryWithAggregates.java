@@ -0,0 +1,18 @@
+package com.snail.consumptiondb.repository;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Aggregation of consumptions in the database, so that clients get one row per group instead of the raw consumptions.
+ */
+public interface ConsumptionRepositoryWithAggregates {
+    /**
+     * Aggregate the values of the consumptions matching a filter.
+     *
+     * @param filter the filters.
+     * @param dimensions the dimensions to group the consumptions over; none for a single group.
+     * @return the count, sum, min and max of the values per group, ordered by group.
+     */
+    List<ConsumptionAggregateRow> aggregate(ConsumptionFilter filter, Set<ConsumptionDimension> dimensions);
+}
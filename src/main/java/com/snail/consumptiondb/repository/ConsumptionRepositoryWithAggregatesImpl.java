@@ -0,0 +1,110 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Consumption_;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Method_;
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.Release_;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+/**
+ * Aggregation of consumptions with a {@code GROUP BY} query, served by the covering
+ * {@code (method_id, scope, monitoring_type, timestamp, value)} and {@code (scope, monitoring_type, timestamp, method_id, value)}
+ * indexes of the {@code consumption} table: the rows themselves are never read.
+ */
+public class ConsumptionRepositoryWithAggregatesImpl implements ConsumptionRepositoryWithAggregates {
+
+    private static final String METHOD_ID = "methodId";
+
+    private static final String RELEASE_ID = "releaseId";
+
+    private static final String SCOPE = "scope";
+
+    private static final String MONITORING_TYPE = "monitoringType";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ConsumptionAggregateRow> aggregate(ConsumptionFilter filter, Set<ConsumptionDimension> dimensions) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Consumption> consumption = query.from(Consumption.class);
+        Expression<Long> value = consumption.get(Consumption_.value);
+
+        boolean releaseJoined = dimensions.contains(ConsumptionDimension.RELEASE);
+        List<Predicate> predicates = ConsumptionPredicates.of(filter, cb, query, consumption, releaseJoined);
+        List<Expression<?>> groups = new ArrayList<>();
+        List<Selection<?>> selections = new ArrayList<>();
+        for (ConsumptionDimension dimension : dimensions) {
+            Expression<?> group;
+            switch (dimension) {
+                case METHOD:
+                    group = consumption.get(Consumption_.method).get(Method_.id);
+                    selections.add(group.alias(METHOD_ID));
+                    break;
+                case RELEASE:
+                    Join<Method, Release> release = consumption.join(Consumption_.method).join(Method_.releases);
+                    group = release.get(Release_.id);
+                    if (filter.getReleaseId() != null) {
+                        predicates.add(cb.equal(group, filter.getReleaseId()));
+                    }
+                    selections.add(group.alias(RELEASE_ID));
+                    break;
+                case SCOPE:
+                    group = consumption.get(Consumption_.scope);
+                    selections.add(group.alias(SCOPE));
+                    break;
+                default:
+                    group = consumption.get(Consumption_.monitoringType);
+                    selections.add(group.alias(MONITORING_TYPE));
+                    break;
+            }
+            groups.add(group);
+        }
+        selections.add(cb.count(value));
+        selections.add(cb.sum(value));
+        selections.add(cb.min(value));
+        selections.add(cb.max(value));
+        query
+            .multiselect(selections)
+            .where(predicates.toArray(new Predicate[0]))
+            .groupBy(groups)
+            .orderBy(groups.stream().map(cb::asc).collect(Collectors.toList()));
+
+        int aggregates = dimensions.size();
+        List<ConsumptionAggregateRow> result = new ArrayList<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            result.add(
+                new ConsumptionAggregateRow(
+                    dimensions.contains(ConsumptionDimension.METHOD) ? row.get(METHOD_ID, Long.class) : null,
+                    releaseJoined ? row.get(RELEASE_ID, Long.class) : null,
+                    dimensions.contains(ConsumptionDimension.SCOPE) ? row.get(SCOPE, Scope.class) : null,
+                    dimensions.contains(ConsumptionDimension.MONITORING_TYPE) ? row.get(MONITORING_TYPE, MonitoringType.class) : null,
+                    row.get(aggregates, Long.class),
+                    row.get(aggregates + 1, Long.class),
+                    row.get(aggregates + 2, Long.class),
+                    row.get(aggregates + 3, Long.class)
+                )
+            );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,21 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Keyset pagination of consumptions over {@code (timestamp, id)}: a page starts right after the last row of the
+ * previous one, so reading a page costs the same wherever it is, and no row count is ever needed.
+ */
+public interface ConsumptionRepositoryWithKeyset {
+    /**
+     * Find the consumptions following a position, in {@code (timestamp, id)} order.
+     *
+     * @param filter the filters.
+     * @param afterTimestamp the timestamp of the last consumption of the previous page, which may be {@code null}.
+     * @param afterId the id of the last consumption of the previous page, or {@code null} for the first page.
+     * @param limit the maximum number of consumptions.
+     * @return the consumptions, as scalar rows.
+     */
+    List<ConsumptionExportRow> findAllAfter(ConsumptionFilter filter, Instant afterTimestamp, Long afterId, int limit);
+}
@@ -0,0 +1,137 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Consumption_;
+import com.snail.consumptiondb.domain.Method_;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Keyset pagination of consumptions, served by the {@code (timestamp, id)}, {@code (method_id, timestamp, id)} and
+ * {@code (scope, monitoring_type, timestamp, id)} indexes of the {@code consumption} table. Only the columns of the
+ * {@code consumption} table are selected, the method being referred to by its id, without any join.
+ */
+public class ConsumptionRepositoryWithKeysetImpl implements ConsumptionRepositoryWithKeyset {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ConsumptionExportRow> findAllAfter(ConsumptionFilter filter, Instant afterTimestamp, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Consumption> consumption = query.from(Consumption.class);
+
+        List<Predicate> predicates = ConsumptionPredicates.of(filter, cb, query, consumption, false);
+        if (afterId != null && afterTimestamp != null) {
+            // (timestamp, id) > (afterTimestamp, afterId), spelled out so that the range starts the index scan
+            predicates.add(cb.greaterThanOrEqualTo(consumption.get(Consumption_.timestamp), afterTimestamp));
+            predicates.add(
+                cb.or(
+                    cb.greaterThan(consumption.get(Consumption_.timestamp), afterTimestamp),
+                    cb.greaterThan(consumption.get(Consumption_.id), afterId)
+                )
+            );
+        } else if (afterId != null) {
+            // Null timestamps sort first
+            predicates.add(
+                cb.or(
+                    cb.isNotNull(consumption.get(Consumption_.timestamp)),
+                    cb.greaterThan(consumption.get(Consumption_.id), afterId)
+                )
+            );
+        }
+        Path<Long> id = consumption.get(Consumption_.id);
+        Path<Long> value = consumption.get(Consumption_.value);
+        Path<Scope> scope = consumption.get(Consumption_.scope);
+        Path<MonitoringType> monitoringType = consumption.get(Consumption_.monitoringType);
+        Path<Instant> timestamp = consumption.get(Consumption_.timestamp);
+        // The id of a many-to-one is read from the foreign key column
+        Path<Long> methodId = consumption.get(Consumption_.method).get(Method_.id);
+        query
+            .multiselect(id, value, scope, monitoringType, timestamp, methodId)
+            .where(predicates.toArray(new Predicate[0]))
+            .orderBy(cb.asc(timestamp), cb.asc(id));
+        return entityManager
+            .createQuery(query)
+            .setMaxResults(limit)
+            .getResultList()
+            .stream()
+            .map(tuple ->
+                new Row(
+                    tuple.get(id),
+                    tuple.get(value),
+                    tuple.get(scope),
+                    tuple.get(monitoringType),
+                    tuple.get(timestamp),
+                    tuple.get(methodId)
+                )
+            )
+            .collect(Collectors.toList());
+    }
+
+    private static final class Row implements ConsumptionExportRow {
+
+        private final Long id;
+
+        private final Long value;
+
+        private final Scope scope;
+
+        private final MonitoringType monitoringType;
+
+        private final Instant timestamp;
+
+        private final Long methodId;
+
+        private Row(Long id, Long value, Scope scope, MonitoringType monitoringType, Instant timestamp, Long methodId) {
+            this.id = id;
+            this.value = value;
+            this.scope = scope;
+            this.monitoringType = monitoringType;
+            this.timestamp = timestamp;
+            this.methodId = methodId;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getValue() {
+            return value;
+        }
+
+        @Override
+        public Scope getScope() {
+            return scope;
+        }
+
+        @Override
+        public MonitoringType getMonitoringType() {
+            return monitoringType;
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public Long getMethodId() {
+            return methodId;
+        }
+    }
+}
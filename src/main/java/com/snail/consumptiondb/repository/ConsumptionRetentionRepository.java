@@ -0,0 +1,194 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository purging the expired consumptions, along with their samples, in chunks, and keeping the watermarks of the
+ * purges.
+ * <p>
+ * A chunk is read in {@code (timestamp, id)} order from the index of the same name, then deleted by primary key
+ * within the time range of the chunk, so that the statement only touches the partitions holding it.
+ */
+@Repository
+public class ConsumptionRetentionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConsumptionSampleRepository consumptionSampleRepository;
+
+    public ConsumptionRetentionRepository(JdbcTemplate jdbcTemplate, ConsumptionSampleRepository consumptionSampleRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.consumptionSampleRepository = consumptionSampleRepository;
+    }
+
+    /**
+     * Delete the next chunk of consumptions matching a rule and none of the rules before it, older than a cutoff.
+     *
+     * @param rule the rule of the consumptions.
+     * @param excluded the rules whose consumptions are left alone.
+     * @param cutoff the timestamp the consumptions are older than.
+     * @param afterTimestamp the timestamp of the last consumption of the previous chunk, or {@code null} for the first.
+     * @param afterId the id of the last consumption of the previous chunk.
+     * @param limit the maximum number of consumptions deleted.
+     * @return the chunk deleted.
+     */
+    public PurgedChunk purge(
+        RetentionRule rule,
+        List<RetentionRule> excluded,
+        Instant cutoff,
+        Instant afterTimestamp,
+        long afterId,
+        int limit
+    ) {
+        StringBuilder sql = new StringBuilder(
+            "select c.id, c.timestamp, c.method_id, c.scope, c.monitoring_type from consumption c where c.timestamp < ?"
+        );
+        List<Object> args = new ArrayList<>(List.of(cutoff));
+        if (afterTimestamp != null) {
+            // (timestamp, id) > (afterTimestamp, afterId), spelled out so that the range starts the index scan
+            sql.append(" and c.timestamp >= ? and (c.timestamp > ? or c.id > ?)");
+            args.addAll(List.of(afterTimestamp, afterTimestamp, afterId));
+        }
+        sql.append(" and ").append(rule.toSql("c", args));
+        for (RetentionRule exclusion : excluded) {
+            sql.append(" and not ").append(exclusion.toSql("c", args));
+        }
+        sql.append(" order by c.timestamp, c.id limit ").append(limit);
+        Calendar utc = ConsumptionRollupRepository.utc();
+        List<Object[]> rows = jdbcTemplate.query(
+            sql.toString(),
+            ConsumptionRollupRepository.setter(args),
+            (rs, rowNum) -> {
+                long methodId = rs.getLong(3);
+                return new Object[] {
+                    rs.getLong(1),
+                    rs.getTimestamp(2, utc).toInstant(),
+                    rs.wasNull() ? ConsumptionSampleRepository.NO_METHOD : methodId,
+                    rs.getString(4),
+                    rs.getString(5),
+                };
+            }
+        );
+        if (rows.isEmpty()) {
+            return new PurgedChunk(0, null, afterId);
+        }
+        Object[] first = rows.get(0);
+        Object[] last = rows.get(rows.size() - 1);
+        List<Object> deleteArgs = new ArrayList<>(List.of(first[1], last[1]));
+        rows.forEach(row -> deleteArgs.add(row[0]));
+        jdbcTemplate.update(
+            "delete from consumption where timestamp >= ? and timestamp <= ? and id in (" +
+            rows.stream().map(row -> "?").collect(Collectors.joining(", ")) +
+            ")",
+            ConsumptionRollupRepository.setter(deleteArgs)
+        );
+        consumptionSampleRepository.delete(
+            rows
+                .stream()
+                .map(row ->
+                    new long[] {
+                        (Long) row[2],
+                        ConsumptionSampleRepository.toMicros((Instant) row[1]),
+                        code((String) row[3], Scope.values()),
+                        code((String) row[4], MonitoringType.values()),
+                    }
+                )
+                .collect(Collectors.toList())
+        );
+        return new PurgedChunk(rows.size(), (Instant) last[1], (Long) last[0]);
+    }
+
+    /**
+     * Get the watermarks of the retention purges.
+     *
+     * @param lock whether to lock them in share mode until the end of the current transaction, so that no purge moves
+     * them before it ends.
+     * @return the watermarks, by policy name.
+     */
+    public Map<String, Instant> findWatermarks(boolean lock) {
+        Calendar utc = ConsumptionRollupRepository.utc();
+        Map<String, Instant> watermarks = new HashMap<>();
+        jdbcTemplate.query(
+            "select name, purged_before from consumption_retention_watermark where purged_before is not null" +
+            (lock ? " for share" : ""),
+            (RowCallbackHandler) rs -> watermarks.put(rs.getString(1), rs.getTimestamp(2, utc).toInstant())
+        );
+        return watermarks;
+    }
+
+    /**
+     * Get the watermark of the retention purge of a policy, locking it until the end of the current transaction.
+     *
+     * @param name the name of the policy.
+     * @return the watermark, or {@code null} if nothing was ever purged.
+     */
+    public Instant lockWatermark(String name) {
+        // Lock a row even for the policies never purged yet
+        jdbcTemplate.update("insert ignore into consumption_retention_watermark (name) values (?)", name);
+        Calendar utc = ConsumptionRollupRepository.utc();
+        return jdbcTemplate.queryForObject(
+            "select purged_before from consumption_retention_watermark where name = ? for update",
+            (rs, rowNum) -> {
+                Timestamp purgedBefore = rs.getTimestamp(1, utc);
+                return purgedBefore == null ? null : purgedBefore.toInstant();
+            },
+            name
+        );
+    }
+
+    public void saveWatermark(String name, Instant purgedBefore) {
+        jdbcTemplate.update(
+            "update consumption_retention_watermark set purged_before = ? where name = ?",
+            ConsumptionRollupRepository.setter(new ArrayList<>(List.of(purgedBefore, name)))
+        );
+    }
+
+    /**
+     * Get the software whose releases hold methods, for the retention policies applying to their consumptions.
+     *
+     * @param methodIds the ids of the methods.
+     * @return the names of the software, by method id; methods of no software are left out.
+     */
+    public Map<Long, Set<String>> findSoftwareNames(Collection<Long> methodIds) {
+        Map<Long, Set<String>> softwareNames = new HashMap<>();
+        if (methodIds.isEmpty()) {
+            return softwareNames;
+        }
+        jdbcTemplate.query(
+            "select release_method.method_id, software.name from rel_jhi_release__method release_method " +
+            "join software on software.release_id = release_method.jhi_release_id where release_method.method_id in (" +
+            methodIds.stream().map(methodId -> "?").collect(Collectors.joining(", ")) +
+            ")",
+            ConsumptionRollupRepository.setter(new ArrayList<>(methodIds)),
+            (RowCallbackHandler) rs -> softwareNames.computeIfAbsent(rs.getLong(1), methodId -> new HashSet<>()).add(rs.getString(2))
+        );
+        return softwareNames;
+    }
+
+    /**
+     * @return the sample code of the name of an enum constant, 0 for unknown names as when samples are rebuilt.
+     */
+    private static int code(String name, Enum<?>[] constants) {
+        for (Enum<?> constant : constants) {
+            if (constant.name().equals(name)) {
+                return ConsumptionSampleRepository.code(constant);
+            }
+        }
+        return 0;
+    }
+}
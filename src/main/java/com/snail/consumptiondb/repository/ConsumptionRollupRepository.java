@@ -0,0 +1,431 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the {@code consumption_rollup} and {@code consumption_rollup_dirty} tables.
+ * <p>
+ * Writes to {@code consumption} mark the minutes they touch as dirty; the rollups of the dirty minutes, and of the
+ * hours and days they belong to, are then recomputed whole. Nothing is ever applied as a delta, so a rollup is
+ * always exactly the aggregate of its rows, corrections and deletions included.
+ */
+@Repository
+public class ConsumptionRollupRepository {
+
+    private static final String LOCK_NAME = "consumption_rollup";
+
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // Makes the MySQL driver stream the rows one at a time, see ConsumptionRepository.STREAM_FETCH_SIZE
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConsumptionRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Mark the minutes of consumption timestamps as dirty, in the current transaction.
+     * <p>
+     * This should come after the writes to {@code consumption}, so that the rows of the dirty table are only locked
+     * until the commit.
+     *
+     * @param timestamps the timestamps, {@code null} ones being ignored.
+     */
+    public void markDirty(Collection<Instant> timestamps) {
+        Set<Instant> minutes = timestamps
+            .stream()
+            .filter(Objects::nonNull)
+            .map(ConsumptionRollupResolution.MINUTE::truncate)
+            .collect(Collectors.toCollection(TreeSet::new));
+        markDirtyMinutes(minutes);
+    }
+
+    /**
+     * Mark minutes as dirty, in the current transaction.
+     *
+     * @param minutes the starts of the minutes.
+     */
+    public void markDirtyMinutes(Collection<Instant> minutes) {
+        if (minutes.isEmpty()) {
+            return;
+        }
+        Calendar utc = utc();
+        jdbcTemplate.batchUpdate(
+            "insert ignore into consumption_rollup_dirty (bucket_start) values (?)",
+            minutes,
+            minutes.size(),
+            (statement, minute) -> statement.setTimestamp(1, Timestamp.from(minute), utc)
+        );
+    }
+
+    /**
+     * Find and lock the oldest dirty minutes, skipping the ones still being marked by uncommitted writes.
+     *
+     * @param limit the maximum number of minutes.
+     * @return the starts of the minutes, in order.
+     */
+    public List<Instant> lockDirtyMinutes(int limit) {
+        Calendar utc = utc();
+        return jdbcTemplate.query(
+            "select bucket_start from consumption_rollup_dirty order by bucket_start limit ? for update skip locked",
+            (rs, rowNum) -> rs.getTimestamp(1, utc).toInstant(),
+            limit
+        );
+    }
+
+    public void clearDirtyMinutes(List<Instant> minutes) {
+        Calendar utc = utc();
+        jdbcTemplate.batchUpdate(
+            "delete from consumption_rollup_dirty where bucket_start = ?",
+            minutes,
+            minutes.size(),
+            (statement, minute) -> statement.setTimestamp(1, Timestamp.from(minute), utc)
+        );
+    }
+
+    public void clearDirtyMinutes(Instant from, Instant to) {
+        jdbcTemplate.update("delete from consumption_rollup_dirty where bucket_start >= ? and bucket_start < ?", setter(window(from, to)));
+    }
+
+    /**
+     * @return the start of the oldest dirty minute, or {@code null} if the rollups are all up to date.
+     */
+    public Instant findOldestDirtyMinute() {
+        Calendar utc = utc();
+        List<Instant> minutes = jdbcTemplate.query(
+            "select bucket_start from consumption_rollup_dirty order by bucket_start limit 1",
+            (rs, rowNum) -> rs.getTimestamp(1, utc).toInstant()
+        );
+        return minutes.isEmpty() ? null : minutes.get(0);
+    }
+
+    /**
+     * @return whether a minute of a time window is dirty, in which case the rollups of the window are not up to date.
+     */
+    public boolean hasDirtyMinutes(Instant from, Instant to) {
+        Boolean dirty = jdbcTemplate.query(
+            "select 1 from consumption_rollup_dirty where bucket_start >= ? and bucket_start < ? limit 1",
+            setter(window(from, to)),
+            ResultSet::next
+        );
+        return Boolean.TRUE.equals(dirty);
+    }
+
+    /**
+     * Take the rollup lock, held by the current connection until {@link #unlock()}, so that concurrent refreshes and
+     * rebuilds, of this instance or of another one, do not rewrite the same buckets.
+     *
+     * @throws IllegalStateException if the lock is not released in time.
+     */
+    public void lock() {
+        Integer locked = jdbcTemplate.queryForObject("select get_lock(?, ?)", Integer.class, LOCK_NAME, LOCK_TIMEOUT_SECONDS);
+        if (locked == null || locked != 1) {
+            throw new IllegalStateException("Could not take the rollup lock");
+        }
+    }
+
+    public void unlock() {
+        jdbcTemplate.queryForObject("select release_lock(?)", Integer.class, LOCK_NAME);
+    }
+
+    /**
+     * Recompute the buckets of a resolution within a time window, from the consumptions for minutes and from the
+     * finer resolution otherwise.
+     * <p>
+     * The minutes of the sealed consumptions are left as they are: some of their consumptions may have been purged.
+     * Coarser buckets are still recomputed whole, from the minutes.
+     *
+     * @param resolution the resolution.
+     * @param from the start of the first bucket.
+     * @param to the end of the last bucket.
+     * @param seals the consumptions the retention purge may have deleted.
+     * @return the number of rollup rows written.
+     */
+    public int rebuild(ConsumptionRollupResolution resolution, Instant from, Instant to, RetentionSeals seals) {
+        ConsumptionRollupResolution finer = resolution.getFiner();
+        List<Object> deleteArgs = withResolution(resolution, window(from, to));
+        String delete = "delete from consumption_rollup where resolution = ? and bucket_start >= ? and bucket_start < ?";
+        if (finer == null && !seals.isEmpty()) {
+            delete += " and not " + seals.toSql("consumption_rollup", "bucket_start", deleteArgs);
+        }
+        jdbcTemplate.update(delete, setter(deleteArgs));
+        String bucket = "date_format(%s, '" + resolution.getBucketFormat() + "')";
+        String column = finer == null ? "timestamp" : "bucket_start";
+        String sql;
+        List<Object> args;
+        if (finer == null) {
+            args = withResolution(resolution, window(from, to));
+            sql =
+                "insert into consumption_rollup " +
+                "(resolution, bucket_start, method_id, scope, monitoring_type, value_count, value_sum, value_min, value_max) " +
+                "select ?, " +
+                String.format(bucket, column) +
+                ", method_id, scope, monitoring_type, count(value), sum(value), min(value), max(value) " +
+                "from consumption where timestamp >= ? and timestamp < ? " +
+                (seals.isEmpty() ? "" : "and not " + seals.toSql("consumption", "timestamp", args) + " ") +
+                "group by " +
+                String.format(bucket, column) +
+                ", method_id, scope, monitoring_type";
+        } else {
+            sql =
+                "insert into consumption_rollup " +
+                "(resolution, bucket_start, method_id, scope, monitoring_type, value_count, value_sum, value_min, value_max) " +
+                "select ?, " +
+                String.format(bucket, column) +
+                ", method_id, scope, monitoring_type, sum(value_count), sum(value_sum), min(value_min), max(value_max) " +
+                "from consumption_rollup where resolution = ? and bucket_start >= ? and bucket_start < ? " +
+                "group by " +
+                String.format(bucket, column) +
+                ", method_id, scope, monitoring_type";
+            args = withResolution(resolution, withResolution(finer, window(from, to)));
+        }
+        return jdbcTemplate.update(sql, setter(args));
+    }
+
+    /**
+     * Aggregate the rollups of a resolution over a time window.
+     *
+     * @param resolution the resolution, which both bounds of the window must be aligned on.
+     * @param filter the filters, with the bounds of the window.
+     * @param dimensions the dimensions to group the rollups over; none for a single group.
+     * @return the count, sum, min and max of the values per group, ordered by group.
+     * @see ConsumptionRepositoryWithAggregates#aggregate(ConsumptionFilter, Set)
+     */
+    public List<ConsumptionAggregateRow> aggregate(
+        ConsumptionRollupResolution resolution,
+        ConsumptionFilter filter,
+        Set<ConsumptionDimension> dimensions
+    ) {
+        List<String> groups = new ArrayList<>();
+        for (ConsumptionDimension dimension : dimensions) {
+            switch (dimension) {
+                case METHOD:
+                    groups.add("rollup_row.method_id");
+                    break;
+                case RELEASE:
+                    groups.add("release_method.jhi_release_id");
+                    break;
+                case SCOPE:
+                    groups.add("rollup_row.scope");
+                    break;
+                default:
+                    groups.add("rollup_row.monitoring_type");
+                    break;
+            }
+        }
+        boolean releaseJoined = dimensions.contains(ConsumptionDimension.RELEASE);
+        StringBuilder sql = new StringBuilder("select ");
+        groups.forEach(group -> sql.append(group).append(", "));
+        sql.append("sum(rollup_row.value_count), sum(rollup_row.value_sum), min(rollup_row.value_min), max(rollup_row.value_max) ");
+        sql.append("from consumption_rollup rollup_row ");
+        if (releaseJoined) {
+            sql.append("join rel_jhi_release__method release_method on release_method.method_id = rollup_row.method_id ");
+        }
+        sql.append("where rollup_row.resolution = ? and rollup_row.bucket_start >= ? and rollup_row.bucket_start < ?");
+        List<Object> args = withResolution(resolution, window(filter.getFrom(), filter.getTo()));
+        if (filter.getMethodId() != null) {
+            sql.append(" and rollup_row.method_id = ?");
+            args.add(filter.getMethodId());
+        }
+        if (filter.getReleaseId() != null) {
+            sql.append(
+                releaseJoined
+                    ? " and release_method.jhi_release_id = ?"
+                    : " and rollup_row.method_id in (select method_id from rel_jhi_release__method where jhi_release_id = ?)"
+            );
+            args.add(filter.getReleaseId());
+        }
+        if (filter.getScope() != null) {
+            sql.append(" and rollup_row.scope = ?");
+            args.add(filter.getScope().name());
+        }
+        if (filter.getMonitoringType() != null) {
+            sql.append(" and rollup_row.monitoring_type = ?");
+            args.add(filter.getMonitoringType().name());
+        }
+        if (!groups.isEmpty()) {
+            String groupBy = String.join(", ", groups);
+            sql.append(" group by ").append(groupBy).append(" order by ").append(groupBy);
+        }
+        return jdbcTemplate.query(sql.toString(), setter(args), (rs, rowNum) -> toAggregate(rs, dimensions));
+    }
+
+    /**
+     * Total the day rollups of the methods of releases, by method name; methods without consumptions have no values.
+     *
+     * @param releaseIds the releases.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the totals, ordered by method name, then release.
+     */
+    public List<ReleaseMethodTotal> findMethodTotals(Collection<Long> releaseIds, Scope scope, MonitoringType monitoringType) {
+        StringBuilder sql = new StringBuilder(
+            "select release_method.jhi_release_id, method.name, sum(rollup_row.value_count), sum(rollup_row.value_sum) " +
+            "from rel_jhi_release__method release_method " +
+            "join method on method.id = release_method.method_id " +
+            "left join consumption_rollup rollup_row " +
+            "on rollup_row.method_id = release_method.method_id and rollup_row.resolution = ?"
+        );
+        List<Object> args = new ArrayList<>();
+        args.add(ConsumptionRollupResolution.DAY.name());
+        if (scope != null) {
+            sql.append(" and rollup_row.scope = ?");
+            args.add(scope.name());
+        }
+        if (monitoringType != null) {
+            sql.append(" and rollup_row.monitoring_type = ?");
+            args.add(monitoringType.name());
+        }
+        sql.append(" where method.name is not null and release_method.jhi_release_id in (");
+        sql.append(releaseIds.stream().map(id -> "?").collect(Collectors.joining(", ")));
+        sql.append(") group by release_method.jhi_release_id, method.name order by method.name, release_method.jhi_release_id");
+        args.addAll(releaseIds);
+        return jdbcTemplate.query(
+            sql.toString(),
+            setter(args),
+            (rs, rowNum) -> {
+                Long count = getLong(rs, 3);
+                return new ReleaseMethodTotal(rs.getLong(1), rs.getString(2), count == null ? 0 : count, getLong(rs, 4));
+            }
+        );
+    }
+
+    /**
+     * Stream the count, sum, min and max of the day rollups of each method of a release which has consumptions.
+     * <p>
+     * Rows are streamed by the driver one at a time, so they are never all held in memory.
+     *
+     * @param releaseId the id of the release.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param action the action called with the aggregate of each method, in no particular order.
+     */
+    public void streamMethodAggregates(
+        long releaseId,
+        Scope scope,
+        MonitoringType monitoringType,
+        Consumer<ConsumptionAggregateRow> action
+    ) {
+        StringBuilder sql = new StringBuilder(
+            "select rollup_row.method_id, sum(rollup_row.value_count), sum(rollup_row.value_sum), " +
+            "min(rollup_row.value_min), max(rollup_row.value_max) " +
+            "from rel_jhi_release__method release_method " +
+            "join consumption_rollup rollup_row on rollup_row.method_id = release_method.method_id " +
+            "where release_method.jhi_release_id = ? and rollup_row.resolution = ?"
+        );
+        List<Object> args = new ArrayList<>();
+        args.add(releaseId);
+        args.add(ConsumptionRollupResolution.DAY.name());
+        if (scope != null) {
+            sql.append(" and rollup_row.scope = ?");
+            args.add(scope.name());
+        }
+        if (monitoringType != null) {
+            sql.append(" and rollup_row.monitoring_type = ?");
+            args.add(monitoringType.name());
+        }
+        sql.append(" group by rollup_row.method_id");
+        jdbcTemplate.query(
+            connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql.toString());
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                setter(args).setValues(statement);
+                return statement;
+            },
+            rs -> {
+                Long count = getLong(rs, 2);
+                action.accept(
+                    new ConsumptionAggregateRow(
+                        rs.getLong(1),
+                        releaseId,
+                        scope,
+                        monitoringType,
+                        count == null ? 0 : count,
+                        getLong(rs, 3),
+                        getLong(rs, 4),
+                        getLong(rs, 5)
+                    )
+                );
+            }
+        );
+    }
+
+    private static ConsumptionAggregateRow toAggregate(ResultSet rs, Set<ConsumptionDimension> dimensions) throws SQLException {
+        int column = 1;
+        Long methodId = dimensions.contains(ConsumptionDimension.METHOD) ? getLong(rs, column++) : null;
+        Long releaseId = dimensions.contains(ConsumptionDimension.RELEASE) ? getLong(rs, column++) : null;
+        String scope = dimensions.contains(ConsumptionDimension.SCOPE) ? rs.getString(column++) : null;
+        String monitoringType = dimensions.contains(ConsumptionDimension.MONITORING_TYPE) ? rs.getString(column++) : null;
+        Long count = getLong(rs, column);
+        return new ConsumptionAggregateRow(
+            methodId,
+            releaseId,
+            scope == null ? null : Scope.valueOf(scope),
+            monitoringType == null ? null : MonitoringType.valueOf(monitoringType),
+            count == null ? 0 : count,
+            getLong(rs, column + 1),
+            getLong(rs, column + 2),
+            getLong(rs, column + 3)
+        );
+    }
+
+    private static Long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static List<Object> window(Instant from, Instant to) {
+        List<Object> args = new ArrayList<>();
+        args.add(from);
+        args.add(to);
+        return args;
+    }
+
+    private static List<Object> withResolution(ConsumptionRollupResolution resolution, List<Object> args) {
+        args.add(0, resolution.name());
+        return args;
+    }
+
+    /**
+     * Bind arguments, instants being written as UTC like the timestamps of {@code consumption}.
+     */
+    static PreparedStatementSetter setter(List<Object> args) {
+        return statement -> {
+            Calendar utc = utc();
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg instanceof Instant) {
+                    statement.setTimestamp(i + 1, Timestamp.from((Instant) arg), utc);
+                } else {
+                    statement.setObject(i + 1, arg);
+                }
+            }
+        };
+    }
+
+    static Calendar utc() {
+        return Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC));
+    }
+}
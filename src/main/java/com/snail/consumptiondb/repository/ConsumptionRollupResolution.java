@@ -0,0 +1,52 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Resolutions of the consumption rollups, from the finest to the coarsest; buckets are aligned on UTC.
+ */
+public enum ConsumptionRollupResolution {
+    MINUTE(ChronoUnit.MINUTES, "%Y-%m-%d %H:%i:00"),
+    HOUR(ChronoUnit.HOURS, "%Y-%m-%d %H:00:00"),
+    DAY(ChronoUnit.DAYS, "%Y-%m-%d 00:00:00");
+
+    private final ChronoUnit unit;
+
+    private final String bucketFormat;
+
+    ConsumptionRollupResolution(ChronoUnit unit, String bucketFormat) {
+        this.unit = unit;
+        this.bucketFormat = bucketFormat;
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return the MySQL {@code date_format} pattern truncating a UTC datetime to the start of its bucket.
+     */
+    String getBucketFormat() {
+        return bucketFormat;
+    }
+
+    /**
+     * @return the start of the bucket of an instant.
+     */
+    public Instant truncate(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC).truncatedTo(unit).toInstant();
+    }
+
+    public boolean isAligned(Instant instant) {
+        return truncate(instant).equals(instant);
+    }
+
+    /**
+     * @return the resolution this one is computed from, or {@code null} for minutes, computed from the consumptions.
+     */
+    public ConsumptionRollupResolution getFiner() {
+        return ordinal() == 0 ? null : values()[ordinal() - 1];
+    }
+}
@@ -0,0 +1,12 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+
+/**
+ * Scalar projection of the timestamp and value of a {@link com.snail.consumptiondb.domain.Consumption} row.
+ */
+public interface ConsumptionSample {
+    Instant getTimestamp();
+
+    Long getValue();
+}
@@ -0,0 +1,446 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the {@code consumption_sample} table, a narrow copy of the consumption values clustered by method and
+ * time: the samples of a method within a time window are read from contiguous pages of the primary key.
+ * <p>
+ * Timestamps are stored in microseconds since the epoch. The method is stored as {@value #NO_METHOD} when there is
+ * none, the scope and monitoring type as the {@link #code(Enum) code} of their constant. Like rollups, samples are
+ * always rebuilt whole from the consumptions of a time window, never updated in place.
+ * <p>
+ * Once an hour is sealed, its samples can be {@link #compact(Instant) compacted} into one {@code consumption_sample_block}
+ * per method, a few bits per sample instead of a row. Every method reads and writes both forms: rebuilding a window
+ * overlapping compacted hours expands them back into rows first.
+ */
+@Repository
+public class ConsumptionSampleRepository {
+
+    /**
+     * Method of the samples of consumptions without one.
+     */
+    public static final long NO_METHOD = 0L;
+
+    // Makes the MySQL driver stream the rows one at a time, see ConsumptionRepository.STREAM_FETCH_SIZE
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
+    private static final int BLOCK_DELETE_CHUNK_SIZE = 1_000;
+
+    private static final int BLOCK_INSERT_BATCH_SIZE = 100;
+
+    private static final long HOUR_MICROS = 3_600_000_000L;
+
+    private static final String DELETE_SQL =
+        "delete from consumption_sample where method_id = ? and timestamp_micros = ? and scope = ? and monitoring_type = ?";
+
+    private static final String INSERT_BLOCK_SQL =
+        "insert into consumption_sample_block (method_id, hour_micros, sample_count, samples) values (?, ?, ?, ?)";
+
+    private static final String INSERT_SQL =
+        "insert ignore into consumption_sample (method_id, timestamp_micros, scope, monitoring_type, value) " +
+        "select coalesce(method_id, " +
+        NO_METHOD +
+        "), timestampdiff(microsecond, '1970-01-01 00:00:00', timestamp), " +
+        codeCase("scope", Scope.values()) +
+        ", " +
+        codeCase("monitoring_type", MonitoringType.values()) +
+        ", value from consumption where timestamp >= ? and timestamp < ? and value is not null";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConsumptionSampleRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the code of an enum constant, its ordinal plus one, 0 for {@code null}.
+     */
+    public static int code(Enum<?> constant) {
+        return constant == null ? 0 : constant.ordinal() + 1;
+    }
+
+    /**
+     * @return the constant of a code among the constants of an enum, {@code null} for 0.
+     * @throws IllegalArgumentException if the code is not one of the enum.
+     */
+    public static <E extends Enum<E>> E decode(E[] constants, int code) {
+        if (code < 0 || code > constants.length) {
+            throw new IllegalArgumentException("Invalid code " + code);
+        }
+        return code == 0 ? null : constants[code - 1];
+    }
+
+    /**
+     * Recompute the samples of a time window from the consumptions, along with those of the whole hours it overlaps if
+     * any of them is compacted.
+     *
+     * @param from the inclusive start of the window.
+     * @param to the exclusive end of the window.
+     * @return the number of samples written.
+     */
+    public int rebuild(Instant from, Instant to) {
+        long fromHour = Math.floorDiv(toMicros(from), HOUR_MICROS) * HOUR_MICROS;
+        long toHour = -Math.floorDiv(-toMicros(to), HOUR_MICROS) * HOUR_MICROS;
+        if (
+            jdbcTemplate.update("delete from consumption_sample_block where hour_micros >= ? and hour_micros < ?", fromHour, toHour) > 0
+        ) {
+            from = fromMicros(fromHour);
+            to = fromMicros(toHour);
+        }
+        jdbcTemplate.update(
+            "delete from consumption_sample where timestamp_micros >= ? and timestamp_micros < ?",
+            toMicros(from),
+            toMicros(to)
+        );
+        return jdbcTemplate.update(INSERT_SQL, ConsumptionRollupRepository.setter(new ArrayList<>(List.of(from, to))));
+    }
+
+    /**
+     * Delete the samples before an instant, {@value #DELETE_CHUNK_SIZE} rows or {@value #BLOCK_DELETE_CHUNK_SIZE}
+     * blocks per statement. Blocks are deleted once their whole hour is before the instant.
+     *
+     * @param to the exclusive end of the samples to delete.
+     * @return the number of sample rows deleted.
+     */
+    public long deleteBefore(Instant to) {
+        long micros = toMicros(to);
+        long deleted = 0;
+        int chunk;
+        do {
+            chunk = jdbcTemplate.update("delete from consumption_sample where timestamp_micros < ? limit " + DELETE_CHUNK_SIZE, micros);
+            deleted += chunk;
+        } while (chunk == DELETE_CHUNK_SIZE);
+        do {
+            chunk =
+                jdbcTemplate.update(
+                    "delete from consumption_sample_block where hour_micros <= ? limit " + BLOCK_DELETE_CHUNK_SIZE,
+                    micros - HOUR_MICROS
+                );
+        } while (chunk == BLOCK_DELETE_CHUNK_SIZE);
+        return deleted;
+    }
+
+    /**
+     * Delete samples, from their rows or from their blocks.
+     *
+     * @param keys the method id, timestamp in microseconds, scope code and monitoring type code of each sample.
+     */
+    public void delete(List<long[]> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+            DELETE_SQL,
+            keys,
+            keys.size(),
+            (statement, key) -> {
+                for (int i = 0; i < key.length; i++) {
+                    statement.setLong(i + 1, key[i]);
+                }
+            }
+        );
+        Map<List<Long>, Set<List<Long>>> blockKeys = new LinkedHashMap<>();
+        for (long[] key : keys) {
+            blockKeys
+                .computeIfAbsent(List.of(key[0], Math.floorDiv(key[1], HOUR_MICROS) * HOUR_MICROS), block -> new HashSet<>())
+                .add(List.of(key[1], key[2], key[3]));
+        }
+        List<Object> args = new ArrayList<>();
+        blockKeys.keySet().forEach(args::addAll);
+        List<Object[]> rewritten = new ArrayList<>();
+        List<Object[]> emptied = new ArrayList<>();
+        SampleBlockCodec.Decoder decoder = new SampleBlockCodec.Decoder();
+        SampleBlockCodec.Encoder encoder = new SampleBlockCodec.Encoder();
+        jdbcTemplate.query(
+            "select method_id, hour_micros, samples from consumption_sample_block where (method_id, hour_micros) in (" +
+            String.join(", ", Collections.nCopies(blockKeys.size(), "(?, ?)")) +
+            ") for update",
+            ConsumptionRollupRepository.setter(args),
+            (RowCallbackHandler) rs -> {
+                long methodId = rs.getLong(1);
+                long hourMicros = rs.getLong(2);
+                Set<List<Long>> deleted = blockKeys.get(List.of(methodId, hourMicros));
+                decoder.reset(rs.getBytes(3));
+                encoder.reset();
+                while (decoder.next()) {
+                    List<Long> key = List.of(
+                        decoder.getTimestampMicros(),
+                        (long) decoder.getScope(),
+                        (long) decoder.getMonitoringType()
+                    );
+                    if (!deleted.contains(key)) {
+                        encoder.add(decoder.getTimestampMicros(), decoder.getScope(), decoder.getMonitoringType(), decoder.getValue());
+                    }
+                }
+                if (encoder.getCount() > 0) {
+                    rewritten.add(new Object[] { methodId, hourMicros, encoder.getCount(), encoder.toByteArray() });
+                } else {
+                    emptied.add(new Object[] { methodId, hourMicros });
+                }
+            }
+        );
+        jdbcTemplate.batchUpdate(
+            "update consumption_sample_block set sample_count = ?, samples = ? where method_id = ? and hour_micros = ?",
+            rewritten,
+            rewritten.size(),
+            (statement, block) -> {
+                statement.setInt(1, (Integer) block[2]);
+                statement.setBytes(2, (byte[]) block[3]);
+                statement.setLong(3, (Long) block[0]);
+                statement.setLong(4, (Long) block[1]);
+            }
+        );
+        jdbcTemplate.batchUpdate(
+            "delete from consumption_sample_block where method_id = ? and hour_micros = ?",
+            emptied,
+            emptied.size(),
+            (statement, block) -> {
+                statement.setLong(1, (Long) block[0]);
+                statement.setLong(2, (Long) block[1]);
+            }
+        );
+    }
+
+    /**
+     * @return the start of the hour of the oldest sample row before an instant, or {@code null} if there is none.
+     */
+    public Instant findOldestRowHour(Instant before) {
+        Long micros = jdbcTemplate.queryForObject(
+            "select min(timestamp_micros) from consumption_sample where timestamp_micros < ?",
+            Long.class,
+            toMicros(before)
+        );
+        return micros == null ? null : fromMicros(Math.floorDiv(micros, HOUR_MICROS) * HOUR_MICROS);
+    }
+
+    /**
+     * Move the sample rows of an hour into one block per method.
+     *
+     * @param hour the start of the hour.
+     * @return the number of blocks written.
+     */
+    public int compact(Instant hour) {
+        long fromMicros = toMicros(hour);
+        long toMicros = fromMicros + HOUR_MICROS;
+        BlockWriter writer = new BlockWriter(fromMicros);
+        stream(
+            "select method_id, timestamp_micros, scope, monitoring_type, value from consumption_sample " +
+            "where timestamp_micros >= ? and timestamp_micros < ? order by method_id, timestamp_micros, scope, monitoring_type",
+            new ArrayList<>(List.of(fromMicros, toMicros)),
+            writer
+        );
+        writer.flush();
+        jdbcTemplate.update("delete from consumption_sample where timestamp_micros >= ? and timestamp_micros < ?", fromMicros, toMicros);
+        return writer.blocks;
+    }
+
+    /**
+     * Scan the samples of a method within a time window, in timestamp order.
+     *
+     * @param methodId the method of the samples.
+     * @param scope the optional scope of the samples.
+     * @param monitoringType the optional monitoring type of the samples.
+     * @param fromMicros the inclusive start of the window, in microseconds since the epoch.
+     * @param toMicros the exclusive end of the window, in microseconds since the epoch.
+     * @param handler the handler of each sample.
+     */
+    public void scan(long methodId, Scope scope, MonitoringType monitoringType, long fromMicros, long toMicros, SampleHandler handler) {
+        List<Long> hours = jdbcTemplate.queryForList(
+            "select hour_micros from consumption_sample_block where method_id = ? and hour_micros > ? and hour_micros < ? " +
+            "order by hour_micros",
+            Long.class,
+            methodId,
+            fromMicros - HOUR_MICROS,
+            toMicros
+        );
+        long rowsFrom = fromMicros;
+        for (int first = 0, last = 0; first < hours.size(); first = ++last) {
+            while (last + 1 < hours.size() && hours.get(last + 1) == hours.get(last) + HOUR_MICROS) {
+                last++;
+            }
+            long blocksFrom = hours.get(first);
+            long blocksTo = hours.get(last) + HOUR_MICROS;
+            if (rowsFrom < blocksFrom) {
+                scanRows(methodId, scope, monitoringType, rowsFrom, blocksFrom, handler);
+            }
+            scanBlocks(methodId, scope, monitoringType, Math.max(fromMicros, blocksFrom), Math.min(toMicros, blocksTo), handler);
+            rowsFrom = blocksTo;
+        }
+        if (rowsFrom < toMicros) {
+            scanRows(methodId, scope, monitoringType, rowsFrom, toMicros, handler);
+        }
+    }
+
+    private void scanRows(
+        long methodId,
+        Scope scope,
+        MonitoringType monitoringType,
+        long fromMicros,
+        long toMicros,
+        SampleHandler handler
+    ) {
+        StringBuilder sql = new StringBuilder(
+            "select timestamp_micros, value from consumption_sample where method_id = ? and timestamp_micros >= ? and timestamp_micros < ?"
+        );
+        List<Object> args = new ArrayList<>(List.of(methodId, fromMicros, toMicros));
+        if (scope != null) {
+            sql.append(" and scope = ?");
+            args.add(code(scope));
+        }
+        if (monitoringType != null) {
+            sql.append(" and monitoring_type = ?");
+            args.add(code(monitoringType));
+        }
+        sql.append(" order by timestamp_micros");
+        stream(sql.toString(), args, rs -> handler.accept(rs.getLong(1), rs.getLong(2)));
+    }
+
+    private void scanBlocks(
+        long methodId,
+        Scope scope,
+        MonitoringType monitoringType,
+        long fromMicros,
+        long toMicros,
+        SampleHandler handler
+    ) {
+        int scopeCode = code(scope);
+        int monitoringTypeCode = code(monitoringType);
+        SampleBlockCodec.Decoder decoder = new SampleBlockCodec.Decoder();
+        stream(
+            "select samples from consumption_sample_block where method_id = ? and hour_micros > ? and hour_micros < ? " +
+            "order by hour_micros",
+            new ArrayList<>(List.of(methodId, fromMicros - HOUR_MICROS, toMicros)),
+            rs -> {
+                decoder.reset(rs.getBytes(1));
+                while (decoder.next()) {
+                    long timestampMicros = decoder.getTimestampMicros();
+                    if (
+                        timestampMicros >= fromMicros &&
+                        timestampMicros < toMicros &&
+                        (scope == null || decoder.getScope() == scopeCode) &&
+                        (monitoringType == null || decoder.getMonitoringType() == monitoringTypeCode)
+                    ) {
+                        handler.accept(timestampMicros, decoder.getValue());
+                    }
+                }
+            }
+        );
+    }
+
+    private void stream(String sql, List<Object> args, RowCallbackHandler handler) {
+        jdbcTemplate.query(
+            connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                ConsumptionRollupRepository.setter(args).setValues(statement);
+                return statement;
+            },
+            handler
+        );
+    }
+
+    /**
+     * @return the microseconds since the epoch of an instant.
+     */
+    public static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    static String codeCase(String column, Enum<?>[] constants) {
+        StringBuilder sql = new StringBuilder("case ").append(column);
+        for (Enum<?> constant : constants) {
+            sql.append(" when '").append(constant.name()).append("' then ").append(code(constant));
+        }
+        return sql.append(" else 0 end").toString();
+    }
+
+    /**
+     * Encoder of the sample rows of an hour, in method order, into one block per method.
+     */
+    private final class BlockWriter implements RowCallbackHandler {
+
+        private final long hourMicros;
+
+        private final SampleBlockCodec.Encoder encoder = new SampleBlockCodec.Encoder();
+
+        private final List<Object[]> batch = new ArrayList<>();
+
+        private long methodId;
+
+        private int blocks;
+
+        BlockWriter(long hourMicros) {
+            this.hourMicros = hourMicros;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long rowMethodId = rs.getLong(1);
+            if (encoder.getCount() > 0 && rowMethodId != methodId) {
+                endBlock();
+            }
+            methodId = rowMethodId;
+            encoder.add(rs.getLong(2), rs.getInt(3), rs.getInt(4), rs.getLong(5));
+        }
+
+        void flush() {
+            if (encoder.getCount() > 0) {
+                endBlock();
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                    INSERT_BLOCK_SQL,
+                    batch,
+                    batch.size(),
+                    (statement, block) -> {
+                        statement.setLong(1, (Long) block[0]);
+                        statement.setLong(2, hourMicros);
+                        statement.setInt(3, (Integer) block[1]);
+                        statement.setBytes(4, (byte[]) block[2]);
+                    }
+                );
+                batch.clear();
+            }
+        }
+
+        private void endBlock() {
+            batch.add(new Object[] { methodId, encoder.getCount(), encoder.toByteArray() });
+            blocks++;
+            encoder.reset();
+            if (batch.size() == BLOCK_INSERT_BATCH_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Handler of the samples of a scan, without boxing.
+     */
+    @FunctionalInterface
+    public interface SampleHandler {
+        void accept(long timestampMicros, long value);
+    }
+}
@@ -0,0 +1,273 @@
+package com.snail.consumptiondb.repository;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import org.HdrHistogram.Histogram;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the {@code consumption_sketch} table, holding a compressed {@link Histogram} of the consumption
+ * values per method, scope and monitoring type, by UTC hour and day.
+ * <p>
+ * Sketches record values with {@value #SIGNIFICANT_DIGITS} significant digits, so any quantile read from them is
+ * within 1% of a value actually recorded. They are mergeable: the sketch of any set of buckets, methods or releases is
+ * the sum of the sketches of its parts. Like rollups, sketches are always rebuilt whole, never updated in place.
+ */
+@Repository
+public class ConsumptionSketchRepository {
+
+    /**
+     * Number of significant decimal digits of the values recorded by sketches.
+     */
+    public static final int SIGNIFICANT_DIGITS = 2;
+
+    // Makes the MySQL driver stream the rows one at a time, see ConsumptionRepository.STREAM_FETCH_SIZE
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private static final int INSERT_BATCH_SIZE = 100;
+
+    private static final String INSERT_SQL =
+        "insert into consumption_sketch (resolution, bucket_start, method_id, scope, monitoring_type, sketch) values (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConsumptionSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return an empty sketch, growing to fit the values recorded in it.
+     */
+    public static Histogram newSketch() {
+        return new Histogram(SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Record a consumption value in a sketch, negative values being recorded as zero.
+     */
+    public static void record(Histogram sketch, long value) {
+        sketch.recordValue(Math.max(0, value));
+    }
+
+    /**
+     * Recompute the sketches of a resolution within a time window, from the consumptions for hours and from the hour
+     * sketches for days.
+     *
+     * <p>
+     * The hour sketches of the sealed consumptions are left as they are: some of their consumptions may have been
+     * purged. Day sketches are still recomputed whole, from the hours.
+     *
+     * @param resolution the resolution, {@link ConsumptionRollupResolution#HOUR} or {@link ConsumptionRollupResolution#DAY}.
+     * @param from the start of the first bucket.
+     * @param to the end of the last bucket.
+     * @param seals the consumptions the retention purge may have deleted.
+     * @return the number of sketches written.
+     * @throws IllegalArgumentException if sketches are not kept at the resolution.
+     */
+    public int rebuild(ConsumptionRollupResolution resolution, Instant from, Instant to, RetentionSeals seals) {
+        ConsumptionRollupResolution finer = resolution.getFiner();
+        if (finer == null) {
+            throw new IllegalArgumentException("Sketches are not kept by " + resolution);
+        }
+        boolean fromConsumptions = finer.getFiner() == null;
+        List<Object> window = new ArrayList<>(List.of(resolution.name(), from, to));
+        String delete = "delete from consumption_sketch where resolution = ? and bucket_start >= ? and bucket_start < ?";
+        if (fromConsumptions && !seals.isEmpty()) {
+            delete += " and not " + seals.toSql("consumption_sketch", "bucket_start", window);
+        }
+        jdbcTemplate.update(delete, ConsumptionRollupRepository.setter(window));
+        int written = 0;
+        for (Instant bucket = from; bucket.isBefore(to); bucket = bucket.plus(1, resolution.getUnit())) {
+            Instant end = bucket.plus(1, resolution.getUnit());
+            GroupSketcher sketcher;
+            String sql;
+            List<Object> args;
+            if (fromConsumptions) {
+                sketcher = new GroupSketcher(resolution, bucket, false);
+                args = new ArrayList<>(List.of(bucket, end));
+                sql =
+                    "select method_id, scope, monitoring_type, value from consumption " +
+                    "where timestamp >= ? and timestamp < ? and value is not null " +
+                    (seals.isEmpty() ? "" : "and not " + seals.toSql("consumption", "timestamp", args) + " ") +
+                    "order by method_id, scope, monitoring_type";
+            } else {
+                sketcher = new GroupSketcher(resolution, bucket, true);
+                sql =
+                    "select method_id, scope, monitoring_type, sketch from consumption_sketch " +
+                    "where resolution = ? and bucket_start >= ? and bucket_start < ? " +
+                    "order by method_id, scope, monitoring_type";
+                args = List.of(finer.name(), bucket, end);
+            }
+            stream(sql, args, sketcher);
+            written += sketcher.finish();
+        }
+        return written;
+    }
+
+    /**
+     * Merge the sketches of a resolution over a time window.
+     *
+     * @param resolution the resolution, which both bounds of the window must be aligned on.
+     * @param filter the filters, with the bounds of the window.
+     * @return the merged sketch.
+     */
+    public Histogram merge(ConsumptionRollupResolution resolution, ConsumptionFilter filter) {
+        StringBuilder sql = new StringBuilder(
+            "select sketch_row.sketch from consumption_sketch sketch_row " +
+            "where sketch_row.resolution = ? and sketch_row.bucket_start >= ? and sketch_row.bucket_start < ?"
+        );
+        List<Object> args = new ArrayList<>(List.of(resolution.name(), filter.getFrom(), filter.getTo()));
+        appendFilters(sql, args, "sketch_row", filter);
+        Histogram merged = newSketch();
+        stream(sql.toString(), args, rs -> merged.add(decode(rs.getBytes(1))));
+        return merged;
+    }
+
+    /**
+     * Sketch the values of the consumptions of a time window, for windows which the sketches cannot serve.
+     *
+     * @param filter the filters, with the bounds of the window.
+     * @return the sketch of the values.
+     */
+    public Histogram sketch(ConsumptionFilter filter) {
+        StringBuilder sql = new StringBuilder(
+            "select consumption.value from consumption " +
+            "where consumption.timestamp >= ? and consumption.timestamp < ? and consumption.value is not null"
+        );
+        List<Object> args = new ArrayList<>(List.of(filter.getFrom(), filter.getTo()));
+        appendFilters(sql, args, "consumption", filter);
+        Histogram sketch = newSketch();
+        stream(sql.toString(), args, rs -> record(sketch, rs.getLong(1)));
+        return sketch;
+    }
+
+    private void stream(String sql, List<Object> args, RowCallbackHandler handler) {
+        jdbcTemplate.query(
+            connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                ConsumptionRollupRepository.setter(args).setValues(statement);
+                return statement;
+            },
+            handler
+        );
+    }
+
+    private static void appendFilters(StringBuilder sql, List<Object> args, String alias, ConsumptionFilter filter) {
+        if (filter.getMethodId() != null) {
+            sql.append(" and ").append(alias).append(".method_id = ?");
+            args.add(filter.getMethodId());
+        }
+        if (filter.getReleaseId() != null) {
+            sql
+                .append(" and ")
+                .append(alias)
+                .append(".method_id in (select method_id from rel_jhi_release__method where jhi_release_id = ?)");
+            args.add(filter.getReleaseId());
+        }
+        if (filter.getScope() != null) {
+            sql.append(" and ").append(alias).append(".scope = ?");
+            args.add(filter.getScope().name());
+        }
+        if (filter.getMonitoringType() != null) {
+            sql.append(" and ").append(alias).append(".monitoring_type = ?");
+            args.add(filter.getMonitoringType().name());
+        }
+    }
+
+    static byte[] encode(Histogram sketch) {
+        ByteBuffer buffer = ByteBuffer.allocate(sketch.getNeededByteBufferCapacity());
+        int length = sketch.encodeIntoCompressedByteBuffer(buffer);
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+    static Histogram decode(byte[] bytes) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new DataRetrievalFailureException("Corrupted consumption sketch", e);
+        }
+    }
+
+    /**
+     * Sketches the rows of a bucket, ordered by method, scope and monitoring type, one group at a time. Only the
+     * compressed sketches of the bucket are kept until they are written, once the rows are read.
+     */
+    private final class GroupSketcher implements RowCallbackHandler {
+
+        private final ConsumptionRollupResolution resolution;
+
+        private final Instant bucket;
+
+        private final boolean merging;
+
+        private final Calendar utc = ConsumptionRollupRepository.utc();
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private Object[] group;
+
+        private Histogram sketch;
+
+        private GroupSketcher(ConsumptionRollupResolution resolution, Instant bucket, boolean merging) {
+            this.resolution = resolution;
+            this.bucket = bucket;
+            this.merging = merging;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long methodId = rs.getLong(1);
+            Object[] rowGroup = { rs.wasNull() ? null : methodId, rs.getString(2), rs.getString(3) };
+            if (group == null || !Arrays.equals(group, rowGroup)) {
+                flush();
+                group = rowGroup;
+                sketch = newSketch();
+            }
+            if (merging) {
+                sketch.add(decode(rs.getBytes(4)));
+            } else {
+                record(sketch, rs.getLong(4));
+            }
+        }
+
+        private void flush() {
+            if (group != null && sketch.getTotalCount() > 0) {
+                rows.add(new Object[] { group[0], group[1], group[2], encode(sketch) });
+            }
+        }
+
+        /**
+         * @return the number of sketches written.
+         */
+        private int finish() {
+            flush();
+            jdbcTemplate.batchUpdate(
+                INSERT_SQL,
+                rows,
+                INSERT_BATCH_SIZE,
+                (statement, row) -> {
+                    statement.setString(1, resolution.name());
+                    statement.setTimestamp(2, Timestamp.from(bucket), utc);
+                    statement.setObject(3, row[0]);
+                    statement.setObject(4, row[1]);
+                    statement.setObject(5, row[2]);
+                    statement.setBytes(6, (byte[]) row[3]);
+                }
+            );
+            return rows.size();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.snail.consumptiondb.repository;
 
 import com.snail.consumptiondb.domain.Measure;
+import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +11,12 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface MeasureRepository extends JpaRepository<Measure, Long> {}
+public interface MeasureRepository extends JpaRepository<Measure, Long> {
+    @EntityGraph(Measure.WITH_TO_ONE_RELATIONSHIPS)
+    Optional<Measure> findOneWithToOneRelationshipsById(Long id);
+
+    @Query(
+        "select measure.id as id, measure.startTimestamp as startTimestamp, measure.consumption.id as consumptionId from Measure measure"
+    )
+    List<MeasureRow> findAllRows();
+}
@@ -0,0 +1,14 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+
+/**
+ * Scalar projection of a {@link com.snail.consumptiondb.domain.Measure} row, with the id of its consumption.
+ */
+public interface MeasureRow {
+    Long getId();
+
+    Instant getStartTimestamp();
+
+    Long getConsumptionId();
+}
@@ -1,7 +1,13 @@
 package com.snail.consumptiondb.repository;
 
 import com.snail.consumptiondb.domain.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +15,32 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface MethodRepository extends JpaRepository<Method, Long> {}
+public interface MethodRepository extends JpaRepository<Method, Long> {
+    @EntityGraph(Method.WITH_TO_ONE_RELATIONSHIPS)
+    Optional<Method> findOneWithToOneRelationshipsById(Long id);
+
+    @Query("select method from Release release join release.methods method where release.id = :releaseId and method.name in :names")
+    List<Method> findAllByReleaseIdAndNameIn(@Param("releaseId") Long releaseId, @Param("names") Collection<String> names);
+
+    @Query("select method.id from Method method where method.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query(
+        "select method.id as id, method.name as name, method.method.id as methodId, method.consumption.id as consumptionId " +
+        "from Method method"
+    )
+    List<MethodRow> findAllRows();
+
+    @Query(
+        "select method.id as id, method.name as name, method.method.id as methodId, method.consumption.id as consumptionId " +
+        "from Method method where method.method is null"
+    )
+    List<MethodRow> findAllRowsWhereMethodIsNull();
+
+    @Query(
+        value = "select method.id as id, method.name as name, method.method.id as methodId, method.consumption.id as consumptionId " +
+        "from Method method join method.releases release where release.id = :releaseId",
+        countQuery = "select count(method) from Method method join method.releases release where release.id = :releaseId"
+    )
+    Page<MethodRow> findAllRowsByReleaseId(@Param("releaseId") Long releaseId, Pageable pageable);
+}
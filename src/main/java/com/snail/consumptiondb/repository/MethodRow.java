@@ -0,0 +1,14 @@
+package com.snail.consumptiondb.repository;
+
+/**
+ * Scalar projection of a {@link com.snail.consumptiondb.domain.Method} row, with the ids of the entities it refers to.
+ */
+public interface MethodRow {
+    Long getId();
+
+    String getName();
+
+    Long getMethodId();
+
+    Long getConsumptionId();
+}
@@ -0,0 +1,37 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+
+/**
+ * Chunk of expired consumptions deleted in one statement, and the {@code (timestamp, id)} position the next chunk
+ * starts after.
+ */
+public class PurgedChunk {
+
+    private final int count;
+
+    private final Instant lastTimestamp;
+
+    private final long lastId;
+
+    public PurgedChunk(int count, Instant lastTimestamp, long lastId) {
+        this.count = count;
+        this.lastTimestamp = lastTimestamp;
+        this.lastId = lastId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the timestamp of the last consumption deleted, or {@code null} if there was none.
+     */
+    public Instant getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.snail.consumptiondb.repository;
+
+/**
+ * Scalar projection of a method of a {@link com.snail.consumptiondb.domain.Release}, with the number of methods of
+ * the release.
+ */
+public interface ReleaseMethodRow {
+    Long getReleaseId();
+
+    Long getId();
+
+    String getName();
+
+    Long getMethodCount();
+}
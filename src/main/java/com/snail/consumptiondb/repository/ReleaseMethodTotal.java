@@ -0,0 +1,41 @@
+package com.snail.consumptiondb.repository;
+
+/**
+ * Count and sum of the consumption values of the methods of a release sharing a name.
+ */
+public class ReleaseMethodTotal {
+
+    private final long releaseId;
+
+    private final String methodName;
+
+    private final long count;
+
+    private final Long sum;
+
+    public ReleaseMethodTotal(long releaseId, String methodName, long count, Long sum) {
+        this.releaseId = releaseId;
+        this.methodName = methodName;
+        this.count = count;
+        this.sum = sum;
+    }
+
+    public long getReleaseId() {
+        return releaseId;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the values, or {@code null} if there is none.
+     */
+    public Long getSum() {
+        return sum;
+    }
+}
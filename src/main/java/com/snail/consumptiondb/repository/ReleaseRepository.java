@@ -1,6 +1,7 @@
 package com.snail.consumptiondb.repository;
 
 import com.snail.consumptiondb.domain.Release;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -28,4 +29,61 @@ public interface ReleaseRepository extends ReleaseRepositoryWithBagRelationships
     default Page<Release> findAllWithEagerRelationships(Pageable pageable) {
         return this.fetchBagRelationships(this.findAll(pageable));
     }
+
+    @Query(
+        value = "select release.id as id, release.name as name, release.date as date, release.description as description " +
+        "from Release release",
+        countQuery = "select count(release) from Release release"
+    )
+    Page<ReleaseRow> findAllRows(Pageable pageable);
+
+    @Query(
+        "select release.id as id, release.name as name, release.date as date, release.description as description " +
+        "from Release release where release.id = :id"
+    )
+    Optional<ReleaseRow> findRowById(@Param("id") Long id);
+
+    /**
+     * Find the first methods of releases, by id, reading at most {@code limit} rows of the method table per release.
+     *
+     * @param releaseIds the ids of the releases, not empty.
+     * @param limit the maximum number of methods per release.
+     * @return the methods, by release and id, each with the total number of methods of its release.
+     */
+    @Query(
+        value = "select ranked.release_id as releaseId, ranked.id as id, ranked.name as name, ranked.method_count as methodCount " +
+        "from (select rel.jhi_release_id as release_id, method.id, method.name, " +
+        "row_number() over (partition by rel.jhi_release_id order by rel.method_id) as position, " +
+        "count(*) over (partition by rel.jhi_release_id) as method_count " +
+        "from rel_jhi_release__method rel join method on method.id = rel.method_id " +
+        "where rel.jhi_release_id in :releaseIds) ranked " +
+        "where ranked.position <= :limit order by ranked.release_id, ranked.id",
+        nativeQuery = true
+    )
+    List<ReleaseMethodRow> findFirstMethods(@Param("releaseIds") Collection<Long> releaseIds, @Param("limit") int limit);
+
+    /**
+     * Link a method to a release, without loading the methods already linked.
+     *
+     * @param releaseId the id of the release.
+     * @param methodId the id of the method.
+     * @return 1 if the method was linked, 0 if it already was.
+     */
+    @Modifying
+    @Query(
+        value = "insert ignore into rel_jhi_release__method (jhi_release_id, method_id) values (:releaseId, :methodId)",
+        nativeQuery = true
+    )
+    int linkMethod(@Param("releaseId") Long releaseId, @Param("methodId") Long methodId);
+
+    /**
+     * Unlink a method from a release, without loading the methods linked.
+     *
+     * @param releaseId the id of the release.
+     * @param methodId the id of the method.
+     * @return 1 if the method was unlinked, 0 if it was not linked.
+     */
+    @Modifying
+    @Query(value = "delete from rel_jhi_release__method where jhi_release_id = :releaseId and method_id = :methodId", nativeQuery = true)
+    int unlinkMethod(@Param("releaseId") Long releaseId, @Param("methodId") Long methodId);
 }
@@ -0,0 +1,16 @@
+package com.snail.consumptiondb.repository;
+
+import java.time.Instant;
+
+/**
+ * Scalar projection of a {@link com.snail.consumptiondb.domain.Release} row, without its relationships.
+ */
+public interface ReleaseRow {
+    Long getId();
+
+    String getName();
+
+    Instant getDate();
+
+    String getDescription();
+}
@@ -0,0 +1,87 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consumptions a retention policy applies to: those of the methods of the releases of a software, of a scope and of a
+ * monitoring type, each criterion matching any consumption when {@code null}.
+ */
+public class RetentionRule {
+
+    private final String software;
+
+    private final Scope scope;
+
+    private final MonitoringType monitoringType;
+
+    public RetentionRule(String software, Scope scope, MonitoringType monitoringType) {
+        this.software = software;
+        this.scope = scope;
+        this.monitoringType = monitoringType;
+    }
+
+    public String getSoftware() {
+        return software;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public MonitoringType getMonitoringType() {
+        return monitoringType;
+    }
+
+    /**
+     * @param softwareNames the names of the software whose releases hold the method of the consumption.
+     * @param scope the scope of the consumption.
+     * @param monitoringType the monitoring type of the consumption.
+     * @return whether the rule applies to the consumption.
+     */
+    public boolean matches(Set<String> softwareNames, Scope scope, MonitoringType monitoringType) {
+        return (
+            (software == null || softwareNames.contains(software)) &&
+            (this.scope == null || this.scope == scope) &&
+            (this.monitoringType == null || this.monitoringType == monitoringType)
+        );
+    }
+
+    /**
+     * @param table the table or alias qualifying the {@code method_id}, {@code scope} and {@code monitoring_type}
+     * columns, of {@code consumption} or of a table of aggregates.
+     * @param args the arguments of the statement, the arguments of the condition are appended to.
+     * @return the SQL condition matching the rows the rule applies to, never {@code NULL}.
+     */
+    String toSql(String table, List<Object> args) {
+        List<String> criteria = new ArrayList<>();
+        if (software != null) {
+            criteria.add(
+                "(" +
+                table +
+                ".method_id is not null and " +
+                table +
+                ".method_id in (select release_method.method_id from rel_jhi_release__method release_method " +
+                "join software on software.release_id = release_method.jhi_release_id where software.name = ?))"
+            );
+            args.add(software);
+        }
+        if (scope != null) {
+            criteria.add(table + ".scope <=> ?");
+            args.add(scope.name());
+        }
+        if (monitoringType != null) {
+            criteria.add(table + ".monitoring_type <=> ?");
+            args.add(monitoringType.name());
+        }
+        return criteria.isEmpty() ? "(true)" : "(" + String.join(" and ", criteria) + ")";
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionRule{software='" + software + "', scope=" + scope + ", monitoringType=" + monitoringType + "}";
+    }
+}
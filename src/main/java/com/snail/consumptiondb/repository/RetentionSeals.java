@@ -0,0 +1,104 @@
+package com.snail.consumptiondb.repository;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Consumptions the retention purge may have deleted: for each policy, those it applies to which are older than the
+ * watermark of its purge. Their rollups and sketches are all that is left of them, so they are never recomputed, and
+ * no consumption is written to them any more.
+ */
+public class RetentionSeals {
+
+    private final List<Seal> seals;
+
+    private final Instant latest;
+
+    public RetentionSeals(List<Seal> seals) {
+        this.seals = List.copyOf(seals);
+        this.latest = seals.stream().map(Seal::getPurgedBefore).max(Instant::compareTo).orElse(null);
+    }
+
+    public boolean isEmpty() {
+        return seals.isEmpty();
+    }
+
+    /**
+     * @return the latest watermark, no consumption from then on being sealed; {@code null} if nothing is sealed.
+     */
+    public Instant getLatest() {
+        return latest;
+    }
+
+    /**
+     * @param softwareNames the names of the software whose releases hold the method of the consumption.
+     * @param scope the scope of the consumption.
+     * @param monitoringType the monitoring type of the consumption.
+     * @param timestamp the timestamp of the consumption.
+     * @return whether the consumption is sealed.
+     */
+    public boolean seals(Set<String> softwareNames, Scope scope, MonitoringType monitoringType, Instant timestamp) {
+        for (Seal seal : seals) {
+            if (
+                timestamp.isBefore(seal.purgedBefore) &&
+                seal.rule.matches(softwareNames, scope, monitoringType) &&
+                seal.excluded.stream().noneMatch(rule -> rule.matches(softwareNames, scope, monitoringType))
+            ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param table the table or alias of the rows, of {@code consumption} or of a table of aggregates.
+     * @param timeColumn the column of their timestamp or bucket start.
+     * @param args the arguments of the statement, the arguments of the condition are appended to.
+     * @return the SQL condition matching the sealed rows, never {@code NULL}.
+     */
+    String toSql(String table, String timeColumn, List<Object> args) {
+        if (seals.isEmpty()) {
+            return "(false)";
+        }
+        StringBuilder sql = new StringBuilder("(");
+        for (Seal seal : seals) {
+            if (sql.length() > 1) {
+                sql.append(" or ");
+            }
+            sql.append("(").append(table).append('.').append(timeColumn).append(" < ?");
+            args.add(seal.purgedBefore);
+            sql.append(" and ").append(seal.rule.toSql(table, args));
+            for (RetentionRule exclusion : seal.excluded) {
+                sql.append(" and not ").append(exclusion.toSql(table, args));
+            }
+            sql.append(")");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * The consumptions of a retention policy purged so far: those matching its rule and none of the rules before it,
+     * older than its watermark.
+     */
+    public static class Seal {
+
+        private final RetentionRule rule;
+
+        private final List<RetentionRule> excluded;
+
+        private final Instant purgedBefore;
+
+        public Seal(RetentionRule rule, List<RetentionRule> excluded, Instant purgedBefore) {
+            this.rule = rule;
+            this.excluded = List.copyOf(excluded);
+            this.purgedBefore = purgedBefore;
+        }
+
+        public Instant getPurgedBefore() {
+            return purgedBefore;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.snail.consumptiondb.repository;
+
+import java.util.Arrays;
+
+/**
+ * Codec of the sample blocks, packing the samples of a method within an hour into a few bits each, after Facebook's
+ * Gorilla time series compression.
+ * <p>
+ * Samples are written in timestamp, scope and monitoring type order to a bit stream, most significant bit first:
+ * <pre>
+ * block     := count:32 sample{count} zero padding to a byte
+ * sample    := timestamp tag value
+ * timestamp := epoch microseconds:64 for the first sample, then the delta of the delta to the previous sample, bucketed
+ * tag       := '0'                           same scope and monitoring type as the previous sample
+ *            | '1' scope:4 monitoringType:4  their codes otherwise, always for the first sample
+ * value     := the delta to the previous value of the same scope and monitoring type, or to 0, bucketed
+ * bucketed  := '0' | '10' n:7 | '110' n:12 | '1110' n:20 | '11110' n:32 | '11111' n:64    in two's complement
+ * </pre>
+ * A regular series costs a bit per timestamp, a steady one a bit per value. Values are integers, so they are delta coded
+ * where Gorilla XORs floating-point values.
+ */
+final class SampleBlockCodec {
+
+    static final int MAX_CODE = 15;
+
+    private static final int[] BUCKET_BITS = { 7, 12, 20, 32 };
+
+    private static final int COUNT_BITS = 32;
+
+    private static final int TAG_BITS = 8;
+
+    private SampleBlockCodec() {}
+
+    /**
+     * Encoder of a block, reusable from one block to the next.
+     */
+    static final class Encoder {
+
+        private final long[] lastValues = new long[1 << TAG_BITS];
+
+        private byte[] bytes = new byte[256];
+
+        private int bitPosition;
+
+        private int count;
+
+        private long lastTimestamp;
+
+        private long lastDelta;
+
+        private int lastTag;
+
+        Encoder() {
+            reset();
+        }
+
+        /**
+         * Start a new block.
+         */
+        void reset() {
+            Arrays.fill(bytes, (byte) 0);
+            Arrays.fill(lastValues, 0);
+            bitPosition = COUNT_BITS;
+            count = 0;
+            lastDelta = 0;
+        }
+
+        /**
+         * Append a sample, after the previous one.
+         *
+         * @throws IllegalArgumentException if a code is out of range, or the sample is before the previous one.
+         */
+        void add(long timestampMicros, int scope, int monitoringType, long value) {
+            if (scope < 0 || scope > MAX_CODE || monitoringType < 0 || monitoringType > MAX_CODE) {
+                throw new IllegalArgumentException("Invalid codes " + scope + ", " + monitoringType);
+            }
+            int tag = scope << 4 | monitoringType;
+            if (count == 0) {
+                writeBits(timestampMicros, 64);
+            } else {
+                if (timestampMicros < lastTimestamp) {
+                    throw new IllegalArgumentException("Sample at " + timestampMicros + " after one at " + lastTimestamp);
+                }
+                long delta = timestampMicros - lastTimestamp;
+                writeBucketed(delta - lastDelta);
+                lastDelta = delta;
+            }
+            if (count > 0 && tag == lastTag) {
+                writeBits(0, 1);
+            } else {
+                writeBits(1, 1);
+                writeBits(tag, TAG_BITS);
+            }
+            writeBucketed(value - lastValues[tag]);
+            lastValues[tag] = value;
+            lastTag = tag;
+            lastTimestamp = timestampMicros;
+            count++;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the block of the samples added since the last reset.
+         */
+        byte[] toByteArray() {
+            for (int i = 0; i < 4; i++) {
+                bytes[i] = (byte) (count >>> (24 - 8 * i));
+            }
+            return Arrays.copyOf(bytes, (bitPosition + 7) >>> 3);
+        }
+
+        private void writeBucketed(long n) {
+            if (n == 0) {
+                writeBits(0, 1);
+                return;
+            }
+            for (int i = 0; i < BUCKET_BITS.length; i++) {
+                long bound = 1L << (BUCKET_BITS[i] - 1);
+                if (n >= -bound && n < bound) {
+                    // i + 1 ones then a zero
+                    writeBits(((1L << (i + 1)) - 1) << 1, i + 2);
+                    writeBits(n, BUCKET_BITS[i]);
+                    return;
+                }
+            }
+            writeBits((1L << (BUCKET_BITS.length + 1)) - 1, BUCKET_BITS.length + 1);
+            writeBits(n, 64);
+        }
+
+        /**
+         * Write the lowest bits of a number.
+         */
+        private void writeBits(long n, int bits) {
+            if (((bitPosition + bits) >>> 3) >= bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, ((bitPosition + bits) >>> 3) + 1));
+            }
+            while (bits > 0) {
+                int free = 8 - (bitPosition & 7);
+                int written = Math.min(free, bits);
+                int chunk = (int) (n >>> (bits - written)) & ((1 << written) - 1);
+                bytes[bitPosition >>> 3] |= (byte) (chunk << (free - written));
+                bitPosition += written;
+                bits -= written;
+            }
+        }
+    }
+
+    /**
+     * Streaming decoder of a block, reusable from one block to the next: decoding allocates nothing.
+     */
+    static final class Decoder {
+
+        private final long[] lastValues = new long[1 << TAG_BITS];
+
+        private byte[] bytes;
+
+        private int bitPosition;
+
+        private int remaining;
+
+        private boolean started;
+
+        private long timestampMicros;
+
+        private long delta;
+
+        private int tag;
+
+        private long value;
+
+        /**
+         * Start decoding a block.
+         *
+         * @throws IllegalArgumentException if the block is truncated.
+         */
+        void reset(byte[] bytes) {
+            this.bytes = bytes;
+            bitPosition = 0;
+            remaining = (int) readBits(COUNT_BITS);
+            if (remaining < 0) {
+                throw new IllegalArgumentException("Invalid sample count " + remaining);
+            }
+            started = false;
+            delta = 0;
+            Arrays.fill(lastValues, 0);
+        }
+
+        /**
+         * Decode the next sample.
+         *
+         * @return {@code false} at the end of the block.
+         * @throws IllegalArgumentException if the block is truncated.
+         */
+        boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            if (!started) {
+                timestampMicros = readBits(64);
+                started = true;
+            } else {
+                delta += readBucketed();
+                timestampMicros += delta;
+            }
+            if (readBits(1) == 1) {
+                tag = (int) readBits(TAG_BITS);
+            }
+            value = lastValues[tag] + readBucketed();
+            lastValues[tag] = value;
+            remaining--;
+            return true;
+        }
+
+        long getTimestampMicros() {
+            return timestampMicros;
+        }
+
+        int getScope() {
+            return tag >>> 4;
+        }
+
+        int getMonitoringType() {
+            return tag & MAX_CODE;
+        }
+
+        long getValue() {
+            return value;
+        }
+
+        private long readBucketed() {
+            int ones = 0;
+            while (ones <= BUCKET_BITS.length && readBits(1) == 1) {
+                ones++;
+            }
+            if (ones == 0) {
+                return 0;
+            }
+            int bits = ones > BUCKET_BITS.length ? 64 : BUCKET_BITS[ones - 1];
+            long n = readBits(bits);
+            return bits == 64 ? n : (n << (64 - bits)) >> (64 - bits);
+        }
+
+        private long readBits(int bits) {
+            if (bitPosition + bits > bytes.length * 8) {
+                throw new IllegalArgumentException("Truncated sample block");
+            }
+            long n = 0;
+            while (bits > 0) {
+                int available = 8 - (bitPosition & 7);
+                int read = Math.min(available, bits);
+                int chunk = ((bytes[bitPosition >>> 3] & 0xFF) >>> (available - read)) & ((1 << read) - 1);
+                n = (n << read) | chunk;
+                bitPosition += read;
+                bits -= read;
+            }
+            return n;
+        }
+    }
+}
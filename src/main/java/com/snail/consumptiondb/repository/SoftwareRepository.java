@@ -1,6 +1,8 @@
 package com.snail.consumptiondb.repository;
 
 import com.snail.consumptiondb.domain.Software;
+import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +11,10 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface SoftwareRepository extends JpaRepository<Software, Long> {}
+public interface SoftwareRepository extends JpaRepository<Software, Long> {
+    @EntityGraph(Software.WITH_TO_ONE_RELATIONSHIPS)
+    Optional<Software> findOneWithToOneRelationshipsById(Long id);
+
+    @Query("select software.id as id, software.name as name, software.release.id as releaseId from Software software")
+    List<SoftwareRow> findAllRows();
+}
@@ -0,0 +1,12 @@
+package com.snail.consumptiondb.repository;
+
+/**
+ * Scalar projection of a {@link com.snail.consumptiondb.domain.Software} row, with the id of its release.
+ */
+public interface SoftwareRow {
+    Long getId();
+
+    String getName();
+
+    Long getReleaseId();
+}
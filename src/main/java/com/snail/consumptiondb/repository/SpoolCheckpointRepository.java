@@ -0,0 +1,37 @@
+package com.snail.consumptiondb.repository;
+
+import java.util.List;
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the {@code consumption_spool_checkpoint} table: the last spool sequence committed by each local spool.
+ */
+@Repository
+public class SpoolCheckpointRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SpoolCheckpointRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<Long> findCommittedSequence(String spoolId) {
+        List<Long> sequences = jdbcTemplate.queryForList(
+            "select committed_sequence from consumption_spool_checkpoint where spool_id = ?",
+            Long.class,
+            spoolId
+        );
+        return sequences.stream().findFirst();
+    }
+
+    public void saveCommittedSequence(String spoolId, long committedSequence) {
+        jdbcTemplate.update(
+            "insert into consumption_spool_checkpoint (spool_id, committed_sequence) values (?, ?) " +
+            "on duplicate key update committed_sequence = greatest(committed_sequence, values(committed_sequence))",
+            spoolId,
+            committedSequence
+        );
+    }
+}
@@ -0,0 +1,105 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service ingesting {@link Consumption} uploads in the binary ingestion format described in {@link ConsumptionBlockReader}.
+ * <p>
+ * Blocks are decoded one at a time into the same buffers and upserted straight from their columns, each block being
+ * committed in its own transaction. Samples of methods which do not exist are rejected and counted.
+ */
+@Service
+public class BinaryIngestionService {
+
+    /**
+     * Media type of the binary ingestion format.
+     */
+    public static final String MEDIA_TYPE = "application/vnd.consumption-db.blocks";
+
+    private static final int MAX_KNOWN_METHOD_IDS = 100_000;
+
+    private final Logger log = LoggerFactory.getLogger(BinaryIngestionService.class);
+
+    private final MethodRepository methodRepository;
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    public BinaryIngestionService(MethodRepository methodRepository, ConsumptionIngestionService consumptionIngestionService) {
+        this.methodRepository = methodRepository;
+        this.consumptionIngestionService = consumptionIngestionService;
+    }
+
+    /**
+     * Ingest a stream of blocks of consumptions.
+     *
+     * @param blocks the upload, already decompressed.
+     * @return the ingestion report.
+     * @throws IOException if the upload cannot be read.
+     * @throws InvalidIngestionBlockException if a block cannot be decoded.
+     */
+    public IngestionReportDTO ingestConsumptions(InputStream blocks) throws IOException {
+        log.debug("Request to ingest a binary stream of Consumptions");
+        long start = System.nanoTime();
+        long received = 0;
+        long persisted = 0;
+        long rejected = 0;
+        long blockNumber = 0;
+        Set<Long> knownMethodIds = new HashSet<>();
+        ConsumptionBlockReader reader = new ConsumptionBlockReader(blocks);
+        ConsumptionBlock block = new ConsumptionBlock();
+        while (true) {
+            try {
+                if (!reader.next(block)) {
+                    break;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new InvalidIngestionBlockException(e.getMessage(), blockNumber, persisted, e);
+            }
+            blockNumber++;
+            received += block.size();
+            rejected += block.retainMethods(resolveMethods(block, knownMethodIds));
+            IngestionReportDTO report = consumptionIngestionService.saveBlock(block);
+            persisted += report.getPersisted();
+            rejected += report.getRejected();
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestionReportDTO(received, persisted, rejected, durationMillis);
+    }
+
+    /**
+     * @return whether each method of the block header exists, by index.
+     */
+    private boolean[] resolveMethods(ConsumptionBlock block, Set<Long> knownMethodIds) {
+        if (knownMethodIds.size() + block.getMethodCount() > MAX_KNOWN_METHOD_IDS) {
+            knownMethodIds.clear();
+        }
+        List<Long> unknownIds = new ArrayList<>();
+        for (int i = 0; i < block.getMethodCount(); i++) {
+            long methodId = block.getHeaderMethodId(i);
+            if (methodId != ConsumptionBlock.NO_METHOD && !knownMethodIds.contains(methodId)) {
+                unknownIds.add(methodId);
+            }
+        }
+        if (!unknownIds.isEmpty()) {
+            knownMethodIds.addAll(methodRepository.findExistingIds(unknownIds));
+        }
+        boolean[] known = new boolean[block.getMethodCount()];
+        for (int i = 0; i < known.length; i++) {
+            long methodId = block.getHeaderMethodId(i);
+            known[i] = methodId == ConsumptionBlock.NO_METHOD || knownMethodIds.contains(methodId);
+        }
+        return known;
+    }
+}
@@ -0,0 +1,128 @@
+package com.snail.consumptiondb.service;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer ring buffer.
+ * <p>
+ * Every slot carries a sequence number telling whether it is ready to be written or read for a given lap of the ring,
+ * so producers and consumers only contend on their own cursor (Vyukov's bounded queue, as used by the LMAX Disruptor).
+ * Nothing ever blocks: {@link #offer(Object)} fails when the ring is full and {@link #poll()} returns {@code null}
+ * when it is empty, leaving the waiting strategy to the caller.
+ *
+ * @param <E> the type of the elements.
+ */
+final class BoundedRingBuffer<E> {
+
+    private final int mask;
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong producerCursor = new AtomicLong();
+
+    private final AtomicLong consumerCursor = new AtomicLong();
+
+    /**
+     * @param capacity the requested capacity, rounded up to the next power of two.
+     */
+    BoundedRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Insert an element if the ring is not full.
+     *
+     * @param element the element, not {@code null}.
+     * @return {@code true} if the element was inserted.
+     */
+    boolean offer(E element) {
+        long position = producerCursor.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long delta = sequences.get(index) - position;
+            if (delta == 0) {
+                if (producerCursor.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = producerCursor.get();
+            } else if (delta < 0) {
+                return false;
+            } else {
+                position = producerCursor.get();
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element.
+     *
+     * @return the element, or {@code null} if the ring is empty.
+     */
+    E poll() {
+        long position = consumerCursor.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long delta = sequences.get(index) - (position + 1);
+            if (delta == 0) {
+                if (consumerCursor.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.lazySet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = consumerCursor.get();
+            } else if (delta < 0) {
+                return null;
+            } else {
+                position = consumerCursor.get();
+            }
+        }
+    }
+
+    /**
+     * Remove up to {@code maxElements} elements, oldest first.
+     *
+     * @return the number of elements removed.
+     */
+    int drainTo(Collection<? super E> sink, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = poll()) != null) {
+            sink.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return an estimate of the number of elements in the ring.
+     */
+    int size() {
+        long size = producerCursor.get() - consumerCursor.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
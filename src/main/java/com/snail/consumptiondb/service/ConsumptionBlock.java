@@ -0,0 +1,150 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+
+/**
+ * A block of samples of the binary ingestion format, decoded in place by {@link ConsumptionBlockReader}.
+ * <p>
+ * The samples are held column by column in primitive arrays which are reused, and only grown, from one block to the next,
+ * so that decoding a stream does not allocate per sample.
+ */
+final class ConsumptionBlock {
+
+    /**
+     * Method id standing for "no method" in the block header.
+     */
+    static final long NO_METHOD = 0;
+
+    private Scope scope;
+
+    private MonitoringType monitoringType;
+
+    private long[] methodIds = new long[16];
+
+    private int methodCount;
+
+    private int[] methodIndexes = new int[1_024];
+
+    private long[] timestampMicros = new long[1_024];
+
+    private long[] values = new long[1_024];
+
+    private int size;
+
+    Scope getScope() {
+        return scope;
+    }
+
+    MonitoringType getMonitoringType() {
+        return monitoringType;
+    }
+
+    int getMethodCount() {
+        return methodCount;
+    }
+
+    long getHeaderMethodId(int methodIndex) {
+        return methodIds[methodIndex];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the method of a sample, or {@link #NO_METHOD}.
+     */
+    long getMethodId(int sample) {
+        return methodIds[methodIndexes[sample]];
+    }
+
+    /**
+     * @return the timestamp of a sample, in microseconds since the epoch.
+     */
+    long getTimestampMicros(int sample) {
+        return timestampMicros[sample];
+    }
+
+    long getValue(int sample) {
+        return values[sample];
+    }
+
+    /**
+     * Drop the samples of the methods not kept, compacting the columns in place.
+     *
+     * @param keep whether to keep the samples of each method of the header, by index.
+     * @return the number of samples dropped.
+     */
+    int retainMethods(boolean[] keep) {
+        int kept = 0;
+        for (int sample = 0; sample < size; sample++) {
+            if (keep[methodIndexes[sample]]) {
+                methodIndexes[kept] = methodIndexes[sample];
+                timestampMicros[kept] = timestampMicros[sample];
+                values[kept] = values[sample];
+                kept++;
+            }
+        }
+        int dropped = size - kept;
+        size = kept;
+        return dropped;
+    }
+
+    /**
+     * Drop the samples not kept, compacting the columns in place.
+     *
+     * @param keep whether to keep each sample, by index.
+     * @return the number of samples dropped.
+     */
+    int retainSamples(boolean[] keep) {
+        int kept = 0;
+        for (int sample = 0; sample < size; sample++) {
+            if (keep[sample]) {
+                methodIndexes[kept] = methodIndexes[sample];
+                timestampMicros[kept] = timestampMicros[sample];
+                values[kept] = values[sample];
+                kept++;
+            }
+        }
+        int dropped = size - kept;
+        size = kept;
+        return dropped;
+    }
+
+    void reset(Scope scope, MonitoringType monitoringType, int methodCount) {
+        this.scope = scope;
+        this.monitoringType = monitoringType;
+        this.methodCount = methodCount;
+        this.size = 0;
+        if (methodIds.length < methodCount) {
+            methodIds = new long[Math.max(methodCount, methodIds.length * 2)];
+        }
+    }
+
+    void resize(int size) {
+        this.size = size;
+        if (values.length < size) {
+            int capacity = Math.max(size, values.length * 2);
+            methodIndexes = new int[capacity];
+            timestampMicros = new long[capacity];
+            values = new long[capacity];
+        }
+    }
+
+    void setHeaderMethodId(int methodIndex, long methodId) {
+        methodIds[methodIndex] = methodId;
+    }
+
+    void setMethodIndex(int sample, int methodIndex) {
+        methodIndexes[sample] = methodIndex;
+    }
+
+    void setTimestampMicros(int sample, long timestampMicros) {
+        this.timestampMicros[sample] = timestampMicros;
+    }
+
+    void setValue(int sample, long value) {
+        values[sample] = value;
+    }
+}
@@ -0,0 +1,186 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reader of the binary ingestion format, a compact alternative to newline-delimited JSON for high-frequency samples.
+ * <p>
+ * A stream starts with the magic number {@code "CDB1"} and is followed by blocks, each holding the samples of one
+ * scope and monitoring type. All integers are big-endian; varints are unsigned LEB128, zigzag-encoded when signed:
+ * <pre>
+ * block      := length:int32                 the number of bytes following this field
+ *               scope:u8 monitoringType:u8   the ordinals of the enums
+ *               methodCount:varint methodId:varint{methodCount}   0 stands for no method
+ *               sampleCount:varint                                at most 65536
+ *               [methodIndex:varint{sampleCount}]                 only when methodCount &gt; 1
+ *               timestamp:zigzag{sampleCount}   epoch microseconds of the first sample, then deltas to the previous
+ *               value:zigzag{sampleCount}
+ * </pre>
+ * A block is upserted as one JDBC batch in one transaction, hence the bound on its samples: larger uploads are split
+ * into more blocks.
+ * <p>
+ * Each block is read whole into a reusable buffer and decoded column by column into a reusable {@link ConsumptionBlock}:
+ * once the buffers are large enough, reading allocates nothing.
+ */
+final class ConsumptionBlockReader {
+
+    static final int MAGIC = 0x43444231;
+
+    static final int MAX_BLOCK_LENGTH = 16 * 1024 * 1024;
+
+    static final int MAX_METHODS = 65_536;
+
+    static final int MAX_SAMPLES = 65_536;
+
+    private static final Scope[] SCOPES = Scope.values();
+
+    private static final MonitoringType[] MONITORING_TYPES = MonitoringType.values();
+
+    private final InputStream in;
+
+    private byte[] buffer = new byte[8_192];
+
+    private int position;
+
+    private int limit;
+
+    private boolean started;
+
+    ConsumptionBlockReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Decode the next block.
+     *
+     * @param block the block to decode into, its previous content is overwritten.
+     * @return {@code false} at the end of the stream.
+     * @throws IOException if the stream cannot be read, or ends in the middle of a block.
+     * @throws IllegalArgumentException if the stream is not in the binary ingestion format.
+     */
+    boolean next(ConsumptionBlock block) throws IOException {
+        if (!started) {
+            started = true;
+            if (readInt(true) != MAGIC) {
+                throw new IllegalArgumentException("Not a binary ingestion stream");
+            }
+        }
+        long length = readInt(false);
+        if (length == -1) {
+            return false;
+        }
+        if (length > MAX_BLOCK_LENGTH) {
+            throw new IllegalArgumentException("Invalid block length " + length);
+        }
+        fill((int) length);
+        decode(block);
+        if (position != limit) {
+            throw new IllegalArgumentException("Block has " + (limit - position) + " trailing bytes");
+        }
+        return true;
+    }
+
+    private void decode(ConsumptionBlock block) {
+        int scope = readByte();
+        int monitoringType = readByte();
+        if (scope >= SCOPES.length || monitoringType >= MONITORING_TYPES.length) {
+            throw new IllegalArgumentException("Unknown scope " + scope + " or monitoring type " + monitoringType);
+        }
+        int methodCount = readCount(MAX_METHODS);
+        if (methodCount == 0) {
+            throw new IllegalArgumentException("A block must list at least one method");
+        }
+        block.reset(SCOPES[scope], MONITORING_TYPES[monitoringType], methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            long methodId = readVarLong();
+            if (methodId < 0) {
+                throw new IllegalArgumentException("Invalid method id " + methodId);
+            }
+            block.setHeaderMethodId(i, methodId);
+        }
+        // Every sample takes at least two bytes, a bound to check before sizing the columns
+        int sampleCount = readCount(Math.min(MAX_SAMPLES, (limit - position) / 2));
+        block.resize(sampleCount);
+        for (int sample = 0; sample < sampleCount; sample++) {
+            int methodIndex = methodCount == 1 ? 0 : readCount(methodCount - 1);
+            block.setMethodIndex(sample, methodIndex);
+        }
+        long timestamp = 0;
+        for (int sample = 0; sample < sampleCount; sample++) {
+            timestamp += zigzag(readVarLong());
+            block.setTimestampMicros(sample, timestamp);
+        }
+        for (int sample = 0; sample < sampleCount; sample++) {
+            block.setValue(sample, zigzag(readVarLong()));
+        }
+    }
+
+    private int readByte() {
+        if (position == limit) {
+            throw new IllegalArgumentException("Truncated block");
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private int readCount(int max) {
+        long count = readVarLong();
+        if (count < 0 || count > max) {
+            throw new IllegalArgumentException("Invalid count " + count + ", expected at most " + max);
+        }
+        return (int) count;
+    }
+
+    private long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than 64 bits");
+    }
+
+    private static long zigzag(long encoded) {
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    /**
+     * Read a big-endian unsigned int from the stream.
+     *
+     * @param required whether the end of the stream is an error.
+     * @return the int, or -1 if the stream ended before its first byte.
+     */
+    private long readInt(boolean required) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            if (required) {
+                throw new IllegalArgumentException("Empty binary ingestion stream");
+            }
+            return -1;
+        }
+        fill(3);
+        return ((long) first << 24) | ((buffer[0] & 0xff) << 16) | ((buffer[1] & 0xff) << 8) | (buffer[2] & 0xff);
+    }
+
+    private void fill(int length) throws IOException {
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, read, length - read);
+            if (count == -1) {
+                throw new EOFException("Stream ended in the middle of a block");
+            }
+            read += count;
+        }
+        position = 0;
+        limit = length;
+    }
+}
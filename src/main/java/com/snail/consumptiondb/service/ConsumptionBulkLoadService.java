@@ -0,0 +1,138 @@
+package com.snail.consumptiondb.service;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service backfilling large archives of {@link Consumption} with MySQL's {@code LOAD DATA LOCAL INFILE}, the same
+ * bulk-loading idea Liquibase's {@code loadData} uses to seed the fake data.
+ * <p>
+ * Newline-delimited records are validated as they are parsed, then loaded in chunks of
+ * {@code application.ingestion.bulk-load-chunk-size}, each chunk being encoded in memory and committed in its own transaction.
+ * Invalid records, and records referencing an unknown method, are rejected and counted; duplicates of stored
+ * consumptions are skipped by the database.
+ */
+@Service
+public class ConsumptionBulkLoadService {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionBulkLoadService.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final MethodRepository methodRepository;
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    private final int chunkSize;
+
+    public ConsumptionBulkLoadService(
+        ObjectMapper objectMapper,
+        MethodRepository methodRepository,
+        ConsumptionIngestionService consumptionIngestionService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.objectMapper = objectMapper;
+        this.methodRepository = methodRepository;
+        this.consumptionIngestionService = consumptionIngestionService;
+        this.chunkSize = applicationProperties.getIngestion().getBulkLoadChunkSize();
+    }
+
+    /**
+     * Bulk load a stream of newline-delimited {@link Consumption} records.
+     *
+     * @param ndjson the upload, already decompressed.
+     * @return the ingestion report.
+     * @throws IOException if the upload cannot be read.
+     * @throws InvalidIngestionRecordException if a record is malformed.
+     */
+    public IngestionReportDTO load(InputStream ndjson) throws IOException {
+        log.debug("Request to bulk load a stream of Consumptions");
+        long start = System.nanoTime();
+        long received = 0;
+        long persisted = 0;
+        long rejected = 0;
+        List<Consumption> chunk = new ArrayList<>(Math.min(chunkSize, 10_000));
+        try (MappingIterator<Consumption> records = objectMapper.readerFor(Consumption.class).readValues(ndjson)) {
+            while (records.hasNextValue()) {
+                Consumption consumption = records.nextValue();
+                received++;
+                if (isValid(consumption)) {
+                    chunk.add(consumption);
+                } else {
+                    rejected++;
+                }
+                if (chunk.size() == chunkSize) {
+                    long[] counts = flush(chunk);
+                    persisted += counts[0];
+                    rejected += counts[1];
+                }
+            }
+        } catch (JsonProcessingException e) {
+            JsonLocation location = e.getLocation();
+            throw new InvalidIngestionRecordException(e.getOriginalMessage(), location == null ? -1 : location.getLineNr(), persisted, e);
+        }
+        long[] counts = flush(chunk);
+        persisted += counts[0];
+        rejected += counts[1];
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Bulk loaded {} Consumptions: {} persisted, {} rejected, {} ms", received, persisted, rejected, durationMillis);
+        return new IngestionReportDTO(received, persisted, rejected, durationMillis);
+    }
+
+    private static boolean isValid(Consumption consumption) {
+        return (
+            consumption.getId() == null &&
+            consumption.getValue() != null &&
+            consumption.getTimestamp() != null &&
+            consumption.getScope() != null &&
+            consumption.getMonitoringType() != null &&
+            (consumption.getMethod() == null || consumption.getMethod().getId() != null)
+        );
+    }
+
+    /**
+     * Load a chunk after dropping the consumptions referencing an unknown method.
+     *
+     * @return the number of persisted and of rejected consumptions.
+     */
+    private long[] flush(List<Consumption> chunk) {
+        if (chunk.isEmpty()) {
+            return new long[2];
+        }
+        Set<Long> methodIds = chunk
+            .stream()
+            .map(Consumption::getMethod)
+            .filter(Objects::nonNull)
+            .map(Method::getId)
+            .collect(Collectors.toCollection(HashSet::new));
+        int size = chunk.size();
+        if (!methodIds.isEmpty()) {
+            Set<Long> existingIds = new HashSet<>(methodRepository.findExistingIds(methodIds));
+            chunk.removeIf(consumption -> consumption.getMethod() != null && !existingIds.contains(consumption.getMethod().getId()));
+        }
+        IngestionReportDTO report = consumptionIngestionService.loadAll(chunk);
+        long persisted = report.getPersisted();
+        long rejected = size - chunk.size() + report.getRejected();
+        chunk.clear();
+        return new long[] { persisted, rejected };
+    }
+}
@@ -0,0 +1,83 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command line mode importing a measurement run, then stopping the application.
+ * <p>
+ * It is triggered by the {@code --import-csv} option, for example:
+ * {@code java -jar consumption-db.jar --import-csv=/runs/42 --release=7 --scope=APP --monitoring-type=RUNTIME}.
+ * The path is either a directory or a zip archive of CSV files.
+ */
+@Component
+public class ConsumptionCsvImportCommandLineRunner implements ApplicationRunner {
+
+    public static final String IMPORT_OPTION = "import-csv";
+    public static final String RELEASE_OPTION = "release";
+    public static final String SCOPE_OPTION = "scope";
+    public static final String MONITORING_TYPE_OPTION = "monitoring-type";
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionCsvImportCommandLineRunner.class);
+
+    private final ConsumptionCsvImportService consumptionCsvImportService;
+
+    private final ConfigurableApplicationContext applicationContext;
+
+    public ConsumptionCsvImportCommandLineRunner(
+        ConsumptionCsvImportService consumptionCsvImportService,
+        ConfigurableApplicationContext applicationContext
+    ) {
+        this.consumptionCsvImportService = consumptionCsvImportService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(IMPORT_OPTION)) {
+            return;
+        }
+        int exitCode = importRun(args);
+        System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+
+    /**
+     * Import the measurement run given by the options.
+     *
+     * @param args the application arguments.
+     * @return the exit code of the application, {@code 0} if the run was imported.
+     */
+    int importRun(ApplicationArguments args) {
+        try {
+            Path path = Paths.get(requiredOption(args, IMPORT_OPTION));
+            Long releaseId = Long.valueOf(requiredOption(args, RELEASE_OPTION));
+            Scope scope = Scope.valueOf(requiredOption(args, SCOPE_OPTION));
+            MonitoringType monitoringType = MonitoringType.valueOf(requiredOption(args, MONITORING_TYPE_OPTION));
+            IngestionReportDTO report = consumptionCsvImportService.importRun(path, releaseId, scope, monitoringType);
+            log.info("Measurement run {} imported: {}", path, report);
+            return 0;
+        } catch (Exception e) {
+            log.error("Measurement run import failed: {}", e.getMessage(), e);
+            return 1;
+        }
+    }
+
+    private static String requiredOption(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        if (values == null || values.size() != 1) {
+            throw new IllegalArgumentException("Expected exactly one --" + name + " option");
+        }
+        return values.get(0);
+    }
+}
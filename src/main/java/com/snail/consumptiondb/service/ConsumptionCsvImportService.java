@@ -0,0 +1,285 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.management.ConsumptionImportMetersService;
+import com.snail.consumptiondb.repository.ReleaseRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service importing whole measurement runs made of JoularJX-style CSV files ({@code method name,value,timestamp}).
+ * <p>
+ * An import runs in three phases, so that memory stays flat whatever the size of the run:
+ * <ol>
+ *     <li>the files are scanned in parallel to validate their lines and collect the distinct method names;</li>
+ *     <li>the methods are resolved, or created and attached to the release, in bulk;</li>
+ *     <li>the files are parsed again in parallel and their rows written with batched inserts, one transaction per chunk.</li>
+ * </ol>
+ * A header line is skipped. Any other line that cannot be parsed fails the import during the first phase, before anything
+ * is written.
+ */
+@Service
+public class ConsumptionCsvImportService {
+
+    private static final String CSV_EXTENSION = ".csv";
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionCsvImportService.class);
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    private final ReleaseMethodService releaseMethodService;
+
+    private final ReleaseRepository releaseRepository;
+
+    private final ConsumptionImportMetersService consumptionImportMetersService;
+
+    private final ForkJoinPool pool;
+
+    private final int chunkSize;
+
+    public ConsumptionCsvImportService(
+        ConsumptionIngestionService consumptionIngestionService,
+        ReleaseMethodService releaseMethodService,
+        ReleaseRepository releaseRepository,
+        ConsumptionImportMetersService consumptionImportMetersService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionIngestionService = consumptionIngestionService;
+        this.releaseMethodService = releaseMethodService;
+        this.releaseRepository = releaseRepository;
+        this.consumptionImportMetersService = consumptionImportMetersService;
+        this.pool = new ForkJoinPool(applicationProperties.getIngestion().getImportParallelism());
+        this.chunkSize = applicationProperties.getIngestion().getStreamChunkSize();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Import a measurement run from a directory, or a zip archive, of CSV files.
+     *
+     * @param path the directory or the zip archive.
+     * @param releaseId the id of the release the run was measured on.
+     * @param scope the scope of the samples.
+     * @param monitoringType the monitoring type of the samples.
+     * @return the ingestion report.
+     * @throws IOException if the files cannot be read.
+     * @throws ReleaseNotFoundException if the release does not exist.
+     * @throws InvalidIngestionRecordException if a line of a file cannot be parsed.
+     */
+    public IngestionReportDTO importRun(Path path, Long releaseId, Scope scope, MonitoringType monitoringType) throws IOException {
+        log.debug("Request to import the measurement run {} for Release : {}", path, releaseId);
+        if (!releaseRepository.existsById(releaseId)) {
+            throw new ReleaseNotFoundException(releaseId);
+        }
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                List<CsvFile> csvFiles = files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> isCsv(file.getFileName().toString()))
+                    .sorted()
+                    .map(file -> new CsvFile(file.toString(), () -> Files.newInputStream(file)))
+                    .collect(Collectors.toList());
+                return importFiles(csvFiles, releaseId, scope, monitoringType);
+            }
+        }
+        try (ZipFile archive = new ZipFile(path.toFile())) {
+            List<CsvFile> csvFiles = archive
+                .stream()
+                .filter(entry -> !entry.isDirectory() && isCsv(entry.getName()))
+                .sorted(Comparator.comparing(ZipEntry::getName))
+                .map(entry -> new CsvFile(entry.getName(), () -> archive.getInputStream(entry)))
+                .collect(Collectors.toList());
+            return importFiles(csvFiles, releaseId, scope, monitoringType);
+        }
+    }
+
+    private IngestionReportDTO importFiles(List<CsvFile> files, Long releaseId, Scope scope, MonitoringType monitoringType)
+        throws IOException {
+        long start = System.nanoTime();
+        AtomicInteger imported = new AtomicInteger();
+        consumptionImportMetersService.trackFilesQueued(files.size());
+        try {
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            List<Callable<Long>> scans = new ArrayList<>(files.size());
+            for (CsvFile file : files) {
+                scans.add(() -> forEachLine(file, line -> names.add(line.getMethodName())));
+            }
+            invokeAll(scans);
+
+            Map<String, Method> methods = new HashMap<>(names.size() * 2);
+            releaseMethodService
+                .resolveOrCreate(releaseId, names)
+                .forEach((name, id) -> methods.put(name, new Method().id(id).name(name)));
+
+            List<Callable<long[]>> loads = new ArrayList<>(files.size());
+            for (CsvFile file : files) {
+                loads.add(() -> {
+                    long[] counts = load(file, methods, scope, monitoringType);
+                    imported.incrementAndGet();
+                    return counts;
+                });
+            }
+            long received = 0;
+            long persisted = 0;
+            for (long[] counts : invokeAll(loads)) {
+                received += counts[0];
+                persisted += counts[1];
+            }
+            long durationNanos = System.nanoTime() - start;
+            consumptionImportMetersService.trackImportCompleted(persisted, durationNanos);
+            log.info("Imported {} files for Release {}: {} rows persisted", files.size(), releaseId, persisted);
+            return new IngestionReportDTO(received, persisted, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        } finally {
+            consumptionImportMetersService.trackFilesAborted(files.size() - imported.get());
+        }
+    }
+
+    private long[] load(CsvFile file, Map<String, Method> methods, Scope scope, MonitoringType monitoringType) throws IOException {
+        List<Consumption> chunk = new ArrayList<>(chunkSize);
+        long[] counts = new long[2];
+        counts[0] =
+            forEachLine(
+                file,
+                line -> {
+                    chunk.add(
+                        new Consumption()
+                            .method(methods.get(line.getMethodName()))
+                            .value(line.getValue())
+                            .timestamp(line.getTimestamp())
+                            .scope(scope)
+                            .monitoringType(monitoringType)
+                    );
+                    if (chunk.size() == chunkSize) {
+                        counts[1] += flush(chunk);
+                    }
+                }
+            );
+        counts[1] += flush(chunk);
+        consumptionImportMetersService.trackFileImported();
+        log.debug("Imported {} rows from {}", counts[1], file.name);
+        return counts;
+    }
+
+    private long flush(List<Consumption> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        long persisted = consumptionIngestionService.saveAll(chunk).getPersisted();
+        consumptionImportMetersService.trackRowsImported(persisted);
+        chunk.clear();
+        return persisted;
+    }
+
+    /**
+     * Parse every line of a file, skipping a header line.
+     *
+     * @return the number of lines parsed.
+     * @throws InvalidIngestionRecordException if a line other than the first cannot be parsed.
+     */
+    private long forEachLine(CsvFile file, Consumer<JoularCsvLine> action) throws IOException {
+        long parsedLines = 0;
+        long lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.opener.open(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JoularCsvLine parsed;
+                try {
+                    parsed = JoularCsvLine.parse(line);
+                } catch (IllegalArgumentException e) {
+                    if (lineNumber > 1) {
+                        throw new InvalidIngestionRecordException(file.name + ": " + e.getMessage(), lineNumber, 0, e);
+                    }
+                    continue;
+                }
+                action.accept(parsed);
+                parsedLines++;
+            }
+        }
+        return parsedLines;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    private static boolean isCsv(String name) {
+        return name.toLowerCase(Locale.ROOT).endsWith(CSV_EXTENSION);
+    }
+
+    private interface InputStreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private static final class CsvFile {
+
+        private final String name;
+
+        private final InputStreamOpener opener;
+
+        private CsvFile(String name, InputStreamOpener opener) {
+            this.name = name;
+            this.opener = opener;
+        }
+    }
+}
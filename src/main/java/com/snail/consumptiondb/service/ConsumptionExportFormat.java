@@ -0,0 +1,26 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Formats of a consumption export.
+ */
+public enum ConsumptionExportFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String mediaType;
+
+    private final String extension;
+
+    ConsumptionExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,144 @@
+package com.snail.consumptiondb.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snail.consumptiondb.repository.ConsumptionExportRow;
+import com.snail.consumptiondb.repository.ConsumptionFilter;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service exporting consumptions as CSV or newline-delimited JSON, in constant memory.
+ * <p>
+ * Rows are read as scalar projections streamed one at a time by the driver, so that neither the driver nor the
+ * persistence context ever holds more than a few of them, and written to the output as they come.
+ */
+@Service
+public class ConsumptionExportService {
+
+    static final String CSV_HEADER = "id,value,scope,monitoring_type,timestamp,method_id";
+
+    private static final int CLEAR_INTERVAL = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionExportService.class);
+
+    private final ConsumptionRepository consumptionRepository;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    public ConsumptionExportService(ConsumptionRepository consumptionRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.consumptionRepository = consumptionRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Export the consumptions matching a filter, in {@code (timestamp, id)} order.
+     *
+     * @param filter the filters.
+     * @param format the format of the export.
+     * @param out the output, left open.
+     * @return the number of exported consumptions.
+     * @throws IOException if the output cannot be written.
+     */
+    @Transactional(readOnly = true)
+    public long export(ConsumptionFilter filter, ConsumptionExportFormat format, OutputStream out) throws IOException {
+        log.debug("Request to export Consumptions as {}", format);
+        entityManager.unwrap(Session.class).setHibernateFlushMode(FlushMode.MANUAL);
+        try (Stream<ConsumptionExportRow> rows = consumptionRepository.streamAll(filter)) {
+            long exported = format == ConsumptionExportFormat.CSV ? writeCsv(rows.iterator(), out) : writeNdjson(rows.iterator(), out);
+            log.debug("Exported {} Consumptions as {}", exported, format);
+            return exported;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long writeCsv(Iterator<ConsumptionExportRow> rows, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long count = 0;
+        while (rows.hasNext()) {
+            ConsumptionExportRow row = rows.next();
+            writer.write(String.valueOf(row.getId()));
+            writer.write(',');
+            writeCsvField(writer, row.getValue());
+            writer.write(',');
+            writeCsvField(writer, row.getScope());
+            writer.write(',');
+            writeCsvField(writer, row.getMonitoringType());
+            writer.write(',');
+            writeCsvField(writer, row.getTimestamp());
+            writer.write(',');
+            writeCsvField(writer, row.getMethodId());
+            writer.write('\n');
+            clearPeriodically(++count);
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static void writeCsvField(Writer writer, Object field) throws IOException {
+        if (field != null) {
+            writer.write(field.toString());
+        }
+    }
+
+    private long writeNdjson(Iterator<ConsumptionExportRow> rows, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            while (rows.hasNext()) {
+                ConsumptionExportRow row = rows.next();
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.getId());
+                writeNumberField(generator, "value", row.getValue());
+                generator.writeStringField("scope", row.getScope() == null ? null : row.getScope().name());
+                generator.writeStringField("monitoringType", row.getMonitoringType() == null ? null : row.getMonitoringType().name());
+                generator.writeStringField("timestamp", row.getTimestamp() == null ? null : row.getTimestamp().toString());
+                writeNumberField(generator, "methodId", row.getMethodId());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                clearPeriodically(++count);
+            }
+        }
+        return count;
+    }
+
+    private static void writeNumberField(JsonGenerator generator, String name, Long value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    /**
+     * Scalar rows are not managed, but anything loaded on the side must not pile up in the session either.
+     */
+    private void clearPeriodically(long count) {
+        if (count % CLEAR_INTERVAL == 0) {
+            entityManager.clear();
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository.SampleHandler;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An in-process copy of the most recent samples, per method, in memory-mapped segment files on local disk.
+ * <p>
+ * Segments are split into pages of {@value #PAGE_SAMPLES} samples laid out as {@code timestamp:int64 value:int64}, each
+ * page holding a single series, that is a method, scope and monitoring type. The pages of a series are chained in time
+ * order, and the first timestamp of each page is kept on the heap as a sparse index: a time window is found by binary
+ * search and read sequentially, without allocating per sample.
+ * <p>
+ * Samples are appended once committed to the database, so the oldest segment is simply dropped once all of its samples
+ * are older than the retention, or to make room. A method is covered from its first sample appended, and from past its
+ * last dropped sample; its windows starting earlier are left to the database. Series are expected to be appended in
+ * timestamp order: a sample before the last one of its series is not appended, and the method is covered from past the
+ * last sample seen instead. A sample at the same time as the last one of its series is skipped, as the first value
+ * written to the database wins.
+ * <p>
+ * The tier is a cache: segment files left by a previous run are deleted when opening it. This class is thread-safe,
+ * scans sharing a read lock while appends and drops take the write lock.
+ */
+final class ConsumptionHotTier implements Closeable {
+
+    /**
+     * Scope or monitoring type code matching any.
+     */
+    static final int ANY = -1;
+
+    static final int PAGE_SAMPLES = 128;
+
+    private static final int SAMPLE_SIZE = Long.BYTES * 2;
+
+    static final int PAGE_SIZE = PAGE_SAMPLES * SAMPLE_SIZE;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private final Map<Long, MethodSamples> methods = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long nextSegment;
+
+    private long coveredFromMicros;
+
+    private boolean closed;
+
+    private ConsumptionHotTier(Path directory, int segmentSize, int maxSegments, long coveredFromMicros) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.coveredFromMicros = coveredFromMicros;
+    }
+
+    /**
+     * Open an empty hot tier in a directory, deleting the segment files left by a previous run.
+     *
+     * @param directory the directory of the segment files, created if needed.
+     * @param segmentSize the size of a segment file, in bytes, a multiple of {@link #PAGE_SIZE}.
+     * @param maxSize the maximum size of the tier on disk, in bytes.
+     * @param nowMicros the current time in microseconds since the epoch, before which no method is covered.
+     * @return the hot tier.
+     * @throws IOException if the directory cannot be listed or created.
+     */
+    static ConsumptionHotTier open(Path directory, long segmentSize, long maxSize, long nowMicros) throws IOException {
+        if (segmentSize < PAGE_SIZE || segmentSize > Integer.MAX_VALUE || segmentSize % PAGE_SIZE != 0) {
+            throw new IllegalArgumentException("Invalid hot tier segment size: " + segmentSize);
+        }
+        int maxSegments = (int) Math.max(2, maxSize / segmentSize);
+        ConsumptionHotTier hotTier = new ConsumptionHotTier(directory, (int) segmentSize, maxSegments, nowMicros);
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files =
+                listing
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+        return hotTier;
+    }
+
+    /**
+     * Append a sample committed to the database.
+     *
+     * @throws IllegalStateException if the tier is closed.
+     */
+    void append(long methodId, long timestampMicros, int scope, int monitoringType, long value) {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The hot tier is closed");
+            }
+            MethodSamples method = methods.computeIfAbsent(
+                methodId,
+                id -> new MethodSamples(Math.max(coveredFromMicros, timestampMicros))
+            );
+            Series series = method.series(scope << 8 | monitoringType);
+            if (timestampMicros <= series.lastTimestampMicros) {
+                if (timestampMicros < series.lastTimestampMicros) {
+                    method.restart();
+                }
+                return;
+            }
+            if (timestampMicros < method.coveredFromMicros) {
+                return;
+            }
+            if (series.pageCount() == 0 || series.lastPageSamples == PAGE_SAMPLES) {
+                allocatePage(series);
+            }
+            Segment segment = series.segments[series.pageTail - 1];
+            int position = series.offsets[series.pageTail - 1] + series.lastPageSamples * SAMPLE_SIZE;
+            segment.buffer.putLong(position, timestampMicros);
+            segment.buffer.putLong(position + Long.BYTES, value);
+            segment.maxTimestampMicros = Math.max(segment.maxTimestampMicros, timestampMicros);
+            if (series.lastPageSamples == 0) {
+                series.firstTimestamps[series.pageTail - 1] = timestampMicros;
+            }
+            series.lastPageSamples++;
+            series.lastTimestampMicros = timestampMicros;
+            method.maxTimestampMicros = Math.max(method.maxTimestampMicros, timestampMicros);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Scan the samples of a method within a time window, in timestamp order, provided the tier covers the window.
+     *
+     * @param methodId the method of the samples.
+     * @param scope the scope code of the samples, or {@link #ANY}.
+     * @param monitoringType the monitoring type code of the samples, or {@link #ANY}.
+     * @param fromMicros the inclusive start of the window, in microseconds since the epoch.
+     * @param toMicros the exclusive end of the window, in microseconds since the epoch.
+     * @param handler the handler of each sample.
+     * @return {@code false} if the tier does not cover the window, the handler then not being called.
+     */
+    boolean scan(long methodId, int scope, int monitoringType, long fromMicros, long toMicros, SampleHandler handler) {
+        lock.readLock().lock();
+        try {
+            MethodSamples method = closed ? null : methods.get(methodId);
+            if (method == null || fromMicros < method.coveredFromMicros) {
+                return false;
+            }
+            Series[] matching = method.series
+                .values()
+                .stream()
+                .filter(series -> scope == ANY || series.tag >>> 8 == scope)
+                .filter(series -> monitoringType == ANY || (series.tag & 0xFF) == monitoringType)
+                .filter(series -> series.pageCount() > 0)
+                .toArray(Series[]::new);
+            // Merge the series in timestamp order, then scope and monitoring type order like the database
+            Arrays.sort(matching, (left, right) -> Integer.compare(left.tag, right.tag));
+            int[] pages = new int[matching.length];
+            int[] samples = new int[matching.length];
+            for (int i = 0; i < matching.length; i++) {
+                pages[i] = matching[i].seek(fromMicros);
+                samples[i] = matching[i].seekInPage(pages[i], fromMicros);
+                if (samples[i] == matching[i].samplesIn(pages[i])) {
+                    pages[i]++;
+                    samples[i] = 0;
+                }
+            }
+            while (true) {
+                int next = -1;
+                long nextTimestamp = toMicros;
+                for (int i = 0; i < matching.length; i++) {
+                    if (pages[i] < matching[i].pageTail) {
+                        long timestamp = matching[i].timestampAt(pages[i], samples[i]);
+                        if (timestamp < nextTimestamp) {
+                            next = i;
+                            nextTimestamp = timestamp;
+                        }
+                    }
+                }
+                if (next == -1) {
+                    return true;
+                }
+                Series series = matching[next];
+                handler.accept(nextTimestamp, series.valueAt(pages[next], samples[next]));
+                if (++samples[next] == series.samplesIn(pages[next])) {
+                    pages[next]++;
+                    samples[next] = 0;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stop covering every method until their next samples, after samples were changed behind the tier's back.
+     *
+     * @param nowMicros the current time in microseconds since the epoch, before which no method is covered anymore.
+     */
+    void invalidate(long nowMicros) {
+        lock.writeLock().lock();
+        try {
+            methods.clear();
+            coveredFromMicros = Math.max(coveredFromMicros, nowMicros);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the oldest segments whose samples are all before an instant.
+     *
+     * @param horizonMicros the instant, in microseconds since the epoch.
+     * @return the number of segments dropped.
+     */
+    int dropBefore(long horizonMicros) {
+        lock.writeLock().lock();
+        try {
+            int dropped = 0;
+            while (!segments.isEmpty() && segments.peekFirst().maxTimestampMicros < horizonMicros) {
+                dropOldestSegment();
+                dropped++;
+            }
+            return dropped;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            methods.clear();
+            while (!segments.isEmpty()) {
+                delete(segments.pollFirst());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void allocatePage(Series series) {
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.nextPage == segmentSize / PAGE_SIZE) {
+            if (segments.size() == maxSegments) {
+                dropOldestSegment();
+            }
+            segment = createSegment();
+            segments.addLast(segment);
+        }
+        series.addPage(segment, segment.nextPage * PAGE_SIZE);
+        segment.nextPage++;
+    }
+
+    /**
+     * Drop the oldest segment, along with the pages at the head of the series which are in it.
+     */
+    private void dropOldestSegment() {
+        Segment segment = segments.pollFirst();
+        for (MethodSamples method : methods.values()) {
+            for (Series series : method.series.values()) {
+                while (series.pageCount() > 0 && series.segments[series.pageHead] == segment) {
+                    long last = series.timestampAt(series.pageHead, series.samplesIn(series.pageHead) - 1);
+                    method.coveredFromMicros = Math.max(method.coveredFromMicros, last + 1);
+                    series.dropHeadPage();
+                }
+            }
+        }
+        delete(segment);
+    }
+
+    private Segment createSegment() {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+        try (
+            FileChannel channel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Segment {
+
+        private final Path file;
+
+        private final MappedByteBuffer buffer;
+
+        private int nextPage;
+
+        private long maxTimestampMicros = Long.MIN_VALUE;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class MethodSamples {
+
+        private final Map<Integer, Series> series = new HashMap<>();
+
+        private long coveredFromMicros;
+
+        private long maxTimestampMicros = Long.MIN_VALUE;
+
+        private MethodSamples(long coveredFromMicros) {
+            this.coveredFromMicros = coveredFromMicros;
+        }
+
+        private Series series(int tag) {
+            return series.computeIfAbsent(tag, Series::new);
+        }
+
+        /**
+         * Drop the samples of the method, covering it again from past the last one.
+         */
+        private void restart() {
+            series.clear();
+            coveredFromMicros = Math.max(coveredFromMicros, maxTimestampMicros + 1);
+        }
+    }
+
+    /**
+     * The chain of pages of a series, with the first timestamp of each page as a sparse index.
+     */
+    private static final class Series {
+
+        private final int tag;
+
+        private Segment[] segments = new Segment[4];
+
+        private int[] offsets = new int[4];
+
+        private long[] firstTimestamps = new long[4];
+
+        private int pageHead;
+
+        private int pageTail;
+
+        private int lastPageSamples;
+
+        private long lastTimestampMicros = Long.MIN_VALUE;
+
+        private Series(int tag) {
+            this.tag = tag;
+        }
+
+        private int pageCount() {
+            return pageTail - pageHead;
+        }
+
+        private int samplesIn(int page) {
+            return page == pageTail - 1 ? lastPageSamples : PAGE_SAMPLES;
+        }
+
+        private long timestampAt(int page, int sample) {
+            return segments[page].buffer.getLong(offsets[page] + sample * SAMPLE_SIZE);
+        }
+
+        private long valueAt(int page, int sample) {
+            return segments[page].buffer.getLong(offsets[page] + sample * SAMPLE_SIZE + Long.BYTES);
+        }
+
+        /**
+         * @return the last page starting at or before an instant, or the first page.
+         */
+        private int seek(long timestampMicros) {
+            // Timestamps are strictly increasing within a series
+            int index = Arrays.binarySearch(firstTimestamps, pageHead, pageTail, timestampMicros);
+            return Math.max(pageHead, index < 0 ? -index - 2 : index);
+        }
+
+        /**
+         * @return the first sample of a page at or after an instant, or the number of samples of the page.
+         */
+        private int seekInPage(int page, long timestampMicros) {
+            int low = 0;
+            int high = samplesIn(page);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (timestampAt(page, middle) < timestampMicros) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void addPage(Segment segment, int offset) {
+            if (pageTail == segments.length) {
+                if (pageHead > segments.length / 2) {
+                    compact();
+                } else {
+                    segments = Arrays.copyOf(segments, segments.length * 2);
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    firstTimestamps = Arrays.copyOf(firstTimestamps, firstTimestamps.length * 2);
+                }
+            }
+            segments[pageTail] = segment;
+            offsets[pageTail] = offset;
+            pageTail++;
+            lastPageSamples = 0;
+        }
+
+        private void dropHeadPage() {
+            segments[pageHead] = null;
+            pageHead++;
+        }
+
+        private void compact() {
+            int count = pageCount();
+            System.arraycopy(segments, pageHead, segments, 0, count);
+            System.arraycopy(offsets, pageHead, offsets, 0, count);
+            System.arraycopy(firstTimestamps, pageHead, firstTimestamps, 0, count);
+            Arrays.fill(segments, count, segments.length, null);
+            pageHead = 0;
+            pageTail = count;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository.SampleHandler;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Service keeping the recent samples written through this instance in a {@link ConsumptionHotTier}, to serve the
+ * series of the last {@code application.hot-tier.retention} without querying the database.
+ * <p>
+ * Samples are appended as their transaction commits, only those actually inserted: the duplicates skipped by the
+ * upserts on the natural key never reach it. The tier only sees the writes of this instance: it is disabled
+ * unless {@code application.hot-tier.enabled}, for instances taking all the writes of the methods they chart. Single
+ * consumptions updated or deleted through the API invalidate the whole tier.
+ */
+@Service
+public class ConsumptionHotTierService {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionHotTierService.class);
+
+    private final ApplicationProperties.HotTier properties;
+
+    private ConsumptionHotTier hotTier;
+
+    public ConsumptionHotTierService(ApplicationProperties applicationProperties) {
+        this.properties = applicationProperties.getHotTier();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        hotTier =
+            ConsumptionHotTier.open(
+                Paths.get(properties.getDirectory()),
+                properties.getSegmentSize().toBytes(),
+                properties.getMaxSize().toBytes(),
+                ConsumptionSampleRepository.toMicros(Instant.now())
+            );
+        log.info("Opened the hot tier in {}", properties.getDirectory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hotTier != null) {
+            hotTier.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return hotTier != null;
+    }
+
+    /**
+     * Append consumptions to the hot tier once their transaction commits, in timestamp order.
+     *
+     * @param consumptions the consumptions written.
+     */
+    public void append(List<Consumption> consumptions) {
+        if (hotTier == null) {
+            return;
+        }
+        List<Consumption> samples = consumptions
+            .stream()
+            .filter(consumption -> consumption.getTimestamp() != null && consumption.getValue() != null)
+            .sorted(Comparator.comparing(Consumption::getTimestamp))
+            .collect(Collectors.toList());
+        afterCommit(() -> {
+            for (Consumption consumption : samples) {
+                hotTier.append(
+                    consumption.getMethod() == null ? ConsumptionSampleRepository.NO_METHOD : consumption.getMethod().getId(),
+                    ConsumptionSampleRepository.toMicros(consumption.getTimestamp()),
+                    ConsumptionSampleRepository.code(consumption.getScope()),
+                    ConsumptionSampleRepository.code(consumption.getMonitoringType()),
+                    consumption.getValue()
+                );
+            }
+        });
+    }
+
+    /**
+     * Append a block of the binary ingestion format to the hot tier once its transaction commits, in block order.
+     * <p>
+     * The columns of the block are copied right away, as it is reused for the next one.
+     *
+     * @param block the block written.
+     */
+    void append(ConsumptionBlock block) {
+        if (hotTier == null || block.size() == 0) {
+            return;
+        }
+        int size = block.size();
+        long[] methodIds = new long[size];
+        long[] timestamps = new long[size];
+        long[] values = new long[size];
+        for (int sample = 0; sample < size; sample++) {
+            long methodId = block.getMethodId(sample);
+            methodIds[sample] = methodId == ConsumptionBlock.NO_METHOD ? ConsumptionSampleRepository.NO_METHOD : methodId;
+            timestamps[sample] = block.getTimestampMicros(sample);
+            values[sample] = block.getValue(sample);
+        }
+        int scope = ConsumptionSampleRepository.code(block.getScope());
+        int monitoringType = ConsumptionSampleRepository.code(block.getMonitoringType());
+        afterCommit(() -> {
+            for (int sample = 0; sample < size; sample++) {
+                hotTier.append(methodIds[sample], timestamps[sample], scope, monitoringType, values[sample]);
+            }
+        });
+    }
+
+    /**
+     * Stop serving the samples written so far, once the current transaction commits, after some of them were changed.
+     */
+    public void invalidate() {
+        if (hotTier == null) {
+            return;
+        }
+        afterCommit(() -> hotTier.invalidate(ConsumptionSampleRepository.toMicros(Instant.now())));
+    }
+
+    /**
+     * Scan the samples of a method within a time window from the hot tier, provided it covers the window.
+     *
+     * @param methodId the method of the samples.
+     * @param scope the optional scope of the samples.
+     * @param monitoringType the optional monitoring type of the samples.
+     * @param fromMicros the inclusive start of the window, in microseconds since the epoch.
+     * @param toMicros the exclusive end of the window, in microseconds since the epoch.
+     * @param handler the handler of each sample.
+     * @return {@code false} if the hot tier is disabled or does not cover the window, the handler then not being called.
+     */
+    public boolean scan(long methodId, Scope scope, MonitoringType monitoringType, long fromMicros, long toMicros, SampleHandler handler) {
+        return (
+            hotTier != null &&
+            hotTier.scan(
+                methodId,
+                scope == null ? ConsumptionHotTier.ANY : ConsumptionSampleRepository.code(scope),
+                monitoringType == null ? ConsumptionHotTier.ANY : ConsumptionSampleRepository.code(monitoringType),
+                fromMicros,
+                toMicros,
+                handler
+            )
+        );
+    }
+
+    /**
+     * Drop the segments whose samples are all older than {@code application.hot-tier.retention}, the database holding
+     * them already.
+     * <p>
+     * This is scheduled to get fired {@code application.hot-tier.age-out-delay} after the previous drop.
+     */
+    @Scheduled(fixedDelayString = "${application.hot-tier.age-out-delay:PT1M}")
+    public void ageOut() {
+        if (hotTier == null) {
+            return;
+        }
+        int dropped = hotTier.dropBefore(ConsumptionSampleRepository.toMicros(Instant.now().minus(properties.getRetention())));
+        if (dropped > 0) {
+            log.debug("Dropped {} hot tier segments, {} left", dropped, hotTier.segmentCount());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                }
+            );
+        } else {
+            action.run();
+        }
+    }
+}
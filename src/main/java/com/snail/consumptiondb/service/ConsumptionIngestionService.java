@@ -0,0 +1,459 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Measure;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.repository.ConsumptionBulkLoadRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import com.snail.consumptiondb.repository.MeasureRepository;
+import com.snail.consumptiondb.repository.RetentionSeals;
+import com.snail.consumptiondb.repository.SpoolCheckpointRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.io.ByteArrayInputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service implementing the bulk write path for {@link Consumption} and their {@link Measure}.
+ * <p>
+ * Rows are persisted in chunks of {@code application.ingestion.batch-size}: each chunk is sent as one JDBC batch
+ * (rewritten into a multi-row INSERT by the MySQL driver), so memory does not grow with the size of the request.
+ * <p>
+ * Consumptions are upserted on their natural key (method, timestamp, scope, monitoring type), a missing method,
+ * scope or monitoring type being part of the key too: a retried upload is a no-op instead of a duplicate row, the
+ * first value written wins, and the persisted count of the report excludes it.
+ * <p>
+ * Every write marks the minutes it touches as dirty for the rollups, see {@link ConsumptionRollupService}. Consumptions
+ * sealed by the retention purge of their policy, see {@link ConsumptionRetentionService#lockExpired}, are rejected:
+ * their rollups are no longer recomputed from the few consumptions left. The watermarks of the purges stay locked
+ * until the write commits.
+ */
+@Service
+@Transactional
+public class ConsumptionIngestionService {
+
+    private static final String UPSERT_CONSUMPTION_SQL =
+        "insert into consumption (id, value, scope, monitoring_type, timestamp, method_id) values (?, ?, ?, ?, ?, ?) " +
+        "on duplicate key update id = id";
+
+    // Rewritten batches report no count per row, the rows inserted are those holding the ids assigned to them
+    private static final String FIND_INSERTED_BETWEEN_SQL =
+        "select id from consumption where id between ? and ? and timestamp between ? and ?";
+
+    private static final String FIND_INSERTED_IN_SQL = "select id from consumption where timestamp between ? and ? and id in (";
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionIngestionService.class);
+
+    private final MeasureRepository measureRepository;
+
+    private final SpoolCheckpointRepository spoolCheckpointRepository;
+
+    private final ConsumptionBulkLoadRepository consumptionBulkLoadRepository;
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final ConsumptionHotTierService consumptionHotTierService;
+
+    private final ConsumptionRetentionService consumptionRetentionService;
+
+    private final EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    public ConsumptionIngestionService(
+        MeasureRepository measureRepository,
+        SpoolCheckpointRepository spoolCheckpointRepository,
+        ConsumptionBulkLoadRepository consumptionBulkLoadRepository,
+        ConsumptionRollupRepository consumptionRollupRepository,
+        ConsumptionHotTierService consumptionHotTierService,
+        ConsumptionRetentionService consumptionRetentionService,
+        EntityManager entityManager,
+        JdbcTemplate jdbcTemplate,
+        ApplicationProperties applicationProperties
+    ) {
+        this.measureRepository = measureRepository;
+        this.spoolCheckpointRepository = spoolCheckpointRepository;
+        this.consumptionBulkLoadRepository = consumptionBulkLoadRepository;
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.consumptionHotTierService = consumptionHotTierService;
+        this.consumptionRetentionService = consumptionRetentionService;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = applicationProperties.getIngestion().getBatchSize();
+    }
+
+    /**
+     * Upsert a list of new consumptions in a single transaction, using JDBC batching.
+     * <p>
+     * Ids are drawn from the entity's own generator. The consumptions already stored under the same natural key are
+     * left untouched, their duplicates are left without an id, as are the consumptions rejected.
+     *
+     * @param consumptions the consumptions to create, none of them may have an id.
+     * @return the ingestion report, its persisted count excluding the duplicates and the consumptions rejected.
+     */
+    public IngestionReportDTO saveAll(List<Consumption> consumptions) {
+        return saveAll(consumptions, new ArrayList<>());
+    }
+
+    /**
+     * Upsert a list of new consumptions in a single transaction, using JDBC batching, see {@link #saveAll(List)}.
+     *
+     * @param consumptions the consumptions to create, none of them may have an id.
+     * @param rejected collects the consumptions rejected, to tell them apart from the duplicates.
+     * @return the ingestion report, its persisted count excluding the duplicates and the consumptions rejected.
+     */
+    public IngestionReportDTO saveAll(List<Consumption> consumptions, Collection<Consumption> rejected) {
+        log.debug("Request to save a batch of {} Consumptions", consumptions.size());
+        long start = System.nanoTime();
+        int received = consumptions.size();
+        consumptions = writable(consumptions, rejected);
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator idGenerator = session
+            .getFactory()
+            .getMetamodel()
+            .entityPersister(Consumption.class)
+            .getIdentifierGenerator();
+        for (Consumption consumption : consumptions) {
+            consumption.setId((Long) idGenerator.generate(session, consumption));
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC));
+        jdbcTemplate.batchUpdate(
+            UPSERT_CONSUMPTION_SQL,
+            consumptions,
+            batchSize,
+            (statement, consumption) -> {
+                statement.setLong(1, consumption.getId());
+                statement.setObject(2, consumption.getValue(), Types.BIGINT);
+                statement.setString(3, consumption.getScope() == null ? null : consumption.getScope().name());
+                statement.setString(4, consumption.getMonitoringType() == null ? null : consumption.getMonitoringType().name());
+                statement.setTimestamp(5, consumption.getTimestamp() == null ? null : Timestamp.from(consumption.getTimestamp()), utc);
+                statement.setObject(6, consumption.getMethod() == null ? null : consumption.getMethod().getId(), Types.BIGINT);
+            }
+        );
+        List<Consumption> inserted = retainInserted(consumptions, findInserted(consumptions, utc));
+        markDirty(inserted);
+        consumptionHotTierService.append(inserted);
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestionReportDTO(received, inserted.size(), received - consumptions.size(), durationMillis);
+    }
+
+    /**
+     * Upsert a block of the binary ingestion format in a single transaction, straight from its columns.
+     * <p>
+     * Ids are reserved in one block instead of being drawn one by one, and no entity is created. The samples rejected
+     * are dropped from the block, and so are the duplicates once it is written.
+     *
+     * @param block the decoded block.
+     * @return the ingestion report, its persisted count excluding the duplicates and the samples rejected.
+     */
+    public IngestionReportDTO saveBlock(ConsumptionBlock block) {
+        log.debug("Request to save a block of {} Consumptions", block.size());
+        long start = System.nanoTime();
+        int received = block.size();
+        int rejected = writable(block);
+        if (block.size() == 0) {
+            return new IngestionReportDTO(received, 0, rejected, 0);
+        }
+        long firstId = consumptionBulkLoadRepository.reserveIds(block.size());
+        String scope = block.getScope().name();
+        String monitoringType = block.getMonitoringType().name();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC));
+        jdbcTemplate.batchUpdate(
+            UPSERT_CONSUMPTION_SQL,
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int sample) throws SQLException {
+                    Timestamp timestamp = toTimestamp(block.getTimestampMicros(sample));
+                    long methodId = block.getMethodId(sample);
+                    statement.setLong(1, firstId + sample);
+                    statement.setLong(2, block.getValue(sample));
+                    statement.setString(3, scope);
+                    statement.setString(4, monitoringType);
+                    statement.setTimestamp(5, timestamp, utc);
+                    if (methodId == ConsumptionBlock.NO_METHOD) {
+                        statement.setNull(6, Types.BIGINT);
+                    } else {
+                        statement.setLong(6, methodId);
+                    }
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return block.size();
+                }
+            }
+        );
+        block.retainSamples(findInserted(firstId, block, utc));
+        consumptionRollupRepository.markDirtyMinutes(minutesOf(block));
+        consumptionHotTierService.append(block);
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestionReportDTO(received, block.size(), rejected, durationMillis);
+    }
+
+    /**
+     * Persist consumptions replayed from a local spool, recording the spool checkpoint in the same transaction.
+     *
+     * @param spoolId the id of the spool.
+     * @param consumptions the consumptions to create.
+     * @param lastSequence the spool sequence of the last consumption.
+     * @return the ingestion report.
+     */
+    public IngestionReportDTO saveAllSpooled(String spoolId, List<Consumption> consumptions, long lastSequence) {
+        log.debug("Request to save {} Consumptions replayed from spool {} up to {}", consumptions.size(), spoolId, lastSequence);
+        IngestionReportDTO report = saveAll(consumptions);
+        spoolCheckpointRepository.saveCommittedSequence(spoolId, lastSequence);
+        return report;
+    }
+
+    /**
+     * Load a list of new consumptions in a single transaction, with one {@code LOAD DATA LOCAL INFILE} statement.
+     * <p>
+     * This bypasses Hibernate entirely: ids are reserved in one block and the rows are streamed from memory.
+     * The consumptions already stored under the same natural key are left untouched, their duplicates are left without
+     * an id, as are the consumptions rejected.
+     *
+     * @param consumptions the consumptions to create, none of them may have an id.
+     * @return the ingestion report, its persisted count excluding the duplicates and the consumptions rejected.
+     */
+    public IngestionReportDTO loadAll(List<Consumption> consumptions) {
+        log.debug("Request to bulk load {} Consumptions", consumptions.size());
+        long start = System.nanoTime();
+        int received = consumptions.size();
+        consumptions = writable(consumptions, new ArrayList<>());
+        if (consumptions.isEmpty()) {
+            return new IngestionReportDTO(received, 0, received, 0);
+        }
+        long id = consumptionBulkLoadRepository.reserveIds(consumptions.size());
+        for (Consumption consumption : consumptions) {
+            consumption.setId(id++);
+        }
+        long loaded = consumptionBulkLoadRepository.load(new ByteArrayInputStream(ConsumptionLoadDataEncoder.encode(consumptions)));
+        List<Consumption> inserted = loaded == consumptions.size()
+            ? consumptions
+            : retainInserted(consumptions, findInserted(consumptions, Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC))));
+        markDirty(inserted);
+        consumptionHotTierService.append(inserted);
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestionReportDTO(received, inserted.size(), received - consumptions.size(), durationMillis);
+    }
+
+    /**
+     * Persist a list of new measures in a single transaction.
+     * <p>
+     * Measures have no natural key, each of them is inserted as a new row.
+     *
+     * @param measures the measures to create, none of them may have an id.
+     * @return the ingestion report, its persisted count being the number of rows inserted.
+     */
+    public IngestionReportDTO saveAllMeasures(List<Measure> measures) {
+        log.debug("Request to save a batch of {} Measures", measures.size());
+        return persistInBatches(measures, measureRepository);
+    }
+
+    /**
+     * @return the ids of the consumptions inserted, the others being duplicates whose id was not used.
+     */
+    private Set<Long> findInserted(List<Consumption> consumptions, Calendar utc) {
+        Set<Long> inserted = new HashSet<>();
+        if (consumptions.isEmpty()) {
+            return inserted;
+        }
+        Timestamp min = Timestamp.from(consumptions.stream().map(Consumption::getTimestamp).min(Instant::compareTo).orElseThrow());
+        Timestamp max = Timestamp.from(consumptions.stream().map(Consumption::getTimestamp).max(Instant::compareTo).orElseThrow());
+        for (int from = 0; from < consumptions.size(); from += batchSize) {
+            List<Consumption> chunk = consumptions.subList(from, Math.min(from + batchSize, consumptions.size()));
+            String sql = FIND_INSERTED_IN_SQL + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbcTemplate.query(
+                sql,
+                statement -> {
+                    statement.setTimestamp(1, min, utc);
+                    statement.setTimestamp(2, max, utc);
+                    for (int index = 0; index < chunk.size(); index++) {
+                        statement.setLong(index + 3, chunk.get(index).getId());
+                    }
+                },
+                (RowCallbackHandler) resultSet -> inserted.add(resultSet.getLong(1))
+            );
+        }
+        return inserted;
+    }
+
+    /**
+     * @return the consumptions inserted, the id of the others being cleared.
+     */
+    private static List<Consumption> retainInserted(List<Consumption> consumptions, Set<Long> insertedIds) {
+        List<Consumption> inserted = new ArrayList<>(insertedIds.size());
+        for (Consumption consumption : consumptions) {
+            if (insertedIds.contains(consumption.getId())) {
+                inserted.add(consumption);
+            } else {
+                consumption.setId(null);
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * @return whether each sample of a block was inserted, the others being duplicates whose id was not used.
+     */
+    private boolean[] findInserted(long firstId, ConsumptionBlock block, Calendar utc) {
+        long minMicros = Long.MAX_VALUE;
+        long maxMicros = Long.MIN_VALUE;
+        for (int sample = 0; sample < block.size(); sample++) {
+            minMicros = Math.min(minMicros, block.getTimestampMicros(sample));
+            maxMicros = Math.max(maxMicros, block.getTimestampMicros(sample));
+        }
+        Timestamp min = toTimestamp(minMicros);
+        Timestamp max = toTimestamp(maxMicros);
+        boolean[] inserted = new boolean[block.size()];
+        jdbcTemplate.query(
+            FIND_INSERTED_BETWEEN_SQL,
+            statement -> {
+                statement.setLong(1, firstId);
+                statement.setLong(2, firstId + block.size() - 1);
+                statement.setTimestamp(3, min, utc);
+                statement.setTimestamp(4, max, utc);
+            },
+            (RowCallbackHandler) resultSet -> inserted[(int) (resultSet.getLong(1) - firstId)] = true
+        );
+        return inserted;
+    }
+
+    private static Timestamp toTimestamp(long timestampMicros) {
+        Timestamp timestamp = new Timestamp(Math.floorDiv(timestampMicros, 1_000L));
+        timestamp.setNanos((int) Math.floorMod(timestampMicros, 1_000_000L) * 1_000);
+        return timestamp;
+    }
+
+    /**
+     * @return the consumptions not sealed by the retention purge, the others being added to {@code rejected}.
+     */
+    private List<Consumption> writable(List<Consumption> consumptions, Collection<Consumption> rejected) {
+        Predicate<Consumption> expired = consumptionRetentionService.lockExpired(consumptions);
+        List<Consumption> writable = new ArrayList<>(consumptions.size());
+        for (Consumption consumption : consumptions) {
+            if (expired.test(consumption)) {
+                rejected.add(consumption);
+            } else {
+                writable.add(consumption);
+            }
+        }
+        if (writable.size() < consumptions.size()) {
+            log.debug("Rejected {} Consumptions sealed by the retention purge", consumptions.size() - writable.size());
+        }
+        return writable;
+    }
+
+    /**
+     * Drop the samples of a block sealed by the retention purge.
+     *
+     * @return the number of samples dropped.
+     */
+    private int writable(ConsumptionBlock block) {
+        RetentionSeals seals = consumptionRetentionService.lockSeals();
+        if (seals.isEmpty()) {
+            return 0;
+        }
+        long latestMicros = ConsumptionSampleRepository.toMicros(seals.getLatest());
+        List<Integer> samples = new ArrayList<>();
+        List<Consumption> consumptions = new ArrayList<>();
+        for (int sample = 0; sample < block.size(); sample++) {
+            if (block.getTimestampMicros(sample) < latestMicros) {
+                long methodId = block.getMethodId(sample);
+                samples.add(sample);
+                consumptions.add(
+                    new Consumption()
+                        .timestamp(toTimestamp(block.getTimestampMicros(sample)).toInstant())
+                        .scope(block.getScope())
+                        .monitoringType(block.getMonitoringType())
+                        .method(methodId == ConsumptionBlock.NO_METHOD ? null : new Method().id(methodId))
+                );
+            }
+        }
+        if (consumptions.isEmpty()) {
+            return 0;
+        }
+        Predicate<Consumption> expired = consumptionRetentionService.expired(seals, consumptions);
+        boolean[] keep = new boolean[block.size()];
+        Arrays.fill(keep, true);
+        for (int i = 0; i < samples.size(); i++) {
+            keep[samples.get(i)] = !expired.test(consumptions.get(i));
+        }
+        return block.retainSamples(keep);
+    }
+
+    private void markDirty(List<Consumption> consumptions) {
+        consumptionRollupRepository.markDirty(consumptions.stream().map(Consumption::getTimestamp).collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the minutes of the samples of a block, without allocating for samples of the same minute in a row.
+     */
+    private static Set<Instant> minutesOf(ConsumptionBlock block) {
+        Set<Instant> minutes = new TreeSet<>();
+        long previousMinute = Long.MIN_VALUE;
+        for (int sample = 0; sample < block.size(); sample++) {
+            long minute = Math.floorDiv(block.getTimestampMicros(sample), 60_000_000L);
+            if (minute != previousMinute) {
+                minutes.add(Instant.ofEpochSecond(minute * 60));
+                previousMinute = minute;
+            }
+        }
+        return minutes;
+    }
+
+    private <T> IngestionReportDTO persistInBatches(List<T> entities, JpaRepository<T, Long> repository) {
+        long start = System.nanoTime();
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previousCacheMode = session.getCacheMode();
+        // Freshly ingested samples are rarely read back by id, do not fill the second-level cache with them
+        session.setCacheMode(CacheMode.IGNORE);
+        session.setJdbcBatchSize(batchSize);
+        try {
+            for (int from = 0; from < entities.size(); from += batchSize) {
+                repository.saveAll(entities.subList(from, Math.min(from + batchSize, entities.size())));
+                entityManager.flush();
+                entityManager.clear();
+            }
+        } finally {
+            session.setCacheMode(previousCacheMode);
+            session.setJdbcBatchSize(null);
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestionReportDTO(entities.size(), entities.size(), durationMillis);
+    }
+}
@@ -0,0 +1,52 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.repository.ConsumptionBulkLoadRepository;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Encodes consumptions into the tab-separated rows expected by {@link ConsumptionBulkLoadRepository#load}, in memory.
+ * <p>
+ * Enum names and numbers never contain a tab, a newline or a backslash, so no field needs escaping.
+ */
+final class ConsumptionLoadDataEncoder {
+
+    static final String NULL = "\\N";
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter
+        .ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS")
+        .withZone(ZoneOffset.UTC);
+
+    private static final int ESTIMATED_ROW_SIZE = 80;
+
+    private ConsumptionLoadDataEncoder() {}
+
+    /**
+     * @param consumptions the consumptions to encode, all of them must have an id.
+     * @return the rows, one per line.
+     */
+    static byte[] encode(List<Consumption> consumptions) {
+        ByteArrayOutputStream rows = new ByteArrayOutputStream(consumptions.size() * ESTIMATED_ROW_SIZE);
+        StringBuilder row = new StringBuilder(ESTIMATED_ROW_SIZE);
+        for (Consumption consumption : consumptions) {
+            row.setLength(0);
+            row.append(consumption.getId()).append('\t');
+            appendOrNull(row, consumption.getValue()).append('\t');
+            appendOrNull(row, consumption.getScope() == null ? null : consumption.getScope().name()).append('\t');
+            appendOrNull(row, consumption.getMonitoringType() == null ? null : consumption.getMonitoringType().name()).append('\t');
+            appendOrNull(row, consumption.getTimestamp() == null ? null : TIMESTAMP_FORMAT.format(consumption.getTimestamp())).append('\t');
+            appendOrNull(row, consumption.getMethod() == null ? null : consumption.getMethod().getId()).append('\n');
+            byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+            rows.write(bytes, 0, bytes.length);
+        }
+        return rows.toByteArray();
+    }
+
+    private static StringBuilder appendOrNull(StringBuilder row, Object field) {
+        return row.append(field == null ? NULL : field);
+    }
+}
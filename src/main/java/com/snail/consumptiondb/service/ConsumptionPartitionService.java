@@ -0,0 +1,217 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.repository.ConsumptionPartition;
+import com.snail.consumptiondb.repository.ConsumptionPartitionRepository;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service managing the monthly partitions of the {@code consumption} table.
+ * <p>
+ * The partitions of the current month and of the next {@code application.partition.months-ahead} ones are split out
+ * of the catch-all partition ahead of time, while it is still empty. Once a partition ends before the
+ * {@code application.partition.retention}, it is dropped or archived to a table, along with the narrow samples of its
+ * consumptions: this is a metadata change, where deleting the rows would rewrite the indexes. The rollups of expired
+ * consumptions are kept.
+ * <p>
+ * Partitions are never expired while {@code application.retention} still keeps some of their consumptions, and the
+ * application does not start when it keeps some of them forever. Nor are they expired before their minutes are all
+ * rolled up, as with {@code p_history} while the consumptions written before the rollups are backfilled: the
+ * partition watermark of {@link ConsumptionRetentionService} then moves to the end of the last partition expired,
+ * sealing the rollups of its consumptions.
+ */
+@Service
+@Transactional
+public class ConsumptionPartitionService {
+
+    private static final DateTimeFormatter PARTITION_NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String ARCHIVE_TABLE_PREFIX = "consumption_archive_";
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionPartitionService.class);
+
+    private final ConsumptionPartitionRepository consumptionPartitionRepository;
+
+    private final ConsumptionSampleRepository consumptionSampleRepository;
+
+    private final ConsumptionRetentionService consumptionRetentionService;
+
+    private final int monthsAhead;
+
+    private final Period retention;
+
+    private final Duration longestKeep;
+
+    private final boolean archive;
+
+    public ConsumptionPartitionService(
+        ConsumptionPartitionRepository consumptionPartitionRepository,
+        ConsumptionSampleRepository consumptionSampleRepository,
+        ConsumptionRetentionService consumptionRetentionService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionPartitionRepository = consumptionPartitionRepository;
+        this.consumptionSampleRepository = consumptionSampleRepository;
+        this.consumptionRetentionService = consumptionRetentionService;
+        this.monthsAhead = applicationProperties.getPartition().getMonthsAhead();
+        this.retention = applicationProperties.getPartition().getRetention();
+        this.archive = applicationProperties.getPartition().isArchive();
+        this.longestKeep = longestKeep(applicationProperties.getRetention());
+        if (retention != null && longestKeep == null) {
+            throw new IllegalStateException(
+                "application.partition.retention would drop consumptions that application.retention keeps forever"
+            );
+        }
+    }
+
+    /**
+     * Create the missing partitions and expire the old ones.
+     * <p>
+     * This is scheduled to get fired {@code application.partition.check-delay} after the previous check, and at startup.
+     */
+    @Scheduled(fixedDelayString = "${application.partition.check-delay:PT1H}")
+    public void maintainPartitions() {
+        maintain(Instant.now());
+    }
+
+    /**
+     * Create the missing partitions and expire the old ones, after any other instance doing so.
+     *
+     * @param now the current time.
+     */
+    public void maintain(Instant now) {
+        consumptionPartitionRepository.lock();
+        try {
+            List<ConsumptionPartition> partitions = consumptionPartitionRepository.findAll();
+            if (partitions.isEmpty()) {
+                log.warn("The consumption table is not partitioned");
+                return;
+            }
+            List<ConsumptionPartition> missing = missingPartitions(partitions, now, monthsAhead);
+            if (!missing.isEmpty()) {
+                log.info("Adding the consumption partitions {}", missing);
+                consumptionPartitionRepository.add(missing, maxPartition(partitions));
+            }
+            if (retention != null) {
+                expire(partitions, expiryCutoff(now, retention, longestKeep));
+            }
+        } finally {
+            consumptionPartitionRepository.unlock();
+        }
+    }
+
+    /**
+     * Expire the partitions before a cutoff whose minutes are all rolled up, moving the partition watermark first.
+     */
+    private void expire(List<ConsumptionPartition> partitions, Instant cutoff) {
+        Instant rolledUpBefore = consumptionRetentionService.getRolledUpBefore();
+        if (rolledUpBefore != null && rolledUpBefore.isBefore(cutoff)) {
+            cutoff = rolledUpBefore;
+        }
+        List<ConsumptionPartition> expired = expiredPartitions(partitions, cutoff);
+        if (expired.isEmpty()) {
+            return;
+        }
+        Instant watermark = consumptionRetentionService.advanceWatermark(
+            ConsumptionRetentionService.PARTITION_WATERMARK,
+            expired.get(expired.size() - 1).getUpperBound()
+        );
+        for (ConsumptionPartition partition : expired) {
+            if (partition.getUpperBound().isAfter(watermark)) {
+                // Minutes of the partition got dirty meanwhile
+                break;
+            }
+            if (archive) {
+                String archiveTable = ARCHIVE_TABLE_PREFIX + partition.getName();
+                log.info("Archiving the consumption partition {} to {}", partition, archiveTable);
+                consumptionPartitionRepository.archive(partition.getName(), archiveTable);
+            } else {
+                log.info("Dropping the consumption partition {}", partition);
+                consumptionPartitionRepository.drop(partition.getName());
+            }
+            consumptionSampleRepository.deleteBefore(partition.getUpperBound());
+        }
+    }
+
+    /**
+     * @return the monthly partitions to add after the last bounded partition, up to the end of the
+     * {@code monthsAhead}-th month after the current one. The first one ends with the month of the last bound.
+     */
+    static List<ConsumptionPartition> missingPartitions(List<ConsumptionPartition> partitions, Instant now, int monthsAhead) {
+        Instant last = null;
+        for (ConsumptionPartition partition : partitions) {
+            if (partition.getUpperBound() != null) {
+                last = partition.getUpperBound();
+            }
+        }
+        YearMonth end = YearMonth.from(now.atOffset(ZoneOffset.UTC)).plusMonths(monthsAhead + 1L);
+        List<ConsumptionPartition> missing = new ArrayList<>();
+        YearMonth month = YearMonth.from((last == null ? now : last).atOffset(ZoneOffset.UTC));
+        for (; month.isBefore(end); month = month.plusMonths(1)) {
+            missing.add(new ConsumptionPartition(PARTITION_NAME_FORMAT.format(month), start(month.plusMonths(1)), 0));
+        }
+        return missing;
+    }
+
+    /**
+     * @return the instant before which consumptions are expired with their partition: the earliest of the partition
+     * retention and of the longest retention of {@code application.retention}.
+     */
+    static Instant expiryCutoff(Instant now, Period retention, Duration longestKeep) {
+        Instant cutoff = now.atOffset(ZoneOffset.UTC).minus(retention).toInstant();
+        Instant kept = now.minus(longestKeep);
+        return kept.isBefore(cutoff) ? kept : cutoff;
+    }
+
+    /**
+     * @return the longest retention of {@code application.retention.raw} and the policies, {@link Duration#ZERO} if
+     * none is set, {@code null} if some consumptions are kept forever.
+     */
+    static Duration longestKeep(ApplicationProperties.Retention retention) {
+        if (retention.getRaw() == null && retention.getPolicies().isEmpty()) {
+            return Duration.ZERO;
+        }
+        List<Duration> keeps = Stream
+            .concat(Stream.of(retention.getRaw()), retention.getPolicies().stream().map(ApplicationProperties.Retention.Policy::getKeep))
+            .collect(Collectors.toList());
+        return keeps.contains(null) ? null : keeps.stream().max(Duration::compareTo).orElseThrow();
+    }
+
+    /**
+     * @return the bounded partitions whose consumptions are all before a cutoff, keeping at least one partition.
+     */
+    static List<ConsumptionPartition> expiredPartitions(List<ConsumptionPartition> partitions, Instant cutoff) {
+        List<ConsumptionPartition> expired = new ArrayList<>();
+        for (ConsumptionPartition partition : partitions.subList(0, partitions.size() - 1)) {
+            if (partition.getUpperBound() == null || partition.getUpperBound().isAfter(cutoff)) {
+                break;
+            }
+            expired.add(partition);
+        }
+        return expired;
+    }
+
+    private static String maxPartition(List<ConsumptionPartition> partitions) {
+        ConsumptionPartition last = partitions.get(partitions.size() - 1);
+        return last.getUpperBound() == null ? last.getName() : null;
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
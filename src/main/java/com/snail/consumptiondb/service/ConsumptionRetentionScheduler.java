@@ -0,0 +1,119 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.management.ConsumptionRetentionMetersService;
+import com.snail.consumptiondb.repository.PurgedChunk;
+import com.snail.consumptiondb.service.ConsumptionRetentionService.Target;
+import java.time.Duration;
+import java.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Scheduled purge of the consumptions older than their retention, one transaction of
+ * {@link ConsumptionRetentionService} at a time.
+ * <p>
+ * Each policy of {@code application.retention.policies} applies to the consumptions it matches and no policy before
+ * it matches; {@code application.retention.raw} applies to the consumptions no policy matches. The consumptions of a
+ * policy are deleted in chunks of {@code application.retention.chunk-size}, with a pause of
+ * {@code application.retention.chunk-pause} between two chunks and at most
+ * {@code application.retention.max-chunks-per-purge} chunks per purge, so that a large backlog is worked off over
+ * several purges instead of holding the database.
+ * <p>
+ * A policy only purges up to its watermark, see {@link ConsumptionRetentionService#advanceWatermark}: the start of the
+ * UTC day its retention ends in, held back by the days whose rollups are still to be refreshed.
+ */
+@Service
+public class ConsumptionRetentionScheduler {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionRetentionScheduler.class);
+
+    private final ConsumptionRetentionService consumptionRetentionService;
+
+    private final ConsumptionRetentionMetersService consumptionRetentionMetersService;
+
+    private final int chunkSize;
+
+    private final Duration chunkPause;
+
+    private final int maxChunksPerPurge;
+
+    public ConsumptionRetentionScheduler(
+        ConsumptionRetentionService consumptionRetentionService,
+        ConsumptionRetentionMetersService consumptionRetentionMetersService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionRetentionService = consumptionRetentionService;
+        this.consumptionRetentionMetersService = consumptionRetentionMetersService;
+        ApplicationProperties.Retention retention = applicationProperties.getRetention();
+        this.chunkSize = retention.getChunkSize();
+        this.chunkPause = retention.getChunkPause();
+        this.maxChunksPerPurge = retention.getMaxChunksPerPurge();
+    }
+
+    /**
+     * Purge the expired consumptions of every policy.
+     * <p>
+     * This is scheduled to get fired {@code application.retention.purge-delay} after the previous purge.
+     */
+    @Scheduled(fixedDelayString = "${application.retention.purge-delay:PT1M}")
+    public void purgeExpiredConsumptions() {
+        Instant now = Instant.now();
+        for (Target target : consumptionRetentionService.getTargets()) {
+            Instant watermark = consumptionRetentionService.advanceWatermark(target.getName(), now.minus(target.getKeep()));
+            if (watermark == null) {
+                continue;
+            }
+            long purged = purge(target, watermark);
+            if (purged > 0) {
+                log.debug("Purged {} consumptions of the retention policy {} before {}", purged, target.getName(), watermark);
+            }
+        }
+    }
+
+    private long purge(Target target, Instant cutoff) {
+        long purged = 0;
+        Instant afterTimestamp = null;
+        long afterId = 0;
+        for (int chunks = 0; chunks < maxChunksPerPurge; chunks++) {
+            PurgedChunk chunk = consumptionRetentionService.purgeChunk(
+                target.getRule(),
+                target.getExcluded(),
+                cutoff,
+                afterTimestamp,
+                afterId,
+                chunkSize
+            );
+            purged += chunk.getCount();
+            consumptionRetentionMetersService.trackPurged(target.getName(), chunk.getCount());
+            if (chunk.getCount() < chunkSize) {
+                consumptionRetentionMetersService.trackLag(target.getName(), Duration.ZERO);
+                return purged;
+            }
+            afterTimestamp = chunk.getLastTimestamp();
+            afterId = chunk.getLastId();
+            if (!pause()) {
+                break;
+            }
+        }
+        if (afterTimestamp != null) {
+            consumptionRetentionMetersService.trackLag(target.getName(), Duration.between(afterTimestamp, cutoff));
+        }
+        return purged;
+    }
+
+    /**
+     * @return whether the purge may go on, {@code false} if the thread was interrupted.
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(chunkPause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.repository.ConsumptionRetentionRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import com.snail.consumptiondb.repository.PurgedChunk;
+import com.snail.consumptiondb.repository.RetentionRule;
+import com.snail.consumptiondb.repository.RetentionSeals;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service deleting the expired consumptions, one chunk per transaction. Chunks are deleted under READ COMMITTED, so
+ * that only the deleted rows are locked, not the gaps around them.
+ * <p>
+ * Only the consumptions and their samples are deleted: their rollups and sketches are kept, so aggregates outlive the
+ * raw data. Deletes do not mark their minutes dirty for the same reason.
+ * <p>
+ * Each policy only purges the consumptions older than its watermark, the start of a UTC day. The watermark follows
+ * the retention of the policy, but never passes the oldest dirty minute: a day is only purged once its rollups and
+ * sketches are complete. The consumptions older than the watermark of their policy are sealed, see
+ * {@link RetentionSeals}: no consumption is written to them any more, and their aggregates are never recomputed.
+ * Watermarks are kept by policy name, so renaming a policy starts its watermark over, and reordering the policies
+ * leaves the watermarks applying to the consumptions the policies matched before. The partitions expired by
+ * {@link ConsumptionPartitionService} have a watermark of their own, sealing every series.
+ */
+@Service
+@Transactional(isolation = Isolation.READ_COMMITTED)
+public class ConsumptionRetentionService {
+
+    static final String DEFAULT_POLICY = "default";
+
+    /**
+     * Name of the watermark of the partitions expired by {@link ConsumptionPartitionService}, sealing every series.
+     */
+    static final String PARTITION_WATERMARK = "partition";
+
+    private final ConsumptionRetentionRepository consumptionRetentionRepository;
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final List<Target> targets;
+
+    public ConsumptionRetentionService(
+        ConsumptionRetentionRepository consumptionRetentionRepository,
+        ConsumptionRollupRepository consumptionRollupRepository,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionRetentionRepository = consumptionRetentionRepository;
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.targets = targetsOf(applicationProperties.getRetention());
+    }
+
+    /**
+     * @return the policies to enforce in order, see {@link #targetsOf}.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Move the watermark of a policy towards the start of the UTC day of an instant, without passing the oldest dirty
+     * minute. The watermark is locked while it moves, so that no consumption sealed by the new one gets written
+     * meanwhile.
+     *
+     * @param policy the name of the policy.
+     * @param expiredBefore the instant the consumptions of the policy expire before.
+     * @return the watermark, the consumptions of the policy older than it being purgeable; {@code null} if none is.
+     */
+    public Instant advanceWatermark(String policy, Instant expiredBefore) {
+        Instant watermark = consumptionRetentionRepository.lockWatermark(policy);
+        Instant target = ConsumptionRollupResolution.DAY.truncate(expiredBefore);
+        Instant rolledUpBefore = getRolledUpBefore();
+        if (rolledUpBefore != null && rolledUpBefore.isBefore(target)) {
+            target = rolledUpBefore;
+        }
+        if (watermark == null || watermark.isBefore(target)) {
+            consumptionRetentionRepository.saveWatermark(policy, target);
+            return target;
+        }
+        return watermark;
+    }
+
+    /**
+     * @return the start of the UTC day of the oldest dirty minute, the rollups and sketches before it being complete;
+     * {@code null} if they all are.
+     */
+    @Transactional(readOnly = true)
+    public Instant getRolledUpBefore() {
+        Instant oldestDirtyMinute = consumptionRollupRepository.findOldestDirtyMinute();
+        return oldestDirtyMinute == null ? null : ConsumptionRollupResolution.DAY.truncate(oldestDirtyMinute);
+    }
+
+    /**
+     * @return the consumptions purged so far, or about to be.
+     */
+    @Transactional(readOnly = true)
+    public RetentionSeals findSeals() {
+        return sealsOf(consumptionRetentionRepository.findWatermarks(false));
+    }
+
+    /**
+     * Get the consumptions purged so far, or about to be, locking the watermarks until the end of the current
+     * transaction: call it from the transaction writing the consumptions, or rebuilding their aggregates.
+     *
+     * @return the consumptions sealed.
+     */
+    public RetentionSeals lockSeals() {
+        return sealsOf(consumptionRetentionRepository.findWatermarks(true));
+    }
+
+    /**
+     * Get the consumptions no longer written to, locking the watermarks until the end of the current transaction.
+     *
+     * @param consumptions the consumptions to write.
+     * @return the predicate of the sealed consumptions among them.
+     */
+    public Predicate<Consumption> lockExpired(Collection<Consumption> consumptions) {
+        return expired(lockSeals(), consumptions);
+    }
+
+    /**
+     * @param seals the consumptions sealed.
+     * @param consumptions the consumptions to write.
+     * @return the predicate of the sealed consumptions among them.
+     */
+    @Transactional(readOnly = true)
+    public Predicate<Consumption> expired(RetentionSeals seals, Collection<Consumption> consumptions) {
+        if (seals.isEmpty()) {
+            return consumption -> false;
+        }
+        Set<Long> methodIds = consumptions
+            .stream()
+            .filter(consumption -> consumption.getTimestamp() != null && consumption.getTimestamp().isBefore(seals.getLatest()))
+            .filter(consumption -> consumption.getMethod() != null && consumption.getMethod().getId() != null)
+            .map(consumption -> consumption.getMethod().getId())
+            .collect(Collectors.toSet());
+        Map<Long, Set<String>> softwareNames = consumptionRetentionRepository.findSoftwareNames(methodIds);
+        return consumption ->
+            consumption.getTimestamp() != null &&
+            seals.seals(
+                consumption.getMethod() == null ? Set.of() : softwareNames.getOrDefault(consumption.getMethod().getId(), Set.of()),
+                consumption.getScope(),
+                consumption.getMonitoringType(),
+                consumption.getTimestamp()
+            );
+    }
+
+    /**
+     * Delete the next chunk of consumptions matching a rule and none of the rules before it, older than a cutoff.
+     *
+     * @param rule the rule of the consumptions.
+     * @param excluded the rules whose consumptions are left alone.
+     * @param cutoff the timestamp the consumptions are older than.
+     * @param afterTimestamp the timestamp of the last consumption of the previous chunk, or {@code null} for the first.
+     * @param afterId the id of the last consumption of the previous chunk.
+     * @param limit the maximum number of consumptions deleted.
+     * @return the chunk deleted.
+     */
+    public PurgedChunk purgeChunk(
+        RetentionRule rule,
+        List<RetentionRule> excluded,
+        Instant cutoff,
+        Instant afterTimestamp,
+        long afterId,
+        int limit
+    ) {
+        return consumptionRetentionRepository.purge(rule, excluded, cutoff, afterTimestamp, afterId, limit);
+    }
+
+    private RetentionSeals sealsOf(Map<String, Instant> watermarks) {
+        List<RetentionSeals.Seal> seals = new ArrayList<>();
+        for (Target target : targets) {
+            Instant watermark = watermarks.get(target.name);
+            if (watermark != null) {
+                seals.add(new RetentionSeals.Seal(target.rule, target.excluded, watermark));
+            }
+        }
+        Instant partitionWatermark = watermarks.get(PARTITION_WATERMARK);
+        if (partitionWatermark != null) {
+            seals.add(new RetentionSeals.Seal(new RetentionRule(null, null, null), List.of(), partitionWatermark));
+        }
+        return new RetentionSeals(seals);
+    }
+
+    /**
+     * @return the policies to enforce in order, each excluding the consumptions of the policies before it, ending with
+     * the retention of the consumptions matching no policy. Policies keeping their consumptions forever only exclude
+     * them from the following ones.
+     */
+    static List<Target> targetsOf(ApplicationProperties.Retention retention) {
+        List<Target> targets = new ArrayList<>();
+        List<RetentionRule> rules = new ArrayList<>();
+        for (int i = 0; i < retention.getPolicies().size(); i++) {
+            ApplicationProperties.Retention.Policy policy = retention.getPolicies().get(i);
+            RetentionRule rule = new RetentionRule(policy.getSoftware(), policy.getScope(), policy.getMonitoringType());
+            if (policy.getKeep() != null) {
+                String name = policy.getName() == null ? "policy-" + i : policy.getName();
+                targets.add(new Target(name, rule, List.copyOf(rules), policy.getKeep()));
+            }
+            rules.add(rule);
+        }
+        if (retention.getRaw() != null) {
+            targets.add(new Target(DEFAULT_POLICY, new RetentionRule(null, null, null), List.copyOf(rules), retention.getRaw()));
+        }
+        return targets;
+    }
+
+    /**
+     * A retention policy to enforce: the consumptions matching its rule and none of the excluded rules, kept for a
+     * duration.
+     */
+    public static final class Target {
+
+        private final String name;
+
+        private final RetentionRule rule;
+
+        private final List<RetentionRule> excluded;
+
+        private final Duration keep;
+
+        private Target(String name, RetentionRule rule, List<RetentionRule> excluded, Duration keep) {
+            this.name = name;
+            this.rule = rule;
+            this.excluded = excluded;
+            this.keep = keep;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public RetentionRule getRule() {
+            return rule;
+        }
+
+        public List<RetentionRule> getExcluded() {
+            return excluded;
+        }
+
+        public Duration getKeep() {
+            return keep;
+        }
+    }
+}
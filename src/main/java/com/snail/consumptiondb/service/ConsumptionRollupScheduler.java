@@ -0,0 +1,113 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import java.time.Duration;
+import java.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Scheduled maintenance of the consumption rollups and samples, one transaction of {@link ConsumptionRollupService} at a
+ * time.
+ * <p>
+ * Dirty minutes are persisted, so a refresh catches up on whatever was written while the application was down.
+ * <p>
+ * Rebuilds recompute the rollups from the consumptions, except the rollups of the consumptions sealed by the retention
+ * purge, see {@link ConsumptionRetentionService}: those rollups are all that is left of them.
+ */
+@Service
+public class ConsumptionRollupScheduler {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionRollupScheduler.class);
+
+    private final ConsumptionRollupService consumptionRollupService;
+
+    private final int refreshBatchSize;
+
+    private final Duration repairWindow;
+
+    private final Duration compactAfter;
+
+    private final int compactionBatchSize;
+
+    public ConsumptionRollupScheduler(
+        ConsumptionRollupService consumptionRollupService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionRollupService = consumptionRollupService;
+        this.refreshBatchSize = applicationProperties.getRollup().getRefreshBatchSize();
+        this.repairWindow = applicationProperties.getRollup().getRepairWindow();
+        this.compactAfter = applicationProperties.getRollup().getCompactAfter();
+        this.compactionBatchSize = applicationProperties.getRollup().getCompactionBatchSize();
+    }
+
+    /**
+     * Refresh the rollups of all the dirty minutes.
+     * <p>
+     * This is scheduled to get fired {@code application.rollup.refresh-delay} after the previous refresh.
+     */
+    @Scheduled(fixedDelayString = "${application.rollup.refresh-delay:PT10S}")
+    public void refreshRollups() {
+        long refreshed = 0;
+        int batch;
+        do {
+            batch = consumptionRollupService.refreshDirtyMinutes(refreshBatchSize);
+            refreshed += batch;
+        } while (batch == refreshBatchSize);
+        if (refreshed > 0) {
+            log.debug("Refreshed the rollups of {} dirty minutes", refreshed);
+        }
+    }
+
+    /**
+     * Rebuild the rollups of the last {@code application.rollup.repair-window}, repairing writes made behind the
+     * application's back.
+     * <p>
+     * This is scheduled to get fired every day, at 00:30.
+     */
+    @Scheduled(cron = "0 30 0 * * ?")
+    public void repairRollups() {
+        Instant now = Instant.now();
+        int days = rebuild(now.minus(repairWindow), now);
+        log.info("Repaired the rollups of the last {} days", days);
+    }
+
+    /**
+     * Compact the samples of the oldest hours older than {@code application.rollup.compact-after}, if set.
+     * <p>
+     * This is scheduled to get fired {@code application.rollup.compaction-delay} after the previous compaction.
+     */
+    @Scheduled(fixedDelayString = "${application.rollup.compaction-delay:PT5M}")
+    public void compactSamples() {
+        if (compactAfter == null) {
+            return;
+        }
+        Instant sealedBefore = Instant.now().minus(compactAfter);
+        int hours = 0;
+        while (hours < compactionBatchSize && consumptionRollupService.compactOldestHour(sealedBefore) != null) {
+            hours++;
+        }
+        if (hours > 0) {
+            log.debug("Compacted the samples of {} hours", hours);
+        }
+    }
+
+    /**
+     * Rebuild the rollups of the UTC days overlapping a time window, one day per transaction.
+     *
+     * @param from the start of the window, rounded down to its UTC day.
+     * @param to the end of the window.
+     * @return the number of days rebuilt.
+     */
+    public int rebuild(Instant from, Instant to) {
+        int days = 0;
+        for (Instant day = ConsumptionRollupResolution.DAY.truncate(from); day.isBefore(to); day = day.plus(Duration.ofDays(1))) {
+            consumptionRollupService.rebuildDay(day);
+            days++;
+        }
+        return days;
+    }
+}
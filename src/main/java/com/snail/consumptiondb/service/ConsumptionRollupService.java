@@ -0,0 +1,243 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.repository.ConsumptionDimension;
+import com.snail.consumptiondb.repository.ConsumptionFilter;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import com.snail.consumptiondb.repository.ConsumptionSketchRepository;
+import com.snail.consumptiondb.repository.RetentionSeals;
+import com.snail.consumptiondb.service.dto.ConsumptionAggregateDTO;
+import com.snail.consumptiondb.service.mapper.ConsumptionAggregateMapper;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Service maintaining the minute, hour and day rollups of {@link com.snail.consumptiondb.domain.Consumption} values,
+ * and serving aggregates from them.
+ * <p>
+ * The writes to consumptions mark the minutes they touch as dirty, in their own transaction. Refreshing recomputes the
+ * dirty minutes and their narrow samples from the consumptions, then the hours and days containing them from the finer
+ * rollups, along with the quantile sketches of those hours and days. Rollups are written under READ COMMITTED and a
+ * named lock, so that concurrent refreshes, rebuilds and sample compactions never interleave.
+ * <p>
+ * The minute rollups and hour sketches of the consumptions sealed by the retention purge are left as they are, see
+ * {@link ConsumptionRetentionService}: the watermarks of the purges stay locked while rollups are written, so that
+ * no purge starts on the consumptions being read.
+ * <p>
+ * The release diffs and rankings computed from the day rollups are evicted once a refresh or rebuild commits.
+ */
+@Service
+@Transactional(isolation = Isolation.READ_COMMITTED)
+public class ConsumptionRollupService {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionRollupService.class);
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final ConsumptionSketchRepository consumptionSketchRepository;
+
+    private final ConsumptionSampleRepository consumptionSampleRepository;
+
+    private final ConsumptionRepository consumptionRepository;
+
+    private final ConsumptionAggregateMapper consumptionAggregateMapper;
+
+    private final ConsumptionRetentionService consumptionRetentionService;
+
+    private final ReleaseDiffService releaseDiffService;
+
+    private final ReleaseTopMethodsService releaseTopMethodsService;
+
+    public ConsumptionRollupService(
+        ConsumptionRollupRepository consumptionRollupRepository,
+        ConsumptionSketchRepository consumptionSketchRepository,
+        ConsumptionSampleRepository consumptionSampleRepository,
+        ConsumptionRepository consumptionRepository,
+        ConsumptionAggregateMapper consumptionAggregateMapper,
+        ConsumptionRetentionService consumptionRetentionService,
+        ReleaseDiffService releaseDiffService,
+        ReleaseTopMethodsService releaseTopMethodsService
+    ) {
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.consumptionSketchRepository = consumptionSketchRepository;
+        this.consumptionSampleRepository = consumptionSampleRepository;
+        this.consumptionRepository = consumptionRepository;
+        this.consumptionAggregateMapper = consumptionAggregateMapper;
+        this.consumptionRetentionService = consumptionRetentionService;
+        this.releaseDiffService = releaseDiffService;
+        this.releaseTopMethodsService = releaseTopMethodsService;
+    }
+
+    /**
+     * Refresh the rollups of the oldest dirty minutes.
+     *
+     * @param limit the maximum number of minutes to refresh.
+     * @return the number of dirty minutes cleared.
+     */
+    public int refreshDirtyMinutes(int limit) {
+        consumptionRollupRepository.lock();
+        try {
+            List<Instant> minutes = consumptionRollupRepository.lockDirtyMinutes(limit);
+            if (minutes.isEmpty()) {
+                return 0;
+            }
+            log.debug("Refreshing the rollups of {} dirty minutes from {}", minutes.size(), minutes.get(0));
+            consumptionRollupRepository.clearDirtyMinutes(minutes);
+            RetentionSeals seals = consumptionRetentionService.lockSeals();
+            Set<Instant> buckets = new TreeSet<>(minutes);
+            for (ConsumptionRollupResolution resolution : ConsumptionRollupResolution.values()) {
+                Set<Instant> resolutionBuckets = new TreeSet<>();
+                buckets.forEach(bucket -> resolutionBuckets.add(resolution.truncate(bucket)));
+                for (Instant[] range : ranges(resolutionBuckets, resolution)) {
+                    rebuild(resolution, range[0], range[1], seals);
+                }
+                buckets = resolutionBuckets;
+            }
+            evictReleaseCaches();
+            return minutes.size();
+        } finally {
+            consumptionRollupRepository.unlock();
+        }
+    }
+
+    /**
+     * Rebuild the rollups of a UTC day from the consumptions, whether its minutes are dirty or not. The rollups of its
+     * consumptions sealed by the retention purge are kept.
+     *
+     * @param day the start of the day.
+     */
+    public void rebuildDay(Instant day) {
+        log.debug("Rebuilding the rollups of {}", day);
+        Instant end = day.plus(1, ConsumptionRollupResolution.DAY.getUnit());
+        consumptionRollupRepository.lock();
+        try {
+            consumptionRollupRepository.clearDirtyMinutes(day, end);
+            RetentionSeals seals = consumptionRetentionService.lockSeals();
+            for (ConsumptionRollupResolution resolution : ConsumptionRollupResolution.values()) {
+                rebuild(resolution, day, end, seals);
+            }
+            evictReleaseCaches();
+        } finally {
+            consumptionRollupRepository.unlock();
+        }
+    }
+
+    /**
+     * Compact the sample rows of the oldest hour ending before an instant into blocks, unless one of its minutes is
+     * dirty.
+     *
+     * @param sealedBefore the instant the hour must end before.
+     * @return the start of the hour compacted, or {@code null} if there is none.
+     */
+    public Instant compactOldestHour(Instant sealedBefore) {
+        consumptionRollupRepository.lock();
+        try {
+            Instant hour = consumptionSampleRepository.findOldestRowHour(ConsumptionRollupResolution.HOUR.truncate(sealedBefore));
+            if (hour == null) {
+                return null;
+            }
+            if (consumptionRollupRepository.hasDirtyMinutes(hour, hour.plus(1, ConsumptionRollupResolution.HOUR.getUnit()))) {
+                log.debug("Not compacting the samples of {} before its dirty minutes are refreshed", hour);
+                return null;
+            }
+            int blocks = consumptionSampleRepository.compact(hour);
+            log.debug("Compacted the samples of {} into {} blocks", hour, blocks);
+            return hour;
+        } finally {
+            consumptionRollupRepository.unlock();
+        }
+    }
+
+    /**
+     * Evict the release diffs and rankings once the current transaction commits, so that they are not cached again
+     * from the rollups it replaces.
+     */
+    private void evictReleaseCaches() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        releaseDiffService.evictAll();
+                        releaseTopMethodsService.evictAll();
+                    }
+                }
+            );
+        } else {
+            releaseDiffService.evictAll();
+            releaseTopMethodsService.evictAll();
+        }
+    }
+
+    private void rebuild(ConsumptionRollupResolution resolution, Instant from, Instant to, RetentionSeals seals) {
+        consumptionRollupRepository.rebuild(resolution, from, to, seals);
+        if (resolution.getFiner() != null) {
+            consumptionSketchRepository.rebuild(resolution, from, to, seals);
+        } else {
+            consumptionSampleRepository.rebuild(from, to);
+        }
+    }
+
+    /**
+     * Aggregate the values of the consumptions matching a filter, from the coarsest rollups the time window of the
+     * filter is aligned on, provided none of its minutes is dirty; from the consumptions otherwise.
+     *
+     * @param filter the filters.
+     * @param dimensions the dimensions to group the consumptions over; none for a single group.
+     * @return the count, sum, min and max of the values per group, ordered by group.
+     */
+    @Transactional(readOnly = true)
+    public List<ConsumptionAggregateDTO> aggregate(ConsumptionFilter filter, Set<ConsumptionDimension> dimensions) {
+        ConsumptionRollupResolution resolution = resolutionOf(filter.getFrom(), filter.getTo());
+        if (resolution != null && !consumptionRollupRepository.hasDirtyMinutes(filter.getFrom(), filter.getTo())) {
+            log.debug("Aggregating Consumptions from the {} rollups", resolution);
+            return consumptionAggregateMapper.toDto(consumptionRollupRepository.aggregate(resolution, filter, dimensions));
+        }
+        return consumptionAggregateMapper.toDto(consumptionRepository.aggregate(filter, dimensions));
+    }
+
+    /**
+     * @return the coarsest resolution both bounds of a time window are aligned on, or {@code null} if there is none.
+     */
+    static ConsumptionRollupResolution resolutionOf(Instant from, Instant to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            return null;
+        }
+        ConsumptionRollupResolution[] resolutions = ConsumptionRollupResolution.values();
+        for (int i = resolutions.length - 1; i >= 0; i--) {
+            if (resolutions[i].isAligned(from) && resolutions[i].isAligned(to)) {
+                return resolutions[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the ranges of consecutive buckets, as their start and end.
+     */
+    static List<Instant[]> ranges(Set<Instant> buckets, ConsumptionRollupResolution resolution) {
+        List<Instant[]> ranges = new ArrayList<>();
+        Instant[] range = null;
+        for (Instant bucket : buckets) {
+            if (range != null && range[1].equals(bucket)) {
+                range[1] = bucket.plus(1, resolution.getUnit());
+            } else {
+                range = new Instant[] { bucket, bucket.plus(1, resolution.getUnit()) };
+                ranges.add(range);
+            }
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,110 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import com.snail.consumptiondb.repository.ConsumptionSample;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import com.snail.consumptiondb.service.dto.ConsumptionSeriesDTO;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service downsampling the consumption series of a method for charting.
+ * <p>
+ * The raw series is streamed by the driver straight into the downsampler, in one pass: memory depends on
+ * the number of points requested, not on the length of the series. It is read from the {@link ConsumptionHotTierService
+ * hot tier} when it covers the window; from the narrow samples, clustered by method and time, whether they are rows or
+ * compacted blocks, unless a minute of the window is dirty and its samples are not up to date yet; from the
+ * consumptions otherwise.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ConsumptionSeriesService {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionSeriesService.class);
+
+    private final ConsumptionRepository consumptionRepository;
+
+    private final ConsumptionSampleRepository consumptionSampleRepository;
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final ConsumptionHotTierService consumptionHotTierService;
+
+    public ConsumptionSeriesService(
+        ConsumptionRepository consumptionRepository,
+        ConsumptionSampleRepository consumptionSampleRepository,
+        ConsumptionRollupRepository consumptionRollupRepository,
+        ConsumptionHotTierService consumptionHotTierService
+    ) {
+        this.consumptionRepository = consumptionRepository;
+        this.consumptionSampleRepository = consumptionSampleRepository;
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.consumptionHotTierService = consumptionHotTierService;
+    }
+
+    /**
+     * Downsample the consumptions of a method within a time window.
+     *
+     * @param methodId the method of the consumptions.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param from the inclusive start of the window.
+     * @param to the exclusive end of the window, after its start.
+     * @param points the maximum number of points, at least {@link SeriesDownsampling#getMinPoints()}.
+     * @param algorithm the downsampling algorithm.
+     * @return the downsampled series.
+     */
+    public ConsumptionSeriesDTO getSeries(
+        Long methodId,
+        Scope scope,
+        MonitoringType monitoringType,
+        Instant from,
+        Instant to,
+        int points,
+        SeriesDownsampling algorithm
+    ) {
+        log.debug("Request to downsample the Consumptions of Method {} to {} points with {}", methodId, points, algorithm);
+        long fromMicros = ConsumptionSampleRepository.toMicros(from);
+        long toMicros = ConsumptionSampleRepository.toMicros(to);
+        SeriesDownsampler downsampler = algorithm.downsampler(fromMicros, toMicros, points);
+        if (consumptionHotTierService.scan(methodId, scope, monitoringType, fromMicros, toMicros, downsampler::add)) {
+            log.debug("Read the Consumptions of Method {} from the hot tier", methodId);
+        } else if (!consumptionRollupRepository.hasDirtyMinutes(ConsumptionRollupResolution.MINUTE.truncate(from), to)) {
+            consumptionSampleRepository.scan(methodId, scope, monitoringType, fromMicros, toMicros, downsampler::add);
+        } else {
+            streamConsumptions(methodId, scope, monitoringType, from, to, downsampler);
+        }
+        SeriesPoints series = downsampler.finish();
+        long[] timestamps = series.timestamps();
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = Math.floorDiv(timestamps[i], 1_000L);
+        }
+        return new ConsumptionSeriesDTO(algorithm, downsampler.getCount(), timestamps, series.values());
+    }
+
+    private void streamConsumptions(
+        Long methodId,
+        Scope scope,
+        MonitoringType monitoringType,
+        Instant from,
+        Instant to,
+        SeriesDownsampler downsampler
+    ) {
+        try (Stream<ConsumptionSample> samples = consumptionRepository.streamSamples(methodId, scope, monitoringType, from, to)) {
+            Iterator<ConsumptionSample> iterator = samples.iterator();
+            while (iterator.hasNext()) {
+                ConsumptionSample sample = iterator.next();
+                downsampler.add(ConsumptionSampleRepository.toMicros(sample.getTimestamp()), sample.getValue());
+            }
+        }
+    }
+}
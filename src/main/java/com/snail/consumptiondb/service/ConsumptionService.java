@@ -0,0 +1,212 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service Implementation for managing single {@link Consumption}.
+ * <p>
+ * New consumptions are upserted on their natural key through {@link ConsumptionIngestionService}. Updates and
+ * deletions mark the minutes they touch as dirty for the rollups, see {@link ConsumptionRollupService}, and invalidate
+ * the hot tier, see {@link ConsumptionHotTierService}.
+ * Writes to the consumptions sealed by the retention purge of their policy, see
+ * {@link ConsumptionRetentionService#lockExpired}, are refused with an {@link ExpiredConsumptionException}.
+ */
+@Service
+@Transactional
+public class ConsumptionService {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionService.class);
+
+    private final ConsumptionRepository consumptionRepository;
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final ConsumptionHotTierService consumptionHotTierService;
+
+    private final ConsumptionRetentionService consumptionRetentionService;
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    public ConsumptionService(
+        ConsumptionRepository consumptionRepository,
+        ConsumptionRollupRepository consumptionRollupRepository,
+        ConsumptionHotTierService consumptionHotTierService,
+        ConsumptionRetentionService consumptionRetentionService,
+        ConsumptionIngestionService consumptionIngestionService
+    ) {
+        this.consumptionRepository = consumptionRepository;
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.consumptionHotTierService = consumptionHotTierService;
+        this.consumptionRetentionService = consumptionRetentionService;
+        this.consumptionIngestionService = consumptionIngestionService;
+    }
+
+    /**
+     * Save a new consumption, unless one is already stored under the same method, timestamp, scope and monitoring
+     * type: as with the batch writes, a retried creation is then a no-op, see {@link ConsumptionIngestionService}.
+     *
+     * @param consumption the consumption to create.
+     * @return the persisted consumption, or empty if a consumption was already stored under its natural key.
+     * @throws ExpiredConsumptionException if the consumption may have been purged already.
+     */
+    public Optional<Consumption> save(Consumption consumption) {
+        log.debug("Request to save Consumption : {}", consumption);
+        List<Consumption> rejected = new ArrayList<>();
+        consumptionIngestionService.saveAll(List.of(consumption), rejected);
+        if (!rejected.isEmpty()) {
+            throw new ExpiredConsumptionException(consumption.getTimestamp());
+        }
+        return Optional.ofNullable(consumption.getId()).map(id -> consumption);
+    }
+
+    /**
+     * Get the consumption stored under the natural key of another one.
+     *
+     * @param consumption the consumption whose method, timestamp, scope and monitoring type to look up.
+     * @return the stored consumption, if any.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Consumption> findOneByNaturalKey(Consumption consumption) {
+        log.debug("Request to get the Consumption stored under the natural key of : {}", consumption);
+        Long id = consumptionRepository.findIdByNaturalKey(
+            consumption.getMethod() == null ? null : consumption.getMethod().getId(),
+            consumption.getTimestamp(),
+            consumption.getScope() == null ? null : consumption.getScope().name(),
+            consumption.getMonitoringType() == null ? null : consumption.getMonitoringType().name()
+        );
+        return id == null ? Optional.empty() : consumptionRepository.findOneWithToOneRelationshipsById(id);
+    }
+
+    /**
+     * Update a consumption.
+     *
+     * @param consumption the consumption to update.
+     * @return the persisted consumption.
+     * @throws ExpiredConsumptionException if the consumption, before or after the update, may have been purged already.
+     */
+    public Consumption update(Consumption consumption) {
+        log.debug("Request to update Consumption : {}", consumption);
+        Consumption previous = findPrevious(consumption.getId());
+        checkWritable(previous, consumption);
+        Consumption result = consumptionRepository.save(consumption);
+        consumptionRollupRepository.markDirty(Arrays.asList(timestampOf(previous), result.getTimestamp()));
+        consumptionHotTierService.invalidate();
+        return result;
+    }
+
+    /**
+     * Partially update a consumption, its fields left {@code null} being ignored.
+     *
+     * @param consumption the consumption to update partially.
+     * @return the persisted consumption, if it exists.
+     * @throws ExpiredConsumptionException if the consumption, before or after the update, may have been purged already.
+     */
+    public Optional<Consumption> partialUpdate(Consumption consumption) {
+        log.debug("Request to partially update Consumption : {}", consumption);
+        Consumption previous = findPrevious(consumption.getId());
+        if (previous != null) {
+            checkWritable(
+                previous,
+                new Consumption()
+                    .timestamp(consumption.getTimestamp() == null ? previous.getTimestamp() : consumption.getTimestamp())
+                    .scope(consumption.getScope() == null ? previous.getScope() : consumption.getScope())
+                    .monitoringType(consumption.getMonitoringType() == null ? previous.getMonitoringType() : consumption.getMonitoringType())
+                    .method(previous.getMethod())
+            );
+        }
+        Optional<Consumption> result = consumptionRepository
+            .findOneWithToOneRelationshipsById(consumption.getId())
+            .map(existingConsumption -> {
+                if (consumption.getValue() != null) {
+                    existingConsumption.setValue(consumption.getValue());
+                }
+                if (consumption.getScope() != null) {
+                    existingConsumption.setScope(consumption.getScope());
+                }
+                if (consumption.getMonitoringType() != null) {
+                    existingConsumption.setMonitoringType(consumption.getMonitoringType());
+                }
+                if (consumption.getTimestamp() != null) {
+                    existingConsumption.setTimestamp(consumption.getTimestamp());
+                }
+
+                return existingConsumption;
+            })
+            .map(consumptionRepository::save);
+        result.ifPresent(saved -> {
+            consumptionRollupRepository.markDirty(Arrays.asList(timestampOf(previous), saved.getTimestamp()));
+            consumptionHotTierService.invalidate();
+        });
+        return result;
+    }
+
+    /**
+     * Delete a consumption.
+     *
+     * @param id the id of the consumption.
+     * @throws ExpiredConsumptionException if the consumption may have been purged already.
+     */
+    public void delete(Long id) {
+        log.debug("Request to delete Consumption : {}", id);
+        Consumption previous = findPrevious(id);
+        checkWritable(previous);
+        consumptionRepository.deleteById(id);
+        consumptionRollupRepository.markDirty(Arrays.asList(timestampOf(previous)));
+        consumptionHotTierService.invalidate();
+    }
+
+    /**
+     * @return a copy of the series and timestamp of a stored consumption, before it gets written, or {@code null} if
+     * there is none.
+     */
+    private Consumption findPrevious(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return consumptionRepository
+            .findOneWithToOneRelationshipsById(id)
+            .map(existing ->
+                new Consumption()
+                    .timestamp(existing.getTimestamp())
+                    .scope(existing.getScope())
+                    .monitoringType(existing.getMonitoringType())
+                    .method(existing.getMethod())
+            )
+            .orElse(null);
+    }
+
+    private static Instant timestampOf(Consumption consumption) {
+        return consumption == null ? null : consumption.getTimestamp();
+    }
+
+    /**
+     * Refuse the writes to the consumptions sealed by the retention purge: some of them may have been purged, and
+     * their rollups are no longer recomputed.
+     */
+    private void checkWritable(Consumption... consumptions) {
+        List<Consumption> written = new ArrayList<>();
+        for (Consumption consumption : consumptions) {
+            if (consumption != null) {
+                written.add(consumption);
+            }
+        }
+        Predicate<Consumption> expired = consumptionRetentionService.lockExpired(written);
+        for (Consumption consumption : written) {
+            if (expired.test(consumption)) {
+                throw new ExpiredConsumptionException(consumption.getTimestamp());
+            }
+        }
+    }
+}
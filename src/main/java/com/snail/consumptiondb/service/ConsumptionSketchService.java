@@ -0,0 +1,114 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.repository.ConsumptionFilter;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import com.snail.consumptiondb.repository.ConsumptionSketchRepository;
+import com.snail.consumptiondb.service.dto.ConsumptionHistogramDTO;
+import com.snail.consumptiondb.service.dto.ConsumptionPercentilesDTO;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service computing percentiles and histograms of {@link com.snail.consumptiondb.domain.Consumption} values from
+ * quantile sketches.
+ * <p>
+ * Time windows aligned on UTC hours or days, none of whose minutes is dirty, merge the hour or day sketches maintained
+ * with the rollups; other windows are sketched from the consumptions. Either way, values are exact to
+ * {@value ConsumptionSketchRepository#SIGNIFICANT_DIGITS} significant digits.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ConsumptionSketchService {
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionSketchService.class);
+
+    private final ConsumptionSketchRepository consumptionSketchRepository;
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    public ConsumptionSketchService(
+        ConsumptionSketchRepository consumptionSketchRepository,
+        ConsumptionRollupRepository consumptionRollupRepository
+    ) {
+        this.consumptionSketchRepository = consumptionSketchRepository;
+        this.consumptionRollupRepository = consumptionRollupRepository;
+    }
+
+    /**
+     * Get percentiles of the values of the consumptions matching a filter.
+     *
+     * @param filter the filters, with the bounds of the time window.
+     * @param percentiles the percentiles, between 0 and 100.
+     * @return the percentiles of the values.
+     */
+    public ConsumptionPercentilesDTO getPercentiles(ConsumptionFilter filter, double[] percentiles) {
+        log.debug("Request to get the percentiles {} of Consumptions", percentiles);
+        return percentilesOf(sketch(filter), percentiles);
+    }
+
+    /**
+     * Get the histogram of the values of the consumptions matching a filter, in buckets of equal width between the
+     * lowest and highest values.
+     *
+     * @param filter the filters, with the bounds of the time window.
+     * @param buckets the number of buckets, at least 1.
+     * @return the histogram of the values.
+     */
+    public ConsumptionHistogramDTO getHistogram(ConsumptionFilter filter, int buckets) {
+        log.debug("Request to get a histogram of Consumptions in {} buckets", buckets);
+        return histogramOf(sketch(filter), buckets);
+    }
+
+    private Histogram sketch(ConsumptionFilter filter) {
+        ConsumptionRollupResolution resolution = ConsumptionRollupService.resolutionOf(filter.getFrom(), filter.getTo());
+        if (resolution == ConsumptionRollupResolution.MINUTE) {
+            resolution = null;
+        }
+        if (resolution != null && !consumptionRollupRepository.hasDirtyMinutes(filter.getFrom(), filter.getTo())) {
+            log.debug("Merging the {} sketches of Consumptions", resolution);
+            return consumptionSketchRepository.merge(resolution, filter);
+        }
+        return consumptionSketchRepository.sketch(filter);
+    }
+
+    static ConsumptionPercentilesDTO percentilesOf(Histogram sketch, double[] percentiles) {
+        long count = sketch.getTotalCount();
+        long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            values[i] = sketch.getValueAtPercentile(percentiles[i]);
+        }
+        return new ConsumptionPercentilesDTO(
+            count,
+            count == 0 ? null : sketch.getMinValue(),
+            count == 0 ? null : sketch.getMaxValue(),
+            percentiles,
+            count == 0 ? null : values
+        );
+    }
+
+    static ConsumptionHistogramDTO histogramOf(Histogram sketch, int buckets) {
+        long count = sketch.getTotalCount();
+        if (count == 0) {
+            return new ConsumptionHistogramDTO(0, new long[0], new long[0]);
+        }
+        long min = sketch.getMinValue();
+        long max = sketch.getMaxValue();
+        long width = Math.max(1, (max - min) / buckets + 1);
+        long[] bounds = new long[buckets + 1];
+        for (int i = 0; i <= buckets; i++) {
+            bounds[i] = min + i * width;
+        }
+        long[] counts = new long[buckets];
+        for (HistogramIterationValue value : sketch.recordedValues()) {
+            long recorded = sketch.medianEquivalentValue(value.getValueIteratedTo());
+            int bucket = (int) Math.min(buckets - 1, Math.max(0, (recorded - min) / width));
+            counts[bucket] += value.getCountAtValueIteratedTo();
+        }
+        return new ConsumptionHistogramDTO(count, bounds, counts);
+    }
+}
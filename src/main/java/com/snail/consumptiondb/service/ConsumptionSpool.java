@@ -0,0 +1,428 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of {@link Consumption} records, made of memory-mapped segment files on local disk.
+ * <p>
+ * Each record is numbered by a strictly increasing sequence and framed as {@code length, crc32, payload}: after a crash,
+ * recovery stops at the first torn record of a segment. Records are read back in order by a single replayer, which
+ * acknowledges them once committed; fully acknowledged segments are then deleted.
+ * <p>
+ * This class is thread-safe, all its operations being short and serialized on the spool.
+ */
+final class ConsumptionSpool implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final int PAYLOAD_SIZE = Long.BYTES * 4 + Integer.BYTES + 3;
+
+    static final int RECORD_SIZE = HEADER_SIZE + PAYLOAD_SIZE;
+
+    private static final int HAS_VALUE = 1;
+    private static final int HAS_TIMESTAMP = 1 << 1;
+    private static final int HAS_SCOPE = 1 << 2;
+    private static final int HAS_MONITORING_TYPE = 1 << 3;
+    private static final int HAS_METHOD = 1 << 4;
+
+    private static final Scope[] SCOPES = Scope.values();
+
+    private static final MonitoringType[] MONITORING_TYPES = MonitoringType.values();
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_SIZE);
+
+    private final CRC32 crc = new CRC32();
+
+    private long nextSequence;
+
+    private long acknowledgedSequence;
+
+    private Segment readSegment;
+
+    private int readPosition;
+
+    private boolean closed;
+
+    private ConsumptionSpool(Path directory, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Open the spool stored in a directory, recovering the records left by a previous run.
+     *
+     * @param directory the directory of the segment files, created if needed.
+     * @param segmentSize the size of a segment file, in bytes.
+     * @param maxSize the maximum size of the spool on disk, in bytes.
+     * @param committedSequence the last sequence known to be committed: older records are discarded.
+     * @return the spool, positioned on the first record not committed yet.
+     * @throws IOException if the segment files cannot be read or created.
+     */
+    static ConsumptionSpool open(Path directory, long segmentSize, long maxSize, long committedSequence) throws IOException {
+        if (segmentSize < RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid spool segment size: " + segmentSize);
+        }
+        ConsumptionSpool spool = new ConsumptionSpool(directory, (int) segmentSize, (int) Math.max(2, maxSize / segmentSize));
+        spool.recover(committedSequence);
+        return spool;
+    }
+
+    private void recover(long committedSequence) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files =
+                listing
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        long lastSequence = committedSequence;
+        for (Path file : files) {
+            Segment segment = new Segment(file, map(file));
+            segment.scan();
+            lastSequence = Math.max(lastSequence, segment.lastSequence);
+            segments.addLast(segment);
+        }
+        nextSequence = lastSequence + 1;
+        acknowledgedSequence = committedSequence;
+        if (segments.isEmpty()) {
+            segments.addLast(createSegment());
+        }
+        readSegment = segments.peekFirst();
+        readPosition = 0;
+        skipCommitted(committedSequence);
+        deleteAcknowledgedSegments();
+    }
+
+    private void skipCommitted(long committedSequence) {
+        while (true) {
+            if (readPosition >= readSegment.writePosition) {
+                if (readSegment == segments.peekLast()) {
+                    return;
+                }
+                readSegment = next(readSegment);
+                readPosition = 0;
+                continue;
+            }
+            if (readSegment.buffer.getLong(readPosition + HEADER_SIZE) > committedSequence) {
+                return;
+            }
+            readPosition += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Append records and force them to disk.
+     *
+     * @param consumptions the records.
+     * @return the sequence of the last record.
+     * @throws IOException if a new segment cannot be created.
+     * @throws IllegalStateException if the spool is closed or full.
+     */
+    synchronized long append(List<Consumption> consumptions) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The spool is closed");
+        }
+        Segment segment = segments.peekLast();
+        long recordsPerSegment = segmentSize / RECORD_SIZE;
+        long room = (segmentSize - segment.writePosition) / RECORD_SIZE + (maxSegments - segments.size()) * recordsPerSegment;
+        if (consumptions.size() > room) {
+            // all or nothing, so that a refused batch can be retried without duplicates
+            throw new IllegalStateException("The spool is full, " + backlog() + " records are waiting to be replayed");
+        }
+        List<Segment> touched = new ArrayList<>(1);
+        touched.add(segment);
+        for (Consumption consumption : consumptions) {
+            if (segment.writePosition + RECORD_SIZE > segmentSize) {
+                segment = createSegment();
+                segments.addLast(segment);
+                touched.add(segment);
+            }
+            encode(consumption, nextSequence);
+            segment.write(payload, crcOf(payload));
+            segment.lastSequence = nextSequence;
+            nextSequence++;
+        }
+        forceAll(touched);
+        return nextSequence - 1;
+    }
+
+    /**
+     * Read the next records to replay, without acknowledging them.
+     *
+     * @param maxRecords the maximum number of records to read.
+     * @return the records, possibly none.
+     */
+    synchronized Batch read(int maxRecords) {
+        List<Consumption> consumptions = new ArrayList<>(Math.min(maxRecords, 1024));
+        Segment segment = readSegment;
+        int position = readPosition;
+        long lastSequence = acknowledgedSequence;
+        while (consumptions.size() < maxRecords && segment != null) {
+            if (position >= segment.writePosition) {
+                if (segment == segments.peekLast()) {
+                    break;
+                }
+                segment = next(segment);
+                position = 0;
+                continue;
+            }
+            lastSequence = segment.buffer.getLong(position + HEADER_SIZE);
+            consumptions.add(decode(segment.buffer, position + HEADER_SIZE));
+            position += RECORD_SIZE;
+        }
+        return new Batch(consumptions, lastSequence, segment, position);
+    }
+
+    /**
+     * Acknowledge the records of a batch as committed, deleting the segments they emptied.
+     */
+    synchronized void acknowledge(Batch batch) {
+        if (batch.consumptions.isEmpty()) {
+            return;
+        }
+        readSegment = batch.endSegment;
+        readPosition = batch.endPosition;
+        acknowledgedSequence = batch.lastSequence;
+        deleteAcknowledgedSegments();
+    }
+
+    /**
+     * @return the number of records appended but not acknowledged yet.
+     */
+    synchronized long backlog() {
+        return nextSequence - 1 - acknowledgedSequence;
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        forceAll(segments);
+    }
+
+    private void deleteAcknowledgedSegments() {
+        while (segments.peekFirst() != readSegment) {
+            Segment segment = segments.pollFirst();
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Segment next(Segment segment) {
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == segment) {
+                return iterator.next();
+            }
+        }
+        throw new IllegalStateException("Segment " + segment.file + " is no longer part of the spool");
+    }
+
+    private Segment createSegment() throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        return new Segment(file, map(file));
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        ) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private static void forceAll(Iterable<Segment> segments) {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    private int crcOf(ByteBuffer buffer) {
+        crc.reset();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private void encode(Consumption consumption, long sequence) {
+        int flags = 0;
+        flags |= consumption.getValue() != null ? HAS_VALUE : 0;
+        flags |= consumption.getTimestamp() != null ? HAS_TIMESTAMP : 0;
+        flags |= consumption.getScope() != null ? HAS_SCOPE : 0;
+        flags |= consumption.getMonitoringType() != null ? HAS_MONITORING_TYPE : 0;
+        flags |= consumption.getMethod() != null && consumption.getMethod().getId() != null ? HAS_METHOD : 0;
+        Instant timestamp = consumption.getTimestamp();
+        payload.clear();
+        payload.putLong(sequence);
+        payload.put((byte) flags);
+        payload.putLong((flags & HAS_VALUE) != 0 ? consumption.getValue() : 0L);
+        payload.putLong(timestamp != null ? timestamp.getEpochSecond() : 0L);
+        payload.putInt(timestamp != null ? timestamp.getNano() : 0);
+        payload.put((byte) ((flags & HAS_SCOPE) != 0 ? consumption.getScope().ordinal() : 0));
+        payload.put((byte) ((flags & HAS_MONITORING_TYPE) != 0 ? consumption.getMonitoringType().ordinal() : 0));
+        payload.putLong((flags & HAS_METHOD) != 0 ? consumption.getMethod().getId() : 0L);
+        payload.flip();
+    }
+
+    private static Consumption decode(ByteBuffer buffer, int offset) {
+        int flags = buffer.get(offset + Long.BYTES);
+        int position = offset + Long.BYTES + 1;
+        long value = buffer.getLong(position);
+        long epochSecond = buffer.getLong(position + Long.BYTES);
+        int nano = buffer.getInt(position + Long.BYTES * 2);
+        int scope = buffer.get(position + Long.BYTES * 2 + Integer.BYTES);
+        int monitoringType = buffer.get(position + Long.BYTES * 2 + Integer.BYTES + 1);
+        long methodId = buffer.getLong(position + Long.BYTES * 2 + Integer.BYTES + 2);
+        Consumption consumption = new Consumption();
+        if ((flags & HAS_VALUE) != 0) {
+            consumption.setValue(value);
+        }
+        if ((flags & HAS_TIMESTAMP) != 0) {
+            consumption.setTimestamp(Instant.ofEpochSecond(epochSecond, nano));
+        }
+        if ((flags & HAS_SCOPE) != 0) {
+            consumption.setScope(SCOPES[scope]);
+        }
+        if ((flags & HAS_MONITORING_TYPE) != 0) {
+            consumption.setMonitoringType(MONITORING_TYPES[monitoringType]);
+        }
+        if ((flags & HAS_METHOD) != 0) {
+            consumption.setMethod(new Method().id(methodId));
+        }
+        return consumption;
+    }
+
+    /**
+     * Records read from the spool, with the position following them.
+     */
+    static final class Batch {
+
+        private final List<Consumption> consumptions;
+
+        private final long lastSequence;
+
+        private final Segment endSegment;
+
+        private final int endPosition;
+
+        private Batch(List<Consumption> consumptions, long lastSequence, Segment endSegment, int endPosition) {
+            this.consumptions = Collections.unmodifiableList(consumptions);
+            this.lastSequence = lastSequence;
+            this.endSegment = endSegment;
+            this.endPosition = endPosition;
+        }
+
+        List<Consumption> getConsumptions() {
+            return consumptions;
+        }
+
+        long getLastSequence() {
+            return lastSequence;
+        }
+
+        boolean isEmpty() {
+            return consumptions.isEmpty();
+        }
+    }
+
+    private final class Segment {
+
+        private final Path file;
+
+        private final MappedByteBuffer buffer;
+
+        private int writePosition;
+
+        private long lastSequence;
+
+        private Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Find the end of the valid records, and wipe what follows a torn record so that it is never read back.
+         */
+        private void scan() {
+            int position = 0;
+            while (position + RECORD_SIZE <= segmentSize) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                ByteBuffer record = buffer.duplicate();
+                record.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + PAYLOAD_SIZE);
+                if (length != PAYLOAD_SIZE || buffer.getInt(position + Integer.BYTES) != crcOf(record)) {
+                    ByteBuffer torn = buffer.duplicate();
+                    torn.position(position);
+                    byte[] zeros = new byte[8_192];
+                    while (torn.hasRemaining()) {
+                        torn.put(zeros, 0, Math.min(zeros.length, torn.remaining()));
+                    }
+                    buffer.force();
+                    break;
+                }
+                lastSequence = buffer.getLong(position + HEADER_SIZE);
+                position += RECORD_SIZE;
+            }
+            writePosition = position;
+        }
+
+        private void write(ByteBuffer payload, int checksum) {
+            int position = writePosition;
+            buffer.putInt(position + Integer.BYTES, checksum);
+            ByteBuffer target = buffer.duplicate();
+            target.position(position + HEADER_SIZE);
+            target.put(payload.duplicate());
+            // the length goes last: a record without it is never read back
+            buffer.putInt(position, PAYLOAD_SIZE);
+            writePosition = position + RECORD_SIZE;
+        }
+    }
+}
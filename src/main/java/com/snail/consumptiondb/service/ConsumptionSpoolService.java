@@ -0,0 +1,150 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.management.IngestionPipelineMetersService;
+import com.snail.consumptiondb.repository.SpoolCheckpointRepository;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service writing incoming {@link Consumption} to a local {@link ConsumptionSpool} and replaying it to the database
+ * in the background, so that uploads keep being acknowledged while the database is slow or down.
+ * <p>
+ * Each replayed batch is committed together with the spool checkpoint, so a replay after a crash skips what was
+ * already committed. On shutdown, the replay goes on for up to {@code application.ingestion.spool.drain-timeout};
+ * the records left are forced to disk and replayed at the next startup.
+ */
+@Service
+public class ConsumptionSpoolService {
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long MIN_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Logger log = LoggerFactory.getLogger(ConsumptionSpoolService.class);
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    private final SpoolCheckpointRepository spoolCheckpointRepository;
+
+    private final IngestionPipelineMetersService meters;
+
+    private final ApplicationProperties.Ingestion.Spool properties;
+
+    private String spoolId;
+
+    private ConsumptionSpool spool;
+
+    private Thread replayer;
+
+    private volatile boolean stopping;
+
+    public ConsumptionSpoolService(
+        ConsumptionIngestionService consumptionIngestionService,
+        SpoolCheckpointRepository spoolCheckpointRepository,
+        IngestionPipelineMetersService meters,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionIngestionService = consumptionIngestionService;
+        this.spoolCheckpointRepository = spoolCheckpointRepository;
+        this.meters = meters;
+        this.properties = applicationProperties.getIngestion().getSpool();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        spoolId = properties.getId() != null ? properties.getId() : InetAddress.getLocalHost().getHostName();
+        long committedSequence = spoolCheckpointRepository.findCommittedSequence(spoolId).orElse(0L);
+        spool =
+            ConsumptionSpool.open(
+                Paths.get(properties.getDirectory()),
+                properties.getSegmentSize().toBytes(),
+                properties.getMaxSize().toBytes(),
+                committedSequence
+            );
+        log.info("Opened ingestion spool {} in {}, {} records to replay", spoolId, properties.getDirectory(), spool.backlog());
+        meters.registerSpool(spool::backlog, spool::segmentCount);
+        replayer = new Thread(this::replay, "consumption-spool-replay");
+        replayer.setDaemon(true);
+        replayer.start();
+    }
+
+    /**
+     * Stop appending, then replay what can be within the drain timeout.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (spool == null) {
+            return;
+        }
+        stopping = true;
+        LockSupport.unpark(replayer);
+        replayer.join(Math.max(1, properties.getDrainTimeout().toMillis()));
+        if (replayer.isAlive()) {
+            replayer.interrupt();
+            replayer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        spool.close();
+        if (spool.backlog() > 0) {
+            log.warn("Ingestion spool {} closed with {} records left, they will be replayed at the next startup", spoolId, spool.backlog());
+        }
+    }
+
+    public boolean isEnabled() {
+        return spool != null;
+    }
+
+    /**
+     * Durably append consumptions to the spool.
+     *
+     * @param consumptions the consumptions to create.
+     * @throws IOException if the spool cannot be written.
+     * @throws IllegalStateException if the spool is disabled, closed or full.
+     */
+    public void append(List<Consumption> consumptions) throws IOException {
+        if (spool == null || stopping) {
+            throw new IllegalStateException("The ingestion spool is not accepting records");
+        }
+        spool.append(consumptions);
+        LockSupport.unpark(replayer);
+    }
+
+    private void replay() {
+        long retryNanos = MIN_RETRY_NANOS;
+        long maxRetryNanos = properties.getMaxRetryDelay().toNanos();
+        while (!Thread.currentThread().isInterrupted()) {
+            ConsumptionSpool.Batch batch = spool.read(properties.getReplayBatchSize());
+            if (batch.isEmpty()) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_NANOS);
+                continue;
+            }
+            try {
+                consumptionIngestionService.saveAllSpooled(spoolId, batch.getConsumptions(), batch.getLastSequence());
+                spool.acknowledge(batch);
+                retryNanos = MIN_RETRY_NANOS;
+            } catch (RuntimeException e) {
+                long retryMillis = TimeUnit.NANOSECONDS.toMillis(retryNanos);
+                log.warn("Replaying the ingestion spool failed, retrying in {} ms: {}", retryMillis, e.getMessage());
+                LockSupport.parkNanos(this, retryNanos);
+                retryNanos = Math.min(retryNanos * 2, maxRetryNanos);
+            }
+        }
+        log.debug("Ingestion spool replay stopped, {} records left", spool.backlog());
+    }
+}
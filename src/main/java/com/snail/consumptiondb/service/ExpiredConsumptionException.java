@@ -0,0 +1,22 @@
+package com.snail.consumptiondb.service;
+
+import java.time.Instant;
+
+/**
+ * Thrown when a write targets consumptions which the retention purge may already have deleted.
+ */
+public class ExpiredConsumptionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Instant timestamp;
+
+    public ExpiredConsumptionException(Instant timestamp) {
+        super("Consumptions at " + timestamp + " may have been purged, they cannot be written");
+        this.timestamp = timestamp;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+}
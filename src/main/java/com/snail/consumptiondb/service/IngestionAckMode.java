@@ -0,0 +1,17 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * When the ingestion pipeline acknowledges an upload.
+ */
+public enum IngestionAckMode {
+    /**
+     * As soon as every record is queued: fastest, but records later rejected or lost on a crash are not reported.
+     * Records go through the local spool when it is enabled, so that they survive a crash or a database outage.
+     */
+    ENQUEUE,
+
+    /**
+     * Once every record is either committed to the database or rejected, whether the spool is enabled or not.
+     */
+    COMMIT,
+}
@@ -0,0 +1,99 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service remembering the report of the ingestion batches sent with an {@code Idempotency-Key} header, so that a
+ * retried batch is answered with the original report instead of being ingested again.
+ * <p>
+ * Keys are kept for {@code application.ingestion.idempotency-key-ttl}.
+ */
+@Service
+@Transactional
+public class IngestionIdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final Logger log = LoggerFactory.getLogger(IngestionIdempotencyService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Duration keyTtl;
+
+    public IngestionIdempotencyService(JdbcTemplate jdbcTemplate, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.keyTtl = applicationProperties.getIngestion().getIdempotencyKeyTtl();
+    }
+
+    /**
+     * Get the report of the batch already ingested with an idempotency key.
+     *
+     * @param idempotencyKey the idempotency key.
+     * @return the report, if the key was already used.
+     */
+    @Transactional(readOnly = true)
+    public Optional<IngestionReportDTO> findReport(String idempotencyKey) {
+        log.debug("Request to get the ingestion report of idempotency key : {}", idempotencyKey);
+        List<IngestionReportDTO> reports = jdbcTemplate.query(
+            "select received, persisted, rejected from ingestion_idempotency_key where idempotency_key = ?",
+            (resultSet, rowNum) -> new IngestionReportDTO(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3), 0),
+            idempotencyKey
+        );
+        return reports.stream().findFirst();
+    }
+
+    /**
+     * Remember the report of a batch ingested with an idempotency key; the first report saved for a key is kept.
+     *
+     * @param idempotencyKey the idempotency key.
+     * @param report the ingestion report.
+     */
+    public void saveReport(String idempotencyKey, IngestionReportDTO report) {
+        log.debug("Request to save the ingestion report of idempotency key : {}", idempotencyKey);
+        jdbcTemplate.update(
+            "insert ignore into ingestion_idempotency_key (idempotency_key, received, persisted, rejected, created_date) " +
+            "values (?, ?, ?, ?, ?)",
+            statement -> {
+                statement.setString(1, idempotencyKey);
+                statement.setLong(2, report.getReceived());
+                statement.setLong(3, report.getPersisted());
+                statement.setLong(4, report.getRejected());
+                statement.setTimestamp(5, Timestamp.from(Instant.now()), Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC)));
+            }
+        );
+    }
+
+    /**
+     * Expired idempotency keys should be removed.
+     * <p>
+     * This is scheduled to get fired every hour.
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void removeExpiredKeys() {
+        Instant expiry = Instant.now().minus(keyTtl);
+        int removed = jdbcTemplate.update(
+            "delete from ingestion_idempotency_key where created_date < ?",
+            statement -> statement.setTimestamp(1, Timestamp.from(expiry), Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC)))
+        );
+        log.debug("Removed {} expired idempotency keys", removed);
+    }
+}
@@ -0,0 +1,576 @@
+package com.snail.consumptiondb.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.management.IngestionPipelineMetersService;
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Asynchronous ingestion pipeline for {@link Consumption} uploads.
+ * <p>
+ * Uploads are split into lines on the request thread and handed over to four stages, each running on its own thread:
+ * <ol>
+ *     <li>{@code parse}: the line is read as a consumption;</li>
+ *     <li>{@code resolve}: the referenced {@link Method} is checked to exist, in bulk;</li>
+ *     <li>{@code validate}: the mandatory fields are checked;</li>
+ *     <li>{@code persist}: records are coalesced into transactions of up to
+ *     {@code application.ingestion.pipeline.transaction-size} rows; the records of uploads acknowledged on
+ *     {@link IngestionAckMode#ENQUEUE} are appended to the local {@link ConsumptionSpoolService spool} instead when
+ *     it is enabled, those acknowledged on {@link IngestionAckMode#COMMIT} always reach the database.</li>
+ * </ol>
+ * Stages are connected by {@link BoundedRingBuffer}s of {@code application.ingestion.pipeline.buffer-size} records:
+ * a full buffer pushes back on the stage feeding it, and ultimately on the uploads, whose records are dropped if no room
+ * is made within {@code application.ingestion.pipeline.offer-timeout}. Invalid records are rejected and counted, they
+ * never fail the rest of the upload.
+ */
+@Service
+public class IngestionPipeline {
+
+    public static final String PARSE_STAGE = "parse";
+    public static final String RESOLVE_STAGE = "resolve";
+    public static final String VALIDATE_STAGE = "validate";
+    public static final String PERSIST_STAGE = "persist";
+
+    private static final int STAGE_BATCH_SIZE = 256;
+
+    private static final int MAX_KNOWN_METHOD_IDS = 100_000;
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private final ObjectReader consumptionReader;
+
+    private final MethodRepository methodRepository;
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    private final ConsumptionSpoolService consumptionSpoolService;
+
+    private final IngestionPipelineMetersService meters;
+
+    private final ApplicationProperties.Ingestion.Pipeline properties;
+
+    private final List<Stage> stages;
+
+    private final Stage parseStage;
+
+    private final AtomicInteger activeSubmissions = new AtomicInteger();
+
+    /**
+     * Ids of the methods known to exist, so that the resolve stage only queries the new ones.
+     */
+    private final Set<Long> knownMethodIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean accepting = true;
+
+    private volatile boolean ingressClosed;
+
+    public IngestionPipeline(
+        ObjectMapper objectMapper,
+        MethodRepository methodRepository,
+        ConsumptionIngestionService consumptionIngestionService,
+        ConsumptionSpoolService consumptionSpoolService,
+        IngestionPipelineMetersService meters,
+        ApplicationProperties applicationProperties
+    ) {
+        this.consumptionReader = objectMapper.readerFor(Consumption.class);
+        this.methodRepository = methodRepository;
+        this.consumptionIngestionService = consumptionIngestionService;
+        this.consumptionSpoolService = consumptionSpoolService;
+        this.meters = meters;
+        this.properties = applicationProperties.getIngestion().getPipeline();
+        this.parseStage = new ParseStage();
+        this.stages = Arrays.asList(parseStage, new ResolveStage(), new ValidateStage(), new PersistStage());
+        BooleanSupplier upstreamFinished = () -> ingressClosed;
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            stage.upstreamFinished = upstreamFinished;
+            stage.next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+            upstreamFinished = () -> stage.finished;
+            meters.registerQueue(stage.name, stage.input::size, stage.input.capacity());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Stage stage : stages) {
+            Thread thread = new Thread(stage, "ingestion-pipeline-" + stage.name);
+            thread.setDaemon(true);
+            stage.thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop accepting uploads, then wait for the queued records to be committed.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        log.debug("Shutting down the ingestion pipeline");
+        accepting = false;
+        long deadline = System.nanoTime() + properties.getShutdownTimeout().toNanos();
+        while (activeSubmissions.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        ingressClosed = true;
+        for (Stage stage : stages) {
+            if (stage.thread == null) {
+                continue;
+            }
+            stage.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (stage.thread.isAlive()) {
+                log.warn("Ingestion pipeline stage {} did not drain in time, {} records left", stage.name, stage.input.size());
+                stage.thread.interrupt();
+            }
+        }
+    }
+
+    public IngestionAckMode getDefaultAckMode() {
+        return properties.getAckMode();
+    }
+
+    /**
+     * Queue a stream of newline-delimited {@link Consumption} records.
+     *
+     * @param ndjson the upload, already decompressed.
+     * @param ackMode when the returned future completes.
+     * @return the ingestion report: with {@link IngestionAckMode#ENQUEUE}, it is complete as soon as the records are queued
+     * and only counts the dropped ones as rejected.
+     * @throws IOException if the upload cannot be read.
+     * @throws IllegalStateException if the pipeline is shutting down.
+     */
+    public CompletableFuture<IngestionReportDTO> submit(InputStream ndjson, IngestionAckMode ackMode) throws IOException {
+        activeSubmissions.incrementAndGet();
+        try {
+            if (!accepting) {
+                throw new IllegalStateException("The ingestion pipeline is shutting down");
+            }
+            long offerTimeoutNanos = properties.getOfferTimeout().toNanos();
+            Ticket ticket = new Ticket(ackMode);
+            long received = 0;
+            long dropped = 0;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                received++;
+                ticket.outstanding.incrementAndGet();
+                if (parseStage.offer(new PipelineRecord(ticket, received, line), offerTimeoutNanos)) {
+                    meters.trackRecordAccepted();
+                } else {
+                    ticket.outstanding.decrementAndGet();
+                    ticket.rejected.incrementAndGet();
+                    dropped++;
+                    meters.trackRecordDropped();
+                }
+            }
+            ticket.seal(received);
+            if (ackMode == IngestionAckMode.ENQUEUE) {
+                return CompletableFuture.completedFuture(new IngestionReportDTO(received, 0, dropped, ticket.durationMillis()));
+            }
+            return ticket.future;
+        } finally {
+            activeSubmissions.decrementAndGet();
+        }
+    }
+
+    private static int backoff(int idle) {
+        if (idle < 64) {
+            Thread.onSpinWait();
+        } else if (idle < 128) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+
+    /**
+     * A stage of the pipeline: a ring buffer drained in batches by a dedicated thread.
+     */
+    private abstract class Stage implements Runnable {
+
+        final String name;
+
+        final BoundedRingBuffer<PipelineRecord> input;
+
+        final int maxBatchSize;
+
+        final Timer latencyTimer;
+
+        final Counter rejectedCounter;
+
+        Stage next;
+
+        BooleanSupplier upstreamFinished;
+
+        Thread thread;
+
+        volatile boolean finished;
+
+        Stage(String name, int maxBatchSize) {
+            this.name = name;
+            this.input = new BoundedRingBuffer<>(properties.getBufferSize());
+            this.maxBatchSize = maxBatchSize;
+            this.latencyTimer = meters.stageLatencyTimer(name);
+            this.rejectedCounter = meters.rejectedCounter(name);
+        }
+
+        @Override
+        public void run() {
+            List<PipelineRecord> batch = new ArrayList<>(maxBatchSize);
+            List<PipelineRecord> processed = new ArrayList<>(maxBatchSize);
+            int idle = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                collect(batch);
+                if (batch.isEmpty()) {
+                    if (upstreamFinished.getAsBoolean() && input.isEmpty()) {
+                        break;
+                    }
+                    idle = backoff(idle);
+                    continue;
+                }
+                idle = 0;
+                try {
+                    process(batch, processed);
+                    long now = System.nanoTime();
+                    for (PipelineRecord record : processed) {
+                        latencyTimer.record(now - record.enteredStageNanos, TimeUnit.NANOSECONDS);
+                        if (next != null) {
+                            next.put(record);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Ingestion pipeline stage {} failed on {} records: {}", name, batch.size(), e.getMessage(), e);
+                    List<PipelineRecord> failed = batch.stream().filter(record -> !record.done).collect(Collectors.toList());
+                    meters.trackRecordsFailed(failed.size());
+                    failed.forEach(record -> record.fail(e));
+                }
+                batch.clear();
+                processed.clear();
+            }
+            finished = true;
+        }
+
+        void collect(List<PipelineRecord> batch) {
+            input.drainTo(batch, maxBatchSize);
+        }
+
+        /**
+         * Process a batch of records, adding the ones to hand over to the next stage to {@code processed}.
+         */
+        abstract void process(List<PipelineRecord> batch, List<PipelineRecord> processed);
+
+        boolean offer(PipelineRecord record, long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            record.enteredStageNanos = System.nanoTime();
+            int idle = 0;
+            while (!input.offer(record)) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                idle = backoff(idle);
+            }
+            return true;
+        }
+
+        void put(PipelineRecord record) {
+            record.enteredStageNanos = System.nanoTime();
+            int idle = 0;
+            while (!input.offer(record)) {
+                idle = backoff(idle);
+            }
+        }
+
+        void reject(PipelineRecord record, String reason) {
+            log.debug("Record {} rejected by the {} stage: {}", record.lineNumber, name, reason);
+            rejectedCounter.increment();
+            record.reject();
+        }
+    }
+
+    private final class ParseStage extends Stage {
+
+        ParseStage() {
+            super(PARSE_STAGE, STAGE_BATCH_SIZE);
+        }
+
+        @Override
+        void process(List<PipelineRecord> batch, List<PipelineRecord> processed) {
+            for (PipelineRecord record : batch) {
+                try {
+                    record.consumption = consumptionReader.readValue(record.line);
+                    record.line = null;
+                    processed.add(record);
+                } catch (JsonProcessingException e) {
+                    reject(record, e.getOriginalMessage());
+                }
+            }
+        }
+    }
+
+    private final class ResolveStage extends Stage {
+
+        ResolveStage() {
+            super(RESOLVE_STAGE, STAGE_BATCH_SIZE);
+        }
+
+        @Override
+        void process(List<PipelineRecord> batch, List<PipelineRecord> processed) {
+            Set<Long> unknownIds = batch
+                .stream()
+                .map(record -> record.consumption.getMethod())
+                .filter(method -> method != null && method.getId() != null && !knownMethodIds.contains(method.getId()))
+                .map(Method::getId)
+                .collect(Collectors.toCollection(HashSet::new));
+            if (!unknownIds.isEmpty()) {
+                if (knownMethodIds.size() + unknownIds.size() > MAX_KNOWN_METHOD_IDS) {
+                    knownMethodIds.clear();
+                }
+                knownMethodIds.addAll(methodRepository.findExistingIds(unknownIds));
+            }
+            for (PipelineRecord record : batch) {
+                Method method = record.consumption.getMethod();
+                if (method == null) {
+                    processed.add(record);
+                } else if (method.getId() == null) {
+                    reject(record, "the method must be referenced by its id");
+                } else if (!knownMethodIds.contains(method.getId())) {
+                    reject(record, "unknown method " + method.getId());
+                } else {
+                    record.consumption.setMethod(new Method().id(method.getId()));
+                    processed.add(record);
+                }
+            }
+        }
+    }
+
+    private final class ValidateStage extends Stage {
+
+        ValidateStage() {
+            super(VALIDATE_STAGE, STAGE_BATCH_SIZE);
+        }
+
+        @Override
+        void process(List<PipelineRecord> batch, List<PipelineRecord> processed) {
+            for (PipelineRecord record : batch) {
+                Consumption consumption = record.consumption;
+                if (consumption.getId() != null) {
+                    reject(record, "a new record cannot already have an ID");
+                } else if (
+                    consumption.getValue() == null ||
+                    consumption.getTimestamp() == null ||
+                    consumption.getScope() == null ||
+                    consumption.getMonitoringType() == null
+                ) {
+                    reject(record, "value, timestamp, scope and monitoringType are mandatory");
+                } else {
+                    processed.add(record);
+                }
+            }
+        }
+    }
+
+    private final class PersistStage extends Stage {
+
+        PersistStage() {
+            super(PERSIST_STAGE, properties.getTransactionSize());
+        }
+
+        /**
+         * Coalesce records into large transactions: wait up to the linger delay for a partial batch to fill up.
+         */
+        @Override
+        void collect(List<PipelineRecord> batch) {
+            input.drainTo(batch, maxBatchSize);
+            if (batch.isEmpty() || batch.size() == maxBatchSize || upstreamFinished.getAsBoolean()) {
+                return;
+            }
+            long deadline = System.nanoTime() + properties.getLinger().toNanos();
+            while (batch.size() < maxBatchSize && System.nanoTime() - deadline < 0) {
+                if (input.drainTo(batch, maxBatchSize - batch.size()) == 0) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+
+        /**
+         * Persist a batch of records: the ones skipped as duplicates of stored consumptions are counted apart, and the
+         * ones refused by {@link ConsumptionIngestionService} are rejected.
+         */
+        @Override
+        void process(List<PipelineRecord> batch, List<PipelineRecord> processed) {
+            List<Consumption> committed = new ArrayList<>(batch.size());
+            List<Consumption> spooled = new ArrayList<>();
+            for (PipelineRecord record : batch) {
+                if (isSpooled(record)) {
+                    spooled.add(record.consumption);
+                } else {
+                    committed.add(record.consumption);
+                }
+            }
+            if (!spooled.isEmpty()) {
+                try {
+                    consumptionSpoolService.append(spooled);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            Set<Consumption> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!committed.isEmpty()) {
+                consumptionIngestionService.saveAll(committed, rejected);
+            }
+            for (PipelineRecord record : batch) {
+                if (rejected.contains(record.consumption)) {
+                    reject(record, "the consumption is past the retention of its series");
+                    continue;
+                }
+                // Upserts leave the duplicates of stored consumptions without an id
+                if (isSpooled(record) || record.consumption.getId() != null) {
+                    meters.trackRecordsPersisted(1);
+                    record.persist();
+                } else {
+                    meters.trackRecordsDuplicate(1);
+                    record.skip();
+                }
+                processed.add(record);
+            }
+        }
+
+        private boolean isSpooled(PipelineRecord record) {
+            return record.ticket.ackMode == IngestionAckMode.ENQUEUE && consumptionSpoolService.isEnabled();
+        }
+    }
+
+    /**
+     * A line of an upload going through the pipeline.
+     */
+    private static final class PipelineRecord {
+
+        private final Ticket ticket;
+
+        private final long lineNumber;
+
+        private String line;
+
+        private Consumption consumption;
+
+        private long enteredStageNanos;
+
+        private boolean done;
+
+        private PipelineRecord(Ticket ticket, long lineNumber, String line) {
+            this.ticket = ticket;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        private void persist() {
+            done = true;
+            ticket.persisted.incrementAndGet();
+            ticket.release();
+        }
+
+        private void skip() {
+            done = true;
+            ticket.release();
+        }
+
+        private void reject() {
+            done = true;
+            ticket.rejected.incrementAndGet();
+            ticket.release();
+        }
+
+        private void fail(Throwable cause) {
+            done = true;
+            ticket.future.completeExceptionally(cause);
+            ticket.release();
+        }
+    }
+
+    /**
+     * The progress of an upload, completing its future once every record is either persisted, skipped as a duplicate or
+     * rejected.
+     */
+    private static final class Ticket {
+
+        private final IngestionAckMode ackMode;
+
+        private final CompletableFuture<IngestionReportDTO> future = new CompletableFuture<>();
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicLong outstanding = new AtomicLong();
+
+        private final AtomicLong persisted = new AtomicLong();
+
+        private final AtomicLong rejected = new AtomicLong();
+
+        private volatile long received;
+
+        private volatile boolean sealed;
+
+        private Ticket(IngestionAckMode ackMode) {
+            this.ackMode = ackMode;
+        }
+
+        private void seal(long received) {
+            this.received = received;
+            sealed = true;
+            if (outstanding.get() == 0) {
+                complete();
+            }
+        }
+
+        private void release() {
+            if (outstanding.decrementAndGet() == 0 && sealed) {
+                complete();
+            }
+        }
+
+        private long durationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        private void complete() {
+            future.complete(new IngestionReportDTO(received, persisted.get(), rejected.get(), durationMillis()));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Thrown when a block of a binary upload cannot be decoded.
+ * <p>
+ * Binary uploads are committed block by block, so the exception reports how many samples were already committed
+ * before the faulty block.
+ */
+public class InvalidIngestionBlockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long blockNumber;
+
+    private final long committed;
+
+    public InvalidIngestionBlockException(String message, long blockNumber, long committed, Throwable cause) {
+        super("Invalid block " + blockNumber + " (" + committed + " samples already committed): " + message, cause);
+        this.blockNumber = blockNumber;
+        this.committed = committed;
+    }
+
+    public long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+}
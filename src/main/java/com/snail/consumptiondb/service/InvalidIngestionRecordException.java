@@ -0,0 +1,34 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Thrown when a record of a streamed upload cannot be ingested.
+ * <p>
+ * Streamed uploads are committed chunk by chunk, so the exception reports how many records were already committed
+ * before the faulty one.
+ */
+public class InvalidIngestionRecordException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber;
+
+    private final long committed;
+
+    public InvalidIngestionRecordException(String message, long lineNumber, long committed) {
+        this(message, lineNumber, committed, null);
+    }
+
+    public InvalidIngestionRecordException(String message, long lineNumber, long committed, Throwable cause) {
+        super("Invalid record at line " + lineNumber + " (" + committed + " records already committed): " + message, cause);
+        this.lineNumber = lineNumber;
+        this.committed = committed;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+}
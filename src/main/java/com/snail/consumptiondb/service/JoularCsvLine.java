@@ -0,0 +1,69 @@
+package com.snail.consumptiondb.service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A line of the per-method energy CSV files produced by JoularJX: {@code method name,value,timestamp}.
+ * <p>
+ * Method names may contain commas (parameter lists), so the two last fields are read from the end of the line.
+ * Timestamps are either epoch milliseconds or ISO-8601 instants.
+ */
+final class JoularCsvLine {
+
+    private final String methodName;
+
+    private final long value;
+
+    private final Instant timestamp;
+
+    private JoularCsvLine(String methodName, long value, Instant timestamp) {
+        this.methodName = methodName;
+        this.value = value;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Parse a CSV line.
+     *
+     * @param line the line, without its line terminator.
+     * @return the parsed line.
+     * @throws IllegalArgumentException if the line is not a valid {@code method name,value,timestamp} triple.
+     */
+    static JoularCsvLine parse(String line) {
+        int timestampSeparator = line.lastIndexOf(',');
+        int valueSeparator = timestampSeparator > 0 ? line.lastIndexOf(',', timestampSeparator - 1) : -1;
+        if (valueSeparator <= 0) {
+            throw new IllegalArgumentException("Expected 'method name,value,timestamp'");
+        }
+        String methodName = line.substring(0, valueSeparator).trim();
+        if (methodName.isEmpty()) {
+            throw new IllegalArgumentException("Empty method name");
+        }
+        long value = Long.parseLong(line.substring(valueSeparator + 1, timestampSeparator).trim());
+        return new JoularCsvLine(methodName, value, parseTimestamp(line.substring(timestampSeparator + 1).trim()));
+    }
+
+    private static Instant parseTimestamp(String timestamp) {
+        if (!timestamp.isEmpty() && timestamp.chars().allMatch(Character::isDigit)) {
+            return Instant.ofEpochMilli(Long.parseLong(timestamp));
+        }
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp '" + timestamp + "'", e);
+        }
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    long getValue() {
+        return value;
+    }
+
+    Instant getTimestamp() {
+        return timestamp;
+    }
+}
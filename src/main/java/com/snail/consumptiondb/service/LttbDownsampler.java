@@ -0,0 +1,98 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling: the first and last points are kept, and each bucket in between keeps
+ * the point forming the largest triangle with the point kept for the previous bucket and the average of the next one.
+ * <p>
+ * Only the points of the bucket being decided and of the one after it are held.
+ */
+final class LttbDownsampler extends SeriesDownsampler {
+
+    private SeriesPoints current = new SeriesPoints(64);
+
+    private SeriesPoints next = new SeriesPoints(64);
+
+    private int nextBucket = -1;
+
+    private boolean started;
+
+    private long selectedTimestamp;
+
+    private long selectedValue;
+
+    /**
+     * @param points the maximum number of points of the downsampled series, at least 3.
+     */
+    LttbDownsampler(long from, long to, int points) {
+        super(from, to, points - 2);
+    }
+
+    @Override
+    void accept(long timestamp, long value, int bucket) {
+        if (!started) {
+            started = true;
+            select(timestamp, value);
+            return;
+        }
+        if (bucket != nextBucket) {
+            if (!next.isEmpty()) {
+                if (!current.isEmpty()) {
+                    selectFrom(current, next.meanTimestamp(), next.meanValue());
+                }
+                SeriesPoints decided = current;
+                current = next;
+                next = decided;
+                next.clear();
+            }
+            nextBucket = bucket;
+        }
+        next.add(timestamp, value);
+    }
+
+    @Override
+    void flush() {
+        SeriesPoints tail = next.isEmpty() ? current : next;
+        if (tail.isEmpty()) {
+            return;
+        }
+        long lastTimestamp = tail.getTimestamp(tail.size() - 1);
+        long lastValue = tail.getValue(tail.size() - 1);
+        tail.removeLast();
+        if (!current.isEmpty()) {
+            if (next.isEmpty()) {
+                selectFrom(current, lastTimestamp, lastValue);
+            } else {
+                selectFrom(current, next.meanTimestamp(), next.meanValue());
+            }
+        }
+        if (!next.isEmpty()) {
+            selectFrom(next, lastTimestamp, lastValue);
+        }
+        select(lastTimestamp, lastValue);
+    }
+
+    /**
+     * Keep the point of a bucket forming the largest triangle with the last kept point and a third point.
+     */
+    private void selectFrom(SeriesPoints bucket, double thirdTimestamp, double thirdValue) {
+        double maxArea = -1;
+        int selected = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            double area = Math.abs(
+                (selectedTimestamp - thirdTimestamp) * ((double) bucket.getValue(i) - selectedValue) -
+                ((double) selectedTimestamp - bucket.getTimestamp(i)) * (thirdValue - selectedValue)
+            );
+            if (area > maxArea) {
+                maxArea = area;
+                selected = i;
+            }
+        }
+        select(bucket.getTimestamp(selected), bucket.getValue(selected));
+    }
+
+    private void select(long timestamp, long value) {
+        output.add(timestamp, value);
+        selectedTimestamp = timestamp;
+        selectedValue = value;
+    }
+}
@@ -0,0 +1,160 @@
+package com.snail.consumptiondb.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix tree of fully qualified method names, split on dots, with the energy of every prefix summed bottom-up.
+ * <p>
+ * Parameter lists are kept whole in the method segment, dots included. Adding a method updates the totals of its
+ * ancestors only, so the tree is grown in place rather than rebuilt. Not thread-safe.
+ */
+final class MethodTree {
+
+    private final Node root = new Node("", "", MethodTreeNodeType.PACKAGE);
+
+    private final long expiresAt;
+
+    MethodTree(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param now the current {@link System#nanoTime()}.
+     */
+    boolean isExpired(long now) {
+        return now - expiresAt >= 0;
+    }
+
+    /**
+     * Add a method to the tree, or add energy to it if it is already there.
+     *
+     * @param methodName the fully qualified name of the method.
+     * @param sum the energy of the method.
+     */
+    void add(String methodName, long sum) {
+        List<String> segments = segments(methodName);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Node node = root;
+        List<Node> path = new ArrayList<>(segments.size() + 1);
+        path.add(root);
+        for (int i = 0; i < segments.size(); i++) {
+            MethodTreeNodeType type = i == segments.size() - 1
+                ? MethodTreeNodeType.METHOD
+                : i == segments.size() - 2 ? MethodTreeNodeType.CLASS : MethodTreeNodeType.PACKAGE;
+            node = node.child(segments.get(i), type);
+            path.add(node);
+        }
+        boolean added = !node.method;
+        node.method = true;
+        for (Node ancestor : path) {
+            ancestor.sum += sum;
+            if (added) {
+                ancestor.methodCount++;
+            }
+        }
+    }
+
+    /**
+     * Add methods without energy yet, leaving the ones already in the tree unchanged.
+     */
+    void addAll(Collection<String> methodNames) {
+        methodNames.forEach(methodName -> add(methodName, 0));
+    }
+
+    /**
+     * @param path the dot-separated prefix, empty for the root.
+     * @return the node of the prefix, or {@code null} if no method starts with it.
+     */
+    Node find(String path) {
+        Node node = root;
+        for (String segment : segments(path)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return the segments of a fully qualified name, its parameter list being part of the last one.
+     */
+    static List<String> segments(String name) {
+        int parameters = name.indexOf('(');
+        String qualifiedName = parameters < 0 ? name : name.substring(0, parameters);
+        List<String> segments = new ArrayList<>();
+        int from = 0;
+        for (int to = qualifiedName.indexOf('.'); to >= 0; to = qualifiedName.indexOf('.', from)) {
+            if (to > from) {
+                segments.add(qualifiedName.substring(from, to));
+            }
+            from = to + 1;
+        }
+        String last = name.substring(from);
+        if (!last.isEmpty()) {
+            segments.add(last);
+        }
+        return segments;
+    }
+
+    static final class Node {
+
+        private final String name;
+
+        private final String path;
+
+        private MethodTreeNodeType type;
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private boolean method;
+
+        private long sum;
+
+        private int methodCount;
+
+        private Node(String name, String path, MethodTreeNodeType type) {
+            this.name = name;
+            this.path = path;
+            this.type = type;
+        }
+
+        private Node child(String segment, MethodTreeNodeType childType) {
+            Node child = children.computeIfAbsent(segment, key -> new Node(key, path.isEmpty() ? key : path + "." + key, childType));
+            if (childType.compareTo(child.type) > 0) {
+                child.type = childType;
+            }
+            return child;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        MethodTreeNodeType getType() {
+            return type;
+        }
+
+        Collection<Node> getChildren() {
+            return children.values();
+        }
+
+        long getSum() {
+            return sum;
+        }
+
+        int getMethodCount() {
+            return methodCount;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Level of a node of a method tree, inferred from the position of its segment in the fully qualified method names.
+ */
+public enum MethodTreeNodeType {
+    PACKAGE,
+    CLASS,
+    METHOD,
+}
@@ -0,0 +1,156 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ReleaseMethodTotal;
+import com.snail.consumptiondb.service.dto.MethodTreeNodeDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Service keeping in memory the package, class and method tree of the methods of {@link com.snail.consumptiondb.domain.Release}s,
+ * with their energy summed bottom-up, to drill down into it one level at a time.
+ * <p>
+ * A tree is built from the day rollups on the first request for its release and filters, and kept for
+ * {@code application.method-tree.time-to-live}. Methods created for a release meanwhile are inserted into its trees as
+ * their transaction commits; energy totals are only refreshed when the tree is rebuilt.
+ */
+@Service
+public class MethodTreeService {
+
+    private static final Comparator<MethodTree.Node> BY_DECREASING_SUM = Comparator
+        .comparingLong(MethodTree.Node::getSum)
+        .reversed()
+        .thenComparing(MethodTree.Node::getName);
+
+    private final Logger log = LoggerFactory.getLogger(MethodTreeService.class);
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final long timeToLiveNanos;
+
+    private final int maxTrees;
+
+    private final Map<List<Object>, MethodTree> trees = new ConcurrentHashMap<>();
+
+    public MethodTreeService(ConsumptionRollupRepository consumptionRollupRepository, ApplicationProperties applicationProperties) {
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.timeToLiveNanos = applicationProperties.getMethodTree().getTimeToLive().toNanos();
+        this.maxTrees = applicationProperties.getMethodTree().getMaxTrees();
+    }
+
+    /**
+     * Get a node of the method tree of a release with its children.
+     *
+     * @param releaseId the id of the release.
+     * @param path the dot-separated prefix of the node, empty for the root.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the node, with its children by decreasing energy, or empty if no method of the release starts with the prefix.
+     */
+    @Transactional(readOnly = true)
+    public Optional<MethodTreeNodeDTO> drillDown(long releaseId, String path, Scope scope, MonitoringType monitoringType) {
+        log.debug("Request to drill down into '{}' of the method tree of Release {}", path, releaseId);
+        MethodTree tree = tree(releaseId, scope, monitoringType);
+        synchronized (tree) {
+            MethodTree.Node node = tree.find(path);
+            if (node == null) {
+                return Optional.empty();
+            }
+            MethodTreeNodeDTO dto = toDto(node);
+            List<MethodTree.Node> children = new ArrayList<>(node.getChildren());
+            children.sort(BY_DECREASING_SUM);
+            List<MethodTreeNodeDTO> childDtos = new ArrayList<>(children.size());
+            children.forEach(child -> childDtos.add(toDto(child)));
+            dto.setChildren(childDtos);
+            return Optional.of(dto);
+        }
+    }
+
+    /**
+     * Insert methods created for a release into its trees, once the current transaction, if any, commits.
+     *
+     * @param releaseId the id of the release.
+     * @param methodNames the names of the methods.
+     */
+    public void addMethods(long releaseId, Collection<String> methodNames) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        insertMethods(releaseId, methodNames);
+                    }
+                }
+            );
+        } else {
+            insertMethods(releaseId, methodNames);
+        }
+    }
+
+    /**
+     * Drop the trees of a release whose methods were replaced or which was deleted.
+     *
+     * @param releaseId the id of the release.
+     */
+    public void evict(long releaseId) {
+        trees.keySet().removeIf(key -> key.get(0).equals(releaseId));
+    }
+
+    private void insertMethods(long releaseId, Collection<String> methodNames) {
+        trees.forEach((key, tree) -> {
+            if (key.get(0).equals(releaseId)) {
+                synchronized (tree) {
+                    tree.addAll(methodNames);
+                }
+            }
+        });
+    }
+
+    private MethodTree tree(long releaseId, Scope scope, MonitoringType monitoringType) {
+        List<Object> key = Arrays.asList(releaseId, scope, monitoringType);
+        long now = System.nanoTime();
+        MethodTree tree = trees.get(key);
+        if (tree != null && !tree.isExpired(now)) {
+            return tree;
+        }
+        log.debug("Building the method tree of Release {}", releaseId);
+        MethodTree built = new MethodTree(now + timeToLiveNanos);
+        for (ReleaseMethodTotal total : consumptionRollupRepository.findMethodTotals(List.of(releaseId), scope, monitoringType)) {
+            built.add(total.getMethodName(), total.getSum() == null ? 0 : total.getSum());
+        }
+        if (trees.size() >= maxTrees) {
+            trees.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+            if (trees.size() >= maxTrees) {
+                trees.clear();
+            }
+        }
+        trees.put(key, built);
+        return built;
+    }
+
+    private static MethodTreeNodeDTO toDto(MethodTree.Node node) {
+        MethodTreeNodeDTO dto = new MethodTreeNodeDTO();
+        dto.setName(node.getName());
+        dto.setPath(node.getPath());
+        dto.setType(node.getType());
+        dto.setSum(node.getSum());
+        dto.setMethodCount(node.getMethodCount());
+        dto.setChildCount(node.getChildren().size());
+        return dto;
+    }
+}
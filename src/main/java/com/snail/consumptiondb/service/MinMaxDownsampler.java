@@ -0,0 +1,62 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Min/max downsampling: each bucket keeps its lowest and highest points, in timestamp order, so that no peak is lost.
+ * <p>
+ * Only the extremes of the current bucket are held.
+ */
+final class MinMaxDownsampler extends SeriesDownsampler {
+
+    private int bucket = -1;
+
+    private long minTimestamp;
+
+    private long minValue;
+
+    private long maxTimestamp;
+
+    private long maxValue;
+
+    /**
+     * @param points the maximum number of points of the downsampled series, at least 2.
+     */
+    MinMaxDownsampler(long from, long to, int points) {
+        super(from, to, points / 2);
+    }
+
+    @Override
+    void accept(long timestamp, long value, int pointBucket) {
+        if (pointBucket != bucket) {
+            flush();
+            bucket = pointBucket;
+            minTimestamp = maxTimestamp = timestamp;
+            minValue = maxValue = value;
+            return;
+        }
+        if (value < minValue) {
+            minTimestamp = timestamp;
+            minValue = value;
+        }
+        if (value > maxValue) {
+            maxTimestamp = timestamp;
+            maxValue = value;
+        }
+    }
+
+    @Override
+    void flush() {
+        if (bucket < 0) {
+            return;
+        }
+        if (minTimestamp == maxTimestamp && minValue == maxValue) {
+            output.add(minTimestamp, minValue);
+        } else if (minTimestamp <= maxTimestamp) {
+            output.add(minTimestamp, minValue);
+            output.add(maxTimestamp, maxValue);
+        } else {
+            output.add(maxTimestamp, maxValue);
+            output.add(minTimestamp, minValue);
+        }
+        bucket = -1;
+    }
+}
@@ -0,0 +1,15 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Per-method values compared by a release diff.
+ */
+public enum ReleaseDiffMetric {
+    /**
+     * Total of the consumption values.
+     */
+    SUM,
+    /**
+     * Mean of the consumption values, which does not depend on how long each release was measured.
+     */
+    MEAN,
+}
@@ -0,0 +1,153 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ReleaseMethodTotal;
+import com.snail.consumptiondb.service.dto.MethodDiffDTO;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service comparing the consumption of the methods of two {@link com.snail.consumptiondb.domain.Release}s.
+ * <p>
+ * The per-method totals of both releases come from the day rollups, ordered by method name, and are merged in a
+ * single pass. Diffs are cached until the rollups are next refreshed, see {@link #evictAll()}: consumptions can still
+ * be imported into released versions.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReleaseDiffService {
+
+    /**
+     * Name of the cache of release diffs.
+     */
+    public static final String RELEASE_DIFF_CACHE = "releaseDiffs";
+
+    private static final Map<String, Function<MethodDiffDTO, Comparable<?>>> SORT_PROPERTIES = Map.of(
+        "methodName",
+        MethodDiffDTO::getMethodName,
+        "status",
+        MethodDiffDTO::getStatus,
+        "baseValue",
+        MethodDiffDTO::getBaseValue,
+        "targetValue",
+        MethodDiffDTO::getTargetValue,
+        "delta",
+        MethodDiffDTO::getDelta,
+        "relativeDelta",
+        MethodDiffDTO::getRelativeDelta
+    );
+
+    private final Logger log = LoggerFactory.getLogger(ReleaseDiffService.class);
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    public ReleaseDiffService(ConsumptionRollupRepository consumptionRollupRepository) {
+        this.consumptionRollupRepository = consumptionRollupRepository;
+    }
+
+    /**
+     * Compare the consumption of the methods of two releases.
+     *
+     * @param baseReleaseId the release compared from.
+     * @param targetReleaseId the release compared to.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param metric the compared value.
+     * @return the diff of every method of either release, ordered by method name.
+     */
+    @Cacheable(cacheNames = RELEASE_DIFF_CACHE)
+    public List<MethodDiffDTO> diff(
+        long baseReleaseId,
+        long targetReleaseId,
+        Scope scope,
+        MonitoringType monitoringType,
+        ReleaseDiffMetric metric
+    ) {
+        log.debug("Request to diff Release {} with Release {}", baseReleaseId, targetReleaseId);
+        List<MethodDiffDTO> diff = new ArrayList<>();
+        ReleaseMethodTotal base = null;
+        ReleaseMethodTotal target = null;
+        String methodName = null;
+        for (ReleaseMethodTotal total : consumptionRollupRepository.findMethodTotals(
+            List.of(baseReleaseId, targetReleaseId),
+            scope,
+            monitoringType
+        )) {
+            if (!total.getMethodName().equals(methodName)) {
+                if (methodName != null) {
+                    diff.add(diffOf(methodName, base, target, metric));
+                }
+                methodName = total.getMethodName();
+                base = null;
+                target = null;
+            }
+            if (total.getReleaseId() == baseReleaseId) {
+                base = total;
+            }
+            if (total.getReleaseId() == targetReleaseId) {
+                target = total;
+            }
+        }
+        if (methodName != null) {
+            diff.add(diffOf(methodName, base, target, metric));
+        }
+        return diff;
+    }
+
+    /**
+     * Drop every cached diff, once the rollups they were computed from changed or the methods of a release did.
+     */
+    @CacheEvict(cacheNames = RELEASE_DIFF_CACHE, allEntries = true)
+    public void evictAll() {
+        log.debug("Evicting the cached Release diffs");
+    }
+
+    /**
+     * @return a comparator of method diffs, missing values last whatever the direction.
+     * @throws IllegalArgumentException if a property of the sort is not a property of {@link MethodDiffDTO}.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static Comparator<MethodDiffDTO> comparatorOf(Sort sort) {
+        Comparator<MethodDiffDTO> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Function<MethodDiffDTO, Comparable<?>> property = SORT_PROPERTIES.get(order.getProperty());
+            if (property == null) {
+                throw new IllegalArgumentException("Unknown sort property " + order.getProperty());
+            }
+            Comparator<Comparable> values = order.isAscending() ? Comparator.naturalOrder() : Comparator.reverseOrder();
+            comparator = comparator.thenComparing(diff -> (Comparable) property.apply(diff), Comparator.nullsLast(values));
+        }
+        return comparator.thenComparing(MethodDiffDTO::getMethodName);
+    }
+
+    private static MethodDiffDTO diffOf(String methodName, ReleaseMethodTotal base, ReleaseMethodTotal target, ReleaseDiffMetric metric) {
+        MethodDiffDTO.Status status;
+        if (base == null) {
+            status = MethodDiffDTO.Status.ADDED;
+        } else if (target == null) {
+            status = MethodDiffDTO.Status.REMOVED;
+        } else {
+            status = MethodDiffDTO.Status.COMMON;
+        }
+        return new MethodDiffDTO(methodName, status, valueOf(base, metric), valueOf(target, metric));
+    }
+
+    private static Double valueOf(ReleaseMethodTotal total, ReleaseDiffMetric metric) {
+        if (total == null || total.getCount() == 0 || total.getSum() == null) {
+            return null;
+        }
+        return metric == ReleaseDiffMetric.SUM ? (double) total.getSum() : (double) total.getSum() / total.getCount();
+    }
+}
@@ -0,0 +1,107 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.repository.MethodRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service resolving the {@link Method}s of a {@link Release} by name, in bulk.
+ */
+@Service
+@Transactional
+public class ReleaseMethodService {
+
+    private static final int IN_CLAUSE_SIZE = 1_000;
+
+    private final Logger log = LoggerFactory.getLogger(ReleaseMethodService.class);
+
+    private final MethodRepository methodRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManager entityManager;
+
+    private final MethodTreeService methodTreeService;
+
+    private final int batchSize;
+
+    public ReleaseMethodService(
+        MethodRepository methodRepository,
+        JdbcTemplate jdbcTemplate,
+        EntityManager entityManager,
+        MethodTreeService methodTreeService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.methodRepository = methodRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.methodTreeService = methodTreeService;
+        this.batchSize = applicationProperties.getIngestion().getBatchSize();
+    }
+
+    /**
+     * Resolve methods of a release by name, creating and attaching to the release the ones that do not exist yet.
+     * <p>
+     * Lookups are done with chunked {@code IN} queries, and the release/method links are inserted with a JDBC batch
+     * rather than through {@link Release#getMethods()}, which would load every method of the release.
+     *
+     * @param releaseId the id of the release.
+     * @param names the method names.
+     * @return the method ids, by name.
+     */
+    public Map<String, Long> resolveOrCreate(Long releaseId, Collection<String> names) {
+        log.debug("Request to resolve {} Methods of Release : {}", names.size(), releaseId);
+        List<String> pending = new ArrayList<>(names);
+        Map<String, Long> ids = new HashMap<>(pending.size() * 2);
+        for (int from = 0; from < pending.size(); from += IN_CLAUSE_SIZE) {
+            List<String> chunk = pending.subList(from, Math.min(from + IN_CLAUSE_SIZE, pending.size()));
+            for (Method method : methodRepository.findAllByReleaseIdAndNameIn(releaseId, chunk)) {
+                ids.putIfAbsent(method.getName(), method.getId());
+            }
+        }
+        List<Method> created = new ArrayList<>();
+        for (String name : pending) {
+            if (!ids.containsKey(name)) {
+                created.add(new Method().name(name));
+            }
+        }
+        if (created.isEmpty()) {
+            return ids;
+        }
+        methodRepository.saveAll(created);
+        methodRepository.flush();
+        jdbcTemplate.batchUpdate(
+            "insert into rel_jhi_release__method (jhi_release_id, method_id) values (?, ?)",
+            created,
+            batchSize,
+            (ps, method) -> {
+                ps.setLong(1, releaseId);
+                ps.setLong(2, method.getId());
+            }
+        );
+        // The links were written behind Hibernate's back, drop the cached collection
+        entityManager
+            .getEntityManagerFactory()
+            .unwrap(SessionFactory.class)
+            .getCache()
+            .evictCollectionData(Release.class.getName() + ".methods", releaseId);
+        created.forEach(method -> ids.put(method.getName(), method.getId()));
+        methodTreeService.addMethods(releaseId, created.stream().map(Method::getName).collect(Collectors.toList()));
+        log.debug("Created {} Methods for Release : {}", created.size(), releaseId);
+        return ids;
+    }
+}
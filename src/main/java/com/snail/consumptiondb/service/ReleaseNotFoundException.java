@@ -0,0 +1,20 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Thrown when an import targets a release which does not exist.
+ */
+public class ReleaseNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long releaseId;
+
+    public ReleaseNotFoundException(Long releaseId) {
+        super("Release " + releaseId + " does not exist");
+        this.releaseId = releaseId;
+    }
+
+    public Long getReleaseId() {
+        return releaseId;
+    }
+}
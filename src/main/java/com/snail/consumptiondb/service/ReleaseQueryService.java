@@ -0,0 +1,114 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.repository.ReleaseMethodRow;
+import com.snail.consumptiondb.repository.ReleaseRepository;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import com.snail.consumptiondb.service.dto.ReleaseDTO;
+import com.snail.consumptiondb.service.mapper.MethodMapper;
+import com.snail.consumptiondb.service.mapper.ReleaseMapper;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service reading {@link com.snail.consumptiondb.domain.Release}s with a bounded number of their methods.
+ * <p>
+ * Releases are read in two phases: a page of releases first, then at most {@value #MAX_EMBEDDED_METHODS} methods for
+ * each release of the page, in one statement. A response thus holds at most {@value #MAX_EMBEDDED_METHODS} methods per
+ * release, however many the releases have; all of them are paginated by {@link #findMethods(Long, Pageable)}.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReleaseQueryService {
+
+    /**
+     * Maximum number of methods embedded in a release.
+     */
+    public static final int MAX_EMBEDDED_METHODS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(ReleaseQueryService.class);
+
+    private final ReleaseRepository releaseRepository;
+
+    private final MethodRepository methodRepository;
+
+    private final ReleaseMapper releaseMapper;
+
+    private final MethodMapper methodMapper;
+
+    public ReleaseQueryService(
+        ReleaseRepository releaseRepository,
+        MethodRepository methodRepository,
+        ReleaseMapper releaseMapper,
+        MethodMapper methodMapper
+    ) {
+        this.releaseRepository = releaseRepository;
+        this.methodRepository = methodRepository;
+        this.releaseMapper = releaseMapper;
+        this.methodMapper = methodMapper;
+    }
+
+    /**
+     * @param pageable the pagination information.
+     * @param eagerload whether to embed the first methods of the releases.
+     * @return the page of releases.
+     */
+    public Page<ReleaseDTO> findAll(Pageable pageable, boolean eagerload) {
+        log.debug("Request to get a page of Releases, eagerload {}", eagerload);
+        Page<ReleaseDTO> page = releaseRepository.findAllRows(pageable).map(releaseMapper::toDto);
+        if (eagerload) {
+            embedMethods(page.getContent());
+        }
+        return page;
+    }
+
+    /**
+     * @param id the id of the release.
+     * @return the release, with its first methods.
+     */
+    public Optional<ReleaseDTO> findOne(Long id) {
+        log.debug("Request to get Release : {}", id);
+        Optional<ReleaseDTO> release = releaseRepository.findRowById(id).map(releaseMapper::toDto);
+        release.ifPresent(dto -> embedMethods(List.of(dto)));
+        return release;
+    }
+
+    /**
+     * @param releaseId the id of the release.
+     * @param pageable the pagination information.
+     * @return the page of the methods of the release, empty if the release does not exist.
+     */
+    public Optional<Page<MethodDTO>> findMethods(Long releaseId, Pageable pageable) {
+        log.debug("Request to get a page of the Methods of Release : {}", releaseId);
+        if (!releaseRepository.existsById(releaseId)) {
+            return Optional.empty();
+        }
+        return Optional.of(methodRepository.findAllRowsByReleaseId(releaseId, pageable).map(methodMapper::toDto));
+    }
+
+    private void embedMethods(List<ReleaseDTO> releases) {
+        if (releases.isEmpty()) {
+            return;
+        }
+        Map<Long, ReleaseDTO> byId = new LinkedHashMap<>();
+        for (ReleaseDTO release : releases) {
+            release.setMethods(new LinkedHashSet<>());
+            release.setMethodCount(0L);
+            byId.put(release.getId(), release);
+        }
+        for (ReleaseMethodRow row : releaseRepository.findFirstMethods(byId.keySet(), MAX_EMBEDDED_METHODS)) {
+            ReleaseDTO release = byId.get(row.getReleaseId());
+            release.getMethods().add(releaseMapper.toDto(row));
+            release.setMethodCount(row.getMethodCount());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionAggregateRow;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.service.dto.ConsumptionAggregateDTO;
+import com.snail.consumptiondb.service.mapper.ConsumptionAggregateMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service ranking the methods of a {@link Release} by consumption.
+ * <p>
+ * The per-method aggregates of the day rollups are streamed through a min-heap bounded to the requested number of
+ * methods, so ranking a release costs {@code O(n log k)} time and {@code O(k)} memory whatever its number of
+ * methods. Rankings are cached until the rollups are next refreshed, see {@link #evictAll()}: consumptions can still be
+ * imported into released versions.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ReleaseTopMethodsService {
+
+    /**
+     * Name of the cache of the rankings of releases.
+     */
+    public static final String RELEASE_TOP_METHODS_CACHE = "releaseTopMethods";
+
+    private final Logger log = LoggerFactory.getLogger(ReleaseTopMethodsService.class);
+
+    private final ConsumptionRollupRepository consumptionRollupRepository;
+
+    private final ConsumptionAggregateMapper consumptionAggregateMapper;
+
+    public ReleaseTopMethodsService(
+        ConsumptionRollupRepository consumptionRollupRepository,
+        ConsumptionAggregateMapper consumptionAggregateMapper
+    ) {
+        this.consumptionRollupRepository = consumptionRollupRepository;
+        this.consumptionAggregateMapper = consumptionAggregateMapper;
+    }
+
+    /**
+     * Get the methods of a release with the highest consumption.
+     *
+     * @param release the release.
+     * @param k the maximum number of methods.
+     * @param metric the value the methods are ranked by.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the aggregates of the top {@code k} methods, by decreasing value.
+     */
+    @Cacheable(cacheNames = RELEASE_TOP_METHODS_CACHE, key = "{ #release.id, #k, #metric, #scope, #monitoringType }")
+    public List<ConsumptionAggregateDTO> topMethods(
+        Release release,
+        int k,
+        TopMethodsMetric metric,
+        Scope scope,
+        MonitoringType monitoringType
+    ) {
+        log.debug("Request to get the top {} methods of Release {} by {}", k, release.getId(), metric);
+        Comparator<ConsumptionAggregateRow> ranking = comparatorOf(metric);
+        PriorityQueue<ConsumptionAggregateRow> heap = new PriorityQueue<>(k + 1, ranking);
+        consumptionRollupRepository.streamMethodAggregates(
+            release.getId(),
+            scope,
+            monitoringType,
+            aggregate -> offer(heap, k, ranking, aggregate)
+        );
+        List<ConsumptionAggregateRow> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            top.add(heap.poll());
+        }
+        Collections.reverse(top);
+        return consumptionAggregateMapper.toDto(top);
+    }
+
+    /**
+     * Drop every cached ranking, once the rollups they were computed from changed or the methods of a release did.
+     */
+    @CacheEvict(cacheNames = RELEASE_TOP_METHODS_CACHE, allEntries = true)
+    public void evictAll() {
+        log.debug("Evicting the cached rankings of the Release methods");
+    }
+
+    /**
+     * Offer an aggregate to a heap of at most {@code k} aggregates, evicting the lowest ranked one when it is full.
+     */
+    static <T> void offer(PriorityQueue<T> heap, int k, Comparator<T> ranking, T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (k > 0 && ranking.compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * @return the ascending order of aggregates by metric, missing values first and ties broken by decreasing method id.
+     */
+    static Comparator<ConsumptionAggregateRow> comparatorOf(TopMethodsMetric metric) {
+        Comparator<ConsumptionAggregateRow> byValue = Comparator.comparing(
+            metric::valueOf,
+            Comparator.nullsFirst(Comparator.naturalOrder())
+        );
+        return byValue.thenComparing(ConsumptionAggregateRow::getMethodId, Comparator.reverseOrder());
+    }
+}
@@ -0,0 +1,69 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Single-pass downsampling of a time series received in timestamp order, into at most a target number of points.
+ * <p>
+ * The time window is split into buckets of equal duration, so a point's bucket is known as soon as it is received
+ * and no more than a couple of buckets are ever held in memory.
+ */
+abstract class SeriesDownsampler {
+
+    private final long from;
+
+    private final double bucketsPerUnit;
+
+    private final int buckets;
+
+    protected final SeriesPoints output;
+
+    private long count;
+
+    /**
+     * @param from the start of the time window.
+     * @param to the end of the time window, after its start.
+     * @param buckets the number of buckets.
+     */
+    SeriesDownsampler(long from, long to, int buckets) {
+        this.from = from;
+        this.buckets = buckets;
+        this.bucketsPerUnit = (double) buckets / (to - from);
+        this.output = new SeriesPoints(2 * buckets + 2);
+    }
+
+    /**
+     * Add the next point of the series.
+     *
+     * @param timestamp the timestamp of the point, not before the previous one.
+     * @param value the value of the point.
+     */
+    final void add(long timestamp, long value) {
+        count++;
+        accept(timestamp, value, bucketOf(timestamp));
+    }
+
+    /**
+     * Flush the points still held, once the series is over.
+     *
+     * @return the downsampled series.
+     */
+    final SeriesPoints finish() {
+        flush();
+        return output;
+    }
+
+    /**
+     * @return the number of points added.
+     */
+    final long getCount() {
+        return count;
+    }
+
+    abstract void accept(long timestamp, long value, int bucket);
+
+    abstract void flush();
+
+    private int bucketOf(long timestamp) {
+        int bucket = (int) ((timestamp - from) * bucketsPerUnit);
+        return Math.max(0, Math.min(bucket, buckets - 1));
+    }
+}
@@ -0,0 +1,40 @@
+package com.snail.consumptiondb.service;
+
+/**
+ * Downsampling algorithms of consumption series.
+ */
+public enum SeriesDownsampling {
+    /**
+     * Largest-Triangle-Three-Buckets, keeping the visual shape of the series.
+     */
+    LTTB(3) {
+        @Override
+        SeriesDownsampler downsampler(long from, long to, int points) {
+            return new LttbDownsampler(from, to, points);
+        }
+    },
+    /**
+     * Lowest and highest point of each bucket, keeping every peak of the series.
+     */
+    MIN_MAX(2) {
+        @Override
+        SeriesDownsampler downsampler(long from, long to, int points) {
+            return new MinMaxDownsampler(from, to, points);
+        }
+    };
+
+    private final int minPoints;
+
+    SeriesDownsampling(int minPoints) {
+        this.minPoints = minPoints;
+    }
+
+    /**
+     * @return the smallest number of points the algorithm can downsample to.
+     */
+    public int getMinPoints() {
+        return minPoints;
+    }
+
+    abstract SeriesDownsampler downsampler(long from, long to, int points);
+}
@@ -0,0 +1,78 @@
+package com.snail.consumptiondb.service;
+
+import java.util.Arrays;
+
+/**
+ * Growable columns of {@code (timestamp, value)} points, without boxing.
+ */
+final class SeriesPoints {
+
+    private long[] timestamps;
+
+    private long[] values;
+
+    private int size;
+
+    SeriesPoints(int initialCapacity) {
+        this.timestamps = new long[Math.max(initialCapacity, 1)];
+        this.values = new long[timestamps.length];
+    }
+
+    void add(long timestamp, long value) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    void removeLast() {
+        size--;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    long getValue(int index) {
+        return values[index];
+    }
+
+    double meanTimestamp() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += timestamps[i];
+        }
+        return sum / size;
+    }
+
+    double meanValue() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum / size;
+    }
+
+    long[] timestamps() {
+        return Arrays.copyOf(timestamps, size);
+    }
+
+    long[] values() {
+        return Arrays.copyOf(values, size);
+    }
+}
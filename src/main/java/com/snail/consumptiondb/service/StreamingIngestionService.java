@@ -0,0 +1,112 @@
+package com.snail.consumptiondb.service;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Measure;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service ingesting newline-delimited JSON uploads without materialising them.
+ * <p>
+ * Records are read one at a time with Jackson's streaming parser and handed to {@link ConsumptionIngestionService}
+ * in chunks of {@code application.ingestion.stream-chunk-size}, each chunk being committed in its own transaction.
+ * The heap used by an upload is therefore bounded by one chunk, whatever the size of the upload.
+ */
+@Service
+public class StreamingIngestionService {
+
+    private final Logger log = LoggerFactory.getLogger(StreamingIngestionService.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    private final int chunkSize;
+
+    public StreamingIngestionService(
+        ObjectMapper objectMapper,
+        ConsumptionIngestionService consumptionIngestionService,
+        ApplicationProperties applicationProperties
+    ) {
+        this.objectMapper = objectMapper;
+        this.consumptionIngestionService = consumptionIngestionService;
+        this.chunkSize = applicationProperties.getIngestion().getStreamChunkSize();
+    }
+
+    /**
+     * Ingest a stream of newline-delimited {@link Consumption} records.
+     *
+     * @param ndjson the upload, already decompressed.
+     * @return the ingestion report.
+     * @throws IOException if the upload cannot be read.
+     * @throws InvalidIngestionRecordException if a record is malformed or already has an id.
+     */
+    public IngestionReportDTO ingestConsumptions(InputStream ndjson) throws IOException {
+        log.debug("Request to ingest a stream of Consumptions");
+        return ingest(ndjson, Consumption.class, Consumption::getId, consumptionIngestionService::saveAll);
+    }
+
+    /**
+     * Ingest a stream of newline-delimited {@link Measure} records.
+     *
+     * @param ndjson the upload, already decompressed.
+     * @return the ingestion report.
+     * @throws IOException if the upload cannot be read.
+     * @throws InvalidIngestionRecordException if a record is malformed or already has an id.
+     */
+    public IngestionReportDTO ingestMeasures(InputStream ndjson) throws IOException {
+        log.debug("Request to ingest a stream of Measures");
+        return ingest(ndjson, Measure.class, Measure::getId, consumptionIngestionService::saveAllMeasures);
+    }
+
+    private <T> IngestionReportDTO ingest(
+        InputStream ndjson,
+        Class<T> type,
+        Function<T, Long> idGetter,
+        Function<List<T>, IngestionReportDTO> writer
+    ) throws IOException {
+        long start = System.nanoTime();
+        long received = 0;
+        long persisted = 0;
+        List<T> chunk = new ArrayList<>(chunkSize);
+        try (MappingIterator<T> records = objectMapper.readerFor(type).readValues(ndjson)) {
+            while (records.hasNextValue()) {
+                T record = records.nextValue();
+                received++;
+                if (idGetter.apply(record) != null) {
+                    throw new InvalidIngestionRecordException("a new record cannot already have an ID", lineNumber(records), persisted);
+                }
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    persisted += writer.apply(chunk).getPersisted();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            JsonLocation location = e.getLocation();
+            throw new InvalidIngestionRecordException(e.getOriginalMessage(), location == null ? -1 : location.getLineNr(), persisted, e);
+        }
+        if (!chunk.isEmpty()) {
+            persisted += writer.apply(chunk).getPersisted();
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new IngestionReportDTO(received, persisted, durationMillis);
+    }
+
+    private static long lineNumber(MappingIterator<?> records) {
+        return records.getParser().getCurrentLocation().getLineNr();
+    }
+}
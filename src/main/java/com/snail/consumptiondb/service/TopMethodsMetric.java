@@ -0,0 +1,41 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.repository.ConsumptionAggregateRow;
+
+/**
+ * Per-method values the hungriest methods of a release are ranked by.
+ */
+public enum TopMethodsMetric {
+    /**
+     * Total of the consumption values.
+     */
+    TOTAL {
+        @Override
+        Double valueOf(ConsumptionAggregateRow aggregate) {
+            return aggregate.getSum() == null ? null : aggregate.getSum().doubleValue();
+        }
+    },
+    /**
+     * Mean of the consumption values.
+     */
+    MEAN {
+        @Override
+        Double valueOf(ConsumptionAggregateRow aggregate) {
+            return aggregate.getMean();
+        }
+    },
+    /**
+     * Highest consumption value.
+     */
+    PEAK {
+        @Override
+        Double valueOf(ConsumptionAggregateRow aggregate) {
+            return aggregate.getMax() == null ? null : aggregate.getMax().doubleValue();
+        }
+    };
+
+    /**
+     * @return the value of the aggregate of a method, {@code null} if it has none.
+     */
+    abstract Double valueOf(ConsumptionAggregateRow aggregate);
+}
@@ -0,0 +1,112 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.snail.consumptiondb.domain.Consumption} entity, whose method only carries its id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class ConsumptionDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private Long value;
+
+    private Scope scope;
+
+    private MonitoringType monitoringType;
+
+    private Instant timestamp;
+
+    private MethodDTO method;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getValue() {
+        return value;
+    }
+
+    public void setValue(Long value) {
+        this.value = value;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    public void setScope(Scope scope) {
+        this.scope = scope;
+    }
+
+    public MonitoringType getMonitoringType() {
+        return monitoringType;
+    }
+
+    public void setMonitoringType(MonitoringType monitoringType) {
+        this.monitoringType = monitoringType;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public MethodDTO getMethod() {
+        return method;
+    }
+
+    public void setMethod(MethodDTO method) {
+        this.method = method;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConsumptionDTO)) {
+            return false;
+        }
+
+        ConsumptionDTO consumptionDTO = (ConsumptionDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, consumptionDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ConsumptionDTO{" +
+            "id=" + getId() +
+            ", value=" + getValue() +
+            ", scope='" + getScope() + "'" +
+            ", monitoringType='" + getMonitoringType() + "'" +
+            ", timestamp='" + getTimestamp() + "'" +
+            ", method=" + getMethod() +
+            "}";
+    }
+}
@@ -0,0 +1,84 @@
+package com.snail.consumptiondb.service.dto;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A DTO for a histogram of {@link com.snail.consumptiondb.domain.Consumption} values, in buckets of equal width: bucket
+ * {@code i} counts the values from {@code bounds[i]} inclusive to {@code bounds[i + 1]} exclusive.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class ConsumptionHistogramDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+
+    private long[] bounds;
+
+    private long[] counts;
+
+    public ConsumptionHistogramDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ConsumptionHistogramDTO(long count, long[] bounds, long[] counts) {
+        this.count = count;
+        this.bounds = bounds;
+        this.counts = counts;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * @return the bounds of the buckets, one more than the buckets.
+     */
+    public long[] getBounds() {
+        return bounds;
+    }
+
+    public void setBounds(long[] bounds) {
+        this.bounds = bounds;
+    }
+
+    public long[] getCounts() {
+        return counts;
+    }
+
+    public void setCounts(long[] counts) {
+        this.counts = counts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConsumptionHistogramDTO)) {
+            return false;
+        }
+        ConsumptionHistogramDTO that = (ConsumptionHistogramDTO) o;
+        return count == that.count && Arrays.equals(bounds, that.bounds) && Arrays.equals(counts, that.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, Arrays.hashCode(bounds), Arrays.hashCode(counts));
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ConsumptionHistogramDTO{" +
+            "count=" + getCount() +
+            ", buckets=" + (counts == null ? 0 : counts.length) +
+            "}";
+    }
+}
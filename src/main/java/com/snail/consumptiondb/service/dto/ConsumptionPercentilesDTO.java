@@ -0,0 +1,118 @@
+package com.snail.consumptiondb.service.dto;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A DTO for percentiles of {@link com.snail.consumptiondb.domain.Consumption} values, as two columns of the same
+ * length.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class ConsumptionPercentilesDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+
+    private Long min;
+
+    private Long max;
+
+    private double[] percentiles;
+
+    private long[] values;
+
+    public ConsumptionPercentilesDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ConsumptionPercentilesDTO(long count, Long min, Long max, double[] percentiles, long[] values) {
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.percentiles = percentiles;
+        this.values = values;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public Long getMin() {
+        return min;
+    }
+
+    public void setMin(Long min) {
+        this.min = min;
+    }
+
+    public Long getMax() {
+        return max;
+    }
+
+    public void setMax(Long max) {
+        this.max = max;
+    }
+
+    /**
+     * @return the requested percentiles, between 0 and 100.
+     */
+    public double[] getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(double[] percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    /**
+     * @return the value at each percentile, or {@code null} if there is no value.
+     */
+    public long[] getValues() {
+        return values;
+    }
+
+    public void setValues(long[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConsumptionPercentilesDTO)) {
+            return false;
+        }
+        ConsumptionPercentilesDTO that = (ConsumptionPercentilesDTO) o;
+        return (
+            count == that.count &&
+            Objects.equals(min, that.min) &&
+            Objects.equals(max, that.max) &&
+            Arrays.equals(percentiles, that.percentiles) &&
+            Arrays.equals(values, that.values)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, min, max, Arrays.hashCode(percentiles), Arrays.hashCode(values));
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ConsumptionPercentilesDTO{" +
+            "count=" + getCount() +
+            ", min=" + getMin() +
+            ", max=" + getMax() +
+            ", percentiles=" + Arrays.toString(getPercentiles()) +
+            ", values=" + Arrays.toString(getValues()) +
+            "}";
+    }
+}
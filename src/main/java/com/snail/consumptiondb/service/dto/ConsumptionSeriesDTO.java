@@ -0,0 +1,105 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.snail.consumptiondb.service.SeriesDownsampling;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A DTO for a downsampled series of {@link com.snail.consumptiondb.domain.Consumption} values, as two columns of the
+ * same length.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class ConsumptionSeriesDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private SeriesDownsampling algorithm;
+
+    private long rawCount;
+
+    private long[] timestamps;
+
+    private long[] values;
+
+    public ConsumptionSeriesDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ConsumptionSeriesDTO(SeriesDownsampling algorithm, long rawCount, long[] timestamps, long[] values) {
+        this.algorithm = algorithm;
+        this.rawCount = rawCount;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    public SeriesDownsampling getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(SeriesDownsampling algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * @return the number of points of the series before downsampling.
+     */
+    public long getRawCount() {
+        return rawCount;
+    }
+
+    public void setRawCount(long rawCount) {
+        this.rawCount = rawCount;
+    }
+
+    /**
+     * @return the timestamps of the points, in epoch milliseconds.
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public void setTimestamps(long[] timestamps) {
+        this.timestamps = timestamps;
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+
+    public void setValues(long[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConsumptionSeriesDTO)) {
+            return false;
+        }
+        ConsumptionSeriesDTO that = (ConsumptionSeriesDTO) o;
+        return (
+            algorithm == that.algorithm &&
+            rawCount == that.rawCount &&
+            Arrays.equals(timestamps, that.timestamps) &&
+            Arrays.equals(values, that.values)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithm, rawCount, Arrays.hashCode(timestamps), Arrays.hashCode(values));
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ConsumptionSeriesDTO{" +
+            "algorithm='" + getAlgorithm() + "'" +
+            ", rawCount=" + getRawCount() +
+            ", points=" + (timestamps == null ? 0 : timestamps.length) +
+            "}";
+    }
+}
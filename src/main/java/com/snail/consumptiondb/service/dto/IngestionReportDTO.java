@@ -0,0 +1,98 @@
+package com.snail.consumptiondb.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO summarising a bulk write of {@link com.snail.consumptiondb.domain.Consumption} rows.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class IngestionReportDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long received;
+
+    private long persisted;
+
+    private long rejected;
+
+    private long durationMillis;
+
+    public IngestionReportDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public IngestionReportDTO(long received, long persisted, long durationMillis) {
+        this(received, persisted, 0, durationMillis);
+    }
+
+    public IngestionReportDTO(long received, long persisted, long rejected, long durationMillis) {
+        this.received = received;
+        this.persisted = persisted;
+        this.rejected = rejected;
+        this.durationMillis = durationMillis;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getPersisted() {
+        return persisted;
+    }
+
+    public void setPersisted(long persisted) {
+        this.persisted = persisted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IngestionReportDTO)) {
+            return false;
+        }
+        IngestionReportDTO that = (IngestionReportDTO) o;
+        return (
+            received == that.received && persisted == that.persisted && rejected == that.rejected && durationMillis == that.durationMillis
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(received, persisted, rejected, durationMillis);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "IngestionReportDTO{" +
+            "received=" + getReceived() +
+            ", persisted=" + getPersisted() +
+            ", rejected=" + getRejected() +
+            ", durationMillis=" + getDurationMillis() +
+            "}";
+    }
+}
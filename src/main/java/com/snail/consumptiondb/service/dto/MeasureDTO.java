@@ -0,0 +1,77 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.snail.consumptiondb.domain.Measure} entity, whose consumption only carries its id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class MeasureDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private Instant startTimestamp;
+
+    private ConsumptionDTO consumption;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Instant getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public void setStartTimestamp(Instant startTimestamp) {
+        this.startTimestamp = startTimestamp;
+    }
+
+    public ConsumptionDTO getConsumption() {
+        return consumption;
+    }
+
+    public void setConsumption(ConsumptionDTO consumption) {
+        this.consumption = consumption;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MeasureDTO)) {
+            return false;
+        }
+
+        MeasureDTO measureDTO = (MeasureDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, measureDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MeasureDTO{" +
+            "id=" + getId() +
+            ", startTimestamp='" + getStartTimestamp() + "'" +
+            ", consumption=" + getConsumption() +
+            "}";
+    }
+}
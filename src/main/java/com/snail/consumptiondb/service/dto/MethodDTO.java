@@ -0,0 +1,87 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.snail.consumptiondb.domain.Method} entity, whose relationships only carry their id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class MethodDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String name;
+
+    private MethodDTO method;
+
+    private ConsumptionDTO consumption;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public MethodDTO getMethod() {
+        return method;
+    }
+
+    public void setMethod(MethodDTO method) {
+        this.method = method;
+    }
+
+    public ConsumptionDTO getConsumption() {
+        return consumption;
+    }
+
+    public void setConsumption(ConsumptionDTO consumption) {
+        this.consumption = consumption;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodDTO)) {
+            return false;
+        }
+
+        MethodDTO methodDTO = (MethodDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, methodDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MethodDTO{" +
+            "id=" + getId() +
+            ", name='" + getName() + "'" +
+            ", method=" + getMethod() +
+            ", consumption=" + getConsumption() +
+            "}";
+    }
+}
@@ -0,0 +1,146 @@
+package com.snail.consumptiondb.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the change of the consumption of a method between two {@link com.snail.consumptiondb.domain.Release}s,
+ * methods being matched by name.
+ */
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class MethodDiffDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        ADDED,
+        REMOVED,
+        COMMON,
+    }
+
+    private String methodName;
+
+    private Status status;
+
+    private Double baseValue;
+
+    private Double targetValue;
+
+    private Double delta;
+
+    private Double relativeDelta;
+
+    public MethodDiffDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    /**
+     * @param methodName the name of the method.
+     * @param status whether the method is in the base release, the target release, or both.
+     * @param baseValue the value of the method in the base release, {@code null} if it has none.
+     * @param targetValue the value of the method in the target release, {@code null} if it has none.
+     */
+    public MethodDiffDTO(String methodName, Status status, Double baseValue, Double targetValue) {
+        this.methodName = methodName;
+        this.status = status;
+        this.baseValue = baseValue;
+        this.targetValue = targetValue;
+        double base = baseValue == null ? 0 : baseValue;
+        double target = targetValue == null ? 0 : targetValue;
+        if (baseValue != null || targetValue != null) {
+            this.delta = target - base;
+        }
+        if (baseValue != null && targetValue != null && base != 0) {
+            this.relativeDelta = (target - base) / Math.abs(base);
+        }
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public void setMethodName(String methodName) {
+        this.methodName = methodName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Double getBaseValue() {
+        return baseValue;
+    }
+
+    public void setBaseValue(Double baseValue) {
+        this.baseValue = baseValue;
+    }
+
+    public Double getTargetValue() {
+        return targetValue;
+    }
+
+    public void setTargetValue(Double targetValue) {
+        this.targetValue = targetValue;
+    }
+
+    /**
+     * @return the target value minus the base value, a missing value counting as 0; {@code null} if both are missing.
+     */
+    public Double getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Double delta) {
+        this.delta = delta;
+    }
+
+    /**
+     * @return the delta relative to the base value; {@code null} unless both values are present and the base is not 0.
+     */
+    public Double getRelativeDelta() {
+        return relativeDelta;
+    }
+
+    public void setRelativeDelta(Double relativeDelta) {
+        this.relativeDelta = relativeDelta;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodDiffDTO)) {
+            return false;
+        }
+        MethodDiffDTO that = (MethodDiffDTO) o;
+        return (
+            Objects.equals(methodName, that.methodName) &&
+            status == that.status &&
+            Objects.equals(baseValue, that.baseValue) &&
+            Objects.equals(targetValue, that.targetValue)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(methodName, status, baseValue, targetValue);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MethodDiffDTO{" +
+            "methodName='" + getMethodName() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", baseValue=" + getBaseValue() +
+            ", targetValue=" + getTargetValue() +
+            ", delta=" + getDelta() +
+            ", relativeDelta=" + getRelativeDelta() +
+            "}";
+    }
+}
@@ -0,0 +1,129 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.snail.consumptiondb.service.MethodTreeNodeType;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DTO for a package, class or method of a method tree, with the total energy of the methods below it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class MethodTreeNodeDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String name;
+
+    private String path;
+
+    private MethodTreeNodeType type;
+
+    private long sum;
+
+    private int methodCount;
+
+    private int childCount;
+
+    private List<MethodTreeNodeDTO> children;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the dot-separated prefix of the node, to drill down into it.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public MethodTreeNodeType getType() {
+        return type;
+    }
+
+    public void setType(MethodTreeNodeType type) {
+        this.type = type;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    public void setMethodCount(int methodCount) {
+        this.methodCount = methodCount;
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    public void setChildCount(int childCount) {
+        this.childCount = childCount;
+    }
+
+    /**
+     * @return the children of the node by decreasing energy, only set on the node drilled down into.
+     */
+    public List<MethodTreeNodeDTO> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<MethodTreeNodeDTO> children) {
+        this.children = children;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodTreeNodeDTO)) {
+            return false;
+        }
+        MethodTreeNodeDTO that = (MethodTreeNodeDTO) o;
+        return (
+            Objects.equals(path, that.path) &&
+            type == that.type &&
+            sum == that.sum &&
+            methodCount == that.methodCount &&
+            childCount == that.childCount &&
+            Objects.equals(children, that.children)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, type, sum, methodCount, childCount, children);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MethodTreeNodeDTO{" +
+            "path='" + getPath() + "'" +
+            ", type='" + getType() + "'" +
+            ", sum=" + getSum() +
+            ", methodCount=" + getMethodCount() +
+            ", childCount=" + getChildCount() +
+            "}";
+    }
+}
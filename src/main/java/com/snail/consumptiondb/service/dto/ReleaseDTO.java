@@ -0,0 +1,112 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A DTO for the {@link com.snail.consumptiondb.domain.Release} entity. Its methods are only set when eagerly loaded,
+ * and then only the first of them, {@code methodCount} telling how many there are.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class ReleaseDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String name;
+
+    private Instant date;
+
+    private String description;
+
+    private Set<MethodDTO> methods;
+
+    private Long methodCount;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Instant getDate() {
+        return date;
+    }
+
+    public void setDate(Instant date) {
+        this.date = date;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Set<MethodDTO> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(Set<MethodDTO> methods) {
+        this.methods = methods;
+    }
+
+    public Long getMethodCount() {
+        return methodCount;
+    }
+
+    public void setMethodCount(Long methodCount) {
+        this.methodCount = methodCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReleaseDTO)) {
+            return false;
+        }
+
+        ReleaseDTO releaseDTO = (ReleaseDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, releaseDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ReleaseDTO{" +
+            "id=" + getId() +
+            ", name='" + getName() + "'" +
+            ", date='" + getDate() + "'" +
+            ", description='" + getDescription() + "'" +
+            ", methods=" + getMethods() +
+            ", methodCount=" + getMethodCount() +
+            "}";
+    }
+}
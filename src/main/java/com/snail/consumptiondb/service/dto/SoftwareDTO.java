@@ -0,0 +1,76 @@
+package com.snail.consumptiondb.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.snail.consumptiondb.domain.Software} entity, whose release only carries its id.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class SoftwareDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String name;
+
+    private ReleaseDTO release;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public ReleaseDTO getRelease() {
+        return release;
+    }
+
+    public void setRelease(ReleaseDTO release) {
+        this.release = release;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SoftwareDTO)) {
+            return false;
+        }
+
+        SoftwareDTO softwareDTO = (SoftwareDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, softwareDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SoftwareDTO{" +
+            "id=" + getId() +
+            ", name='" + getName() + "'" +
+            ", release=" + getRelease() +
+            "}";
+    }
+}
@@ -0,0 +1,16 @@
+package com.snail.consumptiondb.service.mapper;
+
+import com.snail.consumptiondb.repository.ConsumptionAggregateRow;
+import com.snail.consumptiondb.service.dto.ConsumptionAggregateDTO;
+import java.util.List;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the aggregates of consumptions and their DTO {@link ConsumptionAggregateDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface ConsumptionAggregateMapper {
+    ConsumptionAggregateDTO toDto(ConsumptionAggregateRow row);
+
+    List<ConsumptionAggregateDTO> toDto(List<ConsumptionAggregateRow> rows);
+}
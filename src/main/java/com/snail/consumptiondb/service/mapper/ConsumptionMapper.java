@@ -0,0 +1,29 @@
+package com.snail.consumptiondb.service.mapper;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.repository.ConsumptionExportRow;
+import com.snail.consumptiondb.service.dto.ConsumptionDTO;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import java.util.List;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Consumption} and its DTO {@link ConsumptionDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface ConsumptionMapper {
+    @Mapping(target = "method", source = "methodId", qualifiedByName = "methodId")
+    ConsumptionDTO toDto(ConsumptionExportRow row);
+
+    List<ConsumptionDTO> toDto(List<ConsumptionExportRow> rows);
+
+    @Named("methodId")
+    default MethodDTO toDtoMethodId(Long id) {
+        if (id == null) {
+            return null;
+        }
+        MethodDTO method = new MethodDTO();
+        method.setId(id);
+        return method;
+    }
+}
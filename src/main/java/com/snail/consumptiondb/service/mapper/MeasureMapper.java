@@ -0,0 +1,29 @@
+package com.snail.consumptiondb.service.mapper;
+
+import com.snail.consumptiondb.domain.Measure;
+import com.snail.consumptiondb.repository.MeasureRow;
+import com.snail.consumptiondb.service.dto.ConsumptionDTO;
+import com.snail.consumptiondb.service.dto.MeasureDTO;
+import java.util.List;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Measure} and its DTO {@link MeasureDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface MeasureMapper {
+    @Mapping(target = "consumption", source = "consumptionId", qualifiedByName = "consumptionId")
+    MeasureDTO toDto(MeasureRow row);
+
+    List<MeasureDTO> toDto(List<MeasureRow> rows);
+
+    @Named("consumptionId")
+    default ConsumptionDTO toDtoConsumptionId(Long id) {
+        if (id == null) {
+            return null;
+        }
+        ConsumptionDTO consumption = new ConsumptionDTO();
+        consumption.setId(id);
+        return consumption;
+    }
+}
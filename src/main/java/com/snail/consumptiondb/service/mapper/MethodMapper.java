@@ -0,0 +1,40 @@
+package com.snail.consumptiondb.service.mapper;
+
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.repository.MethodRow;
+import com.snail.consumptiondb.service.dto.ConsumptionDTO;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import java.util.List;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Method} and its DTO {@link MethodDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface MethodMapper {
+    @Mapping(target = "method", source = "methodId", qualifiedByName = "methodId")
+    @Mapping(target = "consumption", source = "consumptionId", qualifiedByName = "consumptionId")
+    MethodDTO toDto(MethodRow row);
+
+    List<MethodDTO> toDto(List<MethodRow> rows);
+
+    @Named("methodId")
+    default MethodDTO toDtoMethodId(Long id) {
+        if (id == null) {
+            return null;
+        }
+        MethodDTO method = new MethodDTO();
+        method.setId(id);
+        return method;
+    }
+
+    @Named("consumptionId")
+    default ConsumptionDTO toDtoConsumptionId(Long id) {
+        if (id == null) {
+            return null;
+        }
+        ConsumptionDTO consumption = new ConsumptionDTO();
+        consumption.setId(id);
+        return consumption;
+    }
+}
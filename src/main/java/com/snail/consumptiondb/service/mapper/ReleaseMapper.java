@@ -0,0 +1,23 @@
+package com.snail.consumptiondb.service.mapper;
+
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.repository.ReleaseMethodRow;
+import com.snail.consumptiondb.repository.ReleaseRow;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import com.snail.consumptiondb.service.dto.ReleaseDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Release} and its DTO {@link ReleaseDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface ReleaseMapper {
+    @Mapping(target = "methods", ignore = true)
+    @Mapping(target = "methodCount", ignore = true)
+    ReleaseDTO toDto(ReleaseRow row);
+
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "name", source = "name")
+    MethodDTO toDto(ReleaseMethodRow row);
+}
@@ -0,0 +1,29 @@
+package com.snail.consumptiondb.service.mapper;
+
+import com.snail.consumptiondb.domain.Software;
+import com.snail.consumptiondb.repository.SoftwareRow;
+import com.snail.consumptiondb.service.dto.ReleaseDTO;
+import com.snail.consumptiondb.service.dto.SoftwareDTO;
+import java.util.List;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Software} and its DTO {@link SoftwareDTO}.
+ */
+@Mapper(componentModel = "spring")
+public interface SoftwareMapper {
+    @Mapping(target = "release", source = "releaseId", qualifiedByName = "releaseId")
+    SoftwareDTO toDto(SoftwareRow row);
+
+    List<SoftwareDTO> toDto(List<SoftwareRow> rows);
+
+    @Named("releaseId")
+    default ReleaseDTO toDtoReleaseId(Long id) {
+        if (id == null) {
+            return null;
+        }
+        ReleaseDTO release = new ReleaseDTO();
+        release.setId(id);
+        return release;
+    }
+}
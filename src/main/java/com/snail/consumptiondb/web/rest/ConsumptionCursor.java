@@ -0,0 +1,59 @@
+package com.snail.consumptiondb.web.rest;
+
+import com.snail.consumptiondb.service.dto.ConsumptionDTO;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque position in the {@code (timestamp, id)} order of consumptions, handed to clients as the {@code cursor} of the
+ * next page.
+ */
+final class ConsumptionCursor {
+
+    private static final String NULL_TIMESTAMP = "-";
+
+    private final Instant timestamp;
+
+    private final long id;
+
+    private ConsumptionCursor(Instant timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    static ConsumptionCursor after(ConsumptionDTO consumption) {
+        return new ConsumptionCursor(consumption.getTimestamp(), consumption.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}.
+     */
+    static ConsumptionCursor decode(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(',');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        try {
+            String timestamp = decoded.substring(0, separator);
+            long id = Long.parseLong(decoded.substring(separator + 1));
+            return new ConsumptionCursor(NULL_TIMESTAMP.equals(timestamp) ? null : Instant.parse(timestamp), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor, e);
+        }
+    }
+
+    String encode() {
+        String decoded = (timestamp == null ? NULL_TIMESTAMP : timestamp.toString()) + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Instant getTimestamp() {
+        return timestamp;
+    }
+
+    long getId() {
+        return id;
+    }
+}
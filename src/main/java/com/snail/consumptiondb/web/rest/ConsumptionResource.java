@@ -1,19 +1,73 @@
 package com.snail.consumptiondb.web.rest;
 
 import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionDimension;
+import com.snail.consumptiondb.repository.ConsumptionFilter;
 import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.security.AuthoritiesConstants;
+import com.snail.consumptiondb.service.BinaryIngestionService;
+import com.snail.consumptiondb.service.ConsumptionBulkLoadService;
+import com.snail.consumptiondb.service.ConsumptionCsvImportService;
+import com.snail.consumptiondb.service.ConsumptionExportFormat;
+import com.snail.consumptiondb.service.ConsumptionExportService;
+import com.snail.consumptiondb.service.ConsumptionIngestionService;
+import com.snail.consumptiondb.service.ConsumptionRollupScheduler;
+import com.snail.consumptiondb.service.ConsumptionRollupService;
+import com.snail.consumptiondb.service.ConsumptionSeriesService;
+import com.snail.consumptiondb.service.ConsumptionService;
+import com.snail.consumptiondb.service.ConsumptionSketchService;
+import com.snail.consumptiondb.service.ExpiredConsumptionException;
+import com.snail.consumptiondb.service.IngestionAckMode;
+import com.snail.consumptiondb.service.IngestionIdempotencyService;
+import com.snail.consumptiondb.service.IngestionPipeline;
+import com.snail.consumptiondb.service.InvalidIngestionBlockException;
+import com.snail.consumptiondb.service.InvalidIngestionRecordException;
+import com.snail.consumptiondb.service.ReleaseNotFoundException;
+import com.snail.consumptiondb.service.SeriesDownsampling;
+import com.snail.consumptiondb.service.StreamingIngestionService;
+import com.snail.consumptiondb.service.dto.ConsumptionAggregateDTO;
+import com.snail.consumptiondb.service.dto.ConsumptionDTO;
+import com.snail.consumptiondb.service.dto.ConsumptionHistogramDTO;
+import com.snail.consumptiondb.service.dto.ConsumptionPercentilesDTO;
+import com.snail.consumptiondb.service.dto.ConsumptionSeriesDTO;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import com.snail.consumptiondb.service.mapper.ConsumptionMapper;
 import com.snail.consumptiondb.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
@@ -29,35 +83,352 @@ public class ConsumptionResource {
 
     private static final String ENTITY_NAME = "consumptionDbConsumption";
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE_SIZE = 1_000;
+
+    private static final int MAX_SERIES_POINTS = 10_000;
+
+    private static final int MAX_PERCENTILES = 100;
+
+    private static final int MAX_HISTOGRAM_BUCKETS = 1_000;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final ConsumptionRepository consumptionRepository;
 
-    public ConsumptionResource(ConsumptionRepository consumptionRepository) {
+    private final ConsumptionService consumptionService;
+
+    private final ConsumptionIngestionService consumptionIngestionService;
+
+    private final StreamingIngestionService streamingIngestionService;
+
+    private final ConsumptionCsvImportService consumptionCsvImportService;
+
+    private final IngestionPipeline ingestionPipeline;
+
+    private final IngestionIdempotencyService ingestionIdempotencyService;
+
+    private final ConsumptionBulkLoadService consumptionBulkLoadService;
+
+    private final BinaryIngestionService binaryIngestionService;
+
+    private final ConsumptionExportService consumptionExportService;
+
+    private final ConsumptionRollupService consumptionRollupService;
+
+    private final ConsumptionRollupScheduler consumptionRollupScheduler;
+
+    private final ConsumptionSeriesService consumptionSeriesService;
+
+    private final ConsumptionSketchService consumptionSketchService;
+
+    private final ConsumptionMapper consumptionMapper;
+
+    public ConsumptionResource(
+        ConsumptionRepository consumptionRepository,
+        ConsumptionService consumptionService,
+        ConsumptionIngestionService consumptionIngestionService,
+        StreamingIngestionService streamingIngestionService,
+        ConsumptionCsvImportService consumptionCsvImportService,
+        IngestionPipeline ingestionPipeline,
+        IngestionIdempotencyService ingestionIdempotencyService,
+        ConsumptionBulkLoadService consumptionBulkLoadService,
+        BinaryIngestionService binaryIngestionService,
+        ConsumptionExportService consumptionExportService,
+        ConsumptionRollupService consumptionRollupService,
+        ConsumptionRollupScheduler consumptionRollupScheduler,
+        ConsumptionSeriesService consumptionSeriesService,
+        ConsumptionSketchService consumptionSketchService,
+        ConsumptionMapper consumptionMapper
+    ) {
         this.consumptionRepository = consumptionRepository;
+        this.consumptionService = consumptionService;
+        this.consumptionIngestionService = consumptionIngestionService;
+        this.streamingIngestionService = streamingIngestionService;
+        this.consumptionCsvImportService = consumptionCsvImportService;
+        this.ingestionPipeline = ingestionPipeline;
+        this.ingestionIdempotencyService = ingestionIdempotencyService;
+        this.consumptionBulkLoadService = consumptionBulkLoadService;
+        this.binaryIngestionService = binaryIngestionService;
+        this.consumptionExportService = consumptionExportService;
+        this.consumptionRollupService = consumptionRollupService;
+        this.consumptionRollupScheduler = consumptionRollupScheduler;
+        this.consumptionSeriesService = consumptionSeriesService;
+        this.consumptionSketchService = consumptionSketchService;
+        this.consumptionMapper = consumptionMapper;
     }
 
     /**
      * {@code POST  /consumptions} : Create a new consumption.
+     * <p>
+     * A consumption already stored with the same method, timestamp, scope and monitoring type is left untouched.
      *
      * @param consumption the consumption to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new consumption, or with status {@code 400 (Bad Request)} if the consumption has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new consumption, or with status {@code 200 (OK)} and with body the
+     * consumption already stored under the same key, or with status {@code 400 (Bad Request)} if the consumption has already an ID,
+     * or is older than the consumptions kept by the retention policies.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/consumptions")
-    public ResponseEntity<Consumption> createConsumption(@RequestBody Consumption consumption) throws URISyntaxException {
+    public ResponseEntity<Consumption> createConsumption(@Valid @RequestBody Consumption consumption) throws URISyntaxException {
         log.debug("REST request to save Consumption : {}", consumption);
         if (consumption.getId() != null) {
             throw new BadRequestAlertException("A new consumption cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        Consumption result = consumptionRepository.save(consumption);
+        Optional<Consumption> created;
+        try {
+            created = consumptionService.save(consumption);
+        } catch (ExpiredConsumptionException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "expiredtimestamp");
+        }
+        if (created.isEmpty()) {
+            return ResponseUtil.wrapOrNotFound(consumptionService.findOneByNaturalKey(consumption));
+        }
+        Consumption result = created.get();
         return ResponseEntity
             .created(new URI("/api/consumptions/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
             .body(result);
     }
 
+    /**
+     * {@code POST  /consumptions/batch} : Create a batch of new consumptions in a single transaction.
+     * <p>
+     * Consumptions already stored with the same method, timestamp, scope and monitoring type are left untouched.
+     *
+     * @param consumptions the consumptions to create.
+     * @param idempotencyKey the optional key identifying the batch across retries.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ingestion report, or with status {@code 200 (OK)} and with body the original report if the idempotency key was already used, or with status {@code 400 (Bad Request)} if one of the consumptions has already an ID or has no timestamp.
+     */
+    @PostMapping("/consumptions/batch")
+    public ResponseEntity<IngestionReportDTO> createConsumptions(
+        @RequestBody List<Consumption> consumptions,
+        @RequestHeader(value = IngestionIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) {
+        log.debug("REST request to save a batch of {} Consumptions", consumptions.size());
+        Optional<ResponseEntity<IngestionReportDTO>> replayed = replayedReport(idempotencyKey);
+        if (replayed.isPresent()) {
+            return replayed.get();
+        }
+        if (consumptions.stream().anyMatch(consumption -> consumption.getId() != null)) {
+            throw new BadRequestAlertException("A new consumption cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        if (consumptions.stream().anyMatch(consumption -> consumption.getTimestamp() == null)) {
+            throw new BadRequestAlertException("A consumption must have a timestamp", ENTITY_NAME, "timestampnull");
+        }
+        IngestionReportDTO result = consumptionIngestionService.saveAll(consumptions);
+        rememberReport(idempotencyKey, result);
+        return ResponseEntity.status(HttpStatus.CREATED).headers(createBatchCreationAlert(result)).body(result);
+    }
+
+    /**
+     * {@code POST  /consumptions/batch} : Stream newline-delimited consumptions, optionally gzip-encoded.
+     * <p>
+     * The upload is never materialised: records are committed in fixed-size chunks as they are parsed,
+     * so the chunks preceding an invalid record stay committed.
+     *
+     * @param request the request whose body holds one consumption per line.
+     * @param contentEncoding the {@code Content-Encoding} of the body, {@code gzip} or none.
+     * @param idempotencyKey the optional key identifying the upload across retries.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ingestion report, or with status {@code 200 (OK)} and with body the original report if the idempotency key was already used, or with status {@code 400 (Bad Request)} if a record is invalid.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/consumptions/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<IngestionReportDTO> streamConsumptions(
+        HttpServletRequest request,
+        @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+        @RequestHeader(value = IngestionIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) throws IOException {
+        log.debug("REST request to stream Consumptions");
+        Optional<ResponseEntity<IngestionReportDTO>> replayed = replayedReport(idempotencyKey);
+        if (replayed.isPresent()) {
+            return replayed.get();
+        }
+        IngestionReportDTO result;
+        try (InputStream body = openBody(request, contentEncoding)) {
+            result = streamingIngestionService.ingestConsumptions(body);
+        } catch (InvalidIngestionRecordException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidrecord");
+        } catch (ZipException e) {
+            throw new BadRequestAlertException("Invalid gzip body", ENTITY_NAME, "invalidencoding");
+        }
+        rememberReport(idempotencyKey, result);
+        return ResponseEntity.status(HttpStatus.CREATED).headers(createBatchCreationAlert(result)).body(result);
+    }
+
+    /**
+     * {@code POST  /consumptions/batch} : Stream consumptions in the binary ingestion format, optionally gzip-encoded.
+     * <p>
+     * Each block is committed in its own transaction, so the blocks preceding an invalid block stay committed.
+     * Samples of unknown methods are rejected and counted.
+     *
+     * @param request the request whose body holds the blocks of consumptions.
+     * @param contentEncoding the {@code Content-Encoding} of the body, {@code gzip} or none.
+     * @param idempotencyKey the optional key identifying the upload across retries.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ingestion report, or with status {@code 200 (OK)} and with body the original report if the idempotency key was already used, or with status {@code 400 (Bad Request)} if a block is invalid.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/consumptions/batch", consumes = BinaryIngestionService.MEDIA_TYPE)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<IngestionReportDTO> streamConsumptionBlocks(
+        HttpServletRequest request,
+        @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+        @RequestHeader(value = IngestionIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) throws IOException {
+        log.debug("REST request to stream blocks of Consumptions");
+        Optional<ResponseEntity<IngestionReportDTO>> replayed = replayedReport(idempotencyKey);
+        if (replayed.isPresent()) {
+            return replayed.get();
+        }
+        IngestionReportDTO result;
+        try (InputStream body = openBody(request, contentEncoding)) {
+            result = binaryIngestionService.ingestConsumptions(body);
+        } catch (InvalidIngestionBlockException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidblock");
+        } catch (ZipException e) {
+            throw new BadRequestAlertException("Invalid gzip body", ENTITY_NAME, "invalidencoding");
+        }
+        rememberReport(idempotencyKey, result);
+        return ResponseEntity.status(HttpStatus.CREATED).headers(createBatchCreationAlert(result)).body(result);
+    }
+
+    /**
+     * {@code POST  /consumptions/ingest} : Queue newline-delimited consumptions, optionally gzip-encoded, to the ingestion pipeline.
+     * <p>
+     * Invalid records are rejected one by one and counted in the report, they do not fail the upload.
+     *
+     * @param request the request whose body holds one consumption per line.
+     * @param contentEncoding the {@code Content-Encoding} of the body, {@code gzip} or none.
+     * @param ack when to answer, once the records are queued or once they are committed; defaults to the configured ack mode.
+     * @param idempotencyKey the optional key identifying the upload across retries.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)} or {@code 201 (Created)} depending on the ack mode,
+     * and with body the ingestion report, or with status {@code 200 (OK)} and with body the original report if the idempotency key
+     * was already used, or with status {@code 503 (Service Unavailable)} if the pipeline is shutting down.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/consumptions/ingest", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ResponseEntity<IngestionReportDTO>> ingestConsumptions(
+        HttpServletRequest request,
+        @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+        @RequestParam(required = false) IngestionAckMode ack,
+        @RequestHeader(value = IngestionIdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
+    ) throws IOException {
+        IngestionAckMode ackMode = ack != null ? ack : ingestionPipeline.getDefaultAckMode();
+        log.debug("REST request to ingest Consumptions, acknowledged on {}", ackMode);
+        Optional<ResponseEntity<IngestionReportDTO>> replayed = replayedReport(idempotencyKey);
+        if (replayed.isPresent()) {
+            return CompletableFuture.completedFuture(replayed.get());
+        }
+        CompletableFuture<IngestionReportDTO> report;
+        try (InputStream body = openBody(request, contentEncoding)) {
+            report = ingestionPipeline.submit(body, ackMode);
+        } catch (ZipException e) {
+            throw new BadRequestAlertException("Invalid gzip body", ENTITY_NAME, "invalidencoding");
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        report = report.thenApply(result -> {
+            rememberReport(idempotencyKey, result);
+            return result;
+        });
+        if (ackMode == IngestionAckMode.ENQUEUE) {
+            return report.thenApply(result -> ResponseEntity.accepted().body(result));
+        }
+        return report.thenApply(result -> ResponseEntity.status(HttpStatus.CREATED).headers(createBatchCreationAlert(result)).body(result));
+    }
+
+    /**
+     * {@code POST  /consumptions/import} : Import a measurement run, uploaded as a zip archive of JoularJX-style CSV files.
+     *
+     * @param file the zip archive of {@code method name,value,timestamp} CSV files.
+     * @param releaseId the id of the release the run was measured on.
+     * @param scope the scope of the samples.
+     * @param monitoringType the monitoring type of the samples.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ingestion report, or with status {@code 400 (Bad Request)} if the release does not exist, the archive is invalid or one of its lines cannot be parsed.
+     * @throws IOException if the archive cannot be read.
+     */
+    @PostMapping(value = "/consumptions/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<IngestionReportDTO> importConsumptions(
+        @RequestParam("file") MultipartFile file,
+        @RequestParam Long releaseId,
+        @RequestParam Scope scope,
+        @RequestParam MonitoringType monitoringType
+    ) throws IOException {
+        log.debug("REST request to import a measurement run for Release : {}", releaseId);
+        Path archive = Files.createTempFile("consumption-import-", ".zip");
+        IngestionReportDTO result;
+        try {
+            file.transferTo(archive);
+            result = consumptionCsvImportService.importRun(archive, releaseId, scope, monitoringType);
+        } catch (ReleaseNotFoundException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "releasenotfound");
+        } catch (InvalidIngestionRecordException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidrecord");
+        } catch (ZipException e) {
+            throw new BadRequestAlertException("Invalid zip archive", ENTITY_NAME, "invalidarchive");
+        } finally {
+            Files.deleteIfExists(archive);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).headers(createBatchCreationAlert(result)).body(result);
+    }
+
+    /**
+     * {@code POST  /admin/consumptions/bulk-load} : Backfill newline-delimited consumptions, optionally gzip-encoded,
+     * with MySQL's {@code LOAD DATA LOCAL INFILE}.
+     * <p>
+     * Records are loaded in large chunks, each committed in its own transaction, without going through Hibernate.
+     * Invalid records are rejected and counted, duplicates of stored consumptions are skipped.
+     *
+     * @param request the request whose body holds one consumption per line.
+     * @param contentEncoding the {@code Content-Encoding} of the body, {@code gzip} or none.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ingestion report, or with status {@code 400 (Bad Request)} if a record is malformed.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/admin/consumptions/bulk-load", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<IngestionReportDTO> bulkLoadConsumptions(
+        HttpServletRequest request,
+        @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding
+    ) throws IOException {
+        log.debug("REST request to bulk load Consumptions");
+        IngestionReportDTO result;
+        try (InputStream body = openBody(request, contentEncoding)) {
+            result = consumptionBulkLoadService.load(body);
+        } catch (InvalidIngestionRecordException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidrecord");
+        } catch (ZipException e) {
+            throw new BadRequestAlertException("Invalid gzip body", ENTITY_NAME, "invalidencoding");
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).headers(createBatchCreationAlert(result)).body(result);
+    }
+
+    /**
+     * {@code POST  /admin/consumptions/rollups/rebuild} : Rebuild the rollups of a time window from the consumptions,
+     * except the rollups of the consumptions sealed by the retention purge.
+     *
+     * @param from the start of the window, rounded down to its UTC day.
+     * @param to the end of the window.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}, or with status {@code 400 (Bad Request)} if the window is empty.
+     */
+    @PostMapping("/admin/consumptions/rollups/rebuild")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<Void> rebuildConsumptionRollups(@RequestParam Instant from, @RequestParam Instant to) {
+        log.debug("REST request to rebuild the Consumption rollups from {} to {}", from, to);
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The window must end after it starts", ENTITY_NAME, "invalidwindow");
+        }
+        int days = consumptionRollupScheduler.rebuild(from, to);
+        log.info("Rebuilt the Consumption rollups of {} days from {}", days, from);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * {@code PUT  /consumptions/:id} : Updates an existing consumption.
      *
@@ -71,7 +442,7 @@ public class ConsumptionResource {
     @PutMapping("/consumptions/{id}")
     public ResponseEntity<Consumption> updateConsumption(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody Consumption consumption
+        @Valid @RequestBody Consumption consumption
     ) throws URISyntaxException {
         log.debug("REST request to update Consumption : {}, {}", id, consumption);
         if (consumption.getId() == null) {
@@ -85,7 +456,12 @@ public class ConsumptionResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Consumption result = consumptionRepository.save(consumption);
+        Consumption result;
+        try {
+            result = consumptionService.update(consumption);
+        } catch (ExpiredConsumptionException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "expiredtimestamp");
+        }
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, consumption.getId().toString()))
@@ -106,7 +482,7 @@ public class ConsumptionResource {
     @PatchMapping(value = "/consumptions/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public ResponseEntity<Consumption> partialUpdateConsumption(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody Consumption consumption
+        @NotNull @RequestBody Consumption consumption
     ) throws URISyntaxException {
         log.debug("REST request to partial update Consumption partially : {}, {}", id, consumption);
         if (consumption.getId() == null) {
@@ -120,25 +496,12 @@ public class ConsumptionResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Optional<Consumption> result = consumptionRepository
-            .findById(consumption.getId())
-            .map(existingConsumption -> {
-                if (consumption.getValue() != null) {
-                    existingConsumption.setValue(consumption.getValue());
-                }
-                if (consumption.getScope() != null) {
-                    existingConsumption.setScope(consumption.getScope());
-                }
-                if (consumption.getMonitoringType() != null) {
-                    existingConsumption.setMonitoringType(consumption.getMonitoringType());
-                }
-                if (consumption.getTimestamp() != null) {
-                    existingConsumption.setTimestamp(consumption.getTimestamp());
-                }
-
-                return existingConsumption;
-            })
-            .map(consumptionRepository::save);
+        Optional<Consumption> result;
+        try {
+            result = consumptionService.partialUpdate(consumption);
+        } catch (ExpiredConsumptionException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "expiredtimestamp");
+        }
 
         return ResponseUtil.wrapOrNotFound(
             result,
@@ -147,14 +510,304 @@ public class ConsumptionResource {
     }
 
     /**
-     * {@code GET  /consumptions} : get all the consumptions.
+     * {@code GET  /consumptions} : get a page of the consumptions, in {@code (timestamp, id)} order.
+     * <p>
+     * Pages are keyset-paginated: the {@code Link} header points to the next page, through its {@code cursor}, as long
+     * as the page is full. No total count is computed. Only the columns of the consumptions are read, their method being
+     * referred to by its id.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of consumptions in body.
+     * @param methodId the optional method of the consumptions.
+     * @param releaseId the optional release whose methods the consumptions are of.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param from the optional inclusive lower bound of the timestamps.
+     * @param to the optional exclusive upper bound of the timestamps.
+     * @param cursor the cursor of the page, as given by the {@code Link} header of the previous page; none for the first page.
+     * @param size the size of the page, at most {@value #MAX_PAGE_SIZE}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of consumptions in body, or with status {@code 400 (Bad Request)} if the cursor or the size is invalid.
      */
     @GetMapping("/consumptions")
-    public List<Consumption> getAllConsumptions() {
-        log.debug("REST request to get all Consumptions");
-        return consumptionRepository.findAll();
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<ConsumptionDTO>> getAllConsumptions(
+        @RequestParam(required = false) Long methodId,
+        @RequestParam(required = false) Long releaseId,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType,
+        @RequestParam(required = false) Instant from,
+        @RequestParam(required = false) Instant to,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size
+    ) {
+        log.debug("REST request to get a page of Consumptions after {}", cursor);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestAlertException("The page size must be between 1 and " + MAX_PAGE_SIZE, ENTITY_NAME, "invalidpagesize");
+        }
+        ConsumptionCursor after;
+        try {
+            after = cursor == null ? null : ConsumptionCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "invalidcursor");
+        }
+        ConsumptionFilter filter = new ConsumptionFilter()
+            .methodId(methodId)
+            .releaseId(releaseId)
+            .scope(scope)
+            .monitoringType(monitoringType)
+            .from(from)
+            .to(to);
+        List<ConsumptionDTO> page = consumptionMapper.toDto(
+            consumptionRepository.findAllAfter(
+                filter,
+                after == null ? null : after.getTimestamp(),
+                after == null ? null : after.getId(),
+                size
+            )
+        );
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() == size) {
+            String next = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .replaceQueryParam("cursor", ConsumptionCursor.after(page.get(page.size() - 1)).encode())
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(page);
+    }
+
+    /**
+     * {@code GET  /consumptions/aggregates} : get the count, sum, min, max and mean of the consumption values, per group.
+     * <p>
+     * The aggregation runs in the database; the filters are the ones of {@code GET /consumptions}. Time windows aligned
+     * on UTC minutes, hours or days are served from the rollups, as long as they are up to date.
+     *
+     * @param groupBy the dimensions to group the consumptions over, among {@code method}, {@code release}, {@code scope} and {@code monitoringType}; none for a single group.
+     * @param methodId the optional method of the consumptions.
+     * @param releaseId the optional release whose methods the consumptions are of.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param from the optional inclusive lower bound of the timestamps.
+     * @param to the optional exclusive upper bound of the timestamps.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of aggregates in body, or with status {@code 400 (Bad Request)} if a dimension is unknown.
+     */
+    @GetMapping("/consumptions/aggregates")
+    public ResponseEntity<List<ConsumptionAggregateDTO>> getConsumptionAggregates(
+        @RequestParam(required = false) List<String> groupBy,
+        @RequestParam(required = false) Long methodId,
+        @RequestParam(required = false) Long releaseId,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType,
+        @RequestParam(required = false) Instant from,
+        @RequestParam(required = false) Instant to
+    ) {
+        log.debug("REST request to get Consumption aggregates by {}", groupBy);
+        EnumSet<ConsumptionDimension> dimensions = EnumSet.noneOf(ConsumptionDimension.class);
+        if (groupBy != null) {
+            for (String parameter : groupBy) {
+                dimensions.add(
+                    ConsumptionDimension
+                        .fromParameter(parameter)
+                        .orElseThrow(() -> new BadRequestAlertException("Unknown dimension " + parameter, ENTITY_NAME, "invalidgroupby"))
+                );
+            }
+        }
+        ConsumptionFilter filter = new ConsumptionFilter()
+            .methodId(methodId)
+            .releaseId(releaseId)
+            .scope(scope)
+            .monitoringType(monitoringType)
+            .from(from)
+            .to(to);
+        return ResponseEntity.ok(consumptionRollupService.aggregate(filter, dimensions));
+    }
+
+    /**
+     * {@code GET  /consumptions/series} : get the consumptions of a method within a time window, downsampled for charting.
+     *
+     * @param methodId the method of the consumptions.
+     * @param from the inclusive start of the window.
+     * @param to the exclusive end of the window.
+     * @param points the maximum number of points of the series, at most {@value #MAX_SERIES_POINTS}.
+     * @param algorithm the downsampling algorithm, {@code lttb} or {@code min_max}.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the series in body, or with status {@code 400 (Bad Request)} if the window, the number of points or the algorithm is invalid.
+     */
+    @GetMapping("/consumptions/series")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<ConsumptionSeriesDTO> getConsumptionSeries(
+        @RequestParam Long methodId,
+        @RequestParam Instant from,
+        @RequestParam Instant to,
+        @RequestParam(defaultValue = "1000") int points,
+        @RequestParam(defaultValue = "lttb") String algorithm,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType
+    ) {
+        log.debug("REST request to get the series of Method {} from {} to {}", methodId, from, to);
+        SeriesDownsampling downsampling;
+        try {
+            downsampling = SeriesDownsampling.valueOf(algorithm.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Unknown downsampling algorithm " + algorithm, ENTITY_NAME, "invalidalgorithm");
+        }
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The window must end after it starts", ENTITY_NAME, "invalidwindow");
+        }
+        if (points < downsampling.getMinPoints() || points > MAX_SERIES_POINTS) {
+            throw new BadRequestAlertException(
+                "The number of points must be between " + downsampling.getMinPoints() + " and " + MAX_SERIES_POINTS,
+                ENTITY_NAME,
+                "invalidpoints"
+            );
+        }
+        return ResponseEntity.ok(consumptionSeriesService.getSeries(methodId, scope, monitoringType, from, to, points, downsampling));
+    }
+
+    /**
+     * {@code GET  /consumptions/percentiles} : get percentiles of the consumption values within a time window.
+     * <p>
+     * Percentiles are read from quantile sketches, exact to two significant digits. Windows aligned on UTC hours or
+     * days merge the sketches maintained with the rollups, as long as they are up to date.
+     *
+     * @param from the inclusive start of the window.
+     * @param to the exclusive end of the window.
+     * @param percentiles the percentiles, between 0 and 100.
+     * @param methodId the optional method of the consumptions.
+     * @param releaseId the optional release whose methods the consumptions are of.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the percentiles in body, or with status {@code 400 (Bad Request)} if the window or a percentile is invalid.
+     */
+    @GetMapping("/consumptions/percentiles")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<ConsumptionPercentilesDTO> getConsumptionPercentiles(
+        @RequestParam Instant from,
+        @RequestParam Instant to,
+        @RequestParam(defaultValue = "50,95,99") double[] percentiles,
+        @RequestParam(required = false) Long methodId,
+        @RequestParam(required = false) Long releaseId,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType
+    ) {
+        log.debug("REST request to get the percentiles {} of Consumptions from {} to {}", percentiles, from, to);
+        ConsumptionFilter filter = sketchFilter(from, to, methodId, releaseId, scope, monitoringType);
+        if (percentiles.length == 0 || percentiles.length > MAX_PERCENTILES) {
+            throw new BadRequestAlertException(
+                "Between 1 and " + MAX_PERCENTILES + " percentiles can be requested",
+                ENTITY_NAME,
+                "invalidpercentiles"
+            );
+        }
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new BadRequestAlertException("Percentiles must be between 0 and 100", ENTITY_NAME, "invalidpercentiles");
+            }
+        }
+        return ResponseEntity.ok(consumptionSketchService.getPercentiles(filter, percentiles));
+    }
+
+    /**
+     * {@code GET  /consumptions/histogram} : get the histogram of the consumption values within a time window.
+     * <p>
+     * The histogram is read from the same quantile sketches as {@code GET /consumptions/percentiles}.
+     *
+     * @param from the inclusive start of the window.
+     * @param to the exclusive end of the window.
+     * @param buckets the number of buckets of equal width between the lowest and highest values, at most {@value #MAX_HISTOGRAM_BUCKETS}.
+     * @param methodId the optional method of the consumptions.
+     * @param releaseId the optional release whose methods the consumptions are of.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the histogram in body, or with status {@code 400 (Bad Request)} if the window or the number of buckets is invalid.
+     */
+    @GetMapping("/consumptions/histogram")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<ConsumptionHistogramDTO> getConsumptionHistogram(
+        @RequestParam Instant from,
+        @RequestParam Instant to,
+        @RequestParam(defaultValue = "20") int buckets,
+        @RequestParam(required = false) Long methodId,
+        @RequestParam(required = false) Long releaseId,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType
+    ) {
+        log.debug("REST request to get a histogram of Consumptions from {} to {} in {} buckets", from, to, buckets);
+        ConsumptionFilter filter = sketchFilter(from, to, methodId, releaseId, scope, monitoringType);
+        if (buckets < 1 || buckets > MAX_HISTOGRAM_BUCKETS) {
+            throw new BadRequestAlertException(
+                "The number of buckets must be between 1 and " + MAX_HISTOGRAM_BUCKETS,
+                ENTITY_NAME,
+                "invalidbuckets"
+            );
+        }
+        return ResponseEntity.ok(consumptionSketchService.getHistogram(filter, buckets));
+    }
+
+    private static ConsumptionFilter sketchFilter(
+        Instant from,
+        Instant to,
+        Long methodId,
+        Long releaseId,
+        Scope scope,
+        MonitoringType monitoringType
+    ) {
+        if (!from.isBefore(to)) {
+            throw new BadRequestAlertException("The window must end after it starts", ENTITY_NAME, "invalidwindow");
+        }
+        return new ConsumptionFilter()
+            .methodId(methodId)
+            .releaseId(releaseId)
+            .scope(scope)
+            .monitoringType(monitoringType)
+            .from(from)
+            .to(to);
+    }
+
+    /**
+     * {@code GET  /consumptions/export} : export the consumptions, in {@code (timestamp, id)} order.
+     * <p>
+     * The export is streamed as it is read from the database, whatever its size.
+     *
+     * @param format the format of the export, {@code csv} or {@code ndjson}.
+     * @param methodId the optional method of the consumptions.
+     * @param releaseId the optional release whose methods the consumptions are of.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param from the optional inclusive lower bound of the timestamps.
+     * @param to the optional exclusive upper bound of the timestamps.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the export as attachment, or with status {@code 400 (Bad Request)} if the format is unknown.
+     */
+    @GetMapping("/consumptions/export")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<StreamingResponseBody> exportConsumptions(
+        @RequestParam(defaultValue = "csv") String format,
+        @RequestParam(required = false) Long methodId,
+        @RequestParam(required = false) Long releaseId,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType,
+        @RequestParam(required = false) Instant from,
+        @RequestParam(required = false) Instant to
+    ) {
+        log.debug("REST request to export Consumptions as {}", format);
+        ConsumptionExportFormat exportFormat;
+        try {
+            exportFormat = ConsumptionExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Unknown export format " + format, ENTITY_NAME, "invalidformat");
+        }
+        ConsumptionFilter filter = new ConsumptionFilter()
+            .methodId(methodId)
+            .releaseId(releaseId)
+            .scope(scope)
+            .monitoringType(monitoringType)
+            .from(from)
+            .to(to);
+        StreamingResponseBody body = out -> consumptionExportService.export(filter, exportFormat, out);
+        return ResponseEntity
+            .ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=consumptions." + exportFormat.getExtension())
+            .body(body);
     }
 
     /**
@@ -166,7 +819,7 @@ public class ConsumptionResource {
     @GetMapping("/consumptions/{id}")
     public ResponseEntity<Consumption> getConsumption(@PathVariable Long id) {
         log.debug("REST request to get Consumption : {}", id);
-        Optional<Consumption> consumption = consumptionRepository.findById(id);
+        Optional<Consumption> consumption = consumptionRepository.findOneWithToOneRelationshipsById(id);
         return ResponseUtil.wrapOrNotFound(consumption);
     }
 
@@ -174,15 +827,50 @@ public class ConsumptionResource {
      * {@code DELETE  /consumptions/:id} : delete the "id" consumption.
      *
      * @param id the id of the consumption to delete.
-     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 400 (Bad Request)} if the consumption is older than
+     * the consumptions kept by the retention policies.
      */
     @DeleteMapping("/consumptions/{id}")
     public ResponseEntity<Void> deleteConsumption(@PathVariable Long id) {
         log.debug("REST request to delete Consumption : {}", id);
-        consumptionRepository.deleteById(id);
+        try {
+            consumptionService.delete(id);
+        } catch (ExpiredConsumptionException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "expiredtimestamp");
+        }
         return ResponseEntity
             .noContent()
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    private Optional<ResponseEntity<IngestionReportDTO>> replayedReport(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > IngestionIdempotencyService.MAX_KEY_LENGTH) {
+            throw new BadRequestAlertException("Invalid idempotency key", ENTITY_NAME, "invalididempotencykey");
+        }
+        return ingestionIdempotencyService
+            .findReport(idempotencyKey)
+            .map(report -> ResponseEntity.ok().header(IngestionIdempotencyService.IDEMPOTENT_REPLAYED_HEADER, "true").body(report));
+    }
+
+    private void rememberReport(String idempotencyKey, IngestionReportDTO report) {
+        if (idempotencyKey != null) {
+            ingestionIdempotencyService.saveReport(idempotencyKey, report);
+        }
+    }
+
+    private static InputStream openBody(HttpServletRequest request, String contentEncoding) throws IOException {
+        return "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(request.getInputStream()) : request.getInputStream();
+    }
+
+    private HttpHeaders createBatchCreationAlert(IngestionReportDTO report) {
+        return HeaderUtil.createAlert(
+            applicationName,
+            applicationName + "." + ENTITY_NAME + ".batchCreated",
+            String.valueOf(report.getPersisted())
+        );
+    }
 }
@@ -2,16 +2,30 @@ package com.snail.consumptiondb.web.rest;
 
 import com.snail.consumptiondb.domain.Measure;
 import com.snail.consumptiondb.repository.MeasureRepository;
+import com.snail.consumptiondb.service.InvalidIngestionRecordException;
+import com.snail.consumptiondb.service.StreamingIngestionService;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import com.snail.consumptiondb.service.dto.MeasureDTO;
+import com.snail.consumptiondb.service.mapper.MeasureMapper;
 import com.snail.consumptiondb.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import javax.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import tech.jhipster.web.util.HeaderUtil;
@@ -34,8 +48,18 @@ public class MeasureResource {
 
     private final MeasureRepository measureRepository;
 
-    public MeasureResource(MeasureRepository measureRepository) {
+    private final StreamingIngestionService streamingIngestionService;
+
+    private final MeasureMapper measureMapper;
+
+    public MeasureResource(
+        MeasureRepository measureRepository,
+        StreamingIngestionService streamingIngestionService,
+        MeasureMapper measureMapper
+    ) {
         this.measureRepository = measureRepository;
+        this.streamingIngestionService = streamingIngestionService;
+        this.measureMapper = measureMapper;
     }
 
     /**
@@ -58,6 +82,48 @@ public class MeasureResource {
             .body(result);
     }
 
+    /**
+     * {@code POST  /measures/batch} : Stream newline-delimited measures, optionally gzip-encoded.
+     * <p>
+     * The upload is never materialised: records are committed in fixed-size chunks as they are parsed,
+     * so the chunks preceding an invalid record stay committed.
+     *
+     * @param request the request whose body holds one measure per line.
+     * @param contentEncoding the {@code Content-Encoding} of the body, {@code gzip} or none.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the ingestion report, or with status {@code 400 (Bad Request)} if a record is invalid.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/measures/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResponseEntity<IngestionReportDTO> streamMeasures(
+        HttpServletRequest request,
+        @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding
+    ) throws IOException {
+        log.debug("REST request to stream Measures");
+        IngestionReportDTO result;
+        try (
+            InputStream body = "gzip".equalsIgnoreCase(contentEncoding)
+                ? new GZIPInputStream(request.getInputStream())
+                : request.getInputStream()
+        ) {
+            result = streamingIngestionService.ingestMeasures(body);
+        } catch (InvalidIngestionRecordException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invalidrecord");
+        } catch (ZipException e) {
+            throw new BadRequestAlertException("Invalid gzip body", ENTITY_NAME, "invalidencoding");
+        }
+        return ResponseEntity
+            .status(HttpStatus.CREATED)
+            .headers(
+                HeaderUtil.createAlert(
+                    applicationName,
+                    applicationName + "." + ENTITY_NAME + ".batchCreated",
+                    String.valueOf(result.getPersisted())
+                )
+            )
+            .body(result);
+    }
+
     /**
      * {@code PUT  /measures/:id} : Updates an existing measure.
      *
@@ -119,7 +185,7 @@ public class MeasureResource {
         }
 
         Optional<Measure> result = measureRepository
-            .findById(measure.getId())
+            .findOneWithToOneRelationshipsById(measure.getId())
             .map(existingMeasure -> {
                 if (measure.getStartTimestamp() != null) {
                     existingMeasure.setStartTimestamp(measure.getStartTimestamp());
@@ -141,9 +207,10 @@ public class MeasureResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of measures in body.
      */
     @GetMapping("/measures")
-    public List<Measure> getAllMeasures() {
+    @Transactional(readOnly = true)
+    public List<MeasureDTO> getAllMeasures() {
         log.debug("REST request to get all Measures");
-        return measureRepository.findAll();
+        return measureMapper.toDto(measureRepository.findAllRows());
     }
 
     /**
@@ -155,7 +222,7 @@ public class MeasureResource {
     @GetMapping("/measures/{id}")
     public ResponseEntity<Measure> getMeasure(@PathVariable Long id) {
         log.debug("REST request to get Measure : {}", id);
-        Optional<Measure> measure = measureRepository.findById(id);
+        Optional<Measure> measure = measureRepository.findOneWithToOneRelationshipsById(id);
         return ResponseUtil.wrapOrNotFound(measure);
     }
 
@@ -2,14 +2,14 @@ package com.snail.consumptiondb.web.rest;
 
 import com.snail.consumptiondb.domain.Method;
 import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import com.snail.consumptiondb.service.mapper.MethodMapper;
 import com.snail.consumptiondb.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -36,8 +36,11 @@ public class MethodResource {
 
     private final MethodRepository methodRepository;
 
-    public MethodResource(MethodRepository methodRepository) {
+    private final MethodMapper methodMapper;
+
+    public MethodResource(MethodRepository methodRepository, MethodMapper methodMapper) {
         this.methodRepository = methodRepository;
+        this.methodMapper = methodMapper;
     }
 
     /**
@@ -121,7 +124,7 @@ public class MethodResource {
         }
 
         Optional<Method> result = methodRepository
-            .findById(method.getId())
+            .findOneWithToOneRelationshipsById(method.getId())
             .map(existingMethod -> {
                 if (method.getName() != null) {
                     existingMethod.setName(method.getName());
@@ -144,16 +147,14 @@ public class MethodResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of methods in body.
      */
     @GetMapping("/methods")
-    public List<Method> getAllMethods(@RequestParam(required = false) String filter) {
+    @Transactional(readOnly = true)
+    public List<MethodDTO> getAllMethods(@RequestParam(required = false) String filter) {
         if ("method-is-null".equals(filter)) {
             log.debug("REST request to get all Methods where method is null");
-            return StreamSupport
-                .stream(methodRepository.findAll().spliterator(), false)
-                .filter(method -> method.getMethod() == null)
-                .collect(Collectors.toList());
+            return methodMapper.toDto(methodRepository.findAllRowsWhereMethodIsNull());
         }
         log.debug("REST request to get all Methods");
-        return methodRepository.findAll();
+        return methodMapper.toDto(methodRepository.findAllRows());
     }
 
     /**
@@ -165,7 +166,7 @@ public class MethodResource {
     @GetMapping("/methods/{id}")
     public ResponseEntity<Method> getMethod(@PathVariable Long id) {
         log.debug("REST request to get Method : {}", id);
-        Optional<Method> method = methodRepository.findById(id);
+        Optional<Method> method = methodRepository.findOneWithToOneRelationshipsById(id);
         return ResponseUtil.wrapOrNotFound(method);
     }
 
@@ -1,20 +1,47 @@
 package com.snail.consumptiondb.web.rest;
 
 import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.MethodRepository;
 import com.snail.consumptiondb.repository.ReleaseRepository;
+import com.snail.consumptiondb.service.MethodTreeService;
+import com.snail.consumptiondb.service.ReleaseDiffMetric;
+import com.snail.consumptiondb.service.ReleaseDiffService;
+import com.snail.consumptiondb.service.ReleaseQueryService;
+import com.snail.consumptiondb.service.ReleaseTopMethodsService;
+import com.snail.consumptiondb.service.TopMethodsMetric;
+import com.snail.consumptiondb.service.dto.ConsumptionAggregateDTO;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import com.snail.consumptiondb.service.dto.MethodDiffDTO;
+import com.snail.consumptiondb.service.dto.MethodTreeNodeDTO;
+import com.snail.consumptiondb.service.dto.ReleaseDTO;
 import com.snail.consumptiondb.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.PaginationUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
 /**
@@ -29,13 +56,39 @@ public class ReleaseResource {
 
     private static final String ENTITY_NAME = "consumptionDbRelease";
 
+    static final int MAX_TOP_METHODS = 1000;
+
+    static final int MAX_EAGER_PAGE_SIZE = 100;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
     private final ReleaseRepository releaseRepository;
 
-    public ReleaseResource(ReleaseRepository releaseRepository) {
+    private final MethodRepository methodRepository;
+
+    private final ReleaseDiffService releaseDiffService;
+
+    private final ReleaseTopMethodsService releaseTopMethodsService;
+
+    private final MethodTreeService methodTreeService;
+
+    private final ReleaseQueryService releaseQueryService;
+
+    public ReleaseResource(
+        ReleaseRepository releaseRepository,
+        MethodRepository methodRepository,
+        ReleaseDiffService releaseDiffService,
+        ReleaseTopMethodsService releaseTopMethodsService,
+        MethodTreeService methodTreeService,
+        ReleaseQueryService releaseQueryService
+    ) {
         this.releaseRepository = releaseRepository;
+        this.methodRepository = methodRepository;
+        this.releaseDiffService = releaseDiffService;
+        this.releaseTopMethodsService = releaseTopMethodsService;
+        this.methodTreeService = methodTreeService;
+        this.releaseQueryService = releaseQueryService;
     }
 
     /**
@@ -60,6 +113,8 @@ public class ReleaseResource {
 
     /**
      * {@code PUT  /releases/:id} : Updates an existing release.
+     * <p>
+     * The methods of the release are left untouched, they are linked and unlinked through {@code /releases/:id/methods}.
      *
      * @param id the id of the release to save.
      * @param release the release to update.
@@ -83,7 +138,17 @@ public class ReleaseResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Release result = releaseRepository.save(release);
+        Release result = releaseRepository
+            .findById(id)
+            .map(existingRelease -> {
+                existingRelease.setName(release.getName());
+                existingRelease.setDate(release.getDate());
+                existingRelease.setDescription(release.getDescription());
+                return existingRelease;
+            })
+            .map(releaseRepository::save)
+            .orElseThrow();
+        methodTreeService.evict(id);
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, release.getId().toString()))
@@ -142,32 +207,210 @@ public class ReleaseResource {
     }
 
     /**
-     * {@code GET  /releases} : get all the releases.
+     * {@code GET  /releases} : get a page of the releases.
      *
-     * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of releases in body.
+     * @param pageable the pagination information.
+     * @param eagerload flag to embed the first {@value ReleaseQueryService#MAX_EMBEDDED_METHODS} methods of each release, in pages of at most {@value #MAX_EAGER_PAGE_SIZE} releases.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of releases in body, or with status {@code 400 (Bad Request)} if the page is too large to be eagerly loaded.
      */
     @GetMapping("/releases")
-    public List<Release> getAllReleases(@RequestParam(required = false, defaultValue = "false") boolean eagerload) {
-        log.debug("REST request to get all Releases");
-        if (eagerload) {
-            return releaseRepository.findAllWithEagerRelationships();
-        } else {
-            return releaseRepository.findAll();
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<ReleaseDTO>> getAllReleases(
+        Pageable pageable,
+        @RequestParam(required = false, defaultValue = "false") boolean eagerload
+    ) {
+        log.debug("REST request to get a page of Releases");
+        if (eagerload && pageable.getPageSize() > MAX_EAGER_PAGE_SIZE) {
+            throw new BadRequestAlertException(
+                "Eagerly loaded pages hold at most " + MAX_EAGER_PAGE_SIZE + " releases",
+                ENTITY_NAME,
+                "invalidpagesize"
+            );
         }
+        Page<ReleaseDTO> page = releaseQueryService.findAll(pageable, eagerload);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
     /**
      * {@code GET  /releases/:id} : get the "id" release.
      *
      * @param id the id of the release to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the release, or with status {@code 404 (Not Found)}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the release with its first {@value ReleaseQueryService#MAX_EMBEDDED_METHODS} methods, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/releases/{id}")
-    public ResponseEntity<Release> getRelease(@PathVariable Long id) {
+    @Transactional(readOnly = true)
+    public ResponseEntity<ReleaseDTO> getRelease(@PathVariable Long id) {
         log.debug("REST request to get Release : {}", id);
-        Optional<Release> release = releaseRepository.findOneWithEagerRelationships(id);
-        return ResponseUtil.wrapOrNotFound(release);
+        return ResponseUtil.wrapOrNotFound(releaseQueryService.findOne(id));
+    }
+
+    /**
+     * {@code GET  /releases/:id/methods} : get a page of the methods of the "id" release.
+     *
+     * @param id the id of the release.
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of methods in body, or with status {@code 404 (Not Found)} if the release does not exist.
+     */
+    @GetMapping("/releases/{id}/methods")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MethodDTO>> getReleaseMethods(@PathVariable Long id, Pageable pageable) {
+        log.debug("REST request to get a page of the Methods of Release : {}", id);
+        Page<MethodDTO> page = releaseQueryService
+            .findMethods(id, pageable)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code PUT  /releases/:id/methods/:methodId} : link the "methodId" method to the "id" release.
+     *
+     * @param id the id of the release.
+     * @param methodId the id of the method.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}, or with status {@code 404 (Not Found)} if the release or the method does not exist.
+     */
+    @PutMapping("/releases/{id}/methods/{methodId}")
+    public ResponseEntity<Void> linkReleaseMethod(@PathVariable Long id, @PathVariable Long methodId) {
+        log.debug("REST request to link Method {} to Release : {}", methodId, id);
+        if (!releaseRepository.existsById(id) || !methodRepository.existsById(methodId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        releaseRepository.linkMethod(id, methodId);
+        methodTreeService.evict(id);
+        evictReleaseCaches();
+        return ResponseEntity
+            .noContent()
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, id.toString()))
+            .build();
+    }
+
+    /**
+     * {@code DELETE  /releases/:id/methods/:methodId} : unlink the "methodId" method from the "id" release.
+     *
+     * @param id the id of the release.
+     * @param methodId the id of the method.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}, or with status {@code 404 (Not Found)} if the method is not linked to the release.
+     */
+    @DeleteMapping("/releases/{id}/methods/{methodId}")
+    public ResponseEntity<Void> unlinkReleaseMethod(@PathVariable Long id, @PathVariable Long methodId) {
+        log.debug("REST request to unlink Method {} from Release : {}", methodId, id);
+        if (releaseRepository.unlinkMethod(id, methodId) == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        methodTreeService.evict(id);
+        evictReleaseCaches();
+        return ResponseEntity
+            .noContent()
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, id.toString()))
+            .build();
+    }
+
+    /**
+     * {@code GET  /releases/:id/diff/:targetId} : get a page of the per-method changes of consumption from the "id"
+     * release to the "targetId" release.
+     * <p>
+     * Methods are matched by name, the ones only in the target release are {@code ADDED} and the ones only in the
+     * "id" release are {@code REMOVED}. Values come from the day rollups of the consumptions.
+     *
+     * @param id the id of the release to compare from.
+     * @param targetId the id of the release to compare to.
+     * @param metric the compared value, {@code sum} or {@code mean}.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @param pageable the pagination information, sorted by any property of the diff, by default by decreasing delta.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of method diffs in body, or with status {@code 400 (Bad Request)} if the metric or the sort is invalid, or with status {@code 404 (Not Found)} if a release does not exist.
+     */
+    @GetMapping("/releases/{id}/diff/{targetId}")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<MethodDiffDTO>> getReleaseDiff(
+        @PathVariable Long id,
+        @PathVariable Long targetId,
+        @RequestParam(defaultValue = "sum") String metric,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType,
+        @PageableDefault(size = 50, sort = "delta", direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        log.debug("REST request to diff Release {} with Release {}", id, targetId);
+        ReleaseDiffMetric diffMetric;
+        Comparator<MethodDiffDTO> comparator;
+        try {
+            diffMetric = ReleaseDiffMetric.valueOf(metric.toUpperCase(Locale.ROOT));
+            comparator = ReleaseDiffService.comparatorOf(pageable.getSort());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "invaliddiff");
+        }
+        if (!releaseRepository.existsById(id) || !releaseRepository.existsById(targetId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        List<MethodDiffDTO> diff = new ArrayList<>(releaseDiffService.diff(id, targetId, scope, monitoringType, diffMetric));
+        diff.sort(comparator);
+        int from = (int) Math.min(pageable.getOffset(), diff.size());
+        int to = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), diff.size());
+        Page<MethodDiffDTO> page = new PageImpl<>(diff.subList(from, to), pageable, diff.size());
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /releases/:id/top-methods} : get the methods of the "id" release with the highest consumption.
+     * <p>
+     * Values come from the day rollups of the consumptions.
+     *
+     * @param id the id of the release.
+     * @param k the maximum number of methods, up to {@value #MAX_TOP_METHODS}.
+     * @param metric the value the methods are ranked by, {@code total}, {@code mean} or {@code peak}.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the aggregates of the methods by decreasing value in body, or with status {@code 400 (Bad Request)} if the metric or the number of methods is invalid, or with status {@code 404 (Not Found)} if the release does not exist.
+     */
+    @GetMapping("/releases/{id}/top-methods")
+    @Transactional(readOnly = true)
+    public List<ConsumptionAggregateDTO> getReleaseTopMethods(
+        @PathVariable Long id,
+        @RequestParam(defaultValue = "10") int k,
+        @RequestParam(defaultValue = "total") String metric,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType
+    ) {
+        log.debug("REST request to get the top {} methods of Release {} by {}", k, id, metric);
+        if (k < 1 || k > MAX_TOP_METHODS) {
+            throw new BadRequestAlertException("The number of methods must be between 1 and " + MAX_TOP_METHODS, ENTITY_NAME, "invalidk");
+        }
+        TopMethodsMetric topMetric;
+        try {
+            topMetric = TopMethodsMetric.valueOf(metric.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Unknown metric " + metric, ENTITY_NAME, "invalidmetric");
+        }
+        Release release = releaseRepository.findById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return releaseTopMethodsService.topMethods(release, k, topMetric, scope, monitoringType);
+    }
+
+    /**
+     * {@code GET  /releases/:id/method-tree} : drill down into the package, class and method tree of the "id" release.
+     * <p>
+     * Method names are split on dots; every node holds the total energy of the methods below it, from the day rollups.
+     *
+     * @param id the id of the release.
+     * @param path the dot-separated prefix to drill down into, the root by default.
+     * @param scope the optional scope of the consumptions.
+     * @param monitoringType the optional monitoring type of the consumptions.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the node with its children by decreasing energy in body, or with status {@code 404 (Not Found)} if the release does not exist or none of its methods starts with the prefix.
+     */
+    @GetMapping("/releases/{id}/method-tree")
+    @Transactional(readOnly = true)
+    public ResponseEntity<MethodTreeNodeDTO> getReleaseMethodTree(
+        @PathVariable Long id,
+        @RequestParam(defaultValue = "") String path,
+        @RequestParam(required = false) Scope scope,
+        @RequestParam(required = false) MonitoringType monitoringType
+    ) {
+        log.debug("REST request to get the method tree of Release {} at '{}'", id, path);
+        if (!releaseRepository.existsById(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return ResponseUtil.wrapOrNotFound(methodTreeService.drillDown(id, path, scope, monitoringType));
     }
 
     /**
@@ -180,9 +423,19 @@ public class ReleaseResource {
     public ResponseEntity<Void> deleteRelease(@PathVariable Long id) {
         log.debug("REST request to delete Release : {}", id);
         releaseRepository.deleteById(id);
+        methodTreeService.evict(id);
+        evictReleaseCaches();
         return ResponseEntity
             .noContent()
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
             .build();
     }
+
+    /**
+     * Drop the cached diffs and rankings, which match methods to releases.
+     */
+    private void evictReleaseCaches() {
+        releaseDiffService.evictAll();
+        releaseTopMethodsService.evictAll();
+    }
 }
@@ -2,6 +2,8 @@ package com.snail.consumptiondb.web.rest;
 
 import com.snail.consumptiondb.domain.Software;
 import com.snail.consumptiondb.repository.SoftwareRepository;
+import com.snail.consumptiondb.service.dto.SoftwareDTO;
+import com.snail.consumptiondb.service.mapper.SoftwareMapper;
 import com.snail.consumptiondb.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -34,8 +36,11 @@ public class SoftwareResource {
 
     private final SoftwareRepository softwareRepository;
 
-    public SoftwareResource(SoftwareRepository softwareRepository) {
+    private final SoftwareMapper softwareMapper;
+
+    public SoftwareResource(SoftwareRepository softwareRepository, SoftwareMapper softwareMapper) {
         this.softwareRepository = softwareRepository;
+        this.softwareMapper = softwareMapper;
     }
 
     /**
@@ -121,7 +126,7 @@ public class SoftwareResource {
         }
 
         Optional<Software> result = softwareRepository
-            .findById(software.getId())
+            .findOneWithToOneRelationshipsById(software.getId())
             .map(existingSoftware -> {
                 if (software.getName() != null) {
                     existingSoftware.setName(software.getName());
@@ -143,9 +148,10 @@ public class SoftwareResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of software in body.
      */
     @GetMapping("/software")
-    public List<Software> getAllSoftware() {
+    @Transactional(readOnly = true)
+    public List<SoftwareDTO> getAllSoftware() {
         log.debug("REST request to get all Software");
-        return softwareRepository.findAll();
+        return softwareMapper.toDto(softwareRepository.findAllRows());
     }
 
     /**
@@ -157,7 +163,7 @@ public class SoftwareResource {
     @GetMapping("/software/{id}")
     public ResponseEntity<Software> getSoftware(@PathVariable Long id) {
         log.debug("REST request to get Software : {}", id);
-        Optional<Software> software = softwareRepository.findById(id);
+        Optional<Software> software = softwareRepository.findOneWithToOneRelationshipsById(id);
         return ResponseUtil.wrapOrNotFound(software);
     }
 
@@ -67,6 +67,22 @@ describe('Consumption Management Component', () => {
     expect(comp.consumptions?.[0]).toEqual(expect.objectContaining({ id: 123 }));
   });
 
+  it('Should load the next page from the cursor of the Link header', () => {
+    // GIVEN
+    const headers = new HttpHeaders().append('link', '<http://localhost/api/consumptions?size=1&cursor=abc>; rel="next"');
+    jest.spyOn(service, 'query').mockReturnValue(of(new HttpResponse({ body: [{ id: 123 }], headers })));
+    comp.ngOnInit();
+    jest.spyOn(service, 'query').mockReturnValue(of(new HttpResponse({ body: [{ id: 456 }], headers: new HttpHeaders() })));
+
+    // WHEN
+    comp.loadNextPage();
+
+    // THEN
+    expect(service.query).toHaveBeenLastCalledWith(expect.objectContaining({ cursor: 'abc' }));
+    expect(comp.consumptions?.map(consumption => consumption.id)).toEqual([456, 123]);
+    expect(comp.nextCursor).toBeUndefined();
+  });
+
   describe('trackId', () => {
     it('Should forward to consumptionService', () => {
       const entity = { id: 123 };
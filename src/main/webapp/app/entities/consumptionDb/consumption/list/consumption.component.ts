@@ -16,6 +16,7 @@ import { SortService } from 'app/shared/sort/sort.service';
 export class ConsumptionComponent implements OnInit {
   consumptions?: IConsumption[];
   isLoading = false;
+  nextCursor?: string;
 
   predicate = 'id';
   ascending = true;
@@ -58,6 +59,17 @@ export class ConsumptionComponent implements OnInit {
     });
   }
 
+  loadNextPage(): void {
+    if (!this.nextCursor || this.isLoading) {
+      return;
+    }
+    this.queryBackend(this.predicate, this.ascending, this.nextCursor).subscribe({
+      next: (res: EntityArrayResponseType) => {
+        this.onResponseSuccess(res, this.consumptions ?? []);
+      },
+    });
+  }
+
   navigateToWithComponentValues(): void {
     this.handleNavigation(this.predicate, this.ascending);
   }
@@ -75,9 +87,16 @@ export class ConsumptionComponent implements OnInit {
     this.ascending = sort[1] === ASC;
   }
 
-  protected onResponseSuccess(response: EntityArrayResponseType): void {
+  protected onResponseSuccess(response: EntityArrayResponseType, previousPages: IConsumption[] = []): void {
+    this.nextCursor = this.parseNextCursor(response.headers.get('link'));
     const dataFromBody = this.fillComponentAttributesFromResponseBody(response.body);
-    this.consumptions = this.refineData(dataFromBody);
+    this.consumptions = this.refineData([...previousPages, ...dataFromBody]);
+  }
+
+  protected parseNextCursor(link: string | null): string | undefined {
+    const next = link?.split(',').find(part => part.includes('rel="next"'));
+    const url = next?.replace(/.*<(.*)>.*/, '$1').trim(); // NOSONAR
+    return url ? new URL(url, window.location.href).searchParams.get('cursor') ?? undefined : undefined;
   }
 
   protected refineData(data: IConsumption[]): IConsumption[] {
@@ -88,11 +107,14 @@ export class ConsumptionComponent implements OnInit {
     return data ?? [];
   }
 
-  protected queryBackend(predicate?: string, ascending?: boolean): Observable<EntityArrayResponseType> {
+  protected queryBackend(predicate?: string, ascending?: boolean, cursor?: string): Observable<EntityArrayResponseType> {
     this.isLoading = true;
-    const queryObject = {
+    const queryObject: any = {
       sort: this.getSortQueryParam(predicate, ascending),
     };
+    if (cursor) {
+      queryObject.cursor = cursor;
+    }
     return this.consumptionService.query(queryObject).pipe(tap(() => (this.isLoading = false)));
   }
 
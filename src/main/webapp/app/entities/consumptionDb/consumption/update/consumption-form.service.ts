@@ -57,7 +57,9 @@ export class ConsumptionFormService {
       value: new FormControl(consumptionRawValue.value),
       scope: new FormControl(consumptionRawValue.scope),
       monitoringType: new FormControl(consumptionRawValue.monitoringType),
-      timestamp: new FormControl(consumptionRawValue.timestamp),
+      timestamp: new FormControl(consumptionRawValue.timestamp, {
+        validators: [Validators.required],
+      }),
     });
   }
 
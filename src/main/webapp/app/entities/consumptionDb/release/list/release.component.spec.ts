@@ -44,7 +44,7 @@ describe('Release Management Component', () => {
     comp = fixture.componentInstance;
     service = TestBed.inject(ReleaseService);
 
-    const headers = new HttpHeaders();
+    const headers = new HttpHeaders().append('X-Total-Count', '42');
     jest.spyOn(service, 'query').mockReturnValue(
       of(
         new HttpResponse({
@@ -64,6 +64,15 @@ describe('Release Management Component', () => {
     expect(comp.releases?.[0]).toEqual(expect.objectContaining({ id: 123 }));
   });
 
+  it('should load a page of releases', () => {
+    // WHEN
+    comp.ngOnInit();
+
+    // THEN
+    expect(service.query).toHaveBeenLastCalledWith(expect.objectContaining({ page: 0, size: comp.itemsPerPage, sort: ['id,desc'] }));
+    expect(comp.totalItems).toEqual(42);
+  });
+
   describe('trackId', () => {
     it('Should forward to releaseService', () => {
       const entity = { id: 123 };
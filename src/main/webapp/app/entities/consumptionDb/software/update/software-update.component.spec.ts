@@ -1,5 +1,5 @@
 import { ComponentFixture, TestBed } from '@angular/core/testing';
-import { HttpResponse } from '@angular/common/http';
+import { HttpHeaders, HttpResponse } from '@angular/common/http';
 import { HttpClientTestingModule } from '@angular/common/http/testing';
 import { FormBuilder } from '@angular/forms';
 import { ActivatedRoute } from '@angular/router';
@@ -71,6 +71,21 @@ describe('Software Management Update Component', () => {
       expect(comp.releasesSharedCollection).toEqual(expectedCollection);
     });
 
+    it('Should load the next page of releases', () => {
+      const headers = new HttpHeaders().append('X-Total-Count', '30');
+      jest.spyOn(releaseService, 'query').mockReturnValueOnce(of(new HttpResponse({ body: [{ id: 1 }], headers })));
+      activatedRoute.data = of({ software: null });
+      comp.ngOnInit();
+      expect(comp.hasMoreReleases).toBe(true);
+
+      jest.spyOn(releaseService, 'query').mockReturnValueOnce(of(new HttpResponse({ body: [{ id: 1 }, { id: 2 }], headers })));
+      comp.loadMoreReleases();
+
+      expect(releaseService.query).toHaveBeenLastCalledWith(expect.objectContaining({ page: 1 }));
+      expect(comp.releasesSharedCollection).toEqual([{ id: 1 }, { id: 2 }]);
+      expect(comp.hasMoreReleases).toBe(false);
+    });
+
     it('Should update editForm', () => {
       const software: ISoftware = { id: 456 };
       const release: IRelease = { id: 32150 };
@@ -2,7 +2,9 @@ import { Component, OnInit } from '@angular/core';
 import { HttpResponse } from '@angular/common/http';
 import { ActivatedRoute } from '@angular/router';
 import { Observable } from 'rxjs';
-import { finalize, map } from 'rxjs/operators';
+import { finalize, map, tap } from 'rxjs/operators';
+
+import { ITEMS_PER_PAGE, TOTAL_COUNT_RESPONSE_HEADER } from 'app/config/pagination.constants';
 
 import { SoftwareFormService, SoftwareFormGroup } from './software-form.service';
 import { ISoftware } from '../software.model';
@@ -19,6 +21,8 @@ export class SoftwareUpdateComponent implements OnInit {
   software: ISoftware | null = null;
 
   releasesSharedCollection: IRelease[] = [];
+  releasesPage = 0;
+  hasMoreReleases = false;
 
   editForm: SoftwareFormGroup = this.softwareFormService.createSoftwareFormGroup();
 
@@ -46,6 +50,11 @@ export class SoftwareUpdateComponent implements OnInit {
     window.history.back();
   }
 
+  loadMoreReleases(): void {
+    this.releasesPage++;
+    this.queryReleases();
+  }
+
   save(): void {
     this.isSaving = true;
     const software = this.softwareFormService.getSoftware(this.editForm);
@@ -86,10 +95,32 @@ export class SoftwareUpdateComponent implements OnInit {
   }
 
   protected loadRelationshipsOptions(): void {
+    this.releasesPage = 0;
+    this.queryReleases();
+  }
+
+  /**
+   * Releases pile up over the life of a software, so they are offered a page at a time, most recent first.
+   */
+  protected queryReleases(): void {
+    const page = this.releasesPage;
     this.releaseService
-      .query()
+      .query({ page, size: ITEMS_PER_PAGE, sort: ['date,desc', 'id,desc'] })
+      .pipe(
+        tap(
+          (res: HttpResponse<IRelease[]>) =>
+            (this.hasMoreReleases = (page + 1) * ITEMS_PER_PAGE < Number(res.headers.get(TOTAL_COUNT_RESPONSE_HEADER)))
+        )
+      )
       .pipe(map((res: HttpResponse<IRelease[]>) => res.body ?? []))
-      .pipe(map((releases: IRelease[]) => this.releaseService.addReleaseToCollectionIfMissing<IRelease>(releases, this.software?.release)))
-      .subscribe((releases: IRelease[]) => (this.releasesSharedCollection = releases));
+      .subscribe((releases: IRelease[]) => {
+        if (page === 0) {
+          this.releasesSharedCollection = this.releaseService.addReleaseToCollectionIfMissing<IRelease>(releases, this.software?.release);
+        } else {
+          this.releasesSharedCollection = this.releasesSharedCollection.concat(
+            releases.filter(release => !this.releasesSharedCollection.some(option => this.releaseService.compareRelease(option, release)))
+          );
+        }
+      });
   }
 }
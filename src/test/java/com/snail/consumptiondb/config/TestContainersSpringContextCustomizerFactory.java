@@ -51,7 +51,7 @@ public class TestContainersSpringContextCustomizerFactory implements ContextCust
                         testValues.and(
                             "spring.datasource.url=" +
                             devTestContainer.getTestContainer().getJdbcUrl() +
-                            "?useUnicode=true&characterEncoding=utf8&useSSL=false&useLegacyDatetimeCode=false&serverTimezone=UTC&createDatabaseIfNotExist=true"
+                            "?useUnicode=true&characterEncoding=utf8&useSSL=false&useLegacyDatetimeCode=false&serverTimezone=UTC&createDatabaseIfNotExist=true&rewriteBatchedStatements=true&allowLoadLocalInfile=true"
                         );
                     testValues = testValues.and("spring.datasource.username=" + devTestContainer.getTestContainer().getUsername());
                     testValues = testValues.and("spring.datasource.password=" + devTestContainer.getTestContainer().getPassword());
@@ -77,7 +77,7 @@ public class TestContainersSpringContextCustomizerFactory implements ContextCust
                         testValues.and(
                             "spring.datasource.url=" +
                             prodTestContainer.getTestContainer().getJdbcUrl() +
-                            "?useUnicode=true&characterEncoding=utf8&useSSL=false&useLegacyDatetimeCode=false&serverTimezone=UTC&createDatabaseIfNotExist=true"
+                            "?useUnicode=true&characterEncoding=utf8&useSSL=false&useLegacyDatetimeCode=false&serverTimezone=UTC&createDatabaseIfNotExist=true&rewriteBatchedStatements=true&allowLoadLocalInfile=true"
                         );
                     testValues = testValues.and("spring.datasource.username=" + prodTestContainer.getTestContainer().getUsername());
                     testValues = testValues.and("spring.datasource.password=" + prodTestContainer.getTestContainer().getPassword());
@@ -0,0 +1,93 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.service.ConsumptionPartitionService;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Integration tests checking with {@code EXPLAIN} that queries on a time window of consumptions only read the
+ * partitions overlapping it.
+ */
+@IntegrationTest
+class ConsumptionPartitionIT {
+
+    @Autowired
+    private ConsumptionPartitionService consumptionPartitionService;
+
+    @Autowired
+    private ConsumptionPartitionRepository consumptionPartitionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private YearMonth month;
+
+    @BeforeEach
+    public void initTest() {
+        Instant now = Instant.now();
+        consumptionPartitionService.maintain(now);
+        month = YearMonth.from(now.atOffset(ZoneOffset.UTC));
+    }
+
+    @Test
+    void splitMonthlyPartitionsAhead() {
+        List<ConsumptionPartition> partitions = consumptionPartitionRepository.findAll();
+
+        assertThat(partitions).extracting(ConsumptionPartition::getName).contains("p_history", name(month), name(month.plusMonths(3)));
+        assertThat(partitions.get(partitions.size() - 1).getName()).isEqualTo("p_max");
+        assertThat(partitions.get(partitions.size() - 1).getUpperBound()).isNull();
+        assertThat(partitions.get(partitions.size() - 2).getUpperBound()).isEqualTo(start(month.plusMonths(4)));
+    }
+
+    @Test
+    void pruneTimeWindows() {
+        Instant from = start(month).plusSeconds(3_600);
+
+        assertThat(explainPartitions("timestamp >= ? and timestamp < ?", from, from.plusSeconds(60))).isEqualTo(name(month));
+        assertThat(explainPartitions("timestamp >= ? and timestamp < ?", from, start(month.plusMonths(1)).plusSeconds(60)))
+            .isEqualTo(name(month) + "," + name(month.plusMonths(1)));
+        assertThat(
+            explainPartitions(
+                "timestamp >= ? and timestamp < ?",
+                Instant.parse("2001-02-03T00:00:00Z"),
+                Instant.parse("2001-02-04T00:00:00Z")
+            )
+        )
+            .isEqualTo("p_history");
+    }
+
+    @Test
+    void pruneMethodWindows() {
+        Instant from = start(month.plusMonths(1));
+        String condition = "method_id = 1 and timestamp >= ? and timestamp < ? order by timestamp";
+
+        assertThat(explainPartitions(condition, from, from.plusSeconds(3_600))).isEqualTo(name(month.plusMonths(1)));
+    }
+
+    private String explainPartitions(String condition, Instant... window) {
+        List<Object> args = new ArrayList<>(List.of((Object[]) window));
+        return jdbcTemplate.query(
+            "explain select * from consumption where " + condition,
+            ConsumptionRollupRepository.setter(args),
+            rs -> rs.next() ? rs.getString("partitions") : null
+        );
+    }
+
+    private static String name(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
@@ -0,0 +1,91 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.Software;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the {@link ConsumptionRetentionRepository}.
+ */
+@IntegrationTest
+@Transactional
+class ConsumptionRetentionIT {
+
+    private static final Instant OLD = Instant.parse("2001-02-03T04:05:06Z");
+
+    private static final Instant CUTOFF = OLD.plusSeconds(3_600);
+
+    @Autowired
+    private ConsumptionRetentionRepository consumptionRetentionRepository;
+
+    @Autowired
+    private ConsumptionRepository consumptionRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private Method kept;
+
+    private Method purged;
+
+    @BeforeEach
+    public void initTest() {
+        kept = new Method().name("kept");
+        purged = new Method().name("purged");
+        em.persist(kept);
+        em.persist(purged);
+        Release release = new Release().name("retention-release").addMethod(kept);
+        em.persist(release);
+        em.persist(new Software().name("retention-software").release(release));
+        for (int i = 0; i < 3; i++) {
+            consumption(kept, OLD.plusSeconds(i));
+            consumption(purged, OLD.plusSeconds(i));
+        }
+        consumption(purged, CUTOFF);
+        em.flush();
+    }
+
+    @Test
+    void purgeInChunksExceptExcluded() {
+        RetentionRule any = new RetentionRule(null, null, null);
+        List<RetentionRule> excluded = List.of(new RetentionRule("retention-software", null, null));
+
+        PurgedChunk first = consumptionRetentionRepository.purge(any, excluded, CUTOFF, null, 0, 2);
+        PurgedChunk second = consumptionRetentionRepository.purge(any, excluded, CUTOFF, first.getLastTimestamp(), first.getLastId(), 2);
+        PurgedChunk last = consumptionRetentionRepository.purge(any, excluded, CUTOFF, second.getLastTimestamp(), second.getLastId(), 2);
+        em.clear();
+
+        assertThat(first.getCount()).isEqualTo(2);
+        assertThat(first.getLastTimestamp()).isEqualTo(OLD.plusSeconds(1));
+        assertThat(second.getCount()).isEqualTo(1);
+        assertThat(last.getCount()).isZero();
+        assertThat(consumptionRepository.findAll())
+            .filteredOn(consumption -> consumption.getMethod() != null)
+            .filteredOn(consumption -> List.of(kept.getId(), purged.getId()).contains(consumption.getMethod().getId()))
+            .extracting(consumption -> consumption.getMethod().getName(), Consumption::getTimestamp)
+            .containsExactlyInAnyOrder(
+                tuple("kept", OLD),
+                tuple("kept", OLD.plusSeconds(1)),
+                tuple("kept", OLD.plusSeconds(2)),
+                tuple("purged", CUTOFF)
+            );
+    }
+
+    private void consumption(Method method, Instant timestamp) {
+        em.persist(new Consumption().value(1L).scope(Scope.APP).monitoringType(MonitoringType.RUNTIME).timestamp(timestamp).method(method));
+    }
+}
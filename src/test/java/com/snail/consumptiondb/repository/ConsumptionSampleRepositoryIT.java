@@ -0,0 +1,129 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the compaction of the samples of {@link ConsumptionSampleRepository} into blocks.
+ */
+@IntegrationTest
+@Transactional
+class ConsumptionSampleRepositoryIT {
+
+    private static final Instant HOUR = Instant.parse("2001-02-03T04:00:00Z");
+
+    private static final Instant NEXT_HOUR = HOUR.plusSeconds(3_600);
+
+    @Autowired
+    private ConsumptionSampleRepository consumptionSampleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager em;
+
+    private Method method;
+
+    private List<long[]> samples;
+
+    @BeforeEach
+    public void initTest() {
+        method = new Method().name("compacted");
+        em.persist(method);
+        for (int i = 0; i < 5; i++) {
+            consumption(HOUR.plusSeconds(i * 600L), Scope.APP, 10L + i);
+        }
+        consumption(HOUR.plusSeconds(600), Scope.ALL, 100L);
+        consumption(NEXT_HOUR.plusSeconds(60), Scope.ALL, 200L);
+        em.flush();
+        consumptionSampleRepository.rebuild(HOUR, NEXT_HOUR.plusSeconds(3_600));
+        samples = scan(null);
+    }
+
+    @Test
+    void readCompactedHours() {
+        assertThat(samples).hasSize(6);
+
+        assertThat(consumptionSampleRepository.compact(HOUR)).isEqualTo(1);
+
+        assertThat(rowCount()).isEqualTo(1);
+        assertThat(consumptionSampleRepository.findOldestRowHour(NEXT_HOUR.plusSeconds(3_600))).isEqualTo(NEXT_HOUR);
+        assertThat(scan(null)).containsExactlyElementsOf(samples);
+        assertThat(scan(Scope.ALL)).extracting(sample -> sample[1]).containsExactly(100L, 200L);
+    }
+
+    @Test
+    void deleteCompactedSamples() {
+        consumptionSampleRepository.compact(HOUR);
+
+        consumptionSampleRepository.delete(
+            List.of(
+                key(HOUR.plusSeconds(600), Scope.ALL),
+                key(NEXT_HOUR.plusSeconds(60), Scope.ALL),
+                key(HOUR.plusSeconds(1), Scope.APP)
+            )
+        );
+
+        assertThat(scan(Scope.ALL)).isEmpty();
+        assertThat(scan(null)).hasSize(4);
+    }
+
+    @Test
+    void expandCompactedHoursOnRebuild() {
+        consumptionSampleRepository.compact(HOUR);
+
+        consumptionSampleRepository.rebuild(HOUR.plusSeconds(600), HOUR.plusSeconds(660));
+
+        assertThat(
+            jdbcTemplate.queryForObject("select count(*) from consumption_sample_block where method_id = ?", Long.class, method.getId())
+        )
+            .isZero();
+        assertThat(rowCount()).isEqualTo(7);
+        assertThat(scan(null)).containsExactlyElementsOf(samples);
+    }
+
+    private List<long[]> scan(Scope scope) {
+        List<long[]> scanned = new ArrayList<>();
+        consumptionSampleRepository.scan(
+            method.getId(),
+            scope,
+            MonitoringType.RUNTIME,
+            ConsumptionSampleRepository.toMicros(HOUR.plusSeconds(1)),
+            ConsumptionSampleRepository.toMicros(NEXT_HOUR.plusSeconds(3_600)),
+            (timestampMicros, value) -> scanned.add(new long[] { timestampMicros, value })
+        );
+        return scanned;
+    }
+
+    private long rowCount() {
+        return jdbcTemplate.queryForObject("select count(*) from consumption_sample where method_id = ?", Long.class, method.getId());
+    }
+
+    private long[] key(Instant timestamp, Scope scope) {
+        return new long[] {
+            method.getId(),
+            ConsumptionSampleRepository.toMicros(timestamp),
+            ConsumptionSampleRepository.code(scope),
+            ConsumptionSampleRepository.code(MonitoringType.RUNTIME),
+        };
+    }
+
+    private void consumption(Instant timestamp, Scope scope, long value) {
+        em.persist(new Consumption().value(value).scope(scope).monitoringType(MonitoringType.RUNTIME).timestamp(timestamp).method(method));
+    }
+}
@@ -0,0 +1,39 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionSampleRepositoryTest {
+
+    @Test
+    void codeEnumConstants() {
+        for (MonitoringType monitoringType : MonitoringType.values()) {
+            assertThat(ConsumptionSampleRepository.decode(MonitoringType.values(), ConsumptionSampleRepository.code(monitoringType)))
+                .isEqualTo(monitoringType);
+        }
+        assertThat(ConsumptionSampleRepository.code(Scope.APP)).isEqualTo(1);
+        assertThat(ConsumptionSampleRepository.code(null)).isZero();
+        assertThat(ConsumptionSampleRepository.decode(Scope.values(), 0)).isNull();
+        assertThatThrownBy(() -> ConsumptionSampleRepository.decode(Scope.values(), 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void codeColumnsAsTheMigrationDoes() {
+        // The changelog copying the existing consumptions spells these out
+        assertThat(ConsumptionSampleRepository.codeCase("scope", Scope.values()))
+            .isEqualTo("case scope when 'APP' then 1 when 'ALL' then 2 else 0 end");
+        assertThat(ConsumptionSampleRepository.codeCase("monitoring_type", MonitoringType.values()))
+            .isEqualTo("case monitoring_type when 'EVOLUTION' then 1 when 'RUNTIME' then 2 when 'TOTAL' then 3 else 0 end");
+    }
+
+    @Test
+    void convertTimestampsToMicros() {
+        assertThat(ConsumptionSampleRepository.toMicros(Instant.parse("2023-05-05T03:42:54.123456789Z"))).isEqualTo(1683258174123456L);
+        assertThat(ConsumptionSampleRepository.toMicros(Instant.EPOCH.minusNanos(1_000))).isEqualTo(-1L);
+    }
+}
@@ -0,0 +1,32 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataRetrievalFailureException;
+
+class ConsumptionSketchRepositoryTest {
+
+    @Test
+    void encodeSketchesCompactly() {
+        Histogram sketch = ConsumptionSketchRepository.newSketch();
+        for (long value = 0; value < 36_000; value++) {
+            ConsumptionSketchRepository.record(sketch, 1_000 + value % 5_000);
+        }
+
+        byte[] encoded = ConsumptionSketchRepository.encode(sketch);
+        Histogram decoded = ConsumptionSketchRepository.decode(encoded);
+
+        assertThat(encoded.length).isLessThan(2_048);
+        assertThat(decoded).isEqualTo(sketch);
+        assertThat(decoded.getValueAtPercentile(50)).isEqualTo(sketch.getValueAtPercentile(50));
+    }
+
+    @Test
+    void rejectCorruptedSketches() {
+        assertThatThrownBy(() -> ConsumptionSketchRepository.decode(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }))
+            .isInstanceOf(DataRetrievalFailureException.class);
+    }
+}
@@ -0,0 +1,52 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class RetentionSealsTest {
+
+    private static final Instant WEEK_AGO = Instant.parse("2001-01-27T00:00:00Z");
+
+    private static final Instant MONTH_AGO = Instant.parse("2001-01-04T00:00:00Z");
+
+    private static final RetentionRule REFERENCE = new RetentionRule("reference", null, null);
+
+    private static final RetentionRule ALL = new RetentionRule(null, Scope.ALL, null);
+
+    private final RetentionSeals seals = new RetentionSeals(
+        List.of(
+            new RetentionSeals.Seal(ALL, List.of(REFERENCE), WEEK_AGO),
+            new RetentionSeals.Seal(new RetentionRule(null, null, null), List.of(REFERENCE, ALL), MONTH_AGO)
+        )
+    );
+
+    @Test
+    void sealPerPolicy() {
+        Instant twoWeeksAgo = WEEK_AGO.minusSeconds(7 * 24 * 3600);
+
+        assertThat(seals.getLatest()).isEqualTo(WEEK_AGO);
+        assertThat(seals.seals(Set.of(), Scope.ALL, MonitoringType.RUNTIME, twoWeeksAgo)).isTrue();
+        assertThat(seals.seals(Set.of(), Scope.APP, MonitoringType.RUNTIME, twoWeeksAgo)).isFalse();
+        assertThat(seals.seals(Set.of(), Scope.APP, MonitoringType.RUNTIME, MONTH_AGO.minusSeconds(1))).isTrue();
+        assertThat(seals.seals(Set.of("reference"), Scope.ALL, MonitoringType.RUNTIME, MONTH_AGO.minusSeconds(1))).isFalse();
+        assertThat(seals.seals(Set.of(), Scope.ALL, MonitoringType.RUNTIME, WEEK_AGO)).isFalse();
+    }
+
+    @Test
+    void matchTheSealedRowsInSql() {
+        List<Object> args = new ArrayList<>();
+
+        assertThat(new RetentionSeals(List.of()).toSql("c", "timestamp", args)).isEqualTo("(false)");
+        assertThat(seals.toSql("c", "timestamp", args))
+            .startsWith("((c.timestamp < ? and (c.scope <=> ?) and not ((c.method_id is not null")
+            .contains(") or (c.timestamp < ? and (true) and not ");
+        assertThat(args).containsExactly(WEEK_AGO, "ALL", "reference", MONTH_AGO, "reference", "ALL");
+    }
+}
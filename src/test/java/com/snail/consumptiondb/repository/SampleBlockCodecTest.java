@@ -0,0 +1,114 @@
+package com.snail.consumptiondb.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SampleBlockCodecTest {
+
+    private static final long HOUR_MICROS = 1_683_255_600_000_000L;
+
+    @Test
+    void roundTripSamples() {
+        Random random = new Random(42);
+        List<long[]> samples = new ArrayList<>();
+        long timestamp = HOUR_MICROS;
+        for (int i = 0; i < 10_000; i++) {
+            // Every bucket size, in both directions, and repeated timestamps
+            timestamp += random.nextInt(4) == 0 ? 0 : random.nextInt(1 << random.nextInt(31));
+            long value = random.nextBoolean() ? random.nextLong() : random.nextInt(1_000) - 500;
+            samples.add(new long[] { timestamp, random.nextInt(3), random.nextInt(4), value });
+        }
+        samples.add(new long[] { Long.MAX_VALUE, SampleBlockCodec.MAX_CODE, SampleBlockCodec.MAX_CODE, Long.MIN_VALUE });
+
+        assertThat(decode(encode(samples))).containsExactlyElementsOf(samples);
+    }
+
+    @Test
+    void packRegularSeries() {
+        List<long[]> samples = new ArrayList<>();
+        for (int i = 0; i < 3_600; i++) {
+            samples.add(new long[] { HOUR_MICROS + i * 1_000_000L, 1, 2, 1_000 + i / 600 });
+        }
+
+        byte[] block = encode(samples);
+
+        // A bit per timestamp, tag and steady value, where a row costs dozens of bytes
+        assertThat(block.length).isLessThan(3_600 / 2);
+        assertThat(decode(block)).containsExactlyElementsOf(samples);
+    }
+
+    @Test
+    void reuseCoders() {
+        SampleBlockCodec.Encoder encoder = new SampleBlockCodec.Encoder();
+        encoder.add(HOUR_MICROS, 1, 1, 5);
+        encoder.add(HOUR_MICROS + 1, 2, 1, 7);
+        byte[] first = encoder.toByteArray();
+        encoder.reset();
+        encoder.add(HOUR_MICROS + 2, 1, 3, -5);
+        byte[] second = encoder.toByteArray();
+
+        SampleBlockCodec.Decoder decoder = new SampleBlockCodec.Decoder();
+        decoder.reset(first);
+        assertThat(decoder.next()).isTrue();
+        assertThat(decoder.next()).isTrue();
+        assertThat(decoder.getScope()).isEqualTo(2);
+        assertThat(decoder.getValue()).isEqualTo(7);
+        assertThat(decoder.next()).isFalse();
+        decoder.reset(second);
+        assertThat(decoder.next()).isTrue();
+        assertThat(new long[] { decoder.getTimestampMicros(), decoder.getScope(), decoder.getMonitoringType(), decoder.getValue() })
+            .containsExactly(HOUR_MICROS + 2, 1, 3, -5);
+        assertThat(decoder.next()).isFalse();
+        decoder.reset(new SampleBlockCodec.Encoder().toByteArray());
+        assertThat(decoder.next()).isFalse();
+    }
+
+    @Test
+    void rejectInvalidSamples() {
+        SampleBlockCodec.Encoder encoder = new SampleBlockCodec.Encoder();
+        encoder.add(HOUR_MICROS, 1, 1, 5);
+
+        assertThatThrownBy(() -> encoder.add(HOUR_MICROS - 1, 1, 1, 5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> encoder.add(HOUR_MICROS, SampleBlockCodec.MAX_CODE + 1, 1, 5))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectTruncatedBlocks() {
+        SampleBlockCodec.Encoder encoder = new SampleBlockCodec.Encoder();
+        encoder.add(HOUR_MICROS, 1, 1, 5);
+        encoder.add(HOUR_MICROS + 1_000_000, 1, 1, 1 << 20);
+        byte[] block = encoder.toByteArray();
+        SampleBlockCodec.Decoder decoder = new SampleBlockCodec.Decoder();
+        decoder.reset(Arrays.copyOf(block, block.length - 2));
+
+        assertThat(decoder.next()).isTrue();
+        assertThatThrownBy(decoder::next).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoder.reset(new byte[2])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] encode(List<long[]> samples) {
+        SampleBlockCodec.Encoder encoder = new SampleBlockCodec.Encoder();
+        for (long[] sample : samples) {
+            encoder.add(sample[0], (int) sample[1], (int) sample[2], sample[3]);
+        }
+        assertThat(encoder.getCount()).isEqualTo(samples.size());
+        return encoder.toByteArray();
+    }
+
+    private static List<long[]> decode(byte[] block) {
+        SampleBlockCodec.Decoder decoder = new SampleBlockCodec.Decoder();
+        decoder.reset(block);
+        List<long[]> samples = new ArrayList<>();
+        while (decoder.next()) {
+            samples.add(new long[] { decoder.getTimestampMicros(), decoder.getScope(), decoder.getMonitoringType(), decoder.getValue() });
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,88 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BoundedRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new BoundedRingBuffer<>(1).capacity()).isEqualTo(2);
+        assertThat(new BoundedRingBuffer<>(8).capacity()).isEqualTo(8);
+        assertThat(new BoundedRingBuffer<>(1000).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void offerFailsWhenFullAndPollReturnsNullWhenEmpty() {
+        BoundedRingBuffer<Integer> ring = new BoundedRingBuffer<>(4);
+
+        assertThat(ring.poll()).isNull();
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.size()).isEqualTo(4);
+
+        assertThat(ring.poll()).isZero();
+        assertThat(ring.offer(4)).isTrue();
+        List<Integer> drained = new ArrayList<>();
+        assertThat(ring.drainTo(drained, 10)).isEqualTo(4);
+        assertThat(drained).containsExactly(1, 2, 3, 4);
+        assertThat(ring.isEmpty()).isTrue();
+    }
+
+    @Test
+    void concurrentProducersAndConsumersSeeEveryElementOnce() throws Exception {
+        int producers = 4;
+        int consumers = 2;
+        int perProducer = 10_000;
+        BoundedRingBuffer<Integer> ring = new BoundedRingBuffer<>(64);
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch produced = new CountDownLatch(producers);
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int first = p * perProducer;
+                executor.execute(() -> {
+                    IntStream
+                        .range(first, first + perProducer)
+                        .forEach(value -> {
+                            while (!ring.offer(value)) {
+                                Thread.yield();
+                            }
+                        });
+                    produced.countDown();
+                });
+            }
+            for (int c = 0; c < consumers; c++) {
+                executor.execute(() -> {
+                    while (seen.size() < producers * perProducer) {
+                        Integer value = ring.poll();
+                        if (value == null) {
+                            Thread.yield();
+                        } else if (seen.put(value, Boolean.TRUE) != null) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            assertThat(produced.await(30, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(seen).hasSize(producers * perProducer);
+        assertThat(duplicates).hasValue(0);
+    }
+}
@@ -0,0 +1,129 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionBlockReaderTest {
+
+    private static final Instant EPOCH = Instant.parse("2023-05-05T03:42:54.123456Z");
+
+    @Test
+    void readBlocks() throws IOException {
+        List<Consumption> consumptions = List.of(
+            consumption(3L, 42L, EPOCH, Scope.APP, MonitoringType.RUNTIME),
+            consumption(4L, -1L, EPOCH.plusMillis(10), Scope.APP, MonitoringType.RUNTIME),
+            consumption(3L, Long.MAX_VALUE, EPOCH.minusSeconds(1), Scope.APP, MonitoringType.RUNTIME),
+            consumption(null, 7L, EPOCH, Scope.ALL, MonitoringType.TOTAL)
+        );
+        ConsumptionBlockReader reader = reader(ConsumptionBlockWriter.encode(consumptions, 100));
+        ConsumptionBlock block = new ConsumptionBlock();
+
+        assertThat(reader.next(block)).isTrue();
+        assertThat(block.getScope()).isEqualTo(Scope.APP);
+        assertThat(block.getMonitoringType()).isEqualTo(MonitoringType.RUNTIME);
+        assertThat(block.getMethodCount()).isEqualTo(2);
+        assertThat(block.size()).isEqualTo(3);
+        assertThat(block.getMethodId(1)).isEqualTo(4L);
+        assertThat(block.getMethodId(2)).isEqualTo(3L);
+        assertThat(block.getTimestampMicros(0)).isEqualTo(1683258174123456L);
+        assertThat(block.getTimestampMicros(1)).isEqualTo(1683258174133456L);
+        assertThat(block.getTimestampMicros(2)).isEqualTo(1683258173123456L);
+        assertThat(block.getValue(1)).isEqualTo(-1L);
+        assertThat(block.getValue(2)).isEqualTo(Long.MAX_VALUE);
+
+        assertThat(reader.next(block)).isTrue();
+        assertThat(block.getScope()).isEqualTo(Scope.ALL);
+        assertThat(block.size()).isEqualTo(1);
+        assertThat(block.getMethodId(0)).isEqualTo(ConsumptionBlock.NO_METHOD);
+        assertThat(block.getValue(0)).isEqualTo(7L);
+
+        assertThat(reader.next(block)).isFalse();
+    }
+
+    @Test
+    void retainMethods() throws IOException {
+        List<Consumption> consumptions = List.of(
+            consumption(3L, 1L, EPOCH, Scope.APP, MonitoringType.RUNTIME),
+            consumption(4L, 2L, EPOCH, Scope.APP, MonitoringType.RUNTIME),
+            consumption(3L, 3L, EPOCH, Scope.APP, MonitoringType.RUNTIME)
+        );
+        ConsumptionBlock block = new ConsumptionBlock();
+        reader(ConsumptionBlockWriter.encode(consumptions, 100)).next(block);
+
+        assertThat(block.retainMethods(new boolean[] { true, false })).isEqualTo(1);
+        assertThat(block.size()).isEqualTo(2);
+        assertThat(block.getValue(0)).isEqualTo(1L);
+        assertThat(block.getValue(1)).isEqualTo(3L);
+    }
+
+    @Test
+    void retainSamples() throws IOException {
+        List<Consumption> consumptions = List.of(
+            consumption(3L, 1L, EPOCH, Scope.APP, MonitoringType.RUNTIME),
+            consumption(4L, 2L, EPOCH, Scope.APP, MonitoringType.RUNTIME),
+            consumption(3L, 3L, EPOCH, Scope.APP, MonitoringType.RUNTIME)
+        );
+        ConsumptionBlock block = new ConsumptionBlock();
+        reader(ConsumptionBlockWriter.encode(consumptions, 100)).next(block);
+
+        assertThat(block.retainSamples(new boolean[] { false, true, true })).isEqualTo(1);
+        assertThat(block.size()).isEqualTo(2);
+        assertThat(block.getValue(0)).isEqualTo(2L);
+        assertThat(block.getMethodId(0)).isEqualTo(4L);
+        assertThat(block.getValue(1)).isEqualTo(3L);
+    }
+
+    @Test
+    void rejectMalformedStreams() throws IOException {
+        byte[] valid = ConsumptionBlockWriter.encode(List.of(consumption(3L, 1L, EPOCH, Scope.APP, MonitoringType.RUNTIME)), 100);
+        byte[] truncated = Arrays.copyOf(valid, valid.length - 1);
+        byte[] badMagic = valid.clone();
+        badMagic[0] = 'X';
+        byte[] badScope = valid.clone();
+        badScope[8] = 9;
+
+        assertThatThrownBy(() -> reader(new byte[0]).next(new ConsumptionBlock())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> reader(badMagic).next(new ConsumptionBlock())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> reader(badScope).next(new ConsumptionBlock())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> reader(truncated).next(new ConsumptionBlock())).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void rejectOversizedBlocks() throws IOException {
+        List<Consumption> consumptions = Collections.nCopies(
+            ConsumptionBlockReader.MAX_SAMPLES + 1,
+            consumption(3L, 1L, EPOCH, Scope.APP, MonitoringType.RUNTIME)
+        );
+        byte[] oversized = ConsumptionBlockWriter.encode(consumptions, consumptions.size());
+
+        assertThatThrownBy(() -> reader(oversized).next(new ConsumptionBlock()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("at most " + ConsumptionBlockReader.MAX_SAMPLES);
+    }
+
+    private static ConsumptionBlockReader reader(byte[] bytes) {
+        return new ConsumptionBlockReader(new ByteArrayInputStream(bytes));
+    }
+
+    static Consumption consumption(Long methodId, long value, Instant timestamp, Scope scope, MonitoringType monitoringType) {
+        return new Consumption()
+            .method(methodId == null ? null : new Method().id(methodId))
+            .value(value)
+            .timestamp(timestamp)
+            .scope(scope)
+            .monitoringType(monitoringType);
+    }
+}
@@ -0,0 +1,89 @@
+package com.snail.consumptiondb.service;
+
+import com.snail.consumptiondb.domain.Consumption;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes consumptions in the binary ingestion format read by {@link ConsumptionBlockReader}, for tests.
+ */
+public final class ConsumptionBlockWriter {
+
+    private ConsumptionBlockWriter() {}
+
+    /**
+     * Encode consumptions into blocks of up to {@code blockSize} consecutive consumptions of the same scope and monitoring type.
+     */
+    public static byte[] encode(List<Consumption> consumptions, int blockSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(ConsumptionBlockReader.MAGIC);
+        int from = 0;
+        while (from < consumptions.size()) {
+            Consumption first = consumptions.get(from);
+            int to = from + 1;
+            while (
+                to < consumptions.size() &&
+                to - from < blockSize &&
+                consumptions.get(to).getScope() == first.getScope() &&
+                consumptions.get(to).getMonitoringType() == first.getMonitoringType()
+            ) {
+                to++;
+            }
+            byte[] block = encodeBlock(consumptions.subList(from, to));
+            out.writeInt(block.length);
+            out.write(block);
+            from = to;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeBlock(List<Consumption> consumptions) {
+        Map<Long, Integer> methodIndexes = new LinkedHashMap<>();
+        for (Consumption consumption : consumptions) {
+            methodIndexes.putIfAbsent(methodId(consumption), methodIndexes.size());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(consumptions.get(0).getScope().ordinal());
+        out.write(consumptions.get(0).getMonitoringType().ordinal());
+        writeVarLong(out, methodIndexes.size());
+        methodIndexes.keySet().forEach(methodId -> writeVarLong(out, methodId));
+        writeVarLong(out, consumptions.size());
+        if (methodIndexes.size() > 1) {
+            consumptions.forEach(consumption -> writeVarLong(out, methodIndexes.get(methodId(consumption))));
+        }
+        long previous = 0;
+        for (Consumption consumption : consumptions) {
+            long micros = toMicros(consumption.getTimestamp());
+            writeVarLong(out, zigzag(micros - previous));
+            previous = micros;
+        }
+        consumptions.forEach(consumption -> writeVarLong(out, zigzag(consumption.getValue())));
+        return out.toByteArray();
+    }
+
+    private static long methodId(Consumption consumption) {
+        return consumption.getMethod() == null ? ConsumptionBlock.NO_METHOD : consumption.getMethod().getId();
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,111 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.repository.ReleaseRepository;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.DefaultApplicationArguments;
+
+/**
+ * Integration tests for the command line mode of {@link ConsumptionCsvImportCommandLineRunner}.
+ * <p>
+ * Imports commit their own transactions, so these tests clean up after themselves.
+ */
+@IntegrationTest
+class ConsumptionCsvImportCommandLineRunnerIT {
+
+    private static final String METHOD_NAME = "com.acme.Cli.run()";
+
+    @Autowired
+    private ConsumptionCsvImportCommandLineRunner consumptionCsvImportCommandLineRunner;
+
+    @Autowired
+    private ReleaseRepository releaseRepository;
+
+    @Autowired
+    private MethodRepository methodRepository;
+
+    @Autowired
+    private ConsumptionRepository consumptionRepository;
+
+    @TempDir
+    Path directory;
+
+    private Release release;
+
+    @BeforeEach
+    public void initTest() {
+        release = releaseRepository.saveAndFlush(new Release().name("cli-import-release"));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        List<Method> methods = methodRepository.findAllByReleaseIdAndNameIn(release.getId(), List.of(METHOD_NAME));
+        consumptionRepository.deleteAllInBatch(consumptionsOf(methods));
+        releaseRepository.deleteById(release.getId());
+        methodRepository.deleteAll(methods);
+    }
+
+    @Test
+    void importDirectory() throws IOException {
+        Instant timestamp = Instant.now().truncatedTo(ChronoUnit.MILLIS).minusSeconds(3_600);
+        Files.createDirectories(directory.resolve("nested"));
+        Files.writeString(directory.resolve("a.csv"), METHOD_NAME + ",3," + timestamp.toEpochMilli() + "\n");
+        Files.writeString(directory.resolve("nested/b.csv"), METHOD_NAME + ",4," + timestamp.plusSeconds(1) + "\n");
+        Files.writeString(directory.resolve("notes.txt"), "not a measurement\n");
+
+        assertThat(consumptionCsvImportCommandLineRunner.importRun(arguments(directory))).isZero();
+
+        List<Method> methods = methodRepository.findAllByReleaseIdAndNameIn(release.getId(), List.of(METHOD_NAME));
+        assertThat(methods).hasSize(1);
+        assertThat(consumptionsOf(methods))
+            .extracting(Consumption::getValue)
+            .containsExactlyInAnyOrder(3L, 4L);
+    }
+
+    @Test
+    void failOnMalformedLine() throws IOException {
+        Files.writeString(directory.resolve("a.csv"), "method,value,timestamp\n" + METHOD_NAME + ",3,yesterday\n");
+
+        assertThat(consumptionCsvImportCommandLineRunner.importRun(arguments(directory))).isEqualTo(1);
+        assertThat(methodRepository.findAllByReleaseIdAndNameIn(release.getId(), List.of(METHOD_NAME))).isEmpty();
+    }
+
+    private DefaultApplicationArguments arguments(Path path) {
+        return new DefaultApplicationArguments(
+            "--" + ConsumptionCsvImportCommandLineRunner.IMPORT_OPTION + "=" + path,
+            "--" + ConsumptionCsvImportCommandLineRunner.RELEASE_OPTION + "=" + release.getId(),
+            "--" + ConsumptionCsvImportCommandLineRunner.SCOPE_OPTION + "=" + Scope.APP,
+            "--" + ConsumptionCsvImportCommandLineRunner.MONITORING_TYPE_OPTION + "=" + MonitoringType.RUNTIME
+        );
+    }
+
+    private List<Consumption> consumptionsOf(List<Method> methods) {
+        Set<Long> methodIds = methods.stream().map(Method::getId).collect(Collectors.toSet());
+        return consumptionRepository
+            .findAll()
+            .stream()
+            .filter(consumption -> consumption.getMethod() != null && methodIds.contains(consumption.getMethod().getId()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,146 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decoding benchmark of the newline-delimited JSON upload format against the binary ingestion format, for the same
+ * {@link Consumption} samples: size on the wire, CPU time and heap allocated per sample.
+ * <p>
+ * Disabled by default, run it with {@code ./mvnw test -Dtest=ConsumptionDecodingBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConsumptionDecodingBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumptionDecodingBenchmarkTest.class);
+
+    private static final int SAMPLES = 200_000;
+
+    private static final int BLOCK_SIZE = 10_000;
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    private static final int ITERATIONS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    @Timeout(300)
+    void compareJsonAndBinaryDecoding() throws IOException {
+        List<Consumption> consumptions = samples();
+        byte[] ndjson = toNdjson(consumptions);
+        byte[] blocks = ConsumptionBlockWriter.encode(consumptions, BLOCK_SIZE);
+        log.info("Encoded {} samples: {} bytes as NDJSON, {} bytes as blocks", SAMPLES, ndjson.length, blocks.length);
+
+        Result json = measure(() -> decodeJson(ndjson));
+        Result binary = measure(() -> decodeBlocks(blocks));
+        log.info("NDJSON: {} ns and {} bytes allocated per sample", json.nanosPerSample, json.bytesPerSample);
+        log.info("Blocks: {} ns and {} bytes allocated per sample", binary.nanosPerSample, binary.bytesPerSample);
+
+        assertThat(blocks.length).isLessThan(ndjson.length);
+        assertThat(binary.bytesPerSample).isLessThan(json.bytesPerSample);
+    }
+
+    private long decodeJson(byte[] ndjson) throws IOException {
+        long checksum = 0;
+        try (MappingIterator<Consumption> records = objectMapper.readerFor(Consumption.class).readValues(ndjson)) {
+            while (records.hasNextValue()) {
+                checksum += records.nextValue().getValue();
+            }
+        }
+        return checksum;
+    }
+
+    private long decodeBlocks(byte[] blocks) throws IOException {
+        long checksum = 0;
+        ConsumptionBlockReader reader = new ConsumptionBlockReader(new ByteArrayInputStream(blocks));
+        ConsumptionBlock block = new ConsumptionBlock();
+        while (reader.next(block)) {
+            for (int sample = 0; sample < block.size(); sample++) {
+                checksum += block.getValue(sample);
+            }
+        }
+        return checksum;
+    }
+
+    private Result measure(Decoder decoder) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long expected = decoder.decode();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            assertThat(decoder.decode()).isEqualTo(expected);
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertThat(decoder.decode()).isEqualTo(expected);
+        }
+        long samples = (long) SAMPLES * ITERATIONS;
+        return new Result((System.nanoTime() - start) / samples, (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / samples);
+    }
+
+    private byte[] toNdjson(List<Consumption> consumptions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Consumption consumption : consumptions) {
+            out.write(objectMapper.writeValueAsBytes(consumption));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Consumption> samples() {
+        Random random = new Random(42);
+        Instant timestamp = Instant.parse("2023-05-05T00:00:00Z");
+        List<Consumption> consumptions = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamp = timestamp.plusMillis(1 + random.nextInt(10));
+            consumptions.add(
+                ConsumptionBlockReaderTest.consumption(
+                    1L + random.nextInt(200),
+                    random.nextInt(100_000),
+                    timestamp,
+                    Scope.APP,
+                    MonitoringType.RUNTIME
+                )
+            );
+        }
+        return consumptions;
+    }
+
+    private interface Decoder {
+        long decode() throws IOException;
+    }
+
+    private static final class Result {
+
+        private final long nanosPerSample;
+
+        private final long bytesPerSample;
+
+        private Result(long nanosPerSample, long bytesPerSample) {
+            this.nanosPerSample = nanosPerSample;
+            this.bytesPerSample = bytesPerSample;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ConsumptionHotTierTest {
+
+    private static final long SEGMENT_SIZE = ConsumptionHotTier.PAGE_SIZE * 2L;
+
+    private static final int ANY = ConsumptionHotTier.ANY;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void samplesAreScannedWithinTheWindow() throws IOException {
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            for (long timestamp = 100; timestamp < 110; timestamp++) {
+                hotTier.append(7, timestamp, 1, 2, timestamp * 10);
+            }
+
+            List<long[]> samples = new ArrayList<>();
+            assertThat(hotTier.scan(7, ANY, ANY, 102, 105, (timestamp, value) -> samples.add(new long[] { timestamp, value })))
+                .isTrue();
+            assertThat(samples).containsExactly(new long[] { 102, 1020 }, new long[] { 103, 1030 }, new long[] { 104, 1040 });
+            assertThat(timestamps(hotTier, 7, ANY, ANY, 0, 200)).isNull();
+            assertThat(timestamps(hotTier, 8, ANY, ANY, 100, 200)).isNull();
+            assertThat(fileCount()).isEqualTo(1);
+        }
+        assertThat(fileCount()).isZero();
+    }
+
+    @Test
+    void openDeletesSegmentsOfPreviousRuns() throws IOException {
+        Files.createFile(directory.resolve("segment-00000000000000000003.bin"));
+
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            assertThat(hotTier.segmentCount()).isZero();
+            assertThat(fileCount()).isZero();
+        }
+    }
+
+    @Test
+    void seriesAreMergedInTimestampOrder() throws IOException {
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            hotTier.append(7, 100, 1, 1, 1);
+            hotTier.append(7, 100, 0, 1, 2);
+            hotTier.append(7, 101, 1, 2, 3);
+            hotTier.append(7, 102, 0, 1, 4);
+            hotTier.append(7, 103, 1, 1, 5);
+
+            assertThat(values(hotTier, 7, ANY, ANY, 100, 200)).containsExactly(2L, 1L, 3L, 4L, 5L);
+            assertThat(values(hotTier, 7, 1, ANY, 100, 200)).containsExactly(1L, 3L, 5L);
+            assertThat(values(hotTier, 7, 1, 1, 100, 200)).containsExactly(1L, 5L);
+            assertThat(values(hotTier, 7, 2, ANY, 100, 200)).isEmpty();
+        }
+    }
+
+    @Test
+    void seriesSpanPages() throws IOException {
+        int count = ConsumptionHotTier.PAGE_SAMPLES * 5 + 3;
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            for (long timestamp = 0; timestamp < count; timestamp++) {
+                hotTier.append(7, timestamp * 2, 0, 0, timestamp);
+                hotTier.append(8, timestamp * 2, 0, 0, -timestamp);
+            }
+
+            List<Long> timestamps = timestamps(hotTier, 7, ANY, ANY, 255, 2 * count);
+            assertThat(timestamps).hasSize(count - 128).startsWith(256L, 258L).endsWith(2L * count - 2);
+            assertThat(timestamps(hotTier, 7, ANY, ANY, 256, 257)).containsExactly(256L);
+            assertThat(timestamps(hotTier, 7, ANY, ANY, 255, 256)).isEmpty();
+            assertThat(values(hotTier, 8, ANY, ANY, 0, 2 * count)).hasSize(count).endsWith((long) 1 - count);
+        }
+    }
+
+    @Test
+    void outOfOrderSamplesRestartCoverage() throws IOException {
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            hotTier.append(7, 100, 0, 0, 1);
+            hotTier.append(7, 110, 0, 0, 2);
+            hotTier.append(7, 110, 0, 0, 3);
+            hotTier.append(7, 105, 0, 0, 4);
+
+            assertThat(values(hotTier, 7, ANY, ANY, 100, 200)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 111, 200)).isEmpty();
+
+            hotTier.append(7, 120, 0, 0, 5);
+            assertThat(values(hotTier, 7, ANY, ANY, 111, 200)).containsExactly(5L);
+        }
+    }
+
+    @Test
+    void coverageStartsWhenOpened() throws IOException {
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 1_000)) {
+            hotTier.append(7, 900, 0, 0, 1);
+            hotTier.append(7, 1_100, 0, 0, 2);
+
+            assertThat(values(hotTier, 7, ANY, ANY, 900, 2_000)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 999, 2_000)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 1_000, 2_000)).containsExactly(2L);
+        }
+    }
+
+    @Test
+    void droppedSegmentsRaiseCoverage() throws IOException {
+        int count = ConsumptionHotTier.PAGE_SAMPLES * 3;
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            for (long timestamp = 0; timestamp < count; timestamp++) {
+                hotTier.append(7, timestamp, 0, 0, timestamp);
+            }
+            assertThat(hotTier.segmentCount()).isEqualTo(2);
+
+            assertThat(hotTier.dropBefore(count - 1)).isEqualTo(1);
+            assertThat(hotTier.segmentCount()).isEqualTo(1);
+            assertThat(values(hotTier, 7, ANY, ANY, 0, count)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 255, count)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 256, count)).hasSize(128).startsWith(256L);
+            assertThat(hotTier.dropBefore(count - 1)).isZero();
+        }
+    }
+
+    @Test
+    void oldestSegmentIsEvictedWhenFull() throws IOException {
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 2, 0)) {
+            for (long timestamp = 0; timestamp < ConsumptionHotTier.PAGE_SAMPLES * 5; timestamp++) {
+                hotTier.append(7, timestamp, 0, 0, timestamp);
+            }
+
+            assertThat(hotTier.segmentCount()).isEqualTo(2);
+            assertThat(fileCount()).isEqualTo(2);
+            assertThat(values(hotTier, 7, ANY, ANY, 0, 1_000)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 256, 1_000)).hasSize(384);
+        }
+    }
+
+    @Test
+    void invalidateStopsCoverageUntilNextSamples() throws IOException {
+        try (ConsumptionHotTier hotTier = ConsumptionHotTier.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            hotTier.append(7, 100, 0, 0, 1);
+
+            hotTier.invalidate(150);
+            assertThat(values(hotTier, 7, ANY, ANY, 100, 200)).isNull();
+
+            hotTier.append(7, 140, 0, 0, 2);
+            hotTier.append(7, 160, 0, 0, 3);
+            assertThat(values(hotTier, 7, ANY, ANY, 140, 200)).isNull();
+            assertThat(values(hotTier, 7, ANY, ANY, 150, 200)).containsExactly(3L);
+        }
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * @return the timestamps of the samples scanned, or {@code null} if the window is not covered.
+     */
+    private static List<Long> timestamps(ConsumptionHotTier hotTier, long methodId, int scope, int monitoringType, long from, long to) {
+        List<Long> timestamps = new ArrayList<>();
+        return hotTier.scan(methodId, scope, monitoringType, from, to, (timestamp, value) -> timestamps.add(timestamp)) ? timestamps : null;
+    }
+
+    /**
+     * @return the values of the samples scanned, or {@code null} if the window is not covered.
+     */
+    private static List<Long> values(ConsumptionHotTier hotTier, long methodId, int scope, int monitoringType, long from, long to) {
+        List<Long> values = new ArrayList<>();
+        return hotTier.scan(methodId, scope, monitoringType, from, to, (timestamp, value) -> values.add(value)) ? values : null;
+    }
+}
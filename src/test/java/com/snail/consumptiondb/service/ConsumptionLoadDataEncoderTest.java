@@ -0,0 +1,42 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionLoadDataEncoderTest {
+
+    @Test
+    void encodeRowsInColumnOrder() {
+        Consumption consumption = new Consumption()
+            .value(42L)
+            .scope(Scope.APP)
+            .monitoringType(MonitoringType.RUNTIME)
+            .timestamp(Instant.parse("2023-05-05T03:42:54.123456Z"))
+            .method(new Method().id(7L));
+        consumption.setId(100L);
+
+        String rows = new String(ConsumptionLoadDataEncoder.encode(List.of(consumption)), StandardCharsets.UTF_8);
+
+        assertThat(rows).isEqualTo("100\t42\tAPP\tRUNTIME\t2023-05-05 03:42:54.123456\t7\n");
+    }
+
+    @Test
+    void encodeMissingFieldsAsNull() {
+        Consumption first = new Consumption().value(1L).scope(Scope.ALL).monitoringType(MonitoringType.EVOLUTION);
+        first.setId(1L);
+        Consumption second = new Consumption();
+        second.setId(2L);
+
+        String rows = new String(ConsumptionLoadDataEncoder.encode(List.of(first, second)), StandardCharsets.UTF_8);
+
+        assertThat(rows).isEqualTo("1\t1\tALL\tEVOLUTION\t\\N\t\\N\n" + "2\t\\N\t\\N\t\\N\t\\N\t\\N\n");
+    }
+}
@@ -0,0 +1,137 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.repository.ConsumptionPartition;
+import com.snail.consumptiondb.repository.ConsumptionPartitionRepository;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionPartitionServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T12:00:00Z");
+
+    private static final List<ConsumptionPartition> INITIAL = List.of(
+        new ConsumptionPartition("p_history", Instant.parse("2026-10-01T00:00:00Z"), 1_000),
+        new ConsumptionPartition("p_max", null, 10)
+    );
+
+    @Test
+    void splitMonthsAhead() {
+        List<ConsumptionPartition> missing = ConsumptionPartitionService.missingPartitions(INITIAL, NOW, 3);
+
+        assertThat(missing).extracting(ConsumptionPartition::getName).containsExactly("p202610", "p202611", "p202612", "p202701");
+        assertThat(missing.get(0).getUpperBound()).isEqualTo(Instant.parse("2026-11-01T00:00:00Z"));
+        assertThat(missing.get(3).getUpperBound()).isEqualTo(Instant.parse("2027-02-01T00:00:00Z"));
+    }
+
+    @Test
+    void addNothingWhenAhead() {
+        List<ConsumptionPartition> partitions = List.of(
+            new ConsumptionPartition("p202610", Instant.parse("2026-11-01T00:00:00Z"), 0),
+            new ConsumptionPartition("p202611", Instant.parse("2026-12-01T00:00:00Z"), 0),
+            new ConsumptionPartition("p_max", null, 0)
+        );
+
+        assertThat(ConsumptionPartitionService.missingPartitions(partitions, NOW, 1)).isEmpty();
+        assertThat(ConsumptionPartitionService.missingPartitions(partitions, NOW, 2))
+            .extracting(ConsumptionPartition::getName)
+            .containsExactly("p202612");
+    }
+
+    @Test
+    void expireWholePartitionsBeforeTheCutoff() {
+        List<ConsumptionPartition> partitions = List.of(
+            new ConsumptionPartition("p_history", Instant.parse("2026-10-01T00:00:00Z"), 0),
+            new ConsumptionPartition("p202610", Instant.parse("2026-11-01T00:00:00Z"), 0),
+            new ConsumptionPartition("p_max", null, 0)
+        );
+
+        assertThat(ConsumptionPartitionService.expiredPartitions(partitions, Instant.parse("2026-10-31T00:00:00Z")))
+            .extracting(ConsumptionPartition::getName)
+            .containsExactly("p_history");
+        assertThat(ConsumptionPartitionService.expiredPartitions(partitions, Instant.parse("2030-01-01T00:00:00Z")))
+            .extracting(ConsumptionPartition::getName)
+            .containsExactly("p_history", "p202610");
+        assertThat(ConsumptionPartitionService.expiredPartitions(partitions.subList(0, 1), Instant.parse("2030-01-01T00:00:00Z")))
+            .isEmpty();
+    }
+
+    @Test
+    void expireNothingTheRetentionPoliciesKeep() {
+        ApplicationProperties.Retention retention = new ApplicationProperties.Retention();
+        assertThat(ConsumptionPartitionService.longestKeep(retention)).isZero();
+        assertThat(ConsumptionPartitionService.expiryCutoff(NOW, Period.ofMonths(1), Duration.ZERO))
+            .isEqualTo(Instant.parse("2026-09-17T12:00:00Z"));
+
+        retention.setRaw(Duration.ofDays(30));
+        retention.setPolicies(List.of(policy(Duration.ofDays(90)), policy(Duration.ofDays(7))));
+        assertThat(ConsumptionPartitionService.longestKeep(retention)).isEqualTo(Duration.ofDays(90));
+        assertThat(ConsumptionPartitionService.expiryCutoff(NOW, Period.ofMonths(1), Duration.ofDays(90)))
+            .isEqualTo(Instant.parse("2026-07-19T12:00:00Z"));
+
+        retention.setPolicies(List.of(policy(null)));
+        assertThat(ConsumptionPartitionService.longestKeep(retention)).isNull();
+    }
+
+    @Test
+    void expireOnlyThePartitionsRolledUp() {
+        // The consumptions of p_history are still being rolled up from the middle of January
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPartition().setRetention(Period.ofMonths(1));
+        applicationProperties.getRetention().setRaw(Duration.ofDays(30));
+        ConsumptionPartitionRepository consumptionPartitionRepository = mock(ConsumptionPartitionRepository.class);
+        ConsumptionRetentionService consumptionRetentionService = mock(ConsumptionRetentionService.class);
+        when(consumptionPartitionRepository.findAll())
+            .thenReturn(
+                List.of(
+                    new ConsumptionPartition("p_history", Instant.parse("2026-01-01T00:00:00Z"), 1_000),
+                    new ConsumptionPartition("p202601", Instant.parse("2026-02-01T00:00:00Z"), 1_000),
+                    new ConsumptionPartition("p_max", null, 0)
+                )
+            );
+        when(consumptionRetentionService.getRolledUpBefore()).thenReturn(Instant.parse("2026-01-15T00:00:00Z"));
+        when(consumptionRetentionService.advanceWatermark(eq(ConsumptionRetentionService.PARTITION_WATERMARK), any()))
+            .thenAnswer(invocation -> invocation.getArgument(1));
+
+        new ConsumptionPartitionService(
+            consumptionPartitionRepository,
+            mock(ConsumptionSampleRepository.class),
+            consumptionRetentionService,
+            applicationProperties
+        )
+            .maintain(NOW);
+
+        verify(consumptionRetentionService).advanceWatermark(ConsumptionRetentionService.PARTITION_WATERMARK, Instant.parse("2026-01-01T00:00:00Z"));
+        verify(consumptionPartitionRepository).drop("p_history");
+        verify(consumptionPartitionRepository, never()).drop("p202601");
+    }
+
+    @Test
+    void refuseToDropConsumptionsKeptForever() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPartition().setRetention(Period.ofMonths(6));
+        applicationProperties.getRetention().setPolicies(List.of(policy(null)));
+
+        assertThatThrownBy(() -> new ConsumptionPartitionService(null, null, null, applicationProperties))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static ApplicationProperties.Retention.Policy policy(Duration keep) {
+        ApplicationProperties.Retention.Policy policy = new ApplicationProperties.Retention.Policy();
+        policy.setKeep(keep);
+        return policy;
+    }
+}
@@ -0,0 +1,127 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.management.ConsumptionRetentionMetersService;
+import com.snail.consumptiondb.repository.PurgedChunk;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionRetentionSchedulerTest {
+
+    private static final Instant OLD = Instant.parse("2001-02-03T04:05:06Z");
+
+    private ApplicationProperties applicationProperties;
+
+    private ConsumptionRetentionService consumptionRetentionService;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Retention retention = applicationProperties.getRetention();
+        retention.setChunkSize(2);
+        retention.setChunkPause(Duration.ZERO);
+        retention.setMaxChunksPerPurge(3);
+        retention.setRaw(Duration.ofDays(30));
+        retention.setPolicies(
+            List.of(policy("forever", "reference", null, null), policy(null, null, Scope.ALL, Duration.ofDays(7)))
+        );
+        consumptionRetentionService = mock(ConsumptionRetentionService.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void orderPolicies() {
+        List<ConsumptionRetentionService.Target> targets = ConsumptionRetentionService.targetsOf(applicationProperties.getRetention());
+
+        assertThat(targets).extracting(ConsumptionRetentionService.Target::getName).containsExactly("policy-1", "default");
+        assertThat(targets.get(0).getExcluded()).extracting("software").containsExactly("reference");
+        assertThat(targets.get(1).getExcluded()).extracting("scope").containsExactly(null, Scope.ALL);
+        assertThat(targets.get(1).getKeep()).isEqualTo(Duration.ofDays(30));
+    }
+
+    @Test
+    void purgeInChunksAndTrackLag() {
+        when(consumptionRetentionService.getTargets()).thenReturn(ConsumptionRetentionService.targetsOf(applicationProperties.getRetention()));
+        when(consumptionRetentionService.advanceWatermark(any(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        // The 7 days policy is caught up after a partial chunk, the default one runs out of chunks
+        when(consumptionRetentionService.purgeChunk(any(), anyList(), any(), isNull(), anyLong(), eq(2)))
+            .thenReturn(new PurgedChunk(2, OLD, 1L), new PurgedChunk(2, OLD, 10L));
+        when(consumptionRetentionService.purgeChunk(any(), anyList(), any(), eq(OLD), eq(1L), anyInt()))
+            .thenReturn(new PurgedChunk(1, OLD, 2L));
+        when(consumptionRetentionService.purgeChunk(any(), anyList(), any(), eq(OLD), eq(10L), anyInt()))
+            .thenReturn(new PurgedChunk(2, OLD.plusSeconds(60), 11L));
+        when(consumptionRetentionService.purgeChunk(any(), anyList(), any(), eq(OLD.plusSeconds(60)), eq(11L), anyInt()))
+            .thenReturn(new PurgedChunk(2, OLD.plusSeconds(120), 12L));
+
+        new ConsumptionRetentionScheduler(
+            consumptionRetentionService,
+            new ConsumptionRetentionMetersService(meterRegistry),
+            applicationProperties
+        )
+            .purgeExpiredConsumptions();
+
+        assertThat(purged("policy-1")).isEqualTo(3.0);
+        assertThat(purged("default")).isEqualTo(6.0);
+        assertThat(lag("policy-1")).isZero();
+        assertThat(lag("default")).isGreaterThan(Duration.between(OLD, Instant.now().minus(Duration.ofDays(31))).getSeconds());
+    }
+
+    @Test
+    void purgeNothingBeforeTheWatermarkMoves() {
+        when(consumptionRetentionService.getTargets()).thenReturn(ConsumptionRetentionService.targetsOf(applicationProperties.getRetention()));
+
+        new ConsumptionRetentionScheduler(
+            consumptionRetentionService,
+            new ConsumptionRetentionMetersService(meterRegistry),
+            applicationProperties
+        )
+            .purgeExpiredConsumptions();
+
+        verify(consumptionRetentionService, never()).purgeChunk(any(), anyList(), any(), any(), anyLong(), anyInt());
+    }
+
+    private double purged(String policy) {
+        return meterRegistry
+            .get(ConsumptionRetentionMetersService.PURGED_METER_NAME)
+            .tag(ConsumptionRetentionMetersService.POLICY_DIMENSION, policy)
+            .counter()
+            .count();
+    }
+
+    private double lag(String policy) {
+        return meterRegistry
+            .get(ConsumptionRetentionMetersService.LAG_METER_NAME)
+            .tag(ConsumptionRetentionMetersService.POLICY_DIMENSION, policy)
+            .gauge()
+            .value();
+    }
+
+    private static ApplicationProperties.Retention.Policy policy(String name, String software, Scope scope, Duration keep) {
+        ApplicationProperties.Retention.Policy policy = new ApplicationProperties.Retention.Policy();
+        policy.setName(name);
+        policy.setSoftware(software);
+        policy.setScope(scope);
+        policy.setKeep(keep);
+        return policy;
+    }
+}
@@ -0,0 +1,49 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionRollupSchedulerTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private ConsumptionRollupService consumptionRollupService;
+
+    @BeforeEach
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getRetention().setRaw(Duration.ofDays(30));
+        applicationProperties.getRollup().setRepairWindow(Duration.ofDays(40));
+        consumptionRollupService = mock(ConsumptionRollupService.class);
+    }
+
+    @Test
+    void rebuildEveryDayOfTheWindow() {
+        Instant today = ConsumptionRollupResolution.DAY.truncate(Instant.now());
+
+        assertThat(scheduler().rebuild(today.minus(Duration.ofDays(31)), today)).isEqualTo(31);
+        assertThat(scheduler().rebuild(today.minus(Duration.ofDays(2)).plusSeconds(60), today)).isEqualTo(2);
+    }
+
+    @Test
+    void repairReachesPastTheRetention() {
+        // The rollups of the consumptions sealed by the retention purge are kept by the rebuilds themselves
+        scheduler().repairRollups();
+
+        verify(consumptionRollupService, times(41)).rebuildDay(any());
+    }
+
+    private ConsumptionRollupScheduler scheduler() {
+        return new ConsumptionRollupScheduler(consumptionRollupService, applicationProperties);
+    }
+}
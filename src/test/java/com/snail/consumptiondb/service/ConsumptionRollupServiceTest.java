@@ -0,0 +1,91 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
+import com.snail.consumptiondb.repository.ConsumptionSampleRepository;
+import com.snail.consumptiondb.repository.ConsumptionSketchRepository;
+import com.snail.consumptiondb.repository.RetentionSeals;
+import com.snail.consumptiondb.service.mapper.ConsumptionAggregateMapper;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionRollupServiceTest {
+
+    private static final Instant DAY = Instant.parse("2023-05-05T00:00:00Z");
+
+    @Test
+    void resolutionOfWindow() {
+        assertThat(ConsumptionRollupService.resolutionOf(DAY, DAY.plusSeconds(86_400 * 7))).isEqualTo(ConsumptionRollupResolution.DAY);
+        assertThat(ConsumptionRollupService.resolutionOf(DAY.plusSeconds(3_600), DAY.plusSeconds(86_400)))
+            .isEqualTo(ConsumptionRollupResolution.HOUR);
+        assertThat(ConsumptionRollupService.resolutionOf(DAY, DAY.plusSeconds(60))).isEqualTo(ConsumptionRollupResolution.MINUTE);
+        assertThat(ConsumptionRollupService.resolutionOf(DAY, DAY.plusSeconds(90))).isNull();
+        assertThat(ConsumptionRollupService.resolutionOf(DAY, DAY)).isNull();
+        assertThat(ConsumptionRollupService.resolutionOf(null, DAY)).isNull();
+    }
+
+    @Test
+    void truncateToResolution() {
+        Instant instant = Instant.parse("2023-05-05T03:42:54.123456Z");
+        assertThat(ConsumptionRollupResolution.MINUTE.truncate(instant)).isEqualTo(Instant.parse("2023-05-05T03:42:00Z"));
+        assertThat(ConsumptionRollupResolution.HOUR.truncate(instant)).isEqualTo(Instant.parse("2023-05-05T03:00:00Z"));
+        assertThat(ConsumptionRollupResolution.DAY.truncate(instant)).isEqualTo(DAY);
+        assertThat(ConsumptionRollupResolution.DAY.getFiner()).isEqualTo(ConsumptionRollupResolution.HOUR);
+        assertThat(ConsumptionRollupResolution.MINUTE.getFiner()).isNull();
+    }
+
+    @Test
+    void coalesceConsecutiveBuckets() {
+        Set<Instant> minutes = new TreeSet<>(List.of(DAY, DAY.plusSeconds(60), DAY.plusSeconds(120), DAY.plusSeconds(600)));
+
+        List<Instant[]> ranges = ConsumptionRollupService.ranges(minutes, ConsumptionRollupResolution.MINUTE);
+
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(0)).containsExactly(DAY, DAY.plusSeconds(180));
+        assertThat(ranges.get(1)).containsExactly(DAY.plusSeconds(600), DAY.plusSeconds(660));
+    }
+
+    @Test
+    void refreshTheSketchesOfTheBackfilledMinutes() {
+        // Minutes marked dirty by the backfill of the consumptions written before the sketches were maintained
+        ConsumptionRollupRepository consumptionRollupRepository = mock(ConsumptionRollupRepository.class);
+        ConsumptionSketchRepository consumptionSketchRepository = mock(ConsumptionSketchRepository.class);
+        ConsumptionRetentionService consumptionRetentionService = mock(ConsumptionRetentionService.class);
+        ReleaseDiffService releaseDiffService = mock(ReleaseDiffService.class);
+        ReleaseTopMethodsService releaseTopMethodsService = mock(ReleaseTopMethodsService.class);
+        RetentionSeals seals = new RetentionSeals(List.of());
+        when(consumptionRollupRepository.lockDirtyMinutes(anyInt()))
+            .thenReturn(List.of(DAY.plusSeconds(60), DAY.plusSeconds(86_400 + 7_260)));
+        when(consumptionRetentionService.lockSeals()).thenReturn(seals);
+
+        int refreshed = new ConsumptionRollupService(
+            consumptionRollupRepository,
+            consumptionSketchRepository,
+            mock(ConsumptionSampleRepository.class),
+            mock(ConsumptionRepository.class),
+            mock(ConsumptionAggregateMapper.class),
+            consumptionRetentionService,
+            releaseDiffService,
+            releaseTopMethodsService
+        )
+            .refreshDirtyMinutes(10);
+
+        assertThat(refreshed).isEqualTo(2);
+        verify(consumptionSketchRepository).rebuild(ConsumptionRollupResolution.HOUR, DAY, DAY.plusSeconds(3_600), seals);
+        verify(consumptionSketchRepository)
+            .rebuild(ConsumptionRollupResolution.HOUR, DAY.plusSeconds(86_400 + 7_200), DAY.plusSeconds(86_400 + 10_800), seals);
+        verify(consumptionSketchRepository).rebuild(ConsumptionRollupResolution.DAY, DAY, DAY.plusSeconds(2 * 86_400), seals);
+        verify(releaseDiffService).evictAll();
+        verify(releaseTopMethodsService).evictAll();
+    }
+}
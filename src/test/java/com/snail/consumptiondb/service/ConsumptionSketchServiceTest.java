@@ -0,0 +1,60 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.repository.ConsumptionSketchRepository;
+import com.snail.consumptiondb.service.dto.ConsumptionHistogramDTO;
+import com.snail.consumptiondb.service.dto.ConsumptionPercentilesDTO;
+import java.util.Random;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionSketchServiceTest {
+
+    @Test
+    void percentilesOfMergedSketches() {
+        Histogram first = ConsumptionSketchRepository.newSketch();
+        Histogram second = ConsumptionSketchRepository.newSketch();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            ConsumptionSketchRepository.record(i % 2 == 0 ? first : second, 1_000L + random.nextInt(1_000_000));
+        }
+        Histogram merged = ConsumptionSketchRepository.newSketch();
+        merged.add(first);
+        merged.add(second);
+
+        ConsumptionPercentilesDTO percentiles = ConsumptionSketchService.percentilesOf(merged, new double[] { 50, 95, 99 });
+
+        assertThat(percentiles.getCount()).isEqualTo(100_000);
+        assertThat(percentiles.getValues()[0]).isBetween(490_000L, 512_000L);
+        assertThat(percentiles.getValues()[1]).isBetween(940_000L, 962_000L);
+        assertThat(percentiles.getValues()[2]).isBetween(980_000L, 1_002_000L);
+    }
+
+    @Test
+    void percentilesOfEmptySketch() {
+        ConsumptionPercentilesDTO percentiles = ConsumptionSketchService.percentilesOf(
+            ConsumptionSketchRepository.newSketch(),
+            new double[] { 50 }
+        );
+
+        assertThat(percentiles.getCount()).isZero();
+        assertThat(percentiles.getMin()).isNull();
+        assertThat(percentiles.getValues()).isNull();
+    }
+
+    @Test
+    void histogramOfSketch() {
+        Histogram sketch = ConsumptionSketchRepository.newSketch();
+        for (long value = 10; value < 20; value++) {
+            ConsumptionSketchRepository.record(sketch, value);
+        }
+        ConsumptionSketchRepository.record(sketch, -5);
+
+        ConsumptionHistogramDTO histogram = ConsumptionSketchService.histogramOf(sketch, 2);
+
+        assertThat(histogram.getCount()).isEqualTo(11);
+        assertThat(histogram.getBounds()).containsExactly(0, 10, 20);
+        assertThat(histogram.getCounts()).containsExactly(1, 10);
+    }
+}
@@ -0,0 +1,132 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.management.IngestionPipelineMetersService;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.SpoolCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Integration tests replaying a {@link ConsumptionSpool} to the database through {@link ConsumptionSpoolService}.
+ * <p>
+ * The replay commits its own transactions, so these tests clean up after themselves.
+ */
+@IntegrationTest
+class ConsumptionSpoolIT {
+
+    private static final long SEGMENT_SIZE = ConsumptionSpool.RECORD_SIZE * 16L;
+
+    private static final Instant TIMESTAMP = Instant.now().truncatedTo(ChronoUnit.MILLIS).minusSeconds(3_600);
+
+    private final String spoolId = "spool-it-" + UUID.randomUUID();
+
+    private final long marker = System.nanoTime();
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private ConsumptionIngestionService consumptionIngestionService;
+
+    @Autowired
+    private SpoolCheckpointRepository spoolCheckpointRepository;
+
+    @Autowired
+    private ConsumptionRepository consumptionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void cleanUp() {
+        consumptionRepository.deleteAllInBatch(spooledConsumptions());
+        jdbcTemplate.update("delete from consumption_spool_checkpoint where spool_id = ?", spoolId);
+    }
+
+    @Test
+    void recordsSpooledBeforeACrashAreReplayedOnceAfterRestarts() throws Exception {
+        // A previous run spooled these records, then crashed before replaying them
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 4, 0)) {
+            spool.append(List.of(consumption(0), consumption(1), consumption(2)));
+        }
+
+        ConsumptionSpoolService spoolService = startSpoolService();
+        try {
+            awaitCommittedSequence(3);
+        } finally {
+            spoolService.shutdown();
+        }
+        assertThat(spooledConsumptions()).extracting(Consumption::getTimestamp).containsExactlyInAnyOrder(timestamps(0, 1, 2));
+
+        spoolService = startSpoolService();
+        try {
+            spoolService.append(List.of(consumption(3)));
+            awaitCommittedSequence(4);
+        } finally {
+            spoolService.shutdown();
+        }
+        assertThat(spooledConsumptions()).extracting(Consumption::getTimestamp).containsExactlyInAnyOrder(timestamps(0, 1, 2, 3));
+    }
+
+    private ConsumptionSpoolService startSpoolService() throws Exception {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Ingestion.Spool spool = applicationProperties.getIngestion().getSpool();
+        spool.setEnabled(true);
+        spool.setId(spoolId);
+        spool.setDirectory(directory.toString());
+        spool.setSegmentSize(DataSize.ofBytes(SEGMENT_SIZE));
+        spool.setMaxSize(DataSize.ofBytes(SEGMENT_SIZE * 4));
+        ConsumptionSpoolService spoolService = new ConsumptionSpoolService(
+            consumptionIngestionService,
+            spoolCheckpointRepository,
+            new IngestionPipelineMetersService(new SimpleMeterRegistry()),
+            applicationProperties
+        );
+        spoolService.start();
+        return spoolService;
+    }
+
+    private void awaitCommittedSequence(long sequence) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (spoolCheckpointRepository.findCommittedSequence(spoolId).orElse(0L) < sequence) {
+            assertThat(System.nanoTime() - deadline).as("spool replay timed out").isNegative();
+            Thread.sleep(50);
+        }
+    }
+
+    private Consumption consumption(int index) {
+        return new Consumption().value(marker).timestamp(TIMESTAMP.plusMillis(index)).scope(Scope.APP).monitoringType(MonitoringType.TOTAL);
+    }
+
+    private static Instant[] timestamps(int... indexes) {
+        return Arrays.stream(indexes).mapToObj(TIMESTAMP::plusMillis).toArray(Instant[]::new);
+    }
+
+    private List<Consumption> spooledConsumptions() {
+        return consumptionRepository
+            .findAll()
+            .stream()
+            .filter(consumption -> consumption.getValue() != null && consumption.getValue() == marker)
+            .collect(Collectors.toList());
+    }
+}
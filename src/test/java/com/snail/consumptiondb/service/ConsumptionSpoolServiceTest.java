@@ -0,0 +1,100 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.management.IngestionPipelineMetersService;
+import com.snail.consumptiondb.repository.SpoolCheckpointRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ConsumptionSpoolServiceTest {
+
+    private static final String SPOOL_ID = "test";
+
+    @TempDir
+    Path directory;
+
+    private ConsumptionIngestionService consumptionIngestionService;
+
+    private SpoolCheckpointRepository spoolCheckpointRepository;
+
+    private ConsumptionSpoolService spoolService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Ingestion.Spool spool = applicationProperties.getIngestion().getSpool();
+        spool.setEnabled(true);
+        spool.setId(SPOOL_ID);
+        spool.setDirectory(directory.toString());
+        spool.setMaxRetryDelay(Duration.ofMillis(200));
+        spool.setDrainTimeout(Duration.ofSeconds(5));
+        consumptionIngestionService = mock(ConsumptionIngestionService.class);
+        spoolCheckpointRepository = mock(SpoolCheckpointRepository.class);
+        when(spoolCheckpointRepository.findCommittedSequence(SPOOL_ID)).thenReturn(Optional.of(0L));
+        spoolService =
+            new ConsumptionSpoolService(
+                consumptionIngestionService,
+                spoolCheckpointRepository,
+                new IngestionPipelineMetersService(new SimpleMeterRegistry()),
+                applicationProperties
+            );
+        spoolService.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        spoolService.shutdown();
+    }
+
+    @Test
+    void spooledRecordsAreReplayedWithTheirCheckpoint() throws Exception {
+        when(consumptionIngestionService.saveAllSpooled(eq(SPOOL_ID), anyList(), anyLong())).thenReturn(new IngestionReportDTO());
+
+        spoolService.append(List.of(consumption(), consumption(), consumption()));
+
+        verify(consumptionIngestionService, timeout(5_000)).saveAllSpooled(eq(SPOOL_ID), anyList(), eq(3L));
+    }
+
+    @Test
+    void replayIsRetriedWhileTheDatabaseIsDown() throws Exception {
+        when(consumptionIngestionService.saveAllSpooled(eq(SPOOL_ID), anyList(), anyLong()))
+            .thenThrow(new IllegalStateException("database down"))
+            .thenReturn(new IngestionReportDTO());
+
+        spoolService.append(List.of(consumption()));
+
+        verify(consumptionIngestionService, timeout(5_000).times(2)).saveAllSpooled(eq(SPOOL_ID), anyList(), eq(1L));
+    }
+
+    @Test
+    void appendsAreRefusedOnceShutDown() throws Exception {
+        spoolService.shutdown();
+
+        assertThatThrownBy(() -> spoolService.append(List.of(consumption()))).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Consumption consumption() {
+        return new Consumption().value(1L).scope(Scope.APP).monitoringType(MonitoringType.RUNTIME);
+    }
+}
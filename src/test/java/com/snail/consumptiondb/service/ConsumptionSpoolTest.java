@@ -0,0 +1,152 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ConsumptionSpoolTest {
+
+    private static final long SEGMENT_SIZE = ConsumptionSpool.RECORD_SIZE * 4L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReadBackInOrderUntilAcknowledged() throws IOException {
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            assertThat(spool.append(consumptions(1, 10))).isEqualTo(10);
+
+            ConsumptionSpool.Batch batch = spool.read(6);
+            assertThat(batch.getLastSequence()).isEqualTo(6);
+            assertThat(values(batch)).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+            assertThat(values(spool.read(6))).containsExactly(1L, 2L, 3L, 4L, 5L, 6L);
+
+            spool.acknowledge(batch);
+            assertThat(spool.backlog()).isEqualTo(4);
+            assertThat(values(spool.read(100))).containsExactly(7L, 8L, 9L, 10L);
+        }
+    }
+
+    @Test
+    void recordsRoundTrip() throws IOException {
+        Consumption consumption = new Consumption()
+            .value(42L)
+            .timestamp(Instant.parse("2023-05-05T13:54:07.123456789Z"))
+            .scope(Scope.ALL)
+            .monitoringType(MonitoringType.TOTAL)
+            .method(new Method().id(7L));
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            spool.append(List.of(consumption, new Consumption()));
+
+            List<Consumption> read = spool.read(2).getConsumptions();
+            assertThat(read.get(0).getValue()).isEqualTo(42L);
+            assertThat(read.get(0).getTimestamp()).isEqualTo(consumption.getTimestamp());
+            assertThat(read.get(0).getScope()).isEqualTo(Scope.ALL);
+            assertThat(read.get(0).getMonitoringType()).isEqualTo(MonitoringType.TOTAL);
+            assertThat(read.get(0).getMethod().getId()).isEqualTo(7L);
+            assertThat(read.get(1).getValue()).isNull();
+            assertThat(read.get(1).getTimestamp()).isNull();
+            assertThat(read.get(1).getMethod()).isNull();
+        }
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeleted() throws IOException {
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            spool.append(consumptions(1, 10));
+            assertThat(spool.segmentCount()).isEqualTo(3);
+
+            spool.acknowledge(spool.read(9));
+            assertThat(spool.segmentCount()).isEqualTo(1);
+            assertThat(segmentFiles()).hasSize(1);
+        }
+    }
+
+    @Test
+    void replayAfterRestartSkipsCommittedRecords() throws IOException {
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            spool.append(consumptions(1, 10));
+            // the checkpoint of 6 was committed, but the spool crashed before acknowledging it
+        }
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 6)) {
+            assertThat(spool.backlog()).isEqualTo(4);
+            assertThat(values(spool.read(100))).containsExactly(7L, 8L, 9L, 10L);
+            assertThat(spool.append(consumptions(11, 11))).isEqualTo(11);
+        }
+    }
+
+    @Test
+    void sequencesKeepIncreasingAfterTheSpoolIsEmptied() throws IOException {
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            spool.append(consumptions(1, 3));
+            spool.acknowledge(spool.read(3));
+        }
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 3)) {
+            assertThat(spool.backlog()).isZero();
+            assertThat(spool.append(consumptions(4, 4))).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void recoveryStopsAtATornRecord() throws IOException {
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            spool.append(consumptions(1, 3));
+        }
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), ConsumptionSpool.RECORD_SIZE + 20L);
+        }
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            assertThat(values(spool.read(100))).containsExactly(1L);
+            assertThat(spool.append(consumptions(4, 4))).isEqualTo(2);
+        }
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 10, 0)) {
+            assertThat(values(spool.read(100))).containsExactly(1L, 4L);
+        }
+    }
+
+    @Test
+    void aFullSpoolRefusesTheWholeBatch() throws IOException {
+        try (ConsumptionSpool spool = ConsumptionSpool.open(directory, SEGMENT_SIZE, SEGMENT_SIZE * 2, 0)) {
+            spool.append(consumptions(1, 6));
+
+            assertThatThrownBy(() -> spool.append(consumptions(7, 9))).isInstanceOf(IllegalStateException.class);
+            assertThat(spool.backlog()).isEqualTo(6);
+            assertThat(spool.append(consumptions(7, 8))).isEqualTo(8);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<Consumption> consumptions(long firstValue, long lastValue) {
+        return LongStream
+            .rangeClosed(firstValue, lastValue)
+            .mapToObj(value -> new Consumption().value(value).scope(Scope.APP).monitoringType(MonitoringType.RUNTIME))
+            .collect(Collectors.toList());
+    }
+
+    private static List<Long> values(ConsumptionSpool.Batch batch) {
+        return batch.getConsumptions().stream().map(Consumption::getValue).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,187 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.management.IngestionPipelineMetersService;
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IngestionPipelineTest {
+
+    private static final String RECORD =
+        "{\"value\":42,\"scope\":\"APP\",\"monitoringType\":\"RUNTIME\",\"timestamp\":\"2023-05-05T13:54:07Z\"";
+
+    private final List<Consumption> persisted = Collections.synchronizedList(new ArrayList<>());
+
+    private ConsumptionIngestionService consumptionIngestionService;
+
+    private ConsumptionSpoolService consumptionSpoolService;
+
+    private MeterRegistry meterRegistry;
+
+    private IngestionPipeline pipeline;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getIngestion().getPipeline().setBufferSize(4);
+        applicationProperties.getIngestion().getPipeline().setTransactionSize(3);
+        MethodRepository methodRepository = mock(MethodRepository.class);
+        when(methodRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L));
+        consumptionIngestionService = mock(ConsumptionIngestionService.class);
+        when(consumptionIngestionService.saveAll(anyList(), anyCollection()))
+            .thenAnswer(invocation -> {
+                List<Consumption> chunk = invocation.getArgument(0);
+                chunk.forEach(consumption -> consumption.setId(1L));
+                persisted.addAll(chunk);
+                return new IngestionReportDTO(chunk.size(), chunk.size(), 0);
+            });
+        consumptionSpoolService = mock(ConsumptionSpoolService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        pipeline =
+            new IngestionPipeline(
+                new ObjectMapper().registerModule(new JavaTimeModule()),
+                methodRepository,
+                consumptionIngestionService,
+                consumptionSpoolService,
+                new IngestionPipelineMetersService(meterRegistry),
+                applicationProperties
+            );
+        pipeline.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void commitAckReportsPersistedAndRejectedRecords() throws Exception {
+        StringBuilder upload = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            upload.append(RECORD).append(",\"method\":{\"id\":1}}\n");
+        }
+        upload.append("not json\n");
+        upload.append(RECORD).append(",\"method\":{\"id\":2}}\n");
+        upload.append(RECORD).append(",\"id\":5}\n");
+        upload.append("{\"value\":42}\n");
+
+        IngestionReportDTO report = submit(upload.toString(), IngestionAckMode.COMMIT).get(10, TimeUnit.SECONDS);
+
+        assertThat(report.getReceived()).isEqualTo(24);
+        assertThat(report.getPersisted()).isEqualTo(20);
+        assertThat(report.getRejected()).isEqualTo(4);
+        assertThat(persisted).hasSize(20).allSatisfy(consumption -> assertThat(consumption.getMethod().getId()).isEqualTo(1L));
+        assertThat(rejectedBy(IngestionPipeline.PARSE_STAGE)).isEqualTo(1);
+        assertThat(rejectedBy(IngestionPipeline.RESOLVE_STAGE)).isEqualTo(1);
+        assertThat(rejectedBy(IngestionPipeline.VALIDATE_STAGE)).isEqualTo(2);
+        assertThat(meterRegistry.get("consumption.pipeline.stage.latency").tag("stage", "persist").timer().count()).isEqualTo(20);
+    }
+
+    @Test
+    void commitAckReportsDuplicatesAndRecordsRefusedOnPersist() throws Exception {
+        when(consumptionIngestionService.saveAll(anyList(), anyCollection()))
+            .thenAnswer(invocation -> {
+                List<Consumption> chunk = invocation.getArgument(0);
+                Collection<Consumption> rejected = invocation.getArgument(1);
+                for (Consumption consumption : chunk) {
+                    if (consumption.getValue() == 1L) {
+                        consumption.setId(1L);
+                    } else if (consumption.getValue() == 2L) {
+                        rejected.add(consumption);
+                    }
+                }
+                return new IngestionReportDTO(chunk.size(), 1, rejected.size(), 0);
+            });
+        String upload =
+            "{\"value\":1,\"scope\":\"APP\",\"monitoringType\":\"RUNTIME\",\"timestamp\":\"2023-05-05T13:54:07Z\"}\n" +
+            "{\"value\":2,\"scope\":\"APP\",\"monitoringType\":\"RUNTIME\",\"timestamp\":\"2023-05-05T13:54:07Z\"}\n" +
+            "{\"value\":3,\"scope\":\"APP\",\"monitoringType\":\"RUNTIME\",\"timestamp\":\"2023-05-05T13:54:07Z\"}\n";
+
+        IngestionReportDTO report = submit(upload, IngestionAckMode.COMMIT).get(10, TimeUnit.SECONDS);
+
+        assertThat(report.getReceived()).isEqualTo(3);
+        assertThat(report.getPersisted()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(meterRegistry.get("consumption.pipeline.records").tag("result", "persisted").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("consumption.pipeline.records").tag("result", "duplicate").counter().count()).isEqualTo(1);
+        assertThat(rejectedBy(IngestionPipeline.PERSIST_STAGE)).isEqualTo(1);
+    }
+
+    @Test
+    void enqueueAckCompletesBeforeCommit() throws Exception {
+        IngestionReportDTO report = submit(RECORD + "}\n" + RECORD + "}\n", IngestionAckMode.ENQUEUE).get();
+
+        assertThat(report.getReceived()).isEqualTo(2);
+        assertThat(report.getPersisted()).isZero();
+        pipeline.shutdown();
+        assertThat(persisted).hasSize(2);
+    }
+
+    @Test
+    void onlyEnqueueAckGoesThroughTheSpool() throws Exception {
+        when(consumptionSpoolService.isEnabled()).thenReturn(true);
+
+        IngestionReportDTO report = submit(RECORD + "}\n" + RECORD + "}\n", IngestionAckMode.COMMIT).get(10, TimeUnit.SECONDS);
+        assertThat(report.getPersisted()).isEqualTo(2);
+        assertThat(persisted).hasSize(2);
+        verify(consumptionSpoolService, never()).append(anyList());
+
+        submit(RECORD + "}\n", IngestionAckMode.ENQUEUE).get();
+        verify(consumptionSpoolService, timeout(5_000)).append(argThat(consumptions -> consumptions.size() == 1));
+        assertThat(persisted).hasSize(2);
+    }
+
+    @Test
+    void persistFailureFailsTheUpload() {
+        when(consumptionIngestionService.saveAll(anyList(), anyCollection())).thenThrow(new IllegalStateException("database down"));
+
+        assertThatThrownBy(() -> submit(RECORD + "}\n", IngestionAckMode.COMMIT).get(10, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasRootCauseMessage("database down");
+        assertThat(meterRegistry.get("consumption.pipeline.records").tag("result", "failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void uploadsAreRefusedOnceShutDown() throws InterruptedException {
+        pipeline.shutdown();
+
+        assertThatThrownBy(() -> submit(RECORD + "}\n", IngestionAckMode.COMMIT)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private CompletableFuture<IngestionReportDTO> submit(String upload, IngestionAckMode ackMode) throws IOException {
+        return pipeline.submit(new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8)), ackMode);
+    }
+
+    private double rejectedBy(String stage) {
+        return meterRegistry.get("consumption.pipeline.rejected").tag("stage", stage).counter().count();
+    }
+}
@@ -0,0 +1,43 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class JoularCsvLineTest {
+
+    @Test
+    void parseEpochMillisTimestamp() {
+        JoularCsvLine line = JoularCsvLine.parse("org.example.Foo.bar,42,1683294847000");
+
+        assertThat(line.getMethodName()).isEqualTo("org.example.Foo.bar");
+        assertThat(line.getValue()).isEqualTo(42L);
+        assertThat(line.getTimestamp()).isEqualTo(Instant.ofEpochMilli(1683294847000L));
+    }
+
+    @Test
+    void parseIsoTimestamp() {
+        JoularCsvLine line = JoularCsvLine.parse("org.example.Foo.bar, 7 ,2023-05-05T13:54:07Z");
+
+        assertThat(line.getValue()).isEqualTo(7L);
+        assertThat(line.getTimestamp()).isEqualTo(Instant.parse("2023-05-05T13:54:07Z"));
+    }
+
+    @Test
+    void parseMethodNameWithCommas() {
+        JoularCsvLine line = JoularCsvLine.parse("org.example.Foo.bar(int,java.lang.String),3,0");
+
+        assertThat(line.getMethodName()).isEqualTo("org.example.Foo.bar(int,java.lang.String)");
+        assertThat(line.getValue()).isEqualTo(3L);
+    }
+
+    @Test
+    void rejectInvalidLines() {
+        assertThatThrownBy(() -> JoularCsvLine.parse("method,value,timestamp")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> JoularCsvLine.parse("org.example.Foo.bar,42")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> JoularCsvLine.parse(",42,0")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> JoularCsvLine.parse("org.example.Foo.bar,42,yesterday")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,65 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ReleaseMethodTotal;
+import com.snail.consumptiondb.service.dto.MethodTreeNodeDTO;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MethodTreeServiceTest {
+
+    private static final long RELEASE_ID = 1L;
+
+    private ConsumptionRollupRepository consumptionRollupRepository;
+
+    private MethodTreeService methodTreeService;
+
+    @BeforeEach
+    public void setup() {
+        consumptionRollupRepository = mock(ConsumptionRollupRepository.class);
+        when(consumptionRollupRepository.findMethodTotals(List.of(RELEASE_ID), null, null))
+            .thenReturn(
+                List.of(
+                    new ReleaseMethodTotal(RELEASE_ID, "com.acme.Bar.run", 1, 3L),
+                    new ReleaseMethodTotal(RELEASE_ID, "com.acme.Foo.bar", 2, 10L),
+                    new ReleaseMethodTotal(RELEASE_ID, "com.acme.Foo.baz", 0, null)
+                )
+            );
+        methodTreeService = new MethodTreeService(consumptionRollupRepository, new ApplicationProperties());
+    }
+
+    @Test
+    void drillDownOneLevelAtATime() {
+        MethodTreeNodeDTO acme = methodTreeService.drillDown(RELEASE_ID, "com.acme", null, null).orElseThrow();
+
+        assertThat(acme.getSum()).isEqualTo(13);
+        assertThat(acme.getChildren()).extracting(MethodTreeNodeDTO::getName).containsExactly("Foo", "Bar");
+        assertThat(acme.getChildren()).extracting(MethodTreeNodeDTO::getChildren).containsOnlyNulls();
+        assertThat(acme.getChildren().get(0).getChildCount()).isEqualTo(2);
+        assertThat(methodTreeService.drillDown(RELEASE_ID, "org", null, null)).isEmpty();
+    }
+
+    @Test
+    void insertAddedMethodsWithoutRebuilding() {
+        methodTreeService.drillDown(RELEASE_ID, "", null, null);
+
+        methodTreeService.addMethods(RELEASE_ID, List.of("com.acme.Qux.run"));
+
+        MethodTreeNodeDTO acme = methodTreeService.drillDown(RELEASE_ID, "com.acme", null, null).orElseThrow();
+        assertThat(acme.getMethodCount()).isEqualTo(4);
+        assertThat(acme.getChildren()).extracting(MethodTreeNodeDTO::getName).containsExactly("Foo", "Bar", "Qux");
+        verify(consumptionRollupRepository, times(1)).findMethodTotals(List.of(RELEASE_ID), null, null);
+
+        methodTreeService.evict(RELEASE_ID);
+        methodTreeService.drillDown(RELEASE_ID, "", null, null);
+        verify(consumptionRollupRepository, times(2)).findMethodTotals(List.of(RELEASE_ID), null, null);
+    }
+}
@@ -0,0 +1,50 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MethodTreeTest {
+
+    @Test
+    void splitQualifiedNames() {
+        assertThat(MethodTree.segments("com.acme.Foo.bar")).containsExactly("com", "acme", "Foo", "bar");
+        assertThat(MethodTree.segments("com.acme.Foo$Inner.bar(java.lang.String, int)"))
+            .containsExactly("com", "acme", "Foo$Inner", "bar(java.lang.String, int)");
+        assertThat(MethodTree.segments("main")).containsExactly("main");
+        assertThat(MethodTree.segments("")).isEmpty();
+    }
+
+    @Test
+    void sumEnergyBottomUp() {
+        MethodTree tree = new MethodTree(0);
+        tree.add("com.acme.Foo.bar", 10);
+        tree.add("com.acme.Foo.baz", 5);
+        tree.add("com.acme.util.Strings.trim", 1);
+        tree.add("com.acme.Foo.bar", 2);
+
+        MethodTree.Node root = tree.find("");
+        assertThat(root.getSum()).isEqualTo(18);
+        assertThat(root.getMethodCount()).isEqualTo(3);
+        MethodTree.Node foo = tree.find("com.acme.Foo");
+        assertThat(foo.getType()).isEqualTo(MethodTreeNodeType.CLASS);
+        assertThat(foo.getSum()).isEqualTo(17);
+        assertThat(foo.getMethodCount()).isEqualTo(2);
+        assertThat(tree.find("com.acme").getType()).isEqualTo(MethodTreeNodeType.PACKAGE);
+        assertThat(tree.find("com.acme.Foo.bar").getType()).isEqualTo(MethodTreeNodeType.METHOD);
+        assertThat(tree.find("com.acme.Foo.bar").getPath()).isEqualTo("com.acme.Foo.bar");
+        assertThat(tree.find("com.acme.Bar")).isNull();
+    }
+
+    @Test
+    void addMethodsWithoutEnergy() {
+        MethodTree tree = new MethodTree(0);
+        tree.add("com.acme.Foo.bar", 10);
+
+        tree.addAll(List.of("com.acme.Foo.bar", "com.acme.Foo.qux"));
+
+        assertThat(tree.find("com.acme.Foo").getSum()).isEqualTo(10);
+        assertThat(tree.find("com.acme.Foo").getMethodCount()).isEqualTo(2);
+    }
+}
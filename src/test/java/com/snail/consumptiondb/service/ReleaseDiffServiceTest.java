@@ -0,0 +1,81 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.ReleaseMethodTotal;
+import com.snail.consumptiondb.service.dto.MethodDiffDTO;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class ReleaseDiffServiceTest {
+
+    private static final long BASE = 1L;
+
+    private static final long TARGET = 2L;
+
+    private ConsumptionRollupRepository consumptionRollupRepository;
+
+    private ReleaseDiffService releaseDiffService;
+
+    @BeforeEach
+    public void setup() {
+        consumptionRollupRepository = mock(ConsumptionRollupRepository.class);
+        when(consumptionRollupRepository.findMethodTotals(List.of(BASE, TARGET), Scope.APP, null))
+            .thenReturn(
+                List.of(
+                    new ReleaseMethodTotal(TARGET, "added", 2, 30L),
+                    new ReleaseMethodTotal(BASE, "kept", 4, 40L),
+                    new ReleaseMethodTotal(TARGET, "kept", 2, 60L),
+                    new ReleaseMethodTotal(BASE, "removed", 1, 10L),
+                    new ReleaseMethodTotal(BASE, "unused", 0, null),
+                    new ReleaseMethodTotal(TARGET, "unused", 0, null)
+                )
+            );
+        releaseDiffService = new ReleaseDiffService(consumptionRollupRepository);
+    }
+
+    @Test
+    void diffSums() {
+        List<MethodDiffDTO> diff = releaseDiffService.diff(BASE, TARGET, Scope.APP, null, ReleaseDiffMetric.SUM);
+
+        assertThat(diff).extracting(MethodDiffDTO::getMethodName).containsExactly("added", "kept", "removed", "unused");
+        assertThat(diff)
+            .extracting(MethodDiffDTO::getStatus)
+            .containsExactly(
+                MethodDiffDTO.Status.ADDED,
+                MethodDiffDTO.Status.COMMON,
+                MethodDiffDTO.Status.REMOVED,
+                MethodDiffDTO.Status.COMMON
+            );
+        assertThat(diff).extracting(MethodDiffDTO::getDelta).containsExactly(30.0, 20.0, -10.0, null);
+        assertThat(diff).extracting(MethodDiffDTO::getRelativeDelta).containsExactly(null, 0.5, null, null);
+    }
+
+    @Test
+    void diffMeans() {
+        List<MethodDiffDTO> diff = releaseDiffService.diff(BASE, TARGET, Scope.APP, null, ReleaseDiffMetric.MEAN);
+
+        assertThat(diff.get(1).getBaseValue()).isEqualTo(10.0);
+        assertThat(diff.get(1).getTargetValue()).isEqualTo(30.0);
+        assertThat(diff.get(1).getRelativeDelta()).isEqualTo(2.0);
+    }
+
+    @Test
+    void sortDiffs() {
+        List<MethodDiffDTO> diff = new ArrayList<>(releaseDiffService.diff(BASE, TARGET, Scope.APP, null, ReleaseDiffMetric.SUM));
+
+        diff.sort(ReleaseDiffService.comparatorOf(Sort.by(Sort.Direction.DESC, "delta")));
+        assertThat(diff).extracting(MethodDiffDTO::getMethodName).containsExactly("added", "kept", "removed", "unused");
+        diff.sort(ReleaseDiffService.comparatorOf(Sort.by(Sort.Direction.ASC, "delta")));
+        assertThat(diff).extracting(MethodDiffDTO::getMethodName).containsExactly("removed", "kept", "added", "unused");
+        assertThatThrownBy(() -> ReleaseDiffService.comparatorOf(Sort.by("value"))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
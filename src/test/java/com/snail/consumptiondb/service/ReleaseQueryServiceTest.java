@@ -0,0 +1,78 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.repository.ReleaseMethodRow;
+import com.snail.consumptiondb.repository.ReleaseRepository;
+import com.snail.consumptiondb.repository.ReleaseRow;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import com.snail.consumptiondb.service.dto.ReleaseDTO;
+import com.snail.consumptiondb.service.mapper.MethodMapperImpl;
+import com.snail.consumptiondb.service.mapper.ReleaseMapperImpl;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+class ReleaseQueryServiceTest {
+
+    private final ProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+
+    private ReleaseRepository releaseRepository;
+
+    private ReleaseQueryService releaseQueryService;
+
+    @BeforeEach
+    public void setup() {
+        releaseRepository = mock(ReleaseRepository.class);
+        when(releaseRepository.findAllRows(any()))
+            .thenReturn(new PageImpl<>(List.of(release(1L, "1.0"), release(2L, "2.0")), PageRequest.of(0, 2), 3));
+        releaseQueryService =
+            new ReleaseQueryService(releaseRepository, mock(MethodRepository.class), new ReleaseMapperImpl(), new MethodMapperImpl());
+    }
+
+    @Test
+    void embedFirstMethods() {
+        when(releaseRepository.findFirstMethods(Set.of(1L, 2L), ReleaseQueryService.MAX_EMBEDDED_METHODS))
+            .thenReturn(List.of(method(1L, 10L, "Foo.bar()", 500L), method(1L, 11L, "Foo.baz()", 500L)));
+
+        List<ReleaseDTO> releases = releaseQueryService.findAll(PageRequest.of(0, 2), true).getContent();
+
+        assertThat(releases).extracting(ReleaseDTO::getName).containsExactly("1.0", "2.0");
+        assertThat(releases.get(0).getMethods()).extracting(MethodDTO::getName).containsExactly("Foo.bar()", "Foo.baz()");
+        assertThat(releases.get(0).getMethodCount()).isEqualTo(500L);
+        assertThat(releases.get(1).getMethods()).isEmpty();
+        assertThat(releases.get(1).getMethodCount()).isZero();
+    }
+
+    @Test
+    void skipMethodsUnlessEagerlyLoaded() {
+        List<ReleaseDTO> releases = releaseQueryService.findAll(PageRequest.of(0, 2), false).getContent();
+
+        assertThat(releases).extracting(ReleaseDTO::getMethods).containsOnlyNulls();
+        verify(releaseRepository, never()).findFirstMethods(any(), anyInt());
+    }
+
+    private ReleaseRow release(Long id, String name) {
+        return projections.createProjection(ReleaseRow.class, Map.of("id", id, "name", name));
+    }
+
+    private ReleaseMethodRow method(Long releaseId, Long id, String name, Long methodCount) {
+        return projections.createProjection(
+            ReleaseMethodRow.class,
+            Map.of("releaseId", releaseId, "id", id, "name", name, "methodCount", methodCount)
+        );
+    }
+}
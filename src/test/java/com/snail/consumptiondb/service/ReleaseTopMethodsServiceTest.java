@@ -0,0 +1,77 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.repository.ConsumptionAggregateRow;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.service.dto.ConsumptionAggregateDTO;
+import com.snail.consumptiondb.service.mapper.ConsumptionAggregateMapperImpl;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReleaseTopMethodsServiceTest {
+
+    private static final long RELEASE_ID = 1L;
+
+    private ReleaseTopMethodsService releaseTopMethodsService;
+
+    @BeforeEach
+    public void setup() {
+        ConsumptionRollupRepository consumptionRollupRepository = mock(ConsumptionRollupRepository.class);
+        List<ConsumptionAggregateRow> aggregates = List.of(
+            aggregate(1L, 10, 100L, 20L),
+            aggregate(2L, 2, 60L, 50L),
+            aggregate(3L, 1, 5L, 5L),
+            aggregate(4L, 0, null, null),
+            aggregate(5L, 4, 100L, 40L)
+        );
+        doAnswer(invocation -> {
+                Consumer<ConsumptionAggregateRow> action = invocation.getArgument(3);
+                aggregates.forEach(action);
+                return null;
+            })
+            .when(consumptionRollupRepository)
+            .streamMethodAggregates(eq(RELEASE_ID), isNull(), isNull(), any());
+        releaseTopMethodsService = new ReleaseTopMethodsService(consumptionRollupRepository, new ConsumptionAggregateMapperImpl());
+    }
+
+    @Test
+    void rankMethodsByMetric() {
+        assertThat(topMethodIds(3, TopMethodsMetric.TOTAL)).containsExactly(1L, 5L, 2L);
+        assertThat(topMethodIds(2, TopMethodsMetric.MEAN)).containsExactly(2L, 5L);
+        assertThat(topMethodIds(1, TopMethodsMetric.PEAK)).containsExactly(2L);
+        assertThat(topMethodIds(10, TopMethodsMetric.TOTAL)).containsExactly(1L, 5L, 2L, 3L, 4L);
+    }
+
+    @Test
+    void boundHeapSize() {
+        PriorityQueue<Integer> heap = new PriorityQueue<>();
+        for (int i = 0; i < 100; i++) {
+            ReleaseTopMethodsService.offer(heap, 3, Integer::compare, (i * 37) % 100);
+            assertThat(heap).hasSizeLessThanOrEqualTo(3);
+        }
+        assertThat(heap).containsExactlyInAnyOrder(97, 98, 99);
+    }
+
+    private List<Long> topMethodIds(int k, TopMethodsMetric metric) {
+        return releaseTopMethodsService
+            .topMethods(new Release().id(RELEASE_ID), k, metric, null, null)
+            .stream()
+            .map(ConsumptionAggregateDTO::getMethodId)
+            .collect(Collectors.toList());
+    }
+
+    private static ConsumptionAggregateRow aggregate(long methodId, long count, Long sum, Long max) {
+        return new ConsumptionAggregateRow(methodId, RELEASE_ID, null, null, count, sum, null, max);
+    }
+}
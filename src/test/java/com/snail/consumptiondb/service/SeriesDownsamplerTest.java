@@ -0,0 +1,60 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SeriesDownsamplerTest {
+
+    private static final int SAMPLES = 10_000;
+
+    @Test
+    void lttbKeepsEndsAndSpikes() {
+        SeriesDownsampler downsampler = SeriesDownsampling.LTTB.downsampler(0, SAMPLES, 100);
+        for (int t = 0; t < SAMPLES; t++) {
+            downsampler.add(t, t == 4_321 ? 1_000 : t % 10);
+        }
+
+        SeriesPoints series = downsampler.finish();
+
+        assertThat(downsampler.getCount()).isEqualTo(SAMPLES);
+        assertThat(series.size()).isEqualTo(100);
+        assertThat(series.getTimestamp(0)).isZero();
+        assertThat(series.getTimestamp(series.size() - 1)).isEqualTo(SAMPLES - 1);
+        assertThat(series.values()).contains(1_000);
+        assertThat(series.timestamps()).isSorted();
+    }
+
+    @Test
+    void lttbKeepsShortSeries() {
+        SeriesDownsampler downsampler = SeriesDownsampling.LTTB.downsampler(0, 100, 10);
+        downsampler.add(5, 1);
+        downsampler.add(50, 2);
+        downsampler.add(51, 3);
+
+        SeriesPoints series = downsampler.finish();
+
+        assertThat(series.timestamps()).containsExactly(5, 50, 51);
+        assertThat(series.values()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void lttbOfEmptySeries() {
+        assertThat(SeriesDownsampling.LTTB.downsampler(0, 100, 10).finish().isEmpty()).isTrue();
+        assertThat(SeriesDownsampling.MIN_MAX.downsampler(0, 100, 10).finish().isEmpty()).isTrue();
+    }
+
+    @Test
+    void minMaxKeepsExtremesInOrder() {
+        SeriesDownsampler downsampler = SeriesDownsampling.MIN_MAX.downsampler(0, SAMPLES, 20);
+        for (int t = 0; t < SAMPLES; t++) {
+            downsampler.add(t, t == 4_321 ? -1_000 : t == 4_322 ? 1_000 : t % 10);
+        }
+
+        SeriesPoints series = downsampler.finish();
+
+        assertThat(series.size()).isEqualTo(20);
+        assertThat(series.timestamps()).isSorted();
+        assertThat(series.values()).contains(-1_000, 1_000);
+    }
+}
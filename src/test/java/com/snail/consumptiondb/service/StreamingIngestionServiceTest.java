@@ -0,0 +1,77 @@
+package com.snail.consumptiondb.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.snail.consumptiondb.config.ApplicationProperties;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.service.dto.IngestionReportDTO;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StreamingIngestionServiceTest {
+
+    private static final String RECORD = "{\"value\":42,\"scope\":\"APP\",\"monitoringType\":\"RUNTIME\",\"timestamp\":\"2023-05-05T13:54:07Z\"}\n";
+
+    private ConsumptionIngestionService consumptionIngestionService;
+
+    private StreamingIngestionService streamingIngestionService;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getIngestion().setStreamChunkSize(2);
+        consumptionIngestionService = mock(ConsumptionIngestionService.class);
+        when(consumptionIngestionService.saveAll(anyList()))
+            .thenAnswer(invocation -> {
+                List<Consumption> chunk = invocation.getArgument(0);
+                return new IngestionReportDTO(chunk.size(), chunk.size(), 0);
+            });
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        streamingIngestionService = new StreamingIngestionService(objectMapper, consumptionIngestionService, applicationProperties);
+    }
+
+    @Test
+    void testRecordsAreWrittenInFixedSizeChunks() throws Exception {
+        IngestionReportDTO report = streamingIngestionService.ingestConsumptions(ndjson(RECORD.repeat(5)));
+
+        assertThat(report.getReceived()).isEqualTo(5);
+        assertThat(report.getPersisted()).isEqualTo(5);
+        // Two full chunks, then the remainder
+        verify(consumptionIngestionService, times(3)).saveAll(anyList());
+    }
+
+    @Test
+    void testMalformedRecordReportsLineAndCommittedRecords() {
+        String upload = RECORD.repeat(3) + "{\"value\":\n";
+
+        assertThatThrownBy(() -> streamingIngestionService.ingestConsumptions(ndjson(upload)))
+            .isInstanceOf(InvalidIngestionRecordException.class)
+            .hasFieldOrPropertyWithValue("committed", 2L);
+    }
+
+    @Test
+    void testRecordWithIdIsRejected() {
+        String upload = "{\"id\":1,\"value\":42}\n" + RECORD;
+
+        assertThatThrownBy(() -> streamingIngestionService.ingestConsumptions(ndjson(upload)))
+            .isInstanceOf(InvalidIngestionRecordException.class)
+            .hasFieldOrPropertyWithValue("lineNumber", 1L);
+        verify(consumptionIngestionService, never()).saveAll(anyList());
+    }
+
+    private static ByteArrayInputStream ndjson(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
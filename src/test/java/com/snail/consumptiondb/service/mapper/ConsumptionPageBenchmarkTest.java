@@ -0,0 +1,174 @@
+package com.snail.consumptiondb.service.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionExportRow;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of a {@code GET /consumptions} page served as entities against the same page served as DTOs mapped from
+ * scalar rows: bytes of JSON and heap allocated per page, from the loaded columns to the response body. Entities are
+ * built detached, so the cost of the persistence context is not even counted against them.
+ * <p>
+ * Disabled by default, run it with {@code ./mvnw test -Dtest=ConsumptionPageBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConsumptionPageBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumptionPageBenchmarkTest.class);
+
+    private static final int PAGE_SIZE = 1_000;
+
+    private static final int WARMUP_ITERATIONS = 200;
+
+    private static final int ITERATIONS = 1_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new Hibernate5Module())
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final ConsumptionMapper consumptionMapper = new ConsumptionMapperImpl();
+
+    @Test
+    @Timeout(300)
+    void compareEntityAndDtoPages() throws IOException {
+        List<Row> rows = rows();
+
+        Result entities = measure(() -> objectMapper.writeValueAsBytes(toEntities(rows)));
+        Result dtos = measure(() -> objectMapper.writeValueAsBytes(consumptionMapper.toDto(new ArrayList<>(rows))));
+        log.info("Entities: {} bytes of JSON and {} bytes allocated per page", entities.bytesOfJson, entities.bytesAllocated);
+        log.info("DTOs: {} bytes of JSON and {} bytes allocated per page", dtos.bytesOfJson, dtos.bytesAllocated);
+
+        assertThat(dtos.bytesOfJson).isLessThan(entities.bytesOfJson);
+        assertThat(dtos.bytesAllocated).isLessThan(entities.bytesAllocated);
+    }
+
+    private static List<Consumption> toEntities(List<Row> rows) {
+        List<Consumption> consumptions = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Consumption consumption = new Consumption()
+                .value(row.value)
+                .scope(row.scope)
+                .monitoringType(row.monitoringType)
+                .timestamp(row.timestamp)
+                .method(new Method().id(row.methodId).name("com.example.Service.method" + row.methodId + "()"));
+            consumption.setId(row.id);
+            consumptions.add(consumption);
+        }
+        return consumptions;
+    }
+
+    private Result measure(Page page) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int bytesOfJson = page.serialize().length;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            page.serialize();
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            page.serialize();
+        }
+        return new Result(bytesOfJson, (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / ITERATIONS);
+    }
+
+    private static List<Row> rows() {
+        Random random = new Random(42);
+        Instant timestamp = Instant.parse("2023-05-05T00:00:00Z");
+        List<Row> rows = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            timestamp = timestamp.plusMillis(1 + random.nextInt(10));
+            long value = random.nextInt(100_000);
+            rows.add(new Row(i + 1L, value, Scope.APP, MonitoringType.RUNTIME, timestamp, 1L + random.nextInt(200)));
+        }
+        return rows;
+    }
+
+    private interface Page {
+        byte[] serialize() throws IOException;
+    }
+
+    private static final class Result {
+
+        private final int bytesOfJson;
+
+        private final long bytesAllocated;
+
+        private Result(int bytesOfJson, long bytesAllocated) {
+            this.bytesOfJson = bytesOfJson;
+            this.bytesAllocated = bytesAllocated;
+        }
+    }
+
+    private static final class Row implements ConsumptionExportRow {
+
+        private final Long id;
+
+        private final Long value;
+
+        private final Scope scope;
+
+        private final MonitoringType monitoringType;
+
+        private final Instant timestamp;
+
+        private final Long methodId;
+
+        private Row(Long id, Long value, Scope scope, MonitoringType monitoringType, Instant timestamp, Long methodId) {
+            this.id = id;
+            this.value = value;
+            this.scope = scope;
+            this.monitoringType = monitoringType;
+            this.timestamp = timestamp;
+            this.methodId = methodId;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getValue() {
+            return value;
+        }
+
+        @Override
+        public Scope getScope() {
+            return scope;
+        }
+
+        @Override
+        public MonitoringType getMonitoringType() {
+            return monitoringType;
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public Long getMethodId() {
+            return methodId;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.snail.consumptiondb.service.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.snail.consumptiondb.repository.MethodRow;
+import com.snail.consumptiondb.service.dto.MethodDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MethodMapperTest {
+
+    private MethodMapper methodMapper;
+
+    @BeforeEach
+    public void setUp() {
+        methodMapper = new MethodMapperImpl();
+    }
+
+    @Test
+    void mapRowsToDtos() {
+        MethodDTO method = methodMapper.toDto(row(1L, "Foo.bar()", 2L, 3L));
+
+        assertThat(method.getId()).isEqualTo(1L);
+        assertThat(method.getName()).isEqualTo("Foo.bar()");
+        assertThat(method.getMethod().getId()).isEqualTo(2L);
+        assertThat(method.getMethod().getName()).isNull();
+        assertThat(method.getConsumption().getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void mapMissingRelationshipsToNull() {
+        MethodDTO method = methodMapper.toDto(row(1L, "Foo.bar()", null, null));
+
+        assertThat(method.getMethod()).isNull();
+        assertThat(method.getConsumption()).isNull();
+    }
+
+    private static MethodRow row(Long id, String name, Long methodId, Long consumptionId) {
+        return new MethodRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Long getMethodId() {
+                return methodId;
+            }
+
+            @Override
+            public Long getConsumptionId() {
+                return consumptionId;
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.snail.consumptiondb.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.snail.consumptiondb.service.dto.ConsumptionDTO;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class ConsumptionCursorTest {
+
+    @Test
+    void roundTrip() {
+        ConsumptionDTO consumption = new ConsumptionDTO();
+        consumption.setId(42L);
+        consumption.setTimestamp(Instant.parse("2023-05-05T03:42:54.123456Z"));
+
+        ConsumptionCursor cursor = ConsumptionCursor.decode(ConsumptionCursor.after(consumption).encode());
+
+        assertThat(cursor.getTimestamp()).isEqualTo(consumption.getTimestamp());
+        assertThat(cursor.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void roundTripNullTimestamp() {
+        ConsumptionDTO consumption = new ConsumptionDTO();
+        consumption.setId(42L);
+
+        ConsumptionCursor cursor = ConsumptionCursor.decode(ConsumptionCursor.after(consumption).encode());
+
+        assertThat(cursor.getTimestamp()).isNull();
+        assertThat(cursor.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void rejectInvalidCursors() {
+        assertThatThrownBy(() -> ConsumptionCursor.decode("not-a-cursor")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ConsumptionCursor.decode("LDQy")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,121 @@
+package com.snail.consumptiondb.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.enumeration.MonitoringType;
+import com.snail.consumptiondb.domain.enumeration.Scope;
+import com.snail.consumptiondb.repository.ConsumptionRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Throughput benchmark of {@code POST /api/consumptions} against {@code POST /api/consumptions/batch}.
+ * <p>
+ * Requests are not wrapped in a test transaction, so every call commits like it would in production.
+ * Disabled by default, run it with {@code ./mvnw verify -Dit.test=ConsumptionIngestionBenchmarkIT -Dbenchmark=true}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ConsumptionIngestionBenchmarkIT {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumptionIngestionBenchmarkIT.class);
+
+    private static final int ROWS = 5_000;
+
+    private static final int WARMUP_ROWS = 500;
+
+    private static final Instant BENCHMARK_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+
+    @Autowired
+    private ConsumptionRepository consumptionRepository;
+
+    @Autowired
+    private MockMvc restConsumptionMockMvc;
+
+    @AfterEach
+    void cleanup() {
+        consumptionRepository.deleteAllInBatch(
+            consumptionRepository
+                .findAll()
+                .stream()
+                .filter(consumption -> BENCHMARK_EPOCH.equals(consumption.getTimestamp()))
+                .collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    void compareSingleRowAndBatchIngestion() throws Exception {
+        postOneByOne(samples(WARMUP_ROWS));
+        postAsBatch(samples(WARMUP_ROWS));
+
+        long singleRowNanos = postOneByOne(samples(ROWS));
+        long batchNanos = postAsBatch(samples(ROWS));
+
+        log.info(
+            "Ingested {} consumptions: single-row endpoint {} rows/s, batch endpoint {} rows/s",
+            ROWS,
+            rowsPerSecond(singleRowNanos),
+            rowsPerSecond(batchNanos)
+        );
+        long benchmarkRows = consumptionRepository
+            .findAll()
+            .stream()
+            .filter(consumption -> BENCHMARK_EPOCH.equals(consumption.getTimestamp()))
+            .count();
+        assertThat(benchmarkRows).isEqualTo(2L * (ROWS + WARMUP_ROWS));
+    }
+
+    private long postOneByOne(List<Consumption> consumptions) throws Exception {
+        long start = System.nanoTime();
+        for (Consumption consumption : consumptions) {
+            restConsumptionMockMvc
+                .perform(
+                    post("/api/consumptions").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(consumption))
+                )
+                .andExpect(status().isCreated());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long postAsBatch(List<Consumption> consumptions) throws Exception {
+        long start = System.nanoTime();
+        restConsumptionMockMvc
+            .perform(
+                post("/api/consumptions/batch").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(consumptions))
+            )
+            .andExpect(status().isCreated());
+        return System.nanoTime() - start;
+    }
+
+    private static List<Consumption> samples(int count) {
+        List<Consumption> consumptions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            consumptions.add(
+                new Consumption().value((long) i).scope(Scope.APP).monitoringType(MonitoringType.RUNTIME).timestamp(BENCHMARK_EPOCH)
+            );
+        }
+        return consumptions;
+    }
+
+    private static long rowsPerSecond(long nanos) {
+        return ROWS * 1_000_000_000L / Math.max(nanos, 1L);
+    }
+}
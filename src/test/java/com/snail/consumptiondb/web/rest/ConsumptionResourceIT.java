@@ -1,28 +1,53 @@
 package com.snail.consumptiondb.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.snail.consumptiondb.IntegrationTest;
 import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Release;
 import com.snail.consumptiondb.domain.enumeration.MonitoringType;
 import com.snail.consumptiondb.domain.enumeration.Scope;
 import com.snail.consumptiondb.repository.ConsumptionRepository;
+import com.snail.consumptiondb.repository.ConsumptionRollupRepository;
+import com.snail.consumptiondb.repository.MethodRepository;
+import com.snail.consumptiondb.repository.ReleaseRepository;
+import com.snail.consumptiondb.security.AuthoritiesConstants;
+import com.snail.consumptiondb.service.BinaryIngestionService;
+import com.snail.consumptiondb.service.ConsumptionBlockWriter;
+import com.snail.consumptiondb.service.IngestionIdempotencyService;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -47,6 +72,16 @@ class ConsumptionResourceIT {
 
     private static final String ENTITY_API_URL = "/api/consumptions";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
+    private static final String ENTITY_API_URL_INGEST = ENTITY_API_URL + "/ingest";
+    private static final String ENTITY_API_URL_IMPORT = ENTITY_API_URL + "/import";
+    private static final String ENTITY_API_URL_BATCH = ENTITY_API_URL + "/batch";
+    private static final String ENTITY_API_URL_EXPORT = ENTITY_API_URL + "/export";
+    private static final String ENTITY_API_URL_AGGREGATES = ENTITY_API_URL + "/aggregates";
+    private static final String ENTITY_API_URL_SERIES = ENTITY_API_URL + "/series";
+    private static final String ENTITY_API_URL_PERCENTILES = ENTITY_API_URL + "/percentiles";
+    private static final String ENTITY_API_URL_HISTOGRAM = ENTITY_API_URL + "/histogram";
+    private static final String ENTITY_API_URL_BULK_LOAD = "/api/admin/consumptions/bulk-load";
+    private static final String ENTITY_API_URL_ROLLUP_REBUILD = "/api/admin/consumptions/rollups/rebuild";
 
     private static Random random = new Random();
     private static AtomicLong count = new AtomicLong(random.nextInt() + (2 * Integer.MAX_VALUE));
@@ -54,6 +89,15 @@ class ConsumptionResourceIT {
     @Autowired
     private ConsumptionRepository consumptionRepository;
 
+    @Autowired
+    private MethodRepository methodRepository;
+
+    @Autowired
+    private ReleaseRepository releaseRepository;
+
+    @Autowired
+    private ConsumptionRollupRepository consumptionRollupRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -116,6 +160,25 @@ class ConsumptionResourceIT {
         assertThat(testConsumption.getTimestamp()).isEqualTo(DEFAULT_TIMESTAMP);
     }
 
+    @Test
+    @Transactional
+    void createConsumptionTwiceReturnsTheStoredOne() throws Exception {
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(consumption)))
+            .andExpect(status().isCreated());
+        Long id = consumptionRepository.findAll().get(databaseSizeBeforeCreate).getId();
+
+        consumption.setValue(UPDATED_VALUE);
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(consumption)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(id.intValue()))
+            .andExpect(jsonPath("$.value").value(DEFAULT_VALUE.intValue()));
+
+        assertThat(consumptionRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
     @Test
     @Transactional
     void createConsumptionWithExistingId() throws Exception {
@@ -134,6 +197,365 @@ class ConsumptionResourceIT {
         assertThat(consumptionList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    void checkTimestampIsRequired() throws Exception {
+        int databaseSizeBeforeTest = consumptionRepository.findAll().size();
+        // set the field null
+        consumption.setTimestamp(null);
+
+        // Create the Consumption, which fails.
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(consumption)))
+            .andExpect(status().isBadRequest());
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(List.of(consumption)))
+            )
+            .andExpect(status().isBadRequest());
+
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeTest);
+    }
+
+    @Test
+    @Transactional
+    void createConsumptionBatch() throws Exception {
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        List<Consumption> batch = List.of(createEntity(em), createEntity(em).scope(UPDATED_SCOPE), createUpdatedEntity(em));
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(batch)))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(3))
+            .andExpect(jsonPath("$.persisted").value(3));
+
+        // Validate the Consumptions in the database
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 3);
+        Consumption testConsumption = consumptionList.get(consumptionList.size() - 1);
+        assertThat(testConsumption.getValue()).isEqualTo(UPDATED_VALUE);
+        assertThat(testConsumption.getScope()).isEqualTo(UPDATED_SCOPE);
+        assertThat(testConsumption.getMonitoringType()).isEqualTo(UPDATED_MONITORING_TYPE);
+        assertThat(testConsumption.getTimestamp()).isEqualTo(UPDATED_TIMESTAMP);
+    }
+
+    @Test
+    @Transactional
+    void createConsumptionBatchIgnoresDuplicates() throws Exception {
+        Method method = MethodResourceIT.createEntity(em);
+        em.persist(method);
+        em.flush();
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        Consumption sample = createEntity(em).method(method);
+        Consumption retry = createEntity(em).method(method).value(UPDATED_VALUE);
+
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(sample)))
+            )
+            .andExpect(status().isCreated());
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(retry)))
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(1))
+            .andExpect(jsonPath("$.persisted").value(0));
+
+        // The retry is a no-op: the first value written wins
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 1);
+        assertThat(consumptionList.get(consumptionList.size() - 1).getValue()).isEqualTo(DEFAULT_VALUE);
+    }
+
+    @Test
+    @Transactional
+    void createConsumptionBatchIgnoresDuplicatesWithoutMethod() throws Exception {
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        byte[] batch = TestUtil.convertObjectToJsonBytes(List.of(createEntity(em).monitoringType(null), createUpdatedEntity(em)));
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content(batch))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.persisted").value(2));
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content(batch))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(2))
+            .andExpect(jsonPath("$.persisted").value(0));
+
+        // A missing method or monitoring type is part of the natural key too
+        assertThat(consumptionRepository.findAll()).hasSize(databaseSizeBeforeCreate + 2);
+    }
+
+    @Test
+    @Transactional
+    void createConsumptionBatchWithIdempotencyKey() throws Exception {
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        byte[] batch = TestUtil.convertObjectToJsonBytes(List.of(createEntity(em), createUpdatedEntity(em)));
+        String idempotencyKey = UUID.randomUUID().toString();
+
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(IngestionIdempotencyService.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                    .content(batch)
+            )
+            .andExpect(status().isCreated());
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(IngestionIdempotencyService.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                    .content(batch)
+            )
+            .andExpect(status().isOk())
+            .andExpect(header().string(IngestionIdempotencyService.IDEMPOTENT_REPLAYED_HEADER, "true"))
+            .andExpect(jsonPath("$.persisted").value(2));
+
+        assertThat(consumptionRepository.findAll()).hasSize(databaseSizeBeforeCreate + 2);
+    }
+
+    @Test
+    @Transactional
+    void createConsumptionBatchWithExistingId() throws Exception {
+        // A batch containing an entity with an existing ID must be rejected as a whole
+        Consumption existing = createEntity(em);
+        existing.setId(1L);
+        List<Consumption> batch = List.of(createEntity(em), existing);
+
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(batch)))
+            .andExpect(status().isBadRequest());
+
+        // Validate the Consumption in the database
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    void streamConsumptions() throws Exception {
+        // Streamed uploads commit their own transactions, so this test cannot rely on a rollback
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        byte[] body = TestUtil.convertObjectsToNdjsonBytes(createEntity(em), createUpdatedEntity(em));
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_NDJSON).content(body))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(2))
+            .andExpect(jsonPath("$.persisted").value(2));
+
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 2);
+        Consumption testConsumption = consumptionList.get(consumptionList.size() - 1);
+        assertThat(testConsumption.getValue()).isEqualTo(UPDATED_VALUE);
+        assertThat(testConsumption.getTimestamp()).isEqualTo(UPDATED_TIMESTAMP);
+        consumptionRepository.deleteAllInBatch(consumptionList.subList(databaseSizeBeforeCreate, consumptionList.size()));
+    }
+
+    @Test
+    @Transactional
+    void importConsumptionsForUnknownRelease() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "run.zip", "application/zip", new byte[0]);
+
+        restConsumptionMockMvc
+            .perform(
+                multipart(ENTITY_API_URL_IMPORT)
+                    .file(file)
+                    .param("releaseId", String.valueOf(Long.MAX_VALUE))
+                    .param("scope", DEFAULT_SCOPE.name())
+                    .param("monitoringType", DEFAULT_MONITORING_TYPE.name())
+            )
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importConsumptions() throws Exception {
+        // Imports commit their own transactions, so this test cannot rely on a rollback
+        Release release = releaseRepository.saveAndFlush(ReleaseResourceIT.createEntity(em));
+        Instant timestamp = UPDATED_TIMESTAMP.minusSeconds(3_600);
+        byte[] archive = zip(
+            "run/a.csv",
+            "method,value,timestamp\ncom.acme.A.run(int, long),5," + timestamp.toEpochMilli() + "\ncom.acme.B.run(),7," + timestamp + "\n",
+            "run/b.csv",
+            "com.acme.A.run(int, long),11," + timestamp.plusSeconds(1).toEpochMilli() + "\n"
+        );
+        try {
+            restConsumptionMockMvc
+                .perform(importRun(release, archive))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.persisted").value(3));
+
+            List<Method> methods = methodRepository.findAllByReleaseIdAndNameIn(
+                release.getId(),
+                List.of("com.acme.A.run(int, long)", "com.acme.B.run()")
+            );
+            assertThat(methods).hasSize(2);
+            assertThat(importedConsumptions(methods))
+                .extracting(Consumption::getValue, Consumption::getScope, Consumption::getMonitoringType)
+                .containsExactlyInAnyOrder(
+                    tuple(5L, DEFAULT_SCOPE, DEFAULT_MONITORING_TYPE),
+                    tuple(7L, DEFAULT_SCOPE, DEFAULT_MONITORING_TYPE),
+                    tuple(11L, DEFAULT_SCOPE, DEFAULT_MONITORING_TYPE)
+                );
+        } finally {
+            deleteImportedRun(release);
+        }
+    }
+
+    @Test
+    void importConsumptionsWithMalformedLine() throws Exception {
+        Release release = releaseRepository.saveAndFlush(ReleaseResourceIT.createEntity(em));
+        byte[] archive = zip("run/a.csv", "method,value,timestamp\ncom.acme.A.run(),5,0\ncom.acme.A.run(),five,0\n");
+        try {
+            restConsumptionMockMvc
+                .perform(importRun(release, archive))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("error.invalidrecord"))
+                .andExpect(jsonPath("$.title").value(containsString("line 3")));
+
+            // Lines are validated before anything is written
+            assertThat(methodRepository.findAllByReleaseIdAndNameIn(release.getId(), List.of("com.acme.A.run()"))).isEmpty();
+        } finally {
+            deleteImportedRun(release);
+        }
+    }
+
+    @Test
+    void ingestConsumptions() throws Exception {
+        // The pipeline commits its own transactions, so this test cannot rely on a rollback
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        byte[] body = TestUtil.convertObjectsToNdjsonBytes(createEntity(em), createUpdatedEntity(em));
+
+        MvcResult mvcResult = restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_INGEST).param("ack", "COMMIT").contentType(MediaType.APPLICATION_NDJSON).content(body))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        restConsumptionMockMvc
+            .perform(asyncDispatch(mvcResult))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(2))
+            .andExpect(jsonPath("$.persisted").value(2))
+            .andExpect(jsonPath("$.rejected").value(0));
+
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 2);
+        consumptionRepository.deleteAllInBatch(consumptionList.subList(databaseSizeBeforeCreate, consumptionList.size()));
+    }
+
+    @Test
+    void streamGzipEncodedConsumptions() throws Exception {
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        byte[] body = TestUtil.gzip(
+            TestUtil.convertObjectsToNdjsonBytes(createEntity(em), createUpdatedEntity(em), createEntity(em).scope(UPDATED_SCOPE))
+        );
+
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH).contentType(MediaType.APPLICATION_NDJSON).header(HttpHeaders.CONTENT_ENCODING, "gzip").content(body)
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.persisted").value(3));
+
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 3);
+        consumptionRepository.deleteAllInBatch(consumptionList.subList(databaseSizeBeforeCreate, consumptionList.size()));
+    }
+
+    @Test
+    void streamConsumptionsWithExistingId() throws Exception {
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        Consumption existing = createEntity(em);
+        existing.setId(1L);
+
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BATCH)
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content(TestUtil.convertObjectsToNdjsonBytes(createEntity(em), existing))
+            )
+            .andExpect(status().isBadRequest());
+
+        // The faulty record is in the first chunk, so nothing was committed
+        assertThat(consumptionRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    void streamConsumptionBlocks() throws Exception {
+        // Binary uploads commit their own transactions, so this test cannot rely on a rollback
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        byte[] body = ConsumptionBlockWriter.encode(List.of(createEntity(em), createUpdatedEntity(em)), 100);
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(BinaryIngestionService.MEDIA_TYPE).content(body))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(2))
+            .andExpect(jsonPath("$.persisted").value(2));
+
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 2);
+        Consumption testConsumption = consumptionList.get(consumptionList.size() - 1);
+        assertThat(testConsumption.getValue()).isEqualTo(UPDATED_VALUE);
+        assertThat(testConsumption.getScope()).isEqualTo(UPDATED_SCOPE);
+        assertThat(testConsumption.getMonitoringType()).isEqualTo(UPDATED_MONITORING_TYPE);
+        assertThat(testConsumption.getTimestamp()).isEqualTo(UPDATED_TIMESTAMP);
+        consumptionRepository.deleteAllInBatch(consumptionList.subList(databaseSizeBeforeCreate, consumptionList.size()));
+    }
+
+    @Test
+    void streamInvalidConsumptionBlocks() throws Exception {
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BATCH).contentType(BinaryIngestionService.MEDIA_TYPE).content(new byte[] { 1, 2, 3, 4 }))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void bulkLoadConsumptions() throws Exception {
+        // Bulk loads commit their own transactions, so this test cannot rely on a rollback
+        int databaseSizeBeforeCreate = consumptionRepository.findAll().size();
+        Consumption existing = createEntity(em);
+        existing.setId(1L);
+        byte[] body = TestUtil.convertObjectsToNdjsonBytes(createEntity(em), existing, createUpdatedEntity(em));
+
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_BULK_LOAD).contentType(MediaType.APPLICATION_NDJSON).content(body))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.received").value(3))
+            .andExpect(jsonPath("$.persisted").value(2))
+            .andExpect(jsonPath("$.rejected").value(1));
+
+        List<Consumption> consumptionList = consumptionRepository.findAll();
+        assertThat(consumptionList).hasSize(databaseSizeBeforeCreate + 2);
+        Consumption testConsumption = consumptionList.get(consumptionList.size() - 1);
+        assertThat(testConsumption.getValue()).isEqualTo(UPDATED_VALUE);
+        assertThat(testConsumption.getScope()).isEqualTo(UPDATED_SCOPE);
+        assertThat(testConsumption.getMonitoringType()).isEqualTo(UPDATED_MONITORING_TYPE);
+        assertThat(testConsumption.getTimestamp()).isEqualTo(UPDATED_TIMESTAMP);
+        consumptionRepository.deleteAllInBatch(consumptionList.subList(databaseSizeBeforeCreate, consumptionList.size()));
+    }
+
+    @Test
+    void bulkLoadConsumptionsIsForbiddenToUsers() throws Exception {
+        restConsumptionMockMvc
+            .perform(
+                post(ENTITY_API_URL_BULK_LOAD)
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .content(TestUtil.convertObjectsToNdjsonBytes(createEntity(em)))
+            )
+            .andExpect(status().isForbidden());
+    }
+
     @Test
     @Transactional
     void getAllConsumptions() throws Exception {
@@ -152,6 +574,266 @@ class ConsumptionResourceIT {
             .andExpect(jsonPath("$.[*].timestamp").value(hasItem(DEFAULT_TIMESTAMP.toString())));
     }
 
+    @Test
+    @Transactional
+    void getAllConsumptionsByKeysetPages() throws Exception {
+        Method method = MethodResourceIT.createEntity(em);
+        em.persist(method);
+        Consumption first = createEntity(em).method(method);
+        Consumption second = createEntity(em).method(method).monitoringType(UPDATED_MONITORING_TYPE);
+        Consumption third = createUpdatedEntity(em).method(method);
+        consumptionRepository.saveAll(List.of(first, second, third));
+        em.flush();
+        String filter = "?methodId=" + method.getId() + "&size=2";
+
+        MvcResult firstPage = restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL + filter))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue(), second.getId().intValue())))
+            .andExpect(jsonPath("$.[*].method.id").value(contains(method.getId().intValue(), method.getId().intValue())))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andReturn();
+        String next = firstPage.getResponse().getHeader(HttpHeaders.LINK).replaceAll("<(.*)>.*", "$1");
+
+        restConsumptionMockMvc
+            .perform(get(next))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(third.getId().intValue())))
+            .andExpect(header().doesNotExist(HttpHeaders.LINK));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL + filter + "&monitoringType=" + UPDATED_MONITORING_TYPE + "&from=" + DEFAULT_TIMESTAMP))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue(), third.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    void getAllConsumptionsWithInvalidCursor() throws Exception {
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL + "?cursor=not-a-cursor")).andExpect(status().isBadRequest());
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL + "?size=0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getConsumptionAggregates() throws Exception {
+        Method method = MethodResourceIT.createEntity(em);
+        Method otherMethod = MethodResourceIT.createEntity(em);
+        em.persist(method);
+        em.persist(otherMethod);
+        Release release = ReleaseResourceIT.createEntity(em).addMethod(method);
+        em.persist(release);
+        consumptionRepository.saveAll(
+            List.of(
+                createEntity(em).method(method).value(2L),
+                createEntity(em).method(method).value(6L).timestamp(UPDATED_TIMESTAMP),
+                createUpdatedEntity(em).method(method).value(10L),
+                createEntity(em).method(otherMethod).value(100L)
+            )
+        );
+        em.flush();
+
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_AGGREGATES + "?groupBy=release,scope&releaseId=" + release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].releaseId").value(contains(release.getId().intValue(), release.getId().intValue())))
+            .andExpect(jsonPath("$.[*].scope").value(contains(UPDATED_SCOPE.name(), DEFAULT_SCOPE.name())))
+            .andExpect(jsonPath("$.[*].count").value(contains(1, 2)))
+            .andExpect(jsonPath("$.[*].sum").value(contains(10, 8)))
+            .andExpect(jsonPath("$.[*].min").value(contains(10, 2)))
+            .andExpect(jsonPath("$.[*].max").value(contains(10, 6)))
+            .andExpect(jsonPath("$.[*].mean").value(contains(10.0, 4.0)))
+            .andExpect(jsonPath("$.[0].methodId").doesNotExist());
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_AGGREGATES + "?groupBy=method&scope=" + DEFAULT_SCOPE + "&methodId=" + otherMethod.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].methodId").value(contains(otherMethod.getId().intValue())))
+            .andExpect(jsonPath("$.[*].sum").value(contains(100)));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_AGGREGATES + "?groupBy=method&releaseId=" + release.getId() + "&from=" + UPDATED_TIMESTAMP))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].count").value(contains(2)));
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void getConsumptionAggregatesFromRollups() throws Exception {
+        // The rollups are rebuilt in their own transactions, so this test cannot rely on a rollback
+        Instant day = Instant.parse("2001-02-03T00:00:00Z");
+        Consumption first = createEntity(em).timestamp(day.plusSeconds(61)).value(3L);
+        Consumption second = createEntity(em).timestamp(day.plusSeconds(7_200)).value(5L);
+        consumptionRepository.saveAll(List.of(first, second));
+        String window = "from=" + day + "&to=" + day.plusSeconds(86_400);
+
+        restConsumptionMockMvc.perform(post(ENTITY_API_URL_ROLLUP_REBUILD + "?" + window)).andExpect(status().isNoContent());
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_AGGREGATES + "?groupBy=scope&" + window))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].count").value(contains(2)))
+            .andExpect(jsonPath("$.[*].sum").value(contains(8)))
+            .andExpect(jsonPath("$.[*].min").value(contains(3)))
+            .andExpect(jsonPath("$.[*].max").value(contains(5)));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_AGGREGATES + "?from=" + day.plusSeconds(3_600) + "&to=" + day.plusSeconds(10_800)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].sum").value(contains(5)));
+
+        consumptionRepository.deleteAllInBatch(List.of(first, second));
+        restConsumptionMockMvc.perform(post(ENTITY_API_URL_ROLLUP_REBUILD + "?" + window)).andExpect(status().isNoContent());
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_AGGREGATES + "?" + window))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].count").value(contains(0)));
+    }
+
+    @Test
+    @Transactional
+    void rebuildConsumptionRollupsIsForbiddenToUsers() throws Exception {
+        restConsumptionMockMvc
+            .perform(post(ENTITY_API_URL_ROLLUP_REBUILD + "?from=2001-02-03T00:00:00Z&to=2001-02-04T00:00:00Z"))
+            .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @Transactional
+    void getConsumptionAggregatesWithUnknownDimension() throws Exception {
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL_AGGREGATES + "?groupBy=software")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void getConsumptionPercentilesFromSketches() throws Exception {
+        // The sketches are rebuilt in their own transactions, so this test cannot rely on a rollback
+        Method method = methodRepository.saveAndFlush(MethodResourceIT.createEntity(em));
+        Instant day = Instant.parse("2001-02-03T00:00:00Z");
+        List<Consumption> consumptions = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            consumptions.add(createEntity(em).method(method).timestamp(day.plusSeconds(600L * i)).value((long) i));
+        }
+        consumptionRepository.saveAll(consumptions);
+        String window = "from=" + day + "&to=" + day.plusSeconds(86_400);
+        String filter = "&methodId=" + method.getId();
+
+        restConsumptionMockMvc.perform(post(ENTITY_API_URL_ROLLUP_REBUILD + "?" + window)).andExpect(status().isNoContent());
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_PERCENTILES + "?percentiles=50,99&" + window + filter))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.count").value(100))
+            .andExpect(jsonPath("$.min").value(1))
+            .andExpect(jsonPath("$.max").value(100))
+            .andExpect(jsonPath("$.values").value(contains(50, 99)));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_PERCENTILES + "?from=" + day + "&to=" + day.plusSeconds(6_030) + filter))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.count").value(10));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_HISTOGRAM + "?buckets=4&" + window + filter))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.bounds").value(contains(1, 26, 51, 76, 101)))
+            .andExpect(jsonPath("$.counts").value(contains(25, 25, 25, 25)));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_PERCENTILES + "?percentiles=101&" + window))
+            .andExpect(status().isBadRequest());
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL_HISTOGRAM + "?buckets=0&" + window)).andExpect(status().isBadRequest());
+
+        consumptionRepository.deleteAllInBatch(consumptions);
+        methodRepository.delete(method);
+        restConsumptionMockMvc.perform(post(ENTITY_API_URL_ROLLUP_REBUILD + "?" + window)).andExpect(status().isNoContent());
+    }
+
+    @Test
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    void getConsumptionSeries() throws Exception {
+        // The series and the samples are read and rebuilt in their own transactions, so this test cannot rely on a rollback
+        Method method = methodRepository.saveAndFlush(MethodResourceIT.createEntity(em));
+        Instant from = Instant.parse("2001-02-03T04:05:06Z");
+        List<Consumption> consumptions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            consumptions.add(createEntity(em).method(method).timestamp(from.plusMillis(100L * i)).value(i == 42 ? 1_000L : i % 3));
+        }
+        consumptionRepository.saveAll(consumptions);
+        String window = "&methodId=" + method.getId() + "&from=" + from + "&to=" + from.plusSeconds(10);
+        String day = "?from=" + from.truncatedTo(ChronoUnit.DAYS) + "&to=" + from.truncatedTo(ChronoUnit.DAYS).plus(1, ChronoUnit.DAYS);
+        restConsumptionMockMvc.perform(post(ENTITY_API_URL_ROLLUP_REBUILD + day)).andExpect(status().isNoContent());
+
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_SERIES + "?points=10" + window))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.algorithm").value("LTTB"))
+            .andExpect(jsonPath("$.rawCount").value(100))
+            .andExpect(jsonPath("$.timestamps.length()").value(10))
+            .andExpect(jsonPath("$.timestamps[0]").value(from.toEpochMilli()))
+            .andExpect(jsonPath("$.values").value(hasItem(1_000)));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_SERIES + "?points=10&algorithm=min_max" + window))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.values.length()").value(10))
+            .andExpect(jsonPath("$.values").value(hasItem(1_000)));
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL_SERIES + "?points=2" + window)).andExpect(status().isBadRequest());
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL_SERIES + "?algorithm=median" + window)).andExpect(status().isBadRequest());
+
+        // Until the samples of a dirty minute are refreshed, the series is read from the consumptions
+        consumptions.add(consumptionRepository.save(createEntity(em).method(method).timestamp(from.plusSeconds(9)).value(1L)));
+        consumptionRollupRepository.markDirty(List.of(from.plusSeconds(9)));
+        restConsumptionMockMvc
+            .perform(get(ENTITY_API_URL_SERIES + "?points=10" + window))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.rawCount").value(101));
+
+        consumptionRepository.deleteAllInBatch(consumptions);
+        restConsumptionMockMvc.perform(post(ENTITY_API_URL_ROLLUP_REBUILD + day)).andExpect(status().isNoContent());
+        methodRepository.delete(method);
+    }
+
+    @Test
+    void exportConsumptions() throws Exception {
+        // The export reads in its own transaction, so this test cannot rely on a rollback
+        Instant from = Instant.parse("2001-02-03T04:05:06Z");
+        Consumption first = createEntity(em).timestamp(from);
+        Consumption second = createUpdatedEntity(em).timestamp(from.plusMillis(1));
+        consumptionRepository.saveAll(List.of(second, first));
+        String filter = "&from=" + from + "&to=" + from.plusSeconds(1);
+
+        try {
+            MvcResult csv = restConsumptionMockMvc
+                .perform(get(ENTITY_API_URL_EXPORT + "?format=csv" + filter))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            restConsumptionMockMvc
+                .perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("consumptions.csv")));
+            assertThat(csv.getResponse().getContentAsString())
+                .isEqualTo(
+                    "id,value,scope,monitoring_type,timestamp,method_id\n" +
+                    first.getId() +
+                    ",1,APP,EVOLUTION,2001-02-03T04:05:06Z,\n" +
+                    second.getId() +
+                    ",2,ALL,RUNTIME,2001-02-03T04:05:06.001Z,\n"
+                );
+
+            MvcResult ndjson = restConsumptionMockMvc
+                .perform(get(ENTITY_API_URL_EXPORT + "?format=ndjson&scope=" + UPDATED_SCOPE + filter))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            restConsumptionMockMvc.perform(asyncDispatch(ndjson)).andExpect(status().isOk());
+            assertThat(ndjson.getResponse().getContentAsString())
+                .isEqualTo(
+                    "{\"id\":" +
+                    second.getId() +
+                    ",\"value\":2,\"scope\":\"ALL\",\"monitoringType\":\"RUNTIME\"," +
+                    "\"timestamp\":\"2001-02-03T04:05:06.001Z\",\"methodId\":null}\n"
+                );
+        } finally {
+            consumptionRepository.deleteAllInBatch(List.of(first, second));
+        }
+    }
+
+    @Test
+    @Transactional
+    void exportConsumptionsWithUnknownFormat() throws Exception {
+        restConsumptionMockMvc.perform(get(ENTITY_API_URL_EXPORT + "?format=xml")).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void getConsumption() throws Exception {
@@ -408,4 +1090,46 @@ class ConsumptionResourceIT {
         List<Consumption> consumptionList = consumptionRepository.findAll();
         assertThat(consumptionList).hasSize(databaseSizeBeforeDelete - 1);
     }
+
+    private MockHttpServletRequestBuilder importRun(Release release, byte[] archive) {
+        return multipart(ENTITY_API_URL_IMPORT)
+            .file(new MockMultipartFile("file", "run.zip", "application/zip", archive))
+            .param("releaseId", String.valueOf(release.getId()))
+            .param("scope", DEFAULT_SCOPE.name())
+            .param("monitoringType", DEFAULT_MONITORING_TYPE.name());
+    }
+
+    private List<Consumption> importedConsumptions(List<Method> methods) {
+        Set<Long> methodIds = methods.stream().map(Method::getId).collect(Collectors.toSet());
+        return consumptionRepository
+            .findAll()
+            .stream()
+            .filter(imported -> imported.getMethod() != null && methodIds.contains(imported.getMethod().getId()))
+            .collect(Collectors.toList());
+    }
+
+    private void deleteImportedRun(Release release) {
+        List<Method> methods = methodRepository.findAllByReleaseIdAndNameIn(
+            release.getId(),
+            List.of("com.acme.A.run(int, long)", "com.acme.B.run()", "com.acme.A.run()")
+        );
+        consumptionRepository.deleteAllInBatch(importedConsumptions(methods));
+        releaseRepository.deleteById(release.getId());
+        methodRepository.deleteAll(methods);
+    }
+
+    /**
+     * @return a zip archive of alternating entry names and contents.
+     */
+    private static byte[] zip(String... entries) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return archive.toByteArray();
+    }
 }
@@ -112,6 +112,24 @@ class MeasureResourceIT {
         assertThat(measureList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    void streamMeasures() throws Exception {
+        // Streamed uploads commit their own transactions, so this test cannot rely on a rollback
+        int databaseSizeBeforeCreate = measureRepository.findAll().size();
+        byte[] body = TestUtil.convertObjectsToNdjsonBytes(createEntity(em), createUpdatedEntity(em));
+
+        restMeasureMockMvc
+            .perform(post(ENTITY_API_URL + "/batch").contentType(MediaType.APPLICATION_NDJSON).content(body))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.persisted").value(2));
+
+        List<Measure> measureList = measureRepository.findAll();
+        assertThat(measureList).hasSize(databaseSizeBeforeCreate + 2);
+        Measure testMeasure = measureList.get(measureList.size() - 1);
+        assertThat(testMeasure.getStartTimestamp()).isEqualTo(UPDATED_START_TIMESTAMP);
+        measureRepository.deleteAllInBatch(measureList.subList(databaseSizeBeforeCreate, measureList.size()));
+    }
+
     @Test
     @Transactional
     void getAllMeasures() throws Exception {
@@ -1,7 +1,9 @@
 package com.snail.consumptiondb.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -125,6 +127,29 @@ class MethodResourceIT {
             .andExpect(jsonPath("$.[*].name").value(hasItem(DEFAULT_NAME)));
     }
 
+    @Test
+    @Transactional
+    void getAllMethodsWhereMethodIsNull() throws Exception {
+        methodRepository.saveAndFlush(method);
+        Method child = methodRepository.saveAndFlush(createEntity(em));
+        // Method#setMethod links both ends of the self reference, and recurses doing so
+        em
+            .createNativeQuery("update method set method_id = :methodId where id = :id")
+            .setParameter("methodId", method.getId())
+            .setParameter("id", child.getId())
+            .executeUpdate();
+
+        restMethodMockMvc
+            .perform(get(ENTITY_API_URL + "?filter=method-is-null"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(method.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(child.getId().intValue()))));
+        restMethodMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[?(@.id == " + child.getId() + ")].method.id").value(contains(method.getId().intValue())));
+    }
+
     @Test
     @Transactional
     void getMethod() throws Exception {
@@ -1,14 +1,19 @@
 package com.snail.consumptiondb.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Method;
 import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.repository.ConsumptionRollupResolution;
 import com.snail.consumptiondb.repository.ReleaseRepository;
+import com.snail.consumptiondb.service.ConsumptionRollupService;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -61,6 +66,9 @@ class ReleaseResourceIT {
     @Mock
     private ReleaseRepository releaseRepositoryMock;
 
+    @Autowired
+    private ConsumptionRollupService consumptionRollupService;
+
     @Autowired
     private EntityManager em;
 
@@ -183,6 +191,135 @@ class ReleaseResourceIT {
             .andExpect(jsonPath("$.description").value(DEFAULT_DESCRIPTION));
     }
 
+    @Test
+    @Transactional
+    void getReleaseMethods() throws Exception {
+        for (String name : List.of("first", "second", "third")) {
+            Method method = new Method().name(name);
+            em.persist(method);
+            release.addMethod(method);
+        }
+        releaseRepository.saveAndFlush(release);
+
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/methods?sort=name,asc&size=2", release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "3"))
+            .andExpect(jsonPath("$.[*].name").value(contains("first", "second")));
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/methods?sort=name,asc&size=2&page=1", release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].name").value(contains("third")));
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL + "?eagerload=true&sort=id,desc&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].methods.[*].name").value(contains("first", "second", "third")))
+            .andExpect(jsonPath("$.[0].methodCount").value(3));
+        restReleaseMockMvc.perform(get(ENTITY_API_URL_ID + "/methods", Long.MAX_VALUE)).andExpect(status().isNotFound());
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL + "?eagerload=true&size=" + (ReleaseResource.MAX_EAGER_PAGE_SIZE + 1)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getReleaseDiff() throws Exception {
+        Instant timestamp = Instant.parse("2001-02-03T04:05:06Z");
+        Release base = createEntity(em);
+        Release target = createUpdatedEntity(em);
+        for (String name : List.of("kept", "cheaper", "removed")) {
+            Method method = new Method().name(name);
+            em.persist(method);
+            base.addMethod(method);
+            em.persist(new Consumption().method(method).value(10L).timestamp(timestamp));
+        }
+        for (String name : List.of("kept", "cheaper", "added")) {
+            Method method = new Method().name(name);
+            em.persist(method);
+            target.addMethod(method);
+            em.persist(new Consumption().method(method).value("cheaper".equals(name) ? 4L : 15L).timestamp(timestamp));
+        }
+        em.persist(base);
+        em.persist(target);
+        em.flush();
+        consumptionRollupService.rebuildDay(ConsumptionRollupResolution.DAY.truncate(timestamp));
+        String url = ENTITY_API_URL + "/" + base.getId() + "/diff/" + target.getId();
+
+        restReleaseMockMvc
+            .perform(get(url))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "4"))
+            .andExpect(jsonPath("$.[*].methodName").value(contains("added", "kept", "cheaper", "removed")))
+            .andExpect(jsonPath("$.[*].status").value(contains("ADDED", "COMMON", "COMMON", "REMOVED")))
+            .andExpect(jsonPath("$.[*].delta").value(contains(15.0, 5.0, -6.0, -10.0)))
+            .andExpect(jsonPath("$.[1].relativeDelta").value(0.5));
+        restReleaseMockMvc
+            .perform(get(url + "?sort=relativeDelta,asc&size=1&page=0"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].methodName").value(contains("cheaper")));
+        restReleaseMockMvc.perform(get(url + "?sort=unknown")).andExpect(status().isBadRequest());
+        restReleaseMockMvc.perform(get(ENTITY_API_URL + "/" + base.getId() + "/diff/" + Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void getReleaseTopMethods() throws Exception {
+        Instant timestamp = Instant.parse("2001-02-03T04:05:06Z");
+        Release release = createEntity(em);
+        List<Long> methodIds = new ArrayList<>();
+        for (long value : List.of(20L, 50L, 10L)) {
+            Method method = new Method().name("method" + value);
+            em.persist(method);
+            release.addMethod(method);
+            methodIds.add(method.getId());
+            em.persist(new Consumption().method(method).value(value).timestamp(timestamp));
+            em.persist(new Consumption().method(method).value(value).timestamp(timestamp.plusSeconds(60)));
+        }
+        em.persist(release);
+        em.flush();
+        consumptionRollupService.rebuildDay(ConsumptionRollupResolution.DAY.truncate(timestamp));
+        String url = ENTITY_API_URL + "/" + release.getId() + "/top-methods";
+
+        restReleaseMockMvc
+            .perform(get(url + "?k=2&metric=total"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].methodId").value(contains(methodIds.get(1).intValue(), methodIds.get(0).intValue())))
+            .andExpect(jsonPath("$.[0].sum").value(100))
+            .andExpect(jsonPath("$.[0].count").value(2));
+        restReleaseMockMvc.perform(get(url + "?k=0")).andExpect(status().isBadRequest());
+        restReleaseMockMvc.perform(get(url + "?metric=unknown")).andExpect(status().isBadRequest());
+        restReleaseMockMvc.perform(get(ENTITY_API_URL + "/" + Long.MAX_VALUE + "/top-methods")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void getReleaseMethodTree() throws Exception {
+        Instant timestamp = Instant.parse("2001-02-03T04:05:06Z");
+        Release release = createEntity(em);
+        for (String name : List.of("com.acme.Foo.bar", "com.acme.Foo.baz", "com.acme.Bar.run")) {
+            Method method = new Method().name(name);
+            em.persist(method);
+            release.addMethod(method);
+            em.persist(new Consumption().method(method).value(name.endsWith("run") ? 3L : 10L).timestamp(timestamp));
+        }
+        em.persist(release);
+        em.flush();
+        consumptionRollupService.rebuildDay(ConsumptionRollupResolution.DAY.truncate(timestamp));
+        String url = ENTITY_API_URL + "/" + release.getId() + "/method-tree";
+
+        restReleaseMockMvc
+            .perform(get(url + "?path=com.acme"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.type").value("PACKAGE"))
+            .andExpect(jsonPath("$.sum").value(23))
+            .andExpect(jsonPath("$.methodCount").value(3))
+            .andExpect(jsonPath("$.children.[*].path").value(contains("com.acme.Foo", "com.acme.Bar")))
+            .andExpect(jsonPath("$.children.[*].type").value(contains("CLASS", "CLASS")))
+            .andExpect(jsonPath("$.children.[*].sum").value(contains(20, 3)));
+        restReleaseMockMvc.perform(get(url + "?path=org")).andExpect(status().isNotFound());
+        restReleaseMockMvc.perform(get(ENTITY_API_URL + "/" + Long.MAX_VALUE + "/method-tree")).andExpect(status().isNotFound());
+    }
+
     @Test
     @Transactional
     void getNonExistingRelease() throws Exception {
@@ -221,6 +358,54 @@ class ReleaseResourceIT {
         assertThat(testRelease.getDescription()).isEqualTo(UPDATED_DESCRIPTION);
     }
 
+    @Test
+    @Transactional
+    void putExistingReleaseKeepsItsMethods() throws Exception {
+        Method method = new Method().name("kept");
+        em.persist(method);
+        releaseRepository.saveAndFlush(release.addMethod(method));
+        em.clear();
+
+        // The edit form only knows the first methods of a release, those it sends back must not replace the others
+        Release updatedRelease = new Release().id(release.getId()).name(UPDATED_NAME).date(UPDATED_DATE).description(UPDATED_DESCRIPTION);
+        restReleaseMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedRelease.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedRelease))
+            )
+            .andExpect(status().isOk());
+
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/methods", release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].name").value(contains("kept")));
+    }
+
+    @Test
+    @Transactional
+    void linkAndUnlinkReleaseMethods() throws Exception {
+        Method method = new Method().name("linked");
+        em.persist(method);
+        releaseRepository.saveAndFlush(release);
+        String url = ENTITY_API_URL_ID + "/methods/{methodId}";
+
+        restReleaseMockMvc.perform(put(url, release.getId(), method.getId())).andExpect(status().isNoContent());
+        restReleaseMockMvc.perform(put(url, release.getId(), method.getId())).andExpect(status().isNoContent());
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/methods", release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].name").value(contains("linked")));
+        restReleaseMockMvc.perform(put(url, release.getId(), Long.MAX_VALUE)).andExpect(status().isNotFound());
+
+        restReleaseMockMvc.perform(delete(url, release.getId(), method.getId())).andExpect(status().isNoContent());
+        restReleaseMockMvc.perform(delete(url, release.getId(), method.getId())).andExpect(status().isNotFound());
+        restReleaseMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/methods", release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+    }
+
     @Test
     @Transactional
     void putNonExistingRelease() throws Exception {
@@ -0,0 +1,148 @@
+package com.snail.consumptiondb.web.rest;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.snail.consumptiondb.IntegrationTest;
+import com.snail.consumptiondb.domain.Consumption;
+import com.snail.consumptiondb.domain.Measure;
+import com.snail.consumptiondb.domain.Method;
+import com.snail.consumptiondb.domain.Release;
+import com.snail.consumptiondb.domain.Software;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests pinning the number of SQL statements of the REST calls reading entities with their relationships,
+ * which must not grow with the number of rows read.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class SqlStatementCountIT {
+
+    private static final int METHODS = 5;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private MockMvc restMockMvc;
+
+    private SqlStatementCounter counter;
+
+    private Release release;
+
+    private Consumption consumption;
+
+    @BeforeEach
+    public void initTest() {
+        counter = new SqlStatementCounter(em);
+        release = ReleaseResourceIT.createEntity(em);
+        consumption = ConsumptionResourceIT.createEntity(em);
+        em.persist(consumption);
+        for (int i = 0; i < METHODS; i++) {
+            Method method = MethodResourceIT.createEntity(em).consumption(consumption);
+            em.persist(method);
+            release.addMethod(method);
+        }
+        em.persist(release);
+        consumption.setMethod(release.getMethods().iterator().next());
+    }
+
+    @Test
+    @Transactional
+    void getMethod() throws Exception {
+        Method method = consumption.getMethod();
+        counter.start();
+
+        restMockMvc
+            .perform(get("/api/methods/{id}", method.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.consumption.id").value(consumption.getId().intValue()))
+            .andExpect(jsonPath("$.consumption.method.id").value(method.getId().intValue()));
+        counter.assertCount(1);
+    }
+
+    @Test
+    @Transactional
+    void getAllMethods() throws Exception {
+        counter.start();
+
+        restMockMvc.perform(get("/api/methods")).andExpect(status().isOk());
+        counter.assertCount(1);
+    }
+
+    @Test
+    @Transactional
+    void getConsumption() throws Exception {
+        counter.start();
+
+        restMockMvc
+            .perform(get("/api/consumptions/{id}", consumption.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.method.id").value(consumption.getMethod().getId().intValue()));
+        counter.assertCount(1);
+    }
+
+    @Test
+    @Transactional
+    void getMeasure() throws Exception {
+        Measure measure = MeasureResourceIT.createEntity(em).consumption(consumption);
+        em.persist(measure);
+        counter.start();
+
+        restMockMvc
+            .perform(get("/api/measures/{id}", measure.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.consumption.method.id").value(consumption.getMethod().getId().intValue()));
+        counter.assertCount(1);
+    }
+
+    @Test
+    @Transactional
+    void getSoftware() throws Exception {
+        Software software = SoftwareResourceIT.createEntity(em).release(release);
+        em.persist(software);
+        counter.start();
+
+        restMockMvc
+            .perform(get("/api/software/{id}", software.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.release.id").value(release.getId().intValue()));
+        counter.assertCount(1);
+    }
+
+    @Test
+    @Transactional
+    void getReleaseWithMethods() throws Exception {
+        counter.start();
+
+        restMockMvc
+            .perform(get("/api/releases/{id}", release.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.methods", hasSize(METHODS)));
+        // The release, then its methods
+        counter.assertCount(2);
+    }
+
+    @Test
+    @Transactional
+    void getAllReleasesWithMethods() throws Exception {
+        counter.start();
+
+        restMockMvc
+            .perform(get("/api/releases?eagerload=true&sort=id,desc&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].methods", hasSize(METHODS)));
+        // The page of releases, their count, then their first methods
+        counter.assertCount(3);
+    }
+}
@@ -0,0 +1,44 @@
+package com.snail.consumptiondb.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Counts the SQL statements prepared by Hibernate, from its statistics (enabled by the test profiles), so that an
+ * integration test can pin the number of statements of a REST call and fail on N+1 regressions.
+ */
+public final class SqlStatementCounter {
+
+    private final EntityManager em;
+
+    private final Statistics statistics;
+
+    public SqlStatementCounter(EntityManager em) {
+        this.em = em;
+        this.statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Flush and clear the persistence context, so that the entities of the test are loaded from the database again,
+     * then start counting.
+     */
+    public void start() {
+        em.flush();
+        em.clear();
+        statistics.clear();
+    }
+
+    public long count() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * @param expected the number of statements the REST call should take, whatever the number of rows it reads.
+     */
+    public void assertCount(long expected) {
+        assertThat(count()).as("SQL statements").isEqualTo(expected);
+    }
+}
@@ -6,11 +6,13 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -49,6 +51,37 @@ public final class TestUtil {
         return mapper.writeValueAsBytes(object);
     }
 
+    /**
+     * Convert objects to a newline-delimited JSON byte array, one object per line.
+     *
+     * @param objects the objects to convert.
+     * @return the NDJSON byte array.
+     * @throws IOException
+     */
+    public static byte[] convertObjectsToNdjsonBytes(Object... objects) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object object : objects) {
+            out.write(mapper.writeValueAsBytes(object));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Compress a byte array with gzip.
+     *
+     * @param bytes the bytes to compress.
+     * @return the gzip-encoded byte array.
+     * @throws IOException
+     */
+    public static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
     /**
      * Create a byte array with a specific size filled with specified data.
      *